@@ -5,6 +5,8 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+
 @Getter
 @Setter
 @Configuration
@@ -26,6 +28,81 @@ public class AiProperties {
     /** Temperature (0.0 = deterministe, 1.0 = creatif). */
     private double temperature = 0.3;
 
-    /** Timeout en secondes pour l'appel API. */
+    /**
+     * Mise en cache du prompt systeme par l'API (prompt caching): le prefixe statique n'est facture
+     * et traite en entier qu'au premier appel de la fenetre de cache.
+     */
+    private boolean promptCaching = true;
+
+    /** Timeout total en secondes pour l'appel API (lecture de la reponse comprise). */
     private int timeout = 60;
+
+    /** Delai max d'etablissement de la connexion. */
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    /** Delai max d'attente du debut de la reponse (en-tetes). */
+    private Duration readTimeout = Duration.ofSeconds(45);
+
+    /**
+     * Nombre max d'appels API simultanes (plafond de la limite adaptative); au-dela de la limite courante,
+     * fallback immediat sur l'algorithme.
+     */
+    private int maxConcurrentRequests = 32;
+
+    /** Limite adaptative d'appels simultanes au demarrage. */
+    private int concurrencyInitialLimit = 8;
+
+    /** Plancher de la limite adaptative d'appels simultanes. */
+    private int concurrencyMinLimit = 2;
+
+    /** Disjoncteur: nombre de derniers appels pris en compte pour le taux d'echec. */
+    private int circuitWindowSize = 20;
+
+    /** Disjoncteur: nombre min d'appels dans la fenetre avant de pouvoir s'ouvrir. */
+    private int circuitMinimumCalls = 10;
+
+    /** Disjoncteur: taux d'echec (0-1) a partir duquel il s'ouvre. */
+    private double circuitFailureRateThreshold = 0.5;
+
+    /** Disjoncteur: duree pendant laquelle tous les appels sont refuses une fois ouvert. */
+    private Duration circuitOpenDuration = Duration.ofSeconds(30);
+
+    /** Disjoncteur: nombre d'appels d'essai en semi-ouvert avant de se refermer. */
+    private int circuitHalfOpenProbes = 3;
+
+    /**
+     * Budget de latence par defaut: le plan algorithmique est calcule en parallele de l'appel IA et retourne
+     * si l'IA depasse ce delai (0 pour toujours attendre l'IA).
+     */
+    private Duration latencyBudget = Duration.ZERO;
+
+    /** Nombre max de plans IA gardes en memoire (0 pour ne garder que le niveau disque). */
+    private long cacheMaxSize = 500;
+
+    /** Duree de vie d'un plan IA en cache (memoire et disque). */
+    private Duration cacheTtl = Duration.ofDays(7);
+
+    /** Repertoire du cache disque des plans IA (vide pour desactiver le niveau disque). */
+    private String cacheDirectory = "./output/ai-cache";
+
+    /** Lots IA (API Message Batches): delai avant la premiere verification de l'etat d'un lot. */
+    private Duration batchPollInterval = Duration.ofSeconds(30);
+
+    /** Lots IA: delai max entre deux verifications (le delai double a chaque verification). */
+    private Duration batchPollMaxInterval = Duration.ofMinutes(5);
+
+    /**
+     * Lots IA: delai total de lecture du fichier de resultats d'un lot, au-dela duquel le telechargement est
+     * abandonne et le job echoue.
+     */
+    private Duration batchResultsTimeout = Duration.ofMinutes(10);
+
+    /** Lots IA: nombre max de fichiers de resultats telecharges en meme temps (hors limite des appels interactifs). */
+    private int batchMaxConcurrentDownloads = 2;
+
+    /** Lots IA: nombre max de requetes par job. */
+    private int batchMaxRequests = 10_000;
+
+    /** Repertoire des resultats des jobs de lots IA (un fichier NDJSON par job). */
+    private String batchDirectory = "./output/ai-batches";
 }
@@ -0,0 +1,17 @@
+package tn.archigen.archigen.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "archigentn.export")
+public class ExportProperties {
+
+    /** Taille max des fragments DXF encodes gardes pour les re-exports (0 pour desactiver le cache). */
+    private DataSize fragmentCacheSize = DataSize.ofMegabytes(32);
+}
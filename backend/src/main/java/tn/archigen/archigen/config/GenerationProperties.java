@@ -0,0 +1,30 @@
+package tn.archigen.archigen.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "archigentn.generation")
+public class GenerationProperties {
+
+    /** Budget de temps (ms) par defaut pour la recherche multi-candidats. */
+    private long searchTimeBudgetMs = 50;
+
+    /** Nombre de threads du pool de recherche (defaut: nombre de coeurs). */
+    private int searchParallelism = Runtime.getRuntime().availableProcessors();
+
+    /** Nombre max de plans generes simultanement dans un lot (/generate/batch). */
+    private int batchParallelism = Runtime.getRuntime().availableProcessors();
+
+    /** Nombre max de plans gardes en cache (0 pour desactiver le cache). */
+    private long cacheMaxSize = 1000;
+
+    /** Duree de vie d'un plan en cache. */
+    private Duration cacheTtl = Duration.ofMinutes(30);
+}
@@ -0,0 +1,20 @@
+package tn.archigen.archigen.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "archigentn.output")
+public class OutputProperties {
+
+    /** Repertoire de sortie des fichiers generes (les exports sont ranges sous artifacts/). */
+    private String directory = "./output";
+
+    /** Taille max du stockage des exports: au-dela, les moins recemment servis sont supprimes. */
+    private DataSize artifactMaxSize = DataSize.ofGigabytes(1);
+}
@@ -5,16 +5,31 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import tn.archigen.archigen.dto.*;
+import tn.archigen.archigen.service.AiBatchJobService;
 import tn.archigen.archigen.service.ClaudeAiPlanService;
 import tn.archigen.archigen.service.DxfExportService;
+import tn.archigen.archigen.service.ExportArtifactStore;
 import tn.archigen.archigen.service.StructuralAnalysisService;
+import tn.archigen.archigen.service.dxf.DxfFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
 
 @Slf4j
 @RestController
@@ -24,7 +39,9 @@ import tn.archigen.archigen.service.StructuralAnalysisService;
 public class AiPlanController {
 
     private final ClaudeAiPlanService claudeAiPlanService;
+    private final AiBatchJobService aiBatchJobService;
     private final DxfExportService dxfExportService;
+    private final ExportArtifactStore exportArtifactStore;
     private final StructuralAnalysisService structuralAnalysisService;
 
     // ==================== GENERATION IA ====================
@@ -48,6 +65,136 @@ public class AiPlanController {
         return ResponseEntity.ok(plan);
     }
 
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(
+            summary = "Generer un plan via Claude AI en streaming (SSE)",
+            description = "Meme generation que /generate, mais la reponse est un flux Server-Sent Events: "
+                    + "un evenement room, door ou window par element des qu'il est genere par le modele, "
+                    + "puis un evenement plan avec le plan complet (valide et repare si besoin, il fait foi). En cas d'echec de l'IA, un evenement fallback "
+                    + "est envoye (les elements deja recus sont a ignorer) puis le plan algorithmique suit."
+    )
+    @ApiResponse(responseCode = "200", description = "Flux SSE d'elements du plan",
+            content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE))
+    public ResponseEntity<StreamingResponseBody> generatePlanStream(@Valid @RequestBody PlanGenerateRequest request) {
+        log.info("POST /api/plans/ai/generate/stream - terrain: {}x{}, pieces: {}",
+                request.getTerrain().getWidth(),
+                request.getTerrain().getHeight(),
+                request.getRequirements().getRooms().size());
+
+        StreamingResponseBody stream = out -> claudeAiPlanService.streamPlan(request, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .body(stream);
+    }
+
+    @GetMapping("/plans/{aiPlanId}")
+    @Operation(
+            summary = "Recuperer un plan IA arrive apres le budget de latence",
+            description = "Quand /generate retourne le plan algorithmique faute de reponse IA dans le budget de latence, "
+                    + "le champ aiPlanId permet de recuperer ici le plan IA une fois genere."
+    )
+    @ApiResponse(responseCode = "200", description = "Plan IA")
+    @ApiResponse(responseCode = "202", description = "Plan IA encore en cours de generation")
+    @ApiResponse(responseCode = "404", description = "Identifiant inconnu, expire, ou generation IA en echec")
+    public ResponseEntity<PlanResponse> getAiPlan(@PathVariable String aiPlanId) {
+        log.info("GET /api/plans/ai/plans/{}", aiPlanId);
+
+        PlanResponse plan = claudeAiPlanService.findAiPlan(aiPlanId);
+        if (plan != null) {
+            return ResponseEntity.ok(plan);
+        }
+        return claudeAiPlanService.isAiPlanPending(aiPlanId)
+                ? ResponseEntity.accepted().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/cache")
+    @Operation(
+            summary = "Vider le cache des plans IA",
+            description = "Supprime les plans IA gardes en memoire et sur disque. "
+                    + "Le cache est deja invalide automatiquement quand le prompt systeme change."
+    )
+    @ApiResponse(responseCode = "204", description = "Cache vide")
+    public ResponseEntity<Void> invalidateCache() {
+        log.info("DELETE /api/plans/ai/cache");
+
+        claudeAiPlanService.invalidateCache();
+        return ResponseEntity.noContent().build();
+    }
+
+    // ==================== GENERATION IA PAR LOTS ====================
+
+    @PostMapping(value = "/batches", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    @Operation(
+            summary = "Creer un job de generation IA par lot",
+            description = "Accepte un flux de requetes de generation (une par ligne en NDJSON, ou un tableau JSON) et les "
+                    + "soumet a l'API Message Batches (traitement asynchrone, tarif reduit). Les plans deja en cache "
+                    + "sont servis sans appel et les requetes identiques ne sont generees qu'une fois. "
+                    + "Suivre la progression avec GET /batches/{jobId}, puis lire les resultats avec "
+                    + "GET /batches/{jobId}/results."
+    )
+    @ApiResponse(responseCode = "202", description = "Job cree, soumission en cours")
+    @ApiResponse(responseCode = "413", description = "Trop de requetes dans le lot (archigentn.ai.batch-max-requests)")
+    @ApiResponse(responseCode = "503", description = "Pas de cle API AI configuree")
+    public ResponseEntity<AiBatchJobDto> submitBatch(InputStream body) throws IOException {
+        log.info("POST /api/plans/ai/batches");
+
+        AiBatchJobDto job;
+        try {
+            job = aiBatchJobService.submit(body);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, e.getMessage(), e);
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/plans/ai/batches/" + job.getId()))
+                .body(job);
+    }
+
+    @GetMapping("/batches/{jobId}")
+    @Operation(
+            summary = "Progression d'un job de generation IA par lot",
+            description = "Etat du job (submitting, in_progress, ended, failed) et nombre de plans generes, "
+                    + "servis depuis le cache, en erreur et encore en traitement."
+    )
+    @ApiResponse(responseCode = "200", description = "Etat du job")
+    @ApiResponse(responseCode = "404", description = "Job inconnu")
+    public ResponseEntity<AiBatchJobDto> getBatch(@PathVariable String jobId) {
+        log.info("GET /api/plans/ai/batches/{}", jobId);
+
+        AiBatchJobDto job = aiBatchJobService.findJob(jobId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping(value = "/batches/{jobId}/results", produces = "application/x-ndjson")
+    @Operation(
+            summary = "Resultats d'un job de generation IA par lot",
+            description = "Un resultat par ligne NDJSON (plan ou erreur, avec l'index de la requete dans le lot), "
+                    + "dans l'ordre d'achevement."
+    )
+    @ApiResponse(responseCode = "200", description = "Flux NDJSON de resultats",
+            content = @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = BatchPlanResultDto.class)))
+    @ApiResponse(responseCode = "202", description = "Job encore en cours")
+    @ApiResponse(responseCode = "404", description = "Job inconnu")
+    public ResponseEntity<Resource> getBatchResults(@PathVariable String jobId) {
+        log.info("GET /api/plans/ai/batches/{}/results", jobId);
+
+        Path results;
+        try {
+            results = aiBatchJobService.findResults(jobId);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.accepted().build();
+        }
+        if (results == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(new FileSystemResource(results));
+    }
+
     // ==================== GENERATION IA + EXPORT DXF ====================
 
     @PostMapping("/generate-dxf")
@@ -58,17 +205,26 @@ public class AiPlanController {
     )
     @ApiResponse(responseCode = "200", description = "Fichier DXF genere",
             content = @Content(mediaType = "application/dxf", schema = @Schema(type = "string", format = "binary")))
-    public ResponseEntity<byte[]> generateAndExportDxf(@Valid @RequestBody PlanGenerateRequest request) {
+    @ApiResponse(responseCode = "400", description = "Parametres ou format invalides")
+    public ResponseEntity<StreamingResponseBody> generateAndExportDxf(
+            @Valid @RequestBody PlanGenerateRequest request,
+            @RequestParam(required = false)
+            @Schema(description = "Format du DXF (prioritaire sur l'en-tete Accept: application/dxf; format=binary)",
+                    allowableValues = {"ascii", "binary"})
+            String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletRequest servletRequest
+    ) throws IOException {
         log.info("POST /api/plans/ai/generate-dxf - terrain: {}x{}", request.getTerrain().getWidth(), request.getTerrain().getHeight());
 
+        // Plan genere avant la reponse: une erreur de generation n'est pas un DXF tronque
+        DxfFormat dxfFormat = ArtifactResponses.dxfFormat(format, accept);
         PlanResponse plan = claudeAiPlanService.generatePlan(request);
-        byte[] dxfContent = dxfExportService.exportToDxf(plan);
+        ExportArtifactStore.Artifact artifact = exportArtifactStore.getOrCreate(
+                exportArtifactStore.key(DxfExportService.artifactKind(dxfFormat), plan), dxfFormat.extension(),
+                out -> dxfExportService.exportToDxf(plan, out, dxfFormat));
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"archigentn-ai-plan.dxf\"")
-                .header(HttpHeaders.CONTENT_TYPE, "application/dxf")
-                .contentLength(dxfContent.length)
-                .body(dxfContent);
+        return ArtifactResponses.serve(artifact, dxfFormat.mediaType(), "archigentn-ai-plan.dxf", servletRequest);
     }
 
     // ==================== GENERATION IA + ANALYSE ====================
@@ -0,0 +1,133 @@
+package tn.archigen.archigen.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tn.archigen.archigen.service.ExportArtifactStore;
+import tn.archigen.archigen.service.dxf.DxfFormat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Reponses servies depuis l'{@link ExportArtifactStore}, sans copie du fichier dans le tas: sendfile de Tomcat
+ * quand le connecteur le permet (le noyau envoie le fichier sur la socket apres les en-tetes), sinon
+ * {@link FileChannel#transferTo} vers le flux de la reponse.
+ * En-tetes: ETag fort (empreinte du contenu), Content-Length, Content-Location (adresse GET du fichier).
+ * En GET, une plage Range donne une reponse 206 (If-Range respecte), une plage hors du fichier une 416;
+ * plusieurs plages sont servies comme le fichier entier. If-None-Match est traite par l'appelant.
+ */
+final class ArtifactResponses {
+
+    /** Adresse GET des fichiers stockes ({@link PlanController#getExportArtifact}). */
+    static final String ARTIFACTS_PATH = "/api/plans/export/artifacts/";
+
+    // Attributs de requete de Tomcat pour sendfile (ceux de son DefaultServlet)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private ArtifactResponses() {
+    }
+
+    /** Format DXF demande ({@link DxfFormat#resolve}); un parametre {@code format} inconnu donne une reponse 400. */
+    static DxfFormat dxfFormat(String format, String accept) {
+        try {
+            return DxfFormat.resolve(format, accept);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    static ResponseEntity<StreamingResponseBody> serve(ExportArtifactStore.Artifact artifact, MediaType contentType,
+                                                       String filename, HttpServletRequest request) throws IOException {
+        long length = artifact.size();
+        long start = 0;
+        long end = length;
+        HttpStatus status = HttpStatus.OK;
+
+        boolean get = HttpMethod.GET.matches(request.getMethod());
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (get && range != null && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), artifact)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                // Plage illisible: ignoree, fichier entier
+                ranges = List.of();
+            }
+            if (ranges.size() == 1) {
+                try {
+                    start = ranges.get(0).getRangeStart(length);
+                    end = ranges.get(0).getRangeEnd(length) + 1;
+                } catch (IllegalArgumentException e) {
+                    start = length;
+                }
+                if (start >= end) {
+                    return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                            .eTag(artifact.etag())
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                            .build();
+                }
+                status = HttpStatus.PARTIAL_CONTENT;
+            }
+        }
+
+        var response = ResponseEntity.status(status)
+                .eTag(artifact.etag())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_LOCATION, ARTIFACTS_PATH + artifact.name())
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(contentType)
+                .contentLength(end - start);
+        if (status == HttpStatus.PARTIAL_CONTENT) {
+            response.header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + (end - 1) + "/" + length);
+        }
+        if (HttpMethod.HEAD.matches(request.getMethod())) {
+            return response.build();
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // Corps envoye par Tomcat une fois les en-tetes ecrits (reponse sans corps cote Spring)
+            request.setAttribute(SENDFILE_FILENAME, artifact.path().toRealPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end);
+            return response.build();
+        }
+        long position = start;
+        long count = end - start;
+        return response.body(out -> transfer(artifact.path(), position, count, out));
+    }
+
+    /** If-Range absent, ou egal a l'ETag (comparaison forte; une date ne correspond jamais). */
+    private static boolean ifRangeMatches(String ifRange, ExportArtifactStore.Artifact artifact) {
+        return ifRange == null || ifRange.trim().equals(artifact.etag());
+    }
+
+    private static void transfer(Path file, long position, long count, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            while (count > 0) {
+                long sent = channel.transferTo(position, count, target);
+                if (sent <= 0) {
+                    throw new EOFException("Export tronque: " + file);
+                }
+                position += sent;
+                count -= sent;
+            }
+        }
+    }
+}
@@ -5,17 +5,30 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import tn.archigen.archigen.dto.*;
 import tn.archigen.archigen.service.DxfExportService;
+import tn.archigen.archigen.service.ExportArtifactStore;
+import tn.archigen.archigen.service.PlanBatchService;
+import tn.archigen.archigen.service.PlanEditService;
 import tn.archigen.archigen.service.PlanGenerationService;
 import tn.archigen.archigen.service.StructuralAnalysisService;
+import tn.archigen.archigen.service.dxf.DxfFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -25,7 +38,10 @@ import tn.archigen.archigen.service.StructuralAnalysisService;
 public class PlanController {
 
     private final PlanGenerationService planGenerationService;
+    private final PlanBatchService planBatchService;
+    private final PlanEditService planEditService;
     private final DxfExportService dxfExportService;
+    private final ExportArtifactStore exportArtifactStore;
     private final StructuralAnalysisService structuralAnalysisService;
 
     // ==================== GENERATION ====================
@@ -49,6 +65,72 @@ public class PlanController {
         return ResponseEntity.ok(plan);
     }
 
+    @PostMapping("/generate/variants")
+    @Operation(
+            summary = "Generer plusieurs variantes d'un plan",
+            description = "Genere jusqu'a count plans distincts pour les memes exigences (strategie, ordre, ratios "
+                    + "et orientation tires au hasard, en parallele). Les quasi-doublons sont elimines et les "
+                    + "variantes sont classees par score (1 = meilleure). Le champ seed rend le tirage reproductible."
+    )
+    @ApiResponse(responseCode = "200", description = "Variantes classees")
+    @ApiResponse(responseCode = "400", description = "Parametres invalides")
+    public ResponseEntity<List<PlanVariantDto>> generateVariants(
+            @Valid @RequestBody PlanGenerateRequest request,
+            @RequestParam(defaultValue = "5")
+            @Schema(description = "Nombre de variantes souhaitees (1 a 20)", example = "5")
+            int count
+    ) {
+        log.info("POST /api/plans/generate/variants - terrain: {}x{}, variantes: {}",
+                request.getTerrain().getWidth(), request.getTerrain().getHeight(), count);
+
+        return ResponseEntity.ok(planGenerationService.generateVariants(request, count));
+    }
+
+    @PostMapping(value = "/generate/batch",
+            consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE},
+            produces = "application/x-ndjson")
+    @Operation(
+            summary = "Generer un lot de plans (NDJSON streame)",
+            description = "Accepte un flux de requetes de generation (une par ligne en NDJSON, ou un tableau JSON). "
+                    + "Les plans sont generes en parallele et chaque resultat est renvoye sur une ligne NDJSON "
+                    + "des qu'il est pret, avec l'index de la requete dans le lot. "
+                    + "Une requete invalide produit une ligne d'erreur sans interrompre le lot."
+    )
+    @ApiResponse(responseCode = "200", description = "Flux NDJSON de resultats",
+            content = @Content(mediaType = "application/x-ndjson", schema = @Schema(implementation = BatchPlanResultDto.class)))
+    public ResponseEntity<StreamingResponseBody> generateBatch(InputStream body) {
+        log.info("POST /api/plans/generate/batch");
+
+        StreamingResponseBody stream = out -> planBatchService.generateBatch(body, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(stream);
+    }
+
+    // ==================== EDITION INCREMENTALE ====================
+
+    @PatchMapping("/edit")
+    @Operation(
+            summary = "Deplacer ou redimensionner une piece d'un plan",
+            description = "Applique un deplacement et/ou redimensionnement a une piece d'un plan existant. "
+                    + "Seuls la piece, ses voisins et leurs portes, fenetres et poutres sont recalcules (le plan "
+                    + "envoye est tout de meme relu en entier: index des pieces, filtrage des ouvertures, surfaces); "
+                    + "la reponse est un delta (index a retirer, elements a ajouter) et les metriques mises a jour."
+    )
+    @ApiResponse(responseCode = "200", description = "Delta de l'edition")
+    @ApiResponse(responseCode = "400", description = "Parametres invalides, niveau ou piece inexistants")
+    public ResponseEntity<PlanEditResponse> editPlan(@Valid @RequestBody PlanEditRequest request) {
+        log.info("PATCH /api/plans/edit - piece {}, niveau {}", request.getRoomIndex(),
+                request.getLevel() != null ? request.getLevel() : 0);
+
+        try {
+            return ResponseEntity.ok(planEditService.edit(request));
+        } catch (IllegalArgumentException e) {
+            // Niveau ou piece absents du plan envoye
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
     // ==================== EXPORT DXF ====================
 
     @PostMapping("/export/dxf")
@@ -56,21 +138,59 @@ public class PlanController {
             summary = "Exporter un plan en DXF (AutoCAD)",
             description = "Prend un plan (JSON de PlanResponse) et genere un fichier DXF telechareable. "
                     + "Le DXF est compatible AutoCAD, LibreCAD, DraftSight. "
+                    + "format=binary (ou Accept: application/dxf; format=binary) produit un DXF binaire, "
+                    + "plus compact et plus rapide a ouvrir. "
+                    + "Le fichier est stocke par empreinte du plan: un plan deja exporte est servi sans etre "
+                    + "regenere, et reste telechargeable a l'adresse de l'en-tete Content-Location. "
                     + "Utilisez la reponse de /generate comme input."
     )
     @ApiResponse(responseCode = "200", description = "Fichier DXF genere",
             content = @Content(mediaType = "application/dxf", schema = @Schema(type = "string", format = "binary")))
-    @ApiResponse(responseCode = "400", description = "Plan invalide")
-    public ResponseEntity<byte[]> exportDxf(@Valid @RequestBody PlanResponse plan) {
+    @ApiResponse(responseCode = "400", description = "Plan ou format invalide")
+    public ResponseEntity<StreamingResponseBody> exportDxf(
+            @Valid @RequestBody PlanResponse plan,
+            @RequestParam(required = false)
+            @Schema(description = "Format du DXF (prioritaire sur l'en-tete Accept: application/dxf; format=binary)",
+                    allowableValues = {"ascii", "binary"})
+            String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletRequest servletRequest
+    ) throws IOException {
         log.info("POST /api/plans/export/dxf - {} pieces", plan.getRooms().size());
 
-        byte[] dxfContent = dxfExportService.exportToDxf(plan);
+        return dxfResponse(plan, "archigentn-plan.dxf", ArtifactResponses.dxfFormat(format, accept), servletRequest);
+    }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"archigentn-plan.dxf\"")
-                .header(HttpHeaders.CONTENT_TYPE, "application/dxf")
-                .contentLength(dxfContent.length)
-                .body(dxfContent);
+    @GetMapping("/export/artifacts/{name}")
+    @Operation(
+            summary = "Telecharger un export stocke",
+            description = "Fichier deja exporte, a l'adresse donnee par l'en-tete Content-Location des exports "
+                    + "(empreinte du plan et du format). ETag fort: If-None-Match (304) et telechargement "
+                    + "partiel ou repris (Range, If-Range). Un fichier peut etre supprime quand le stockage "
+                    + "depasse sa taille maximale: il suffit alors de re-exporter le plan."
+    )
+    @ApiResponse(responseCode = "200", description = "Fichier",
+            content = @Content(mediaType = "application/dxf", schema = @Schema(type = "string", format = "binary")))
+    @ApiResponse(responseCode = "206", description = "Plage demandee du fichier")
+    @ApiResponse(responseCode = "304", description = "Fichier inchange (If-None-Match)")
+    @ApiResponse(responseCode = "404", description = "Fichier inconnu ou supprime")
+    @ApiResponse(responseCode = "416", description = "Plage hors du fichier")
+    public ResponseEntity<StreamingResponseBody> getExportArtifact(@PathVariable String name, ServletWebRequest webRequest)
+            throws IOException {
+        log.info("GET /api/plans/export/artifacts/{}", name);
+
+        ExportArtifactStore.Artifact artifact = exportArtifactStore.find(name);
+        if (artifact == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (webRequest.checkNotModified(artifact.etag())) {
+            // 304 deja ecrit
+            return null;
+        }
+        DxfFormat format = DxfFormat.ofFileName(name);
+        return format != null
+                ? ArtifactResponses.serve(artifact, format.mediaType(), "archigentn-plan.dxf", webRequest.getRequest())
+                : ArtifactResponses.serve(artifact, MediaType.APPLICATION_OCTET_STREAM, name, webRequest.getRequest());
     }
 
     // ==================== GENERATION + EXPORT COMBINE ====================
@@ -83,17 +203,30 @@ public class PlanController {
     )
     @ApiResponse(responseCode = "200", description = "Fichier DXF genere",
             content = @Content(mediaType = "application/dxf", schema = @Schema(type = "string", format = "binary")))
-    public ResponseEntity<byte[]> generateAndExportDxf(@Valid @RequestBody PlanGenerateRequest request) {
+    @ApiResponse(responseCode = "400", description = "Parametres ou format invalides")
+    public ResponseEntity<StreamingResponseBody> generateAndExportDxf(
+            @Valid @RequestBody PlanGenerateRequest request,
+            @RequestParam(required = false)
+            @Schema(description = "Format du DXF (prioritaire sur l'en-tete Accept: application/dxf; format=binary)",
+                    allowableValues = {"ascii", "binary"})
+            String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            HttpServletRequest servletRequest
+    ) throws IOException {
         log.info("POST /api/plans/generate-dxf - terrain: {}x{}", request.getTerrain().getWidth(), request.getTerrain().getHeight());
 
+        DxfFormat dxfFormat = ArtifactResponses.dxfFormat(format, accept);
         PlanResponse plan = planGenerationService.generatePlan(request);
-        byte[] dxfContent = dxfExportService.exportToDxf(plan);
+        return dxfResponse(plan, "archigentn-plan.dxf", dxfFormat, servletRequest);
+    }
 
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"archigentn-plan.dxf\"")
-                .header(HttpHeaders.CONTENT_TYPE, "application/dxf")
-                .contentLength(dxfContent.length)
-                .body(dxfContent);
+    /** DXF du stockage des exports: ecrit au premier export de ce plan dans ce format, ensuite servi tel quel. */
+    private ResponseEntity<StreamingResponseBody> dxfResponse(PlanResponse plan, String filename, DxfFormat format,
+                                                              HttpServletRequest servletRequest) throws IOException {
+        ExportArtifactStore.Artifact artifact = exportArtifactStore.getOrCreate(
+                exportArtifactStore.key(DxfExportService.artifactKind(format), plan), format.extension(),
+                out -> dxfExportService.exportToDxf(plan, out, format));
+        return ArtifactResponses.serve(artifact, format.mediaType(), filename, servletRequest);
     }
 
     // ==================== ANALYSE STRUCTURELLE ====================
@@ -0,0 +1,52 @@
+package tn.archigen.archigen.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Etat et progression d'un job de generation IA par lot (API Message Batches)")
+public class AiBatchJobDto {
+
+    @Schema(description = "Identifiant du job", example = "5f0c8a7e-2b1d-4c3e-9a6f-1d2e3f4a5b6c")
+    private String id;
+
+    @Schema(description = "Etat du job", allowableValues = {"submitting", "in_progress", "ended", "failed"},
+            example = "in_progress")
+    private String status;
+
+    @Schema(description = "Identifiant du lot cote API (absent si toutes les requetes etaient en cache ou invalides)",
+            example = "msgbatch_01HkcTjaV5uDC8jWR4ZsDV8d")
+    private String batchId;
+
+    @Schema(description = "Nombre de requetes du job", example = "2000")
+    private Integer total;
+
+    @Schema(description = "Plans generes (dont plans servis depuis le cache)", example = "1500")
+    private Integer succeeded;
+
+    @Schema(description = "Plans servis depuis le cache sans appel a l'API", example = "120")
+    private Integer cached;
+
+    @Schema(description = "Requetes invalides ou en echec", example = "3")
+    private Integer failed;
+
+    @Schema(description = "Requetes distinctes encore en traitement cote API (derniere verification)", example = "480")
+    private Integer processing;
+
+    @Schema(description = "Date de creation du job")
+    private Instant createdAt;
+
+    @Schema(description = "Date de fin du job (absent tant qu'il est en cours)")
+    private Instant endedAt;
+
+    @Schema(description = "Raison de l'echec du job", example = "API IA HTTP 401: ...")
+    private String error;
+}
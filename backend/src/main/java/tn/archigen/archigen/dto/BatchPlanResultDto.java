@@ -0,0 +1,25 @@
+package tn.archigen.archigen.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Resultat d'une requete d'un lot (une ligne NDJSON), emis des qu'il est pret")
+public class BatchPlanResultDto {
+
+    @Schema(description = "Position de la requete dans le lot (a partir de 0)", example = "0")
+    private Integer index;
+
+    @Schema(description = "Plan genere (absent en cas d'erreur)")
+    private PlanResponse plan;
+
+    @Schema(description = "Message d'erreur si la requete est invalide ou a echoue",
+            example = "terrain.width: doit etre superieur ou egal a 5")
+    private String error;
+}
@@ -0,0 +1,35 @@
+package tn.archigen.archigen.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Niveau d'un plan multi-etages (pieces, portes et fenetres du niveau)")
+public class FloorDto {
+
+    @Schema(description = "Niveau (0 = RDC)", example = "1")
+    private Integer level;
+
+    @Schema(description = "Nom du niveau", example = "R+1")
+    private String name;
+
+    @Schema(description = "Pieces positionnees sur ce niveau")
+    private List<RoomDto> rooms;
+
+    @Schema(description = "Portes positionnees sur ce niveau")
+    private List<DoorDto> doors;
+
+    @Schema(description = "Fenetres positionnees sur ce niveau")
+    private List<WindowDto> windows;
+
+    @Schema(description = "Surface de plancher du niveau en m2", example = "98.6")
+    private Double area;
+}
@@ -0,0 +1,59 @@
+package tn.archigen.archigen.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Edition d'une piece d'un plan existant (deplacement et/ou redimensionnement)")
+public class PlanEditRequest {
+
+    @NotNull
+    @Valid
+    @Schema(description = "Plan avant edition (reponse de /generate ou d'une edition precedente appliquee)")
+    private PlanResponse plan;
+
+    @Min(0)
+    @Schema(description = "Niveau edite pour un plan multi-etages (0 = RDC)", example = "0")
+    private Integer level;
+
+    @NotNull
+    @Min(0)
+    @Schema(description = "Index de la piece dans la liste rooms du niveau", example = "2")
+    private Integer roomIndex;
+
+    @Schema(description = "Nouvelle position X en metres (defaut: inchangee)", example = "9.5")
+    private Double x;
+
+    @Schema(description = "Nouvelle position Y en metres (defaut: inchangee)", example = "5.0")
+    private Double y;
+
+    @DecimalMin("0.5")
+    @Schema(description = "Nouvelle largeur en metres (defaut: inchangee)", example = "4.2")
+    private Double width;
+
+    @DecimalMin("0.5")
+    @Schema(description = "Nouvelle profondeur en metres (defaut: inchangee)", example = "3.6")
+    private Double height;
+
+    @Builder.Default
+    @Valid
+    @Schema(description = "Reglementations pour la conformite des metriques (defaut: standard tunisien)")
+    private RegulationsDto regulations = new RegulationsDto();
+
+    @Builder.Default
+    @Pattern(regexp = "habitation|bureaux|commerce")
+    @Schema(description = "Type de batiment pour l'analyse structurelle des pieces touchees", example = "habitation",
+            allowableValues = {"habitation", "bureaux", "commerce"})
+    private String buildingType = "habitation";
+}
@@ -0,0 +1,51 @@
+package tn.archigen.archigen.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Delta d'une edition: seuls la piece editee, ses voisins et leurs ouvertures sont recalcules. "
+        + "Les index se rapportent aux listes du plan envoye (niveau edite).")
+public class PlanEditResponse {
+
+    @Schema(description = "Niveau edite (0 = RDC)", example = "0")
+    private Integer level;
+
+    @Schema(description = "Index de la piece editee", example = "2")
+    private Integer roomIndex;
+
+    @Schema(description = "Piece apres edition (remplace rooms[roomIndex])")
+    private RoomDto room;
+
+    @Schema(description = "Index des pieces touchees: piece editee et voisins avant/apres edition")
+    private List<Integer> affectedRooms;
+
+    @Schema(description = "Index des pieces que la piece editee chevauche apres edition (vide si valide)")
+    private List<Integer> overlappingRooms;
+
+    @Schema(description = "Index des portes a retirer (murs de la piece editee avant edition)")
+    private List<Integer> removedDoors;
+
+    @Schema(description = "Portes a ajouter")
+    private List<DoorDto> addedDoors;
+
+    @Schema(description = "Index des fenetres a retirer (murs des pieces touchees avant edition)")
+    private List<Integer> removedWindows;
+
+    @Schema(description = "Fenetres a ajouter")
+    private List<WindowDto> addedWindows;
+
+    @Schema(description = "Metriques du plan apres edition")
+    private PlanMetricsDto metrics;
+
+    @Schema(description = "Poutres des pieces touchees, dans l'ordre de affectedRooms")
+    private List<StructuralElementResultDto> structuralElements;
+}
@@ -2,7 +2,10 @@ package tn.archigen.archigen.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -29,4 +32,33 @@ public class PlanGenerateRequest {
     @Valid
     @Schema(description = "Reglementations urbanistiques (defaut: standard tunisien)")
     private RegulationsDto regulations = new RegulationsDto();
+
+    @Builder.Default
+    @Pattern(regexp = "standard|recherche|recuit")
+    @Schema(description = "Mode de generation: placement unique, recherche parallele multi-candidats, "
+            + "ou amelioration par recuit simule jusqu'a l'echeance",
+            example = "standard", allowableValues = {"standard", "recherche", "recuit"})
+    private String mode = "standard";
+
+    @Builder.Default
+    @Pattern(regexp = "rangees|maxrects|guillotine")
+    @Schema(description = "Strategie de placement des pieces: rangees (historique), MaxRects ou guillotine (plus denses)",
+            example = "rangees", allowableValues = {"rangees", "maxrects", "guillotine"})
+    private String strategy = "rangees";
+
+    @Min(1)
+    @Max(10000)
+    @Schema(description = "Budget de temps en ms des modes recherche et recuit (defaut: configuration serveur)", example = "50")
+    private Long timeBudgetMs;
+
+    @Schema(description = "Graine aleatoire des modes recuit et variantes: une meme graine redonne les memes variantes; "
+            + "en recuit elle fixe la suite des mouvements tires, mais le resultat depend aussi du nombre de mouvements "
+            + "essayes dans le budget de temps (defaut: fixe pour le recuit, aleatoire pour les variantes)", example = "42")
+    private Long seed;
+
+    @Min(0)
+    @Max(120000)
+    @Schema(description = "Generation IA: budget de latence en ms. Le plan algorithmique est calcule en parallele et retourne "
+            + "si l'IA n'a pas repondu dans ce delai (defaut: configuration serveur, 0 = attendre l'IA)", example = "8000")
+    private Long aiLatencyBudgetMs;
 }
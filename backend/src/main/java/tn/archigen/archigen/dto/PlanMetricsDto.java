@@ -13,15 +13,24 @@ import lombok.NoArgsConstructor;
 @Schema(description = "Metriques calculees du plan")
 public class PlanMetricsDto {
 
-    @Schema(description = "Surface totale construite en m2", example = "122.5")
+    @Schema(description = "Surface totale construite (tous niveaux) en m2", example = "122.5")
     private Double totalArea;
 
-    @Schema(description = "COS calcule (surface batie / surface terrain)", example = "0.33")
+    @Schema(description = "COS calcule (surface batie au sol / surface terrain)", example = "0.33")
     private Double cos;
 
-    @Schema(description = "CUF calcule (surface plancher / surface terrain)", example = "0.33")
+    @Schema(description = "CUF calcule (surface plancher tous niveaux / surface terrain)", example = "0.33")
     private Double cuf;
 
+    @Schema(description = "Nombre de niveaux (RDC compris)", example = "3")
+    private Integer floorCount;
+
+    @Schema(description = "Hauteur du batiment en metres (niveaux x hauteur d'etage)", example = "9.0")
+    private Double buildingHeight;
+
+    @Schema(description = "Longueur des murs exterieurs (facades, tous niveaux) en metres", example = "46.8")
+    private Double exteriorWallLength;
+
     @Schema(description = "Conformite aux reglementations", example = "true")
     private Boolean regulationsCompliant;
 
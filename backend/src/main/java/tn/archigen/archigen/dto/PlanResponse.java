@@ -9,7 +9,7 @@ import lombok.NoArgsConstructor;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Schema(description = "Plan architectural genere (sert aussi d'input pour export DXF et analyse structurelle)")
@@ -33,4 +33,11 @@ public class PlanResponse {
 
     @Schema(description = "Metriques calculees")
     private PlanMetricsDto metrics;
+
+    @Schema(description = "Niveaux du batiment si plus d'un etage (rooms, doors et windows decrivent alors le RDC)")
+    private List<FloorDto> floors;
+
+    @Schema(description = "Plan algorithmique retourne faute de reponse IA dans le budget de latence: identifiant du plan IA "
+            + "encore en cours, a recuperer via GET /api/plans/ai/plans/{aiPlanId}")
+    private String aiPlanId;
 }
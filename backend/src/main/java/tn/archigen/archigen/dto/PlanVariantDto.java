@@ -0,0 +1,32 @@
+package tn.archigen.archigen.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Variante de plan, classee parmi les variantes generees pour une meme requete")
+public class PlanVariantDto {
+
+    @Schema(description = "Rang de la variante (1 = meilleure)", example = "1")
+    private Integer rank;
+
+    @Schema(description = "Score de placement: surface placee (plafonnee a la cible), penalites pour pieces "
+            + "non placees et surface perdue", example = "118.4")
+    private Double score;
+
+    @Schema(description = "Nombre de pieces demandees qui n'ont pas pu etre placees", example = "0")
+    private Integer droppedRooms;
+
+    @Schema(description = "Parametres de placement (strategie/ordre/ratios/orientation)",
+            example = "maxrects/WET_GROUPED/1.15/1.50/rangees")
+    private String candidate;
+
+    @Schema(description = "Plan genere (reutilisable dans /export/dxf et /analyze)")
+    private PlanResponse plan;
+}
@@ -2,6 +2,8 @@ package tn.archigen.archigen.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotEmpty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -21,7 +23,9 @@ public class RequirementsDto {
     private Double totalArea;
 
     @Builder.Default
-    @Schema(description = "Nombre d'etages", example = "1")
+    @Min(1)
+    @Max(10)
+    @Schema(description = "Nombre de niveaux (RDC compris): 3 pour un R+2", example = "1")
     private Integer floors = 1;
 
     @NotEmpty
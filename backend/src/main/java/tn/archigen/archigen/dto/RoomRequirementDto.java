@@ -2,6 +2,7 @@ package tn.archigen.archigen.dto;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -30,4 +31,9 @@ public class RoomRequirementDto {
     @Builder.Default
     @Schema(description = "Nombre de pieces de ce type", example = "1")
     private Integer count = 1;
+
+    @Min(0)
+    @Schema(description = "Niveau impose (0 = RDC); par defaut pieces de jour au RDC, les autres reparties entre les niveaux",
+            example = "1")
+    private Integer floor;
 }
@@ -0,0 +1,93 @@
+package tn.archigen.archigen.service;
+
+/**
+ * Limite de concurrence adaptative (algorithme a gradient, dans l'esprit de Netflix concurrency-limits Gradient2).
+ * La limite suit le rapport entre la latence de reference (moyenne lente) et la latence observee (moyenne rapide):
+ * quand la latence monte, les appels s'accumulent en amont et la limite baisse; quand elle est stable, la limite
+ * remonte d'une marge de file {@code sqrt(limite)}. Un appel en echec (delai depasse, surcharge) divise la limite.
+ * La limite n'augmente que si elle est effectivement utilisee (au moins la moitie des places prises).
+ *
+ * Thread-safe. {@link #tryAcquire()} ne bloque jamais: au-dela de la limite, l'appelant doit renoncer.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    /** Poids d'un echantillon dans la moyenne rapide (derniers ~10 appels). */
+    private static final double SHORT_WEIGHT = 0.1;
+    /** Poids d'un echantillon dans la moyenne lente (derniers ~100 appels). */
+    private static final double LONG_WEIGHT = 0.01;
+    /** Lissage des changements de limite. */
+    private static final double SMOOTHING = 0.2;
+    /** Facteur applique a la limite en cas d'echec. */
+    private static final double BACKOFF = 0.9;
+    /** Tolerance: une latence jusqu'a 1.5x la reference ne fait pas baisser la limite. */
+    private static final double TOLERANCE = 1.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private double shortRtt;
+    private double longRtt;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+    }
+
+    /** Prend une place si la limite le permet. */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Rend une place.
+     *
+     * @param rttNanos duree de l'appel, ou une valeur negative pour ne pas l'utiliser comme echantillon
+     *                 (appel abandonne localement, reponse streamee dont la duree ne reflete pas la charge)
+     * @param dropped  true si l'appel a echoue pour cause de surcharge ou de delai depasse
+     */
+    public synchronized void release(long rttNanos, boolean dropped) {
+        int used = inFlight--;
+        if (dropped) {
+            limit = Math.max(minLimit, limit * BACKOFF);
+            return;
+        }
+        if (rttNanos <= 0) {
+            return;
+        }
+        if (longRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+            return;
+        }
+        shortRtt += (rttNanos - shortRtt) * SHORT_WEIGHT;
+        longRtt += (rttNanos - longRtt) * LONG_WEIGHT;
+        if (longRtt > shortRtt * 2) {
+            // Latence revenue bien en dessous de la reference (fin d'incident): la reference suit plus vite
+            longRtt = Math.max(shortRtt, longRtt * 0.95);
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double queueSize = Math.sqrt(limit);
+        double target = limit * gradient + queueSize;
+        if (target > limit && used < limit / 2) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    /** Limite courante (nombre d'appels simultanes autorises). */
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,563 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import tn.archigen.archigen.config.AiProperties;
+import tn.archigen.archigen.dto.AiBatchJobDto;
+import tn.archigen.archigen.dto.BatchPlanResultDto;
+import tn.archigen.archigen.dto.PlanGenerateRequest;
+import tn.archigen.archigen.dto.PlanResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Generation IA par lots via l'API Message Batches (traitement asynchrone, tarif reduit).
+ * Un job lit les requetes (NDJSON ou tableau JSON), ecarte les requetes invalides, sert depuis le
+ * {@link AiPlanCache cache IA} les plans deja generes, puis soumet les requetes restantes en un seul lot
+ * (les requetes identiques ne sont envoyees qu'une fois: l'identifiant de chaque requete du lot est sa cle de cache).
+ * L'etat du lot est ensuite verifie avec un delai croissant ({@code batchPollInterval}, double a chaque
+ * verification jusqu'a {@code batchPollMaxInterval}), sans thread bloque entre deux verifications.
+ * Une fois le lot termine, ses resultats sont lus au fil du telechargement et chaque plan est valide
+ * comme une reponse de l'API Messages puis mis dans le cache IA.
+ *
+ * Chaque job ecrit ses resultats dans {@code <batchDirectory>/<id>.ndjson} (un {@link BatchPlanResultDto}
+ * par ligne, dans l'ordre d'achevement), complet quand le job est termine. L'etat des jobs est garde en
+ * memoire: apres un redemarrage, seuls les fichiers de resultats restent disponibles.
+ */
+@Slf4j
+@Service
+public class AiBatchJobService {
+
+    private static final byte NEWLINE = '\n';
+    private static final String RESULTS_SUFFIX = ".ndjson";
+    private static final Pattern JOB_ID_PATTERN = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+    /**
+     * Verifications consecutives en echec (reseau, 5xx) avant d'abandonner le suivi d'un lot. Une verification
+     * refusee localement (disjoncteur ouvert, limite atteinte) est reprise au delai suivant sans compter.
+     */
+    private static final int MAX_POLL_FAILURES = 10;
+
+    private final AiProperties aiProperties;
+    private final ClaudeAiPlanService claudeAiPlanService;
+    private final AiHttpClient aiHttpClient;
+    private final AiPlanCache aiPlanCache;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader treeReader;
+    private final ObjectReader requestReader;
+    private final ObjectWriter resultWriter;
+    private final ConcurrentMap<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public AiBatchJobService(AiProperties aiProperties,
+                             ClaudeAiPlanService claudeAiPlanService,
+                             AiHttpClient aiHttpClient,
+                             AiPlanCache aiPlanCache,
+                             Validator validator,
+                             ObjectMapper objectMapper) {
+        this.aiProperties = aiProperties;
+        this.claudeAiPlanService = claudeAiPlanService;
+        this.aiHttpClient = aiHttpClient;
+        this.aiPlanCache = aiPlanCache;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.treeReader = objectMapper.readerFor(JsonNode.class);
+        this.requestReader = objectMapper.readerFor(PlanGenerateRequest.class);
+        this.resultWriter = objectMapper.writerFor(BatchPlanResultDto.class);
+    }
+
+    /**
+     * Cree un job pour les requetes lues depuis {@code in} et retourne son etat initial; la soumission du lot
+     * et la suite du traitement sont asynchrones.
+     * Une requete invalide produit une ligne d'erreur sans interrompre le job, y compris une requete dont le JSON
+     * ne correspond pas au format attendu (type de champ): chaque requete est lue en arbre puis convertie.
+     * Seul un flux mal forme (erreur de syntaxe) arrete la lecture, apres une ligne d'erreur.
+     *
+     * @throws IllegalStateException    si aucune cle API n'est configuree
+     * @throws IllegalArgumentException si le job depasse {@code batchMaxRequests} requetes
+     * @throws IOException              si le fichier de resultats ne peut pas etre ecrit
+     */
+    public AiBatchJobDto submit(InputStream in) throws IOException {
+        if (aiProperties.getApiKey() == null || aiProperties.getApiKey().isBlank()) {
+            throw new IllegalStateException("Pas de cle API AI configuree");
+        }
+        Path directory = Path.of(aiProperties.getBatchDirectory());
+        Files.createDirectories(directory);
+        String id = UUID.randomUUID().toString();
+        Path resultsFile = directory.resolve(id + RESULTS_SUFFIX);
+        var job = new Job(id, new BufferedOutputStream(Files.newOutputStream(resultsFile)));
+
+        List<BatchRequestItem> items = new ArrayList<>();
+        try (MappingIterator<JsonNode> nodes = treeReader.readValues(in)) {
+            while (true) {
+                JsonNode node;
+                try {
+                    if (!nodes.hasNextValue()) {
+                        break;
+                    }
+                    node = nodes.nextValue();
+                } catch (JsonProcessingException e) {
+                    // Flux illisible au-dela de ce point: on le signale et on soumet ce qui a ete lu
+                    log.warn("Job IA {}: JSON invalide a la requete {}: {}", id, job.total, e.getOriginalMessage());
+                    job.fail(job.total++, "JSON invalide: " + e.getOriginalMessage());
+                    break;
+                }
+                int index = job.total++;
+                if (job.total > aiProperties.getBatchMaxRequests()) {
+                    throw new IllegalArgumentException(
+                            "Trop de requetes dans le lot (max " + aiProperties.getBatchMaxRequests() + ")");
+                }
+                PlanGenerateRequest request;
+                try {
+                    request = requestReader.treeToValue(node, PlanGenerateRequest.class);
+                } catch (JsonProcessingException e) {
+                    // Requete bien formee mais hors format: erreur sur cette ligne, le job continue
+                    job.fail(index, "Requete invalide: " + e.getOriginalMessage());
+                    continue;
+                }
+                BatchRequestItem item = prepare(job, index, request);
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+        } catch (RuntimeException | IOException e) {
+            job.close();
+            Files.deleteIfExists(resultsFile);
+            throw e;
+        }
+
+        jobs.put(id, job);
+        log.info("Job IA {}: {} requetes, {} en cache, {} invalides, {} a generer",
+                id, job.total, job.cached.get(), job.failed.get(), items.size());
+        if (items.isEmpty()) {
+            job.end(Status.ENDED, null);
+            return job.toDto();
+        }
+
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(new BatchRequest(items));
+        } catch (JsonProcessingException e) {
+            job.end(Status.FAILED, "Erreur serialisation du lot: " + e.getMessage());
+            return job.toDto();
+        }
+        submitBatch(job, body, items.size(), aiProperties.getBatchPollInterval());
+        return job.toDto();
+    }
+
+    /**
+     * Soumet le lot. Une soumission refusee localement (disjoncteur ouvert, limite atteinte) est reprise apres
+     * {@code retryDelay}, double a chaque refus comme le delai des verifications; les autres erreurs font
+     * echouer le job.
+     */
+    private void submitBatch(Job job, String body, int count, Duration retryDelay) {
+        aiHttpClient.createBatch(body)
+                .thenApply(this::readBatch)
+                .whenComplete((batch, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        if (isRejected(cause)) {
+                            log.debug("Job IA {}: soumission du lot refusee ({}), nouvel essai", job.id, cause.getMessage());
+                            CompletableFuture.delayedExecutor(retryDelay.toMillis(), TimeUnit.MILLISECONDS)
+                                    .execute(() -> submitBatch(job, body, count, nextPollDelay(retryDelay)));
+                            return;
+                        }
+                        log.warn("Job IA {}: soumission du lot impossible: {}", job.id, cause.toString());
+                        job.end(Status.FAILED, "Soumission du lot impossible: " + cause.getMessage());
+                        return;
+                    }
+                    log.info("Job IA {}: lot {} soumis ({} requetes)", job.id, batch.id(), count);
+                    job.batchId = batch.id();
+                    job.update(batch);
+                    job.status = Status.IN_PROGRESS;
+                    schedulePoll(job, aiProperties.getBatchPollInterval());
+                });
+    }
+
+    /** Delai suivant: double, plafonne a {@code batchPollMaxInterval}. */
+    private Duration nextPollDelay(Duration delay) {
+        Duration next = delay.multipliedBy(2);
+        return next.compareTo(aiProperties.getBatchPollMaxInterval()) > 0 ? aiProperties.getBatchPollMaxInterval() : next;
+    }
+
+    /** Etat d'un job, ou null s'il est inconnu (identifiant invalide, ou job anterieur au demarrage). */
+    public AiBatchJobDto findJob(String jobId) {
+        Job job = jobs.get(jobId);
+        return job != null ? job.toDto() : null;
+    }
+
+    /**
+     * Fichier de resultats d'un job termine, ou null si le job est inconnu.
+     * Les fichiers des jobs termines avant un redemarrage restent disponibles.
+     *
+     * @throws IllegalStateException si le job est encore en cours
+     */
+    public Path findResults(String jobId) {
+        if (!JOB_ID_PATTERN.matcher(jobId).matches()) {
+            return null;
+        }
+        Job job = jobs.get(jobId);
+        if (job != null && job.endedAt == null) {
+            throw new IllegalStateException("Job IA en cours: " + jobId);
+        }
+        Path file = Path.of(aiProperties.getBatchDirectory()).resolve(jobId + RESULTS_SUFFIX);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    /**
+     * Valide une requete et la resout depuis le cache si possible (ligne de resultat ecrite), sinon
+     * retourne la requete du lot a soumettre (null si une requete identique est deja dans le lot).
+     */
+    private BatchRequestItem prepare(Job job, int index, PlanGenerateRequest request) {
+        Set<ConstraintViolation<PlanGenerateRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            job.fail(index, violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return null;
+        }
+        String userPrompt = claudeAiPlanService.buildUserPrompt(request);
+        String key = claudeAiPlanService.cacheKey(userPrompt);
+        PlanResponse cached = aiPlanCache.get(key);
+        if (cached != null) {
+            job.cached.incrementAndGet();
+            job.succeed(List.of(index), cached);
+            return null;
+        }
+        List<Integer> indexes = job.indexesByKey.get(key);
+        if (indexes != null) {
+            indexes.add(index);
+            return null;
+        }
+        indexes = new ArrayList<>();
+        indexes.add(index);
+        job.indexesByKey.put(key, indexes);
+        job.requestsByKey.put(key, request);
+        // La cle de cache (64 caracteres hexadecimaux) sert d'identifiant de la requete dans le lot
+        return new BatchRequestItem(key, claudeAiPlanService.buildApiRequest(userPrompt, false));
+    }
+
+    private void schedulePoll(Job job, Duration delay) {
+        CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS)
+                .execute(() -> poll(job, delay));
+    }
+
+    private void poll(Job job, Duration delay) {
+        Duration nextDelay = nextPollDelay(delay);
+        aiHttpClient.getBatch(job.batchId)
+                .thenApply(this::readBatch)
+                .whenComplete((batch, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        if (!isRejected(cause) && ++job.pollFailures >= MAX_POLL_FAILURES) {
+                            log.warn("Job IA {}: suivi du lot {} abandonne: {}", job.id, job.batchId, cause.toString());
+                            job.end(Status.FAILED, "Suivi du lot impossible: " + cause.getMessage());
+                        } else {
+                            log.debug("Job IA {}: verification du lot en echec ({}), nouvel essai", job.id, cause.toString());
+                            schedulePoll(job, nextDelay);
+                        }
+                        return;
+                    }
+                    job.pollFailures = 0;
+                    job.update(batch);
+                    if ("ended".equals(batch.processingStatus())) {
+                        downloadResults(job, batch.resultsUrl());
+                    } else {
+                        schedulePoll(job, nextDelay);
+                    }
+                });
+    }
+
+    private void downloadResults(Job job, String resultsUrl) {
+        if (resultsUrl == null) {
+            job.end(Status.FAILED, "Lot termine sans resultats");
+            return;
+        }
+        log.debug("Job IA {}: lecture des resultats du lot {}", job.id, job.batchId);
+        aiHttpClient.streamBatchResults(resultsUrl, line -> readResult(job, line))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        if (isRejected(cause)) {
+                            // Rien n'a ete lu: le lot est verifie de nouveau puis ses resultats relus
+                            log.debug("Job IA {}: lecture des resultats refusee ({}), nouvel essai", job.id, cause.getMessage());
+                            schedulePoll(job, aiProperties.getBatchPollInterval());
+                            return;
+                        }
+                        log.warn("Job IA {}: lecture des resultats impossible: {}", job.id, cause.toString());
+                        job.end(Status.FAILED, "Lecture des resultats impossible: " + cause.getMessage());
+                    } else {
+                        job.end(Status.ENDED, null);
+                    }
+                });
+    }
+
+    /**
+     * Traite une ligne du fichier de resultats: {@code {"custom_id": ..., "result": {"type": "succeeded",
+     * "message": {...}}}} ou un resultat en erreur ({@code errored}, {@code canceled}, {@code expired}).
+     * Le message est lu directement depuis la ligne par {@link ClaudeAiPlanService#parseClaudeResponse}.
+     */
+    private void readResult(Job job, String line) {
+        String key = null;
+        PlanResponse plan = null;
+        JsonNode message = null;
+        String type = null;
+        String error = null;
+        boolean unreadable = false;
+        try (JsonParser parser = objectMapper.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Ligne de resultat invalide");
+            }
+            while (!unreadable && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("custom_id".equals(field)) {
+                    key = parser.getValueAsString();
+                } else if ("result".equals(field) && value == JsonToken.START_OBJECT) {
+                    while (!unreadable && parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String resultField = parser.currentName();
+                        parser.nextToken();
+                        switch (resultField) {
+                            case "type" -> type = parser.getValueAsString();
+                            case "message" -> {
+                                PlanGenerateRequest request = key != null ? job.requestsByKey.get(key) : null;
+                                if (request != null) {
+                                    try {
+                                        plan = claudeAiPlanService.parseClaudeResponse(parser, request);
+                                    } catch (RuntimeException e) {
+                                        // Parseur dans un etat inconnu: la suite de la ligne est ignoree
+                                        error = e.getMessage();
+                                        unreadable = true;
+                                    }
+                                } else {
+                                    // custom_id pas encore lu: message garde pour apres la ligne
+                                    message = parser.readValueAsTree();
+                                }
+                            }
+                            case "error" -> {
+                                JsonNode node = parser.readValueAsTree();
+                                error = node.path("error").path("message").asText(node.toString());
+                            }
+                            default -> parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            if (key == null) {
+                log.warn("Job IA {}: ligne de resultat illisible: {}", job.id, e.getMessage());
+                return;
+            }
+            error = "Resultat illisible: " + e.getMessage();
+        }
+
+        List<Integer> indexes = key != null ? job.indexesByKey.get(key) : null;
+        if (indexes == null || !job.resolved.add(key)) {
+            log.warn("Job IA {}: resultat inattendu dans le lot (custom_id {})", job.id, key);
+            return;
+        }
+        if (plan == null && message != null && error == null) {
+            try {
+                plan = claudeAiPlanService.parseClaudeResponse(objectMapper.treeAsTokens(message), job.requestsByKey.get(key));
+            } catch (RuntimeException e) {
+                error = e.getMessage();
+            }
+        }
+        if (plan != null) {
+            aiPlanCache.put(key, plan);
+            job.succeed(indexes, plan);
+        } else {
+            String reason = error != null ? error : "aucun plan";
+            job.fail(indexes, "Lot IA: " + (type != null ? type : "errored") + ": " + reason);
+        }
+    }
+
+    private MessageBatch readBatch(byte[] body) {
+        try {
+            MessageBatch batch = objectMapper.readValue(body, MessageBatch.class);
+            if (batch.id() == null) {
+                throw new IOException("Identifiant de lot absent");
+            }
+            return batch;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Reponse de l'API Message Batches invalide: " + e.getMessage(), e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /** Appel refuse par le client sans avoir ete envoye (statut 0). */
+    private static boolean isRejected(Throwable cause) {
+        return cause instanceof AiHttpClient.AiClientException e && e.getStatus() == 0;
+    }
+
+    private enum Status { SUBMITTING, IN_PROGRESS, ENDED, FAILED }
+
+    /**
+     * Etat d'un job. Les tables par cle sont remplies a la creation puis lues par le seul thread de lecture
+     * des resultats; les compteurs et l'etat sont lus a tout moment pour la progression.
+     */
+    private final class Job {
+        final String id;
+        final Instant createdAt = Instant.now();
+        /** Index des requetes du job par cle (requetes identiques soumises une seule fois). */
+        final Map<String, List<Integer>> indexesByKey = new HashMap<>();
+        final Map<String, PlanGenerateRequest> requestsByKey = new HashMap<>();
+        final Set<String> resolved = new HashSet<>();
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger cached = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        private final OutputStream out;
+        int total;
+        int pollFailures;
+        volatile Status status = Status.SUBMITTING;
+        volatile String batchId;
+        volatile int processing;
+        volatile Instant endedAt;
+        volatile String error;
+
+        Job(String id, OutputStream out) {
+            this.id = id;
+            this.out = out;
+        }
+
+        void update(MessageBatch batch) {
+            if (batch.requestCounts() != null) {
+                processing = batch.requestCounts().processing();
+            }
+        }
+
+        void succeed(List<Integer> indexes, PlanResponse plan) {
+            for (int index : indexes) {
+                write(BatchPlanResultDto.builder().index(index).plan(plan).build());
+            }
+            succeeded.addAndGet(indexes.size());
+        }
+
+        void fail(List<Integer> indexes, String message) {
+            for (int index : indexes) {
+                write(BatchPlanResultDto.builder().index(index).error(message).build());
+            }
+            failed.addAndGet(indexes.size());
+        }
+
+        void fail(int index, String message) {
+            fail(List.of(index), message);
+        }
+
+        /** Termine le job: les requetes sans resultat recoivent une ligne d'erreur, puis le fichier est ferme. */
+        synchronized void end(Status endStatus, String reason) {
+            if (endedAt != null) {
+                return;
+            }
+            indexesByKey.forEach((key, indexes) -> {
+                if (!resolved.contains(key)) {
+                    fail(indexes, reason != null ? reason : "Pas de resultat pour cette requete dans le lot");
+                }
+            });
+            close();
+            indexesByKey.clear();
+            requestsByKey.clear();
+            resolved.clear();
+            processing = 0;
+            error = reason;
+            status = endStatus;
+            endedAt = Instant.now();
+            log.info("Job IA {} {}: {}/{} plans, {} erreurs en {}s", id, endStatus.name().toLowerCase(Locale.ROOT),
+                    succeeded.get(), total, failed.get(), Duration.between(createdAt, endedAt).toSeconds());
+        }
+
+        synchronized void write(BatchPlanResultDto result) {
+            try {
+                out.write(resultWriter.writeValueAsBytes(result));
+                out.write(NEWLINE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        synchronized void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.warn("Job IA {}: fermeture du fichier de resultats impossible: {}", id, e.getMessage());
+            }
+        }
+
+        AiBatchJobDto toDto() {
+            return AiBatchJobDto.builder()
+                    .id(id)
+                    .status(status.name().toLowerCase(Locale.ROOT))
+                    .batchId(batchId)
+                    .total(total)
+                    .succeeded(succeeded.get())
+                    .cached(cached.get())
+                    .failed(failed.get())
+                    .processing(processing)
+                    .createdAt(createdAt)
+                    .endedAt(endedAt)
+                    .error(error)
+                    .build();
+        }
+    }
+
+    // ==================== Records pour l'API Message Batches ====================
+
+    record BatchRequest(List<BatchRequestItem> requests) {}
+
+    record BatchRequestItem(
+            @JsonProperty("custom_id") String customId,
+            ClaudeAiPlanService.ClaudeApiRequest params
+    ) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record MessageBatch(
+            String id,
+            @JsonProperty("processing_status") String processingStatus,
+            @JsonProperty("request_counts") RequestCounts requestCounts,
+            @JsonProperty("results_url") String resultsUrl
+    ) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record RequestCounts(int processing, int succeeded, int errored, int canceled, int expired) {}
+}
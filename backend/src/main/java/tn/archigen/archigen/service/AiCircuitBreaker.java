@@ -0,0 +1,148 @@
+package tn.archigen.archigen.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Disjoncteur des appels a l'API IA.
+ * FERME: les appels passent; les {@code windowSize} derniers resultats sont gardes dans un tampon circulaire,
+ * et le disjoncteur s'ouvre quand le taux d'echec atteint {@code failureRateThreshold} (au moins
+ * {@code minimumCalls} resultats). OUVERT: tous les appels sont refuses pendant {@code openDuration}.
+ * SEMI-OUVERT: {@code halfOpenProbes} appels d'essai passent; s'ils reussissent tous le disjoncteur se referme,
+ * au premier echec il se rouvre.
+ *
+ * Thread-safe. {@link #tryAcquire()} ne bloque jamais; chaque appel accepte doit etre suivi de
+ * {@link #onSuccess()} ou {@link #onFailure()}.
+ */
+@Slf4j
+public class AiCircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final Consumer<State> onTransition;
+
+    /** Tampon circulaire des derniers resultats (true = echec). */
+    private final boolean[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    public AiCircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                            Duration openDuration, int halfOpenProbes, Consumer<State> onTransition) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(this.windowSize, minimumCalls));
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.onTransition = onTransition;
+        this.outcomes = new boolean[this.windowSize];
+    }
+
+    /** True si l'appel peut partir. */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED -> {
+                return true;
+            }
+            case OPEN -> {
+                if (System.nanoTime() - openUntil < 0) {
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+                probesStarted = 1;
+                return true;
+            }
+            default -> {
+                if (probesStarted >= halfOpenProbes) {
+                    return false;
+                }
+                probesStarted++;
+                return true;
+            }
+        }
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++probesSucceeded >= halfOpenProbes) {
+                transition(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures >= failureRateThreshold * recorded) {
+                open();
+            }
+        }
+    }
+
+    /** Rend une place d'essai prise par {@link #tryAcquire()} pour un appel finalement non envoye. */
+    public synchronized void cancel() {
+        if (state == State.HALF_OPEN && probesStarted > probesSucceeded) {
+            probesStarted--;
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == windowSize) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % windowSize;
+    }
+
+    private void open() {
+        openUntil = System.nanoTime() + openNanos;
+        transition(State.OPEN);
+    }
+
+    private void transition(State to) {
+        if (state == to) {
+            return;
+        }
+        log.warn("Disjoncteur API IA: {} -> {}", state, to);
+        state = to;
+        probesStarted = 0;
+        probesSucceeded = 0;
+        if (to == State.CLOSED) {
+            recorded = 0;
+            next = 0;
+            failures = 0;
+        }
+        onTransition.accept(to);
+    }
+}
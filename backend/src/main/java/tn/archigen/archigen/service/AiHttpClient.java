@@ -0,0 +1,421 @@
+package tn.archigen.archigen.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import tn.archigen.archigen.config.AiProperties;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Client HTTP dedie a l'API Anthropic.
+ * Un seul {@link HttpClient} JDK partage: connexions HTTP/2 reutilisees (flux multiplexes sur une meme
+ * connexion), callbacks executes sur des threads virtuels. Les appels sont asynchrones et bornes par
+ * trois delais de {@link AiProperties}: connexion, attente de la reponse, et delai total (lecture du corps
+ * comprise) au-dela duquel l'echange est annule.
+ *
+ * Protection contre une API degradee, sans jamais mettre en attente un thread de requete: un appel echoue
+ * immediatement (et l'appelant retombe sur l'algorithme) si le {@link AiCircuitBreaker disjoncteur} est ouvert
+ * ou si la {@link AdaptiveConcurrencyLimit limite adaptative} d'appels simultanes (entre
+ * {@code concurrencyMinLimit} et {@code maxConcurrentRequests}, ajustee selon la latence observee) est atteinte.
+ * Les delais depasses, erreurs reseau et statuts 429/5xx comptent comme echecs pour les deux.
+ * Metriques Actuator: ai.client.in.flight (appels en cours), ai.client.limit (limite courante),
+ * ai.client.rejected (appels refuses, tag reason), ai.circuit.state (0 ferme, 1 semi-ouvert, 2 ouvert)
+ * et ai.circuit.transitions (tag state).
+ * Chaque appel en cours occupe un flux HTTP/2: ai.client.in.flight est donc aussi le nombre de flux ouverts.
+ * Le {@link HttpClient} JDK n'expose pas son pool de connexions (ni nombre de connexions, ni flux par
+ * connexion): il n'y a pas de jauge de connexions.
+ *
+ * Les appels a l'API Message Batches ({@code <apiUrl>/batches}) passent aussi par le disjoncteur. La soumission
+ * et le suivi d'un lot prennent une place dans la limite, sans l'alimenter: une lecture d'etat n'est pas comparable
+ * a une generation. Le telechargement des resultats, long, ne prend pas de place dans la limite des appels
+ * interactifs mais dans une limite fixe ({@code batchMaxConcurrentDownloads}), et il est borne par
+ * {@code batchResultsTimeout}.
+ */
+@Slf4j
+@Component
+public class AiHttpClient {
+
+    static final String ANTHROPIC_VERSION = "2023-06-01";
+
+    private final AiProperties aiProperties;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final AdaptiveConcurrencyLimit limit;
+    private final AiCircuitBreaker circuitBreaker;
+    private final Counter rejectedByCircuit;
+    private final Counter rejectedByLimit;
+    private final Semaphore downloads;
+    private final Counter rejectedByDownloads;
+
+    public AiHttpClient(AiProperties aiProperties, MeterRegistry meterRegistry) {
+        this.aiProperties = aiProperties;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(aiProperties.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(executor)
+                .build();
+        this.limit = new AdaptiveConcurrencyLimit(aiProperties.getConcurrencyInitialLimit(),
+                aiProperties.getConcurrencyMinLimit(), aiProperties.getMaxConcurrentRequests());
+        this.circuitBreaker = new AiCircuitBreaker(aiProperties.getCircuitWindowSize(),
+                aiProperties.getCircuitMinimumCalls(), aiProperties.getCircuitFailureRateThreshold(),
+                aiProperties.getCircuitOpenDuration(), aiProperties.getCircuitHalfOpenProbes(),
+                state -> meterRegistry.counter("ai.circuit.transitions", "state", state.name()).increment());
+
+        Gauge.builder("ai.client.in.flight", limit, AdaptiveConcurrencyLimit::inFlight)
+                .description("Appels a l'API IA en cours (flux HTTP/2 ouverts)")
+                .register(meterRegistry);
+        Gauge.builder("ai.client.limit", limit, AdaptiveConcurrencyLimit::limit)
+                .description("Nombre max d'appels simultanes a l'API IA (limite adaptative)")
+                .register(meterRegistry);
+        Gauge.builder("ai.circuit.state", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("Etat du disjoncteur de l'API IA (0 ferme, 1 semi-ouvert, 2 ouvert)")
+                .register(meterRegistry);
+        this.rejectedByCircuit = Counter.builder("ai.client.rejected").tag("reason", "circuit").register(meterRegistry);
+        this.rejectedByLimit = Counter.builder("ai.client.rejected").tag("reason", "limit").register(meterRegistry);
+        this.downloads = new Semaphore(Math.max(1, aiProperties.getBatchMaxConcurrentDownloads()));
+        this.rejectedByDownloads = Counter.builder("ai.client.rejected").tag("reason", "downloads").register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Envoie {@code requestBody} (JSON) a l'API Messages et retourne le corps brut (UTF-8) de la reponse.
+     * Le futur echoue avec {@link AiClientException} si l'appel est refuse (disjoncteur ouvert, limite
+     * de concurrence atteinte) ou si l'API repond par un statut d'erreur, et avec
+     * {@link java.util.concurrent.TimeoutException} si le delai total est depasse.
+     */
+    public CompletableFuture<byte[]> postMessages(String requestBody) {
+        AiClientException rejection = acquire();
+        if (rejection != null) {
+            return CompletableFuture.failedFuture(rejection);
+        }
+        long start = System.nanoTime();
+
+        CompletableFuture<HttpResponse<byte[]>> exchange;
+        try {
+            exchange = httpClient.sendAsync(messagesRequest(requestBody), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException e) {
+            release(-1, e);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return exchange
+                .thenApply(AiHttpClient::checkStatus)
+                .orTimeout(aiProperties.getTimeout(), TimeUnit.SECONDS)
+                .whenComplete((body, error) -> {
+                    release(System.nanoTime() - start, error);
+                    if (error != null) {
+                        // Delai total depasse ou erreur: on abandonne l'echange s'il est encore en cours
+                        exchange.cancel(true);
+                    }
+                    logCompletion(start, error);
+                });
+    }
+
+    /**
+     * Envoie {@code requestBody} (JSON avec {@code "stream": true}) a l'API Messages et transmet a
+     * {@code onData} le contenu de chaque ligne {@code data:} du flux Server-Sent Events, au fil de l'eau,
+     * sur un thread virtuel. Le futur se termine a la fin du flux; memes delais et memes erreurs que
+     * {@link #postMessages}. Une exception levee par {@code onData} interrompt le flux et fait echouer le futur;
+     * seule une {@link AiClientException} (erreur annoncee par l'API dans le flux) compte comme un echec de l'API.
+     * La duree d'un flux depend surtout de la longueur de la reponse: elle n'alimente pas la limite adaptative.
+     */
+    public CompletableFuture<Void> streamMessages(String requestBody, Consumer<String> onData) {
+        AiClientException rejection = acquire();
+        if (rejection != null) {
+            return CompletableFuture.failedFuture(rejection);
+        }
+        long start = System.nanoTime();
+        var lines = new AtomicReference<Stream<String>>();
+        var consumerFailed = new AtomicBoolean();
+
+        CompletableFuture<HttpResponse<Stream<String>>> exchange;
+        try {
+            exchange = httpClient.sendAsync(messagesRequest(requestBody), HttpResponse.BodyHandlers.ofLines());
+        } catch (RuntimeException e) {
+            release(-1, e);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return exchange
+                .thenAcceptAsync(response -> {
+                    try (Stream<String> body = response.body()) {
+                        lines.set(body);
+                        if (response.statusCode() >= 400) {
+                            throw statusError(response.statusCode(), body.collect(Collectors.joining("\n")));
+                        }
+                        body.filter(line -> line.startsWith("data:"))
+                                .forEach(line -> {
+                                    try {
+                                        onData.accept(line.substring(5).strip());
+                                    } catch (RuntimeException e) {
+                                        // Erreur signalee par l'API dans le flux: compte comme un echec de l'API
+                                        consumerFailed.set(!(e instanceof AiClientException));
+                                        throw e;
+                                    }
+                                });
+                    }
+                }, executor)
+                .orTimeout(aiProperties.getTimeout(), TimeUnit.SECONDS)
+                .whenComplete((ignored, error) -> {
+                    release(-1, consumerFailed.get() ? null : error);
+                    if (error != null) {
+                        // Fermer le flux debloque la lecture en cours sur le thread virtuel
+                        exchange.cancel(true);
+                        Stream<String> body = lines.get();
+                        if (body != null) {
+                            body.close();
+                        }
+                    }
+                    logCompletion(start, error);
+                });
+    }
+
+    /**
+     * Soumet un lot ({@code {"requests": [...]}}) a l'API Message Batches et retourne le corps de la reponse
+     * (le lot cree, avec son identifiant). Memes refus et erreurs que {@link #postMessages}.
+     */
+    public CompletableFuture<byte[]> createBatch(String requestBody) {
+        return sendBatchRequest(apiRequest(batchesUri(""))
+                .header("content-type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .build());
+    }
+
+    /**
+     * Etat courant d'un lot (statut de traitement, compteurs, URL des resultats une fois termine).
+     * Memes refus et erreurs que {@link #postMessages}.
+     */
+    public CompletableFuture<byte[]> getBatch(String batchId) {
+        return sendBatchRequest(apiRequest(batchesUri("/" + URLEncoder.encode(batchId, StandardCharsets.UTF_8)))
+                .GET()
+                .build());
+    }
+
+    /**
+     * Telecharge les resultats d'un lot termine (JSONL) et transmet chaque ligne non vide a {@code onLine}
+     * au fil de la lecture, sur un thread virtuel: le fichier de resultats n'est jamais entierement en memoire.
+     * La lecture est bornee par {@code batchResultsTimeout} ({@link java.util.concurrent.TimeoutException} au-dela);
+     * une exception de {@code onLine} l'interrompt sans compter comme un echec de l'API. Le futur echoue avec
+     * {@link AiClientException} si l'appel est refuse (disjoncteur ouvert, trop de telechargements en cours).
+     */
+    public CompletableFuture<Void> streamBatchResults(String resultsUrl, Consumer<String> onLine) {
+        AiClientException rejection = acquireDownload();
+        if (rejection != null) {
+            return CompletableFuture.failedFuture(rejection);
+        }
+        var lines = new AtomicReference<Stream<String>>();
+        var consumerFailed = new AtomicBoolean();
+        var abandoned = new AtomicBoolean();
+        CompletableFuture<HttpResponse<Stream<String>>> exchange;
+        try {
+            exchange = httpClient.sendAsync(apiRequest(URI.create(resultsUrl)).GET().build(),
+                    HttpResponse.BodyHandlers.ofLines());
+        } catch (RuntimeException e) {
+            releaseDownload(e);
+            return CompletableFuture.failedFuture(e);
+        }
+        return exchange
+                .thenAcceptAsync(response -> {
+                    try (Stream<String> body = response.body()) {
+                        lines.set(body);
+                        if (abandoned.get()) {
+                            // Delai depasse avant le debut de la lecture
+                            return;
+                        }
+                        if (response.statusCode() >= 400) {
+                            throw statusError(response.statusCode(), body.collect(Collectors.joining("\n")));
+                        }
+                        body.filter(line -> !line.isBlank()).forEach(line -> {
+                            try {
+                                onLine.accept(line);
+                            } catch (RuntimeException e) {
+                                consumerFailed.set(true);
+                                throw e;
+                            }
+                        });
+                    }
+                }, executor)
+                .orTimeout(aiProperties.getBatchResultsTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((ignored, error) -> {
+                    releaseDownload(consumerFailed.get() ? null : error);
+                    if (error != null) {
+                        abandoned.set(true);
+                        exchange.cancel(true);
+                        Stream<String> body = lines.get();
+                        if (body != null) {
+                            body.close();
+                        }
+                    }
+                });
+    }
+
+    private CompletableFuture<byte[]> sendBatchRequest(HttpRequest request) {
+        AiClientException rejection = acquire();
+        if (rejection != null) {
+            return CompletableFuture.failedFuture(rejection);
+        }
+        CompletableFuture<HttpResponse<byte[]>> exchange;
+        try {
+            exchange = httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException e) {
+            release(-1, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        return exchange
+                .thenApply(AiHttpClient::checkStatus)
+                .orTimeout(aiProperties.getTimeout(), TimeUnit.SECONDS)
+                .whenComplete((body, error) -> {
+                    release(-1, error);
+                    if (error != null) {
+                        exchange.cancel(true);
+                    }
+                });
+    }
+
+    private HttpRequest messagesRequest(String requestBody) {
+        return apiRequest(URI.create(aiProperties.getApiUrl()))
+                .header("content-type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(requestBody))
+                .build();
+    }
+
+    private HttpRequest.Builder apiRequest(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(aiProperties.getReadTimeout())
+                .header("x-api-key", aiProperties.getApiKey())
+                .header("anthropic-version", ANTHROPIC_VERSION);
+    }
+
+    /** URL de l'API Message Batches, derivee de celle de l'API Messages. */
+    private URI batchesUri(String path) {
+        String base = aiProperties.getApiUrl();
+        if (base.endsWith("/")) {
+            base = base.substring(0, base.length() - 1);
+        }
+        return URI.create(base + "/batches" + path);
+    }
+
+    /** Prend une place (disjoncteur puis limite), ou retourne la raison du refus. */
+    private AiClientException acquire() {
+        if (!circuitBreaker.tryAcquire()) {
+            rejectedByCircuit.increment();
+            return new AiClientException(0, "Disjoncteur API IA ouvert");
+        }
+        if (!limit.tryAcquire()) {
+            circuitBreaker.cancel();
+            rejectedByLimit.increment();
+            return new AiClientException(0, "Trop d'appels IA simultanes (limite " + limit.limit() + ")");
+        }
+        return null;
+    }
+
+    /** Prend une place de telechargement de resultats (disjoncteur puis limite fixe), ou retourne la raison du refus. */
+    private AiClientException acquireDownload() {
+        if (!circuitBreaker.tryAcquire()) {
+            rejectedByCircuit.increment();
+            return new AiClientException(0, "Disjoncteur API IA ouvert");
+        }
+        if (!downloads.tryAcquire()) {
+            circuitBreaker.cancel();
+            rejectedByDownloads.increment();
+            return new AiClientException(0, "Trop de telechargements de resultats de lots en cours");
+        }
+        return null;
+    }
+
+    /** Rend la place prise par {@link #acquireDownload()} et enregistre le resultat. */
+    private void releaseDownload(Throwable error) {
+        downloads.release();
+        recordOutcome(error != null && isUpstreamFailure(error));
+    }
+
+    /**
+     * Rend la place prise par {@link #acquire()} et enregistre le resultat.
+     *
+     * @param rttNanos duree de l'appel, negative si elle ne doit pas alimenter la limite adaptative
+     * @param error    erreur de l'appel, null si l'API a repondu normalement
+     */
+    private void release(long rttNanos, Throwable error) {
+        boolean failed = error != null && isUpstreamFailure(error);
+        limit.release(rttNanos, failed);
+        recordOutcome(failed);
+    }
+
+    private void recordOutcome(boolean failed) {
+        if (failed) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+    }
+
+    /** Delai depasse, erreur reseau ou statut de surcharge/erreur serveur (les autres 4xx ne mettent pas l'API en cause). */
+    private static boolean isUpstreamFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof AiClientException e) {
+            return e.getStatus() == 429 || e.getStatus() >= 500;
+        }
+        return cause instanceof TimeoutException || cause instanceof IOException;
+    }
+
+    private static void logCompletion(long start, Throwable error) {
+        log.debug("Appel API IA termine en {} ms{}", (System.nanoTime() - start) / 1_000_000,
+                error != null ? " (echec)" : "");
+    }
+
+    private static byte[] checkStatus(HttpResponse<byte[]> response) {
+        if (response.statusCode() >= 400) {
+            throw statusError(response.statusCode(), new String(response.body(), StandardCharsets.UTF_8));
+        }
+        return response.body();
+    }
+
+    private static AiClientException statusError(int status, String body) {
+        if (body != null && body.length() > 500) {
+            body = body.substring(0, 500) + "...";
+        }
+        return new AiClientException(status, "API IA HTTP " + status + ": " + body);
+    }
+
+    /** Echec d'un appel a l'API IA (statut d'erreur, ou appel refuse localement: statut 0). */
+    public static class AiClientException extends RuntimeException {
+        private final int status;
+
+        public AiClientException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy.VarExpiration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import tn.archigen.archigen.config.AiProperties;
+import tn.archigen.archigen.dto.PlanResponse;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Cache persistant des plans generes par l'IA, a deux niveaux: memoire (Caffeine, W-TinyLFU) devant
+ * un repertoire disque ({@code <cacheDirectory>/<version de prompt>/<cle>.json}) qui survit aux redemarrages.
+ * La cle est l'empreinte de ce qui determine la reponse du modele (modele, parametres, prompt utilisateur
+ * construit depuis la requete); la version de prompt est l'empreinte du prompt systeme.
+ * Un changement du prompt systeme rend donc les anciennes entrees inaccessibles, et leurs repertoires
+ * sont supprimes au demarrage ({@link #retainVersion}).
+ * Meme duree de vie en memoire et sur disque (date de modification du fichier): un plan relu du disque
+ * ne reste en memoire que pour le reste de la sienne.
+ * Une erreur disque est journalisee sans faire echouer la generation.
+ *
+ * Les plans en cache sont partages entre les appelants: ils ne doivent pas etre modifies.
+ */
+@Slf4j
+@Component
+public class AiPlanCache {
+
+    private static final String SUFFIX = ".json";
+
+    private final ObjectMapper objectMapper;
+    private final Cache<String, PlanResponse> memory;
+    private final VarExpiration<String, PlanResponse> expiration;
+    private final Duration ttl;
+    /** Repertoire racine du niveau disque, null si desactive. */
+    private final Path root;
+    private final Counter diskHits;
+    private final Counter diskMisses;
+
+    private volatile String version = "";
+
+    public AiPlanCache(AiProperties aiProperties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.ttl = aiProperties.getCacheTtl();
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, aiProperties.getCacheMaxSize()))
+                .expireAfter(Expiry.writing((String key, PlanResponse plan) -> ttl))
+                .recordStats()
+                .build();
+        this.expiration = memory.policy().expireVariably().orElseThrow();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "ai-plans");
+
+        String directory = aiProperties.getCacheDirectory();
+        this.root = directory == null || directory.isBlank() ? null : Path.of(directory);
+        this.diskHits = Counter.builder("ai.cache.disk.gets").tag("result", "hit").register(meterRegistry);
+        this.diskMisses = Counter.builder("ai.cache.disk.gets").tag("result", "miss").register(meterRegistry);
+    }
+
+    /**
+     * Fixe la version de prompt courante et supprime du disque les entrees des autres versions
+     * ainsi que les entrees expirees.
+     */
+    public void retainVersion(String promptVersion) {
+        this.version = promptVersion;
+        if (root == null || !Files.isDirectory(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> versions = Files.newDirectoryStream(root)) {
+            for (Path dir : versions) {
+                if (!dir.getFileName().toString().equals(promptVersion)) {
+                    log.info("Cache IA: suppression des entrees de l'ancienne version de prompt {}", dir.getFileName());
+                    deleteRecursively(dir);
+                }
+            }
+            Path current = root.resolve(promptVersion);
+            if (Files.isDirectory(current)) {
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(current, "*" + SUFFIX)) {
+                    for (Path entry : entries) {
+                        if (isExpired(entry)) {
+                            Files.deleteIfExists(entry);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cache IA: nettoyage du repertoire {} impossible: {}", root, e.getMessage());
+        }
+    }
+
+    /** Plan en cache pour cette cle (memoire puis disque), ou null. */
+    public PlanResponse get(String key) {
+        PlanResponse plan = memory.getIfPresent(key);
+        if (plan != null || root == null) {
+            return plan;
+        }
+        Path file = file(key);
+        try {
+            Duration remaining = remainingTtl(file);
+            if (remaining.isNegative() || remaining.isZero()) {
+                Files.deleteIfExists(file);
+                diskMisses.increment();
+                return null;
+            }
+            plan = objectMapper.readValue(file.toFile(), PlanResponse.class);
+            diskHits.increment();
+            expiration.put(key, plan, remaining);
+            return plan;
+        } catch (NoSuchFileException e) {
+            diskMisses.increment();
+            return null;
+        } catch (IOException e) {
+            log.warn("Cache IA: lecture de {} impossible: {}", file, e.getMessage());
+            diskMisses.increment();
+            return null;
+        }
+    }
+
+    /** Enregistre un plan en memoire et sur disque (ecriture dans un fichier temporaire puis renommage). */
+    public void put(String key, PlanResponse plan) {
+        memory.put(key, plan);
+        if (root == null) {
+            return;
+        }
+        Path file = file(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            try {
+                objectMapper.writeValue(tmp.toFile(), plan);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Cache IA: ecriture de {} impossible: {}", file, e.getMessage());
+        }
+    }
+
+    /** Vide les deux niveaux du cache. */
+    public void invalidateAll() {
+        memory.invalidateAll();
+        if (root != null && Files.isDirectory(root)) {
+            try {
+                deleteRecursively(root);
+            } catch (IOException e) {
+                log.warn("Cache IA: suppression du repertoire {} impossible: {}", root, e.getMessage());
+            }
+        }
+        log.info("Cache IA vide");
+    }
+
+    private Path file(String key) {
+        return root.resolve(version).resolve(key + SUFFIX);
+    }
+
+    private boolean isExpired(Path file) throws IOException {
+        return remainingTtl(file).isNegative();
+    }
+
+    /** Duree de vie restante d'une entree disque (negative si expiree). */
+    private Duration remainingTtl(Path file) throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        return Duration.between(Instant.now(), modified.toInstant().plus(ttl));
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -1,19 +1,33 @@
 package tn.archigen.archigen.service;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
 import tn.archigen.archigen.config.AiProperties;
 import tn.archigen.archigen.dto.*;
 
-import java.time.Duration;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
 @Slf4j
@@ -23,78 +37,408 @@ public class ClaudeAiPlanService {
     private final AiProperties aiProperties;
     private final PlanGenerationService fallbackService;
     private final ObjectMapper objectMapper;
-    private final RestClient restClient;
+    private final AiHttpClient aiHttpClient;
+    private final AiPlanCache aiPlanCache;
+    private final PlanRepairService planRepairService;
+    private final ClaudeResponseParser responseParser;
+    /**
+     * Appels IA en cours, par cle de cache: les requetes identiques simultanees partagent le meme appel
+     * (et un plan IA arrive apres le budget de latence reste suivi).
+     */
+    private final ConcurrentMap<String, CompletableFuture<PlanResponse>> pending = new ConcurrentHashMap<>();
+    private final Counter coalesced;
+    private final Counter budgetMet;
+    private final Counter budgetMissed;
+    /** Prompt systeme statique, identique pour toutes les requetes: prefixe mis en cache par l'API. */
+    private final List<ClaudeSystemBlock> systemBlocks;
+    private final Counter inputTokens;
+    private final Counter outputTokens;
+    private final Counter cacheReadTokens;
+    private final Counter cacheCreationTokens;
+
+    private static final byte[] EVENT_END = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final Pattern PLAN_ID_PATTERN = Pattern.compile("[0-9a-f]{64}");
 
-    private static final Pattern JSON_BLOCK_PATTERN = Pattern.compile("```(?:json)?\\s*\\n?(\\{.*?})\\s*```", Pattern.DOTALL);
 
     public ClaudeAiPlanService(AiProperties aiProperties,
                                PlanGenerationService fallbackService,
-                               ObjectMapper objectMapper) {
+                               ObjectMapper objectMapper,
+                               AiHttpClient aiHttpClient,
+                               AiPlanCache aiPlanCache,
+                               PlanRepairService planRepairService,
+                               MeterRegistry meterRegistry) {
         this.aiProperties = aiProperties;
         this.fallbackService = fallbackService;
         this.objectMapper = objectMapper;
-        this.restClient = RestClient.builder()
-                .baseUrl("https://api.anthropic.com")
-                .build();
+        this.aiHttpClient = aiHttpClient;
+        this.aiPlanCache = aiPlanCache;
+        this.planRepairService = planRepairService;
+        this.responseParser = new ClaudeResponseParser(objectMapper);
+        // Version de prompt: un changement du prompt systeme invalide les plans deja en cache
+        aiPlanCache.retainVersion(PlanCache.fingerprint(buildSystemPrompt()).substring(0, 16));
+        this.budgetMet = Counter.builder("ai.latency.budget").tag("result", "ai").register(meterRegistry);
+        this.budgetMissed = Counter.builder("ai.latency.budget").tag("result", "fallback").register(meterRegistry);
+        this.coalesced = Counter.builder("ai.requests.coalesced")
+                .description("Requetes IA servies par un appel identique deja en cours")
+                .register(meterRegistry);
+
+        this.systemBlocks = List.of(new ClaudeSystemBlock("text", buildSystemPrompt(),
+                aiProperties.isPromptCaching() ? new ClaudeCacheControl("ephemeral") : null));
+        this.inputTokens = Counter.builder("ai.tokens").tag("type", "input").register(meterRegistry);
+        this.outputTokens = Counter.builder("ai.tokens").tag("type", "output").register(meterRegistry);
+        this.cacheReadTokens = Counter.builder("ai.tokens").tag("type", "cache_read").register(meterRegistry);
+        this.cacheCreationTokens = Counter.builder("ai.tokens").tag("type", "cache_creation").register(meterRegistry);
     }
 
+    /**
+     * Plan genere par Claude, ou par l'algorithme si l'IA n'est pas configuree ou echoue.
+     * Les plans IA sont mis en cache ({@link AiPlanCache}): une requete deja traitee est servie sans appel
+     * a l'API, et des requetes identiques simultanees partagent un seul appel. Le plan retourne ne doit pas
+     * etre modifie.
+     *
+     * Avec un budget de latence ({@code aiLatencyBudgetMs} ou {@code archigentn.ai.latency-budget}), le plan
+     * algorithmique est calcule pendant l'appel IA et retourne si l'IA n'a pas repondu dans le budget, avec
+     * {@code aiPlanId}: l'appel IA continue et son plan, mis en cache, est recuperable via {@link #findAiPlan}.
+     */
     public PlanResponse generatePlan(PlanGenerateRequest request) {
         if (aiProperties.getApiKey() == null || aiProperties.getApiKey().isBlank()) {
             log.info("Pas de cle API AI configuree, utilisation de l'algorithme classique");
             return fallbackService.generatePlan(request);
         }
 
+        String userPrompt = buildUserPrompt(request);
+        String cacheKey = cacheKey(userPrompt);
+        PlanResponse cached = aiPlanCache.get(cacheKey);
+        if (cached != null) {
+            log.debug("Plan AI servi depuis le cache");
+            return cached;
+        }
+
+        long budgetMs = request.getAiLatencyBudgetMs() != null
+                ? request.getAiLatencyBudgetMs()
+                : aiProperties.getLatencyBudget().toMillis();
+        if (budgetMs > 0) {
+            return raceWithFallback(request, userPrompt, cacheKey, budgetMs);
+        }
+
         try {
-            return callClaudeApi(request);
+            return sharedCall(request, userPrompt, cacheKey).join();
         } catch (Exception e) {
-            log.warn("Erreur appel Claude AI, fallback sur algorithme classique: {}", e.getMessage());
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.warn("Erreur appel Claude AI, fallback sur algorithme classique: {}", cause.toString());
             return fallbackService.generatePlan(request);
         }
     }
 
-    private PlanResponse callClaudeApi(PlanGenerateRequest request) {
-        var terrain = request.getTerrain();
-        var requirements = request.getRequirements();
-        var regulations = request.getRegulations() != null ? request.getRegulations() : new RegulationsDto();
+    /**
+     * Generation IA streamee en Server-Sent Events sur {@code out}.
+     * Evenements: {@code room}, {@code door}, {@code window} (un par element, envoye des qu'il est complet
+     * dans le texte genere par le modele), puis {@code plan} (plan complet valide). Si le plan du modele doit etre
+     * repare, le plan final peut differer des elements deja envoyes: il fait foi.
+     * Si l'appel IA echoue, un evenement {@code fallback} (raison) est envoye: le client abandonne les
+     * elements deja recus, puis le plan algorithmique est envoye avec les memes evenements.
+     * Une requete invalide pour l'algorithme produit un evenement {@code error}.
+     * Un plan IA deja en cache est envoye directement avec les memes evenements.
+     *
+     * @throws IOException si le client se deconnecte
+     */
+    public void streamPlan(PlanGenerateRequest request, OutputStream out) throws IOException {
+        if (aiProperties.getApiKey() == null || aiProperties.getApiKey().isBlank()) {
+            log.info("Pas de cle API AI configuree, utilisation de l'algorithme classique");
+            streamFallback(request, out, "Pas de cle API AI configuree");
+            return;
+        }
 
-        double buildableWidth = terrain.getWidth() - 2 * regulations.getRetraitLateral();
-        double buildableHeight = terrain.getHeight() - regulations.getRetraitFrontal() - regulations.getRetraitArriere();
-        double buildableX = regulations.getRetraitLateral();
-        double buildableY = regulations.getRetraitFrontal();
+        String userPrompt = buildUserPrompt(request);
+        String cacheKey = cacheKey(userPrompt);
+        PlanResponse cached = aiPlanCache.get(cacheKey);
+        if (cached != null) {
+            log.debug("Plan AI servi depuis le cache");
+            writePlanEvents(out, cached);
+            return;
+        }
+
+        var writeFailure = new AtomicReference<IOException>();
+        long start = System.nanoTime();
+        try {
+            PlanResponse plan = streamClaudeApi(request, userPrompt, new PlanJsonStreamParser.Listener() {
+                private boolean first = true;
+
+                @Override
+                public void onRoom(RoomDto room) {
+                    if (first) {
+                        first = false;
+                        log.debug("Premiere piece IA recue apres {} ms", (System.nanoTime() - start) / 1_000_000);
+                    }
+                    send("room", room);
+                }
+
+                @Override
+                public void onDoor(DoorDto door) {
+                    send("door", door);
+                }
+
+                @Override
+                public void onWindow(WindowDto window) {
+                    send("window", window);
+                }
+
+                private void send(String event, Object data) {
+                    try {
+                        writeEvent(out, event, data);
+                    } catch (IOException e) {
+                        writeFailure.set(e);
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            aiPlanCache.put(cacheKey, plan);
+            writeEvent(out, "plan", plan);
+        } catch (Exception e) {
+            if (writeFailure.get() != null) {
+                throw writeFailure.get();
+            }
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.warn("Erreur streaming Claude AI, fallback sur algorithme classique: {}", cause.toString());
+            streamFallback(request, out, cause.getMessage());
+        }
+    }
+
+    private void streamFallback(PlanGenerateRequest request, OutputStream out, String reason) throws IOException {
+        writeEvent(out, "fallback", Map.of("reason", reason != null ? reason : "Erreur IA"));
+        PlanResponse plan;
+        try {
+            plan = fallbackService.generatePlan(request);
+        } catch (IllegalArgumentException e) {
+            writeEvent(out, "error", Map.of("message", e.getMessage()));
+            return;
+        }
+        writePlanEvents(out, plan);
+    }
+
+    private void writePlanEvents(OutputStream out, PlanResponse plan) throws IOException {
+        for (var room : plan.getRooms()) {
+            writeEvent(out, "room", room);
+        }
+        for (var door : plan.getDoors()) {
+            writeEvent(out, "door", door);
+        }
+        for (var window : plan.getWindows()) {
+            writeEvent(out, "window", window);
+        }
+        writeEvent(out, "plan", plan);
+    }
+
+    private void writeEvent(OutputStream out, String event, Object data) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(data);
+        out.write(("event: " + event + "\ndata: ").getBytes(StandardCharsets.UTF_8));
+        out.write(json);
+        out.write(EVENT_END);
+        out.flush();
+    }
+
+    /**
+     * Course entre l'IA et l'algorithme: l'appel IA part en asynchrone, le plan algorithmique est calcule
+     * sur le thread courant, puis on attend l'IA jusqu'a la fin du budget.
+     * Si l'algorithme echoue (requete qu'il refuse), on attend quand meme l'IA dans le budget: son plan est
+     * retourne s'il arrive, sinon l'echec de l'algorithme est propage.
+     */
+    private PlanResponse raceWithFallback(PlanGenerateRequest request, String userPrompt, String cacheKey, long budgetMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMs);
+        CompletableFuture<PlanResponse> aiPlan = sharedCall(request, userPrompt, cacheKey);
+
+        PlanResponse fallback = null;
+        RuntimeException fallbackFailure = null;
+        try {
+            fallback = fallbackService.generatePlan(request);
+        } catch (RuntimeException e) {
+            log.debug("Plan algorithmique impossible, attente de l'IA: {}", e.toString());
+            fallbackFailure = e;
+        }
+        try {
+            PlanResponse plan = aiPlan.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            budgetMet.increment();
+            return plan;
+        } catch (TimeoutException e) {
+            budgetMissed.increment();
+            if (fallbackFailure != null) {
+                throw fallbackFailure;
+            }
+            log.info("Pas de reponse IA en {} ms, plan algorithmique retourne (plan IA {} en cours)", budgetMs, cacheKey);
+            // Le plan algorithmique peut venir du cache: copie avant d'y ajouter l'identifiant
+            return fallback.toBuilder().aiPlanId(cacheKey).build();
+        } catch (ExecutionException e) {
+            budgetMissed.increment();
+            log.warn("Erreur appel Claude AI, fallback sur algorithme classique: {}", e.getCause().toString());
+            if (fallbackFailure != null) {
+                fallbackFailure.addSuppressed(e.getCause());
+                throw fallbackFailure;
+            }
+            return fallback;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (fallbackFailure != null) {
+                throw fallbackFailure;
+            }
+            return fallback;
+        }
+    }
+
+    /**
+     * Appel IA pour cette cle, partage (single-flight): si un appel identique est deja en cours, son futur est
+     * retourne au lieu d'en lancer un second. Le plan est en cache avant que l'appel ne quitte {@code pending},
+     * une requete arrivant ensuite le trouve donc dans le cache. Le futur partage ne doit pas etre annule.
+     */
+    private CompletableFuture<PlanResponse> sharedCall(PlanGenerateRequest request, String userPrompt, String cacheKey) {
+        CompletableFuture<PlanResponse> existing = pending.get(cacheKey);
+        if (existing == null) {
+            var call = new CompletableFuture<PlanResponse>();
+            existing = pending.putIfAbsent(cacheKey, call);
+            if (existing == null) {
+                callClaudeApi(request, userPrompt, cacheKey).whenComplete((plan, error) -> {
+                    pending.remove(cacheKey, call);
+                    if (error != null) {
+                        call.completeExceptionally(error);
+                    } else {
+                        call.complete(plan);
+                    }
+                });
+                return call;
+            }
+        }
+        coalesced.increment();
+        log.debug("Requete IA identique deja en cours, appel partage");
+        return existing;
+    }
 
-        String systemPrompt = buildSystemPrompt();
-        String userPrompt = buildUserPrompt(request, buildableX, buildableY, buildableWidth, buildableHeight);
+    /**
+     * Plan IA deja genere (en cache) pour cet identifiant, ou null.
+     * Voir {@link #isAiPlanPending} pour distinguer un plan encore en cours d'un identifiant inconnu.
+     */
+    public PlanResponse findAiPlan(String aiPlanId) {
+        return PLAN_ID_PATTERN.matcher(aiPlanId).matches() ? aiPlanCache.get(aiPlanId) : null;
+    }
+
+    /** True si l'appel IA de cet identifiant est encore en cours. */
+    public boolean isAiPlanPending(String aiPlanId) {
+        return pending.containsKey(aiPlanId);
+    }
 
-        log.debug("Appel Claude API - model: {}, terrain: {}x{}", aiProperties.getModel(), terrain.getWidth(), terrain.getHeight());
+    /** Vide le cache des plans IA (memoire et disque). */
+    public void invalidateCache() {
+        aiPlanCache.invalidateAll();
+    }
+
+    /** Appel asynchrone; le plan est mis en cache avant que le futur ne se termine. */
+    private CompletableFuture<PlanResponse> callClaudeApi(PlanGenerateRequest request, String userPrompt, String cacheKey) {
+        log.debug("Appel Claude API - model: {}, terrain: {}x{}", aiProperties.getModel(),
+                request.getTerrain().getWidth(), request.getTerrain().getHeight());
+        String requestBody = buildApiRequestBody(userPrompt, false);
+
+        return aiHttpClient.postMessages(requestBody)
+                .thenApply(responseBody -> {
+                    log.debug("Reponse Claude recue ({} octets)", responseBody.length);
+                    return parseClaudeResponse(responseBody, request);
+                })
+                .whenComplete((plan, error) -> {
+                    if (plan != null) {
+                        aiPlanCache.put(cacheKey, plan);
+                    }
+                });
+    }
 
+    /**
+     * Appel en mode stream: le texte genere (evenements content_block_delta) alimente un
+     * {@link PlanJsonStreamParser} qui transmet les elements a {@code listener} au fil de l'eau.
+     */
+    private PlanResponse streamClaudeApi(PlanGenerateRequest request, String userPrompt,
+                                         PlanJsonStreamParser.Listener listener) throws IOException {
+        log.debug("Appel Claude API (stream) - model: {}, terrain: {}x{}", aiProperties.getModel(),
+                request.getTerrain().getWidth(), request.getTerrain().getHeight());
+        String requestBody = buildApiRequestBody(userPrompt, true);
+        var parser = new PlanJsonStreamParser(objectMapper, listener);
+
+        aiHttpClient.streamMessages(requestBody, data -> {
+            try {
+                ClaudeStreamEvent event = objectMapper.readValue(data, ClaudeStreamEvent.class);
+                if (event.message() != null && event.message().usage() != null) {
+                    // message_start: tokens d'entree (les tokens de sortie viennent de message_delta)
+                    var usage = event.message().usage();
+                    recordUsage(new ClaudeUsage(usage.inputTokens(), null,
+                            usage.cacheCreationInputTokens(), usage.cacheReadInputTokens()));
+                }
+                if (event.usage() != null) {
+                    recordUsage(new ClaudeUsage(null, event.usage().outputTokens(), null, null));
+                }
+                if ("error".equals(event.type())) {
+                    throw new AiHttpClient.AiClientException(500, "Erreur Claude en cours de stream: "
+                            + (event.error() != null ? event.error().path("message").asText() : data));
+                }
+                if ("content_block_delta".equals(event.type()) && event.delta() != null
+                        && "text_delta".equals(event.delta().type())) {
+                    parser.feed(event.delta().text());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).join();
+
+        PlanResponse plan = validatePlan(parser.finish(), request);
+        log.info("Plan AI streame: {} pieces", plan.getRooms().size());
+        return plan;
+    }
+
+    /**
+     * Cle de cache d'une requete: empreinte de tout ce qui determine la reponse du modele hors prompt systeme
+     * (porte par la version du cache). Le prompt utilisateur est la forme normalisee de la requete
+     * (valeurs arrondies, champs dans un ordre fixe).
+     */
+    String cacheKey(String userPrompt) {
+        return PlanCache.fingerprint(aiProperties.getModel()
+                + '|' + aiProperties.getMaxTokens()
+                + '|' + aiProperties.getTemperature()
+                + '|' + userPrompt);
+    }
+
+    /** Comptabilise les tokens d'une reponse (entree, lus ou ecrits dans le cache de prompt, sortie). */
+    private void recordUsage(ClaudeUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.inputTokens() != null) {
+            inputTokens.increment(usage.inputTokens());
+        }
+        if (usage.cacheReadInputTokens() != null) {
+            cacheReadTokens.increment(usage.cacheReadInputTokens());
+        }
+        if (usage.cacheCreationInputTokens() != null) {
+            cacheCreationTokens.increment(usage.cacheCreationInputTokens());
+        }
+        if (usage.outputTokens() != null) {
+            outputTokens.increment(usage.outputTokens());
+        }
+    }
+
+    /** Parametres d'un appel a l'API Messages (aussi utilises tels quels pour chaque requete d'un lot). */
+    ClaudeApiRequest buildApiRequest(String userPrompt, boolean stream) {
         var messages = List.of(new ClaudeMessage("user", userPrompt));
-        var apiRequest = new ClaudeApiRequest(
+        return new ClaudeApiRequest(
                 aiProperties.getModel(),
                 aiProperties.getMaxTokens(),
                 aiProperties.getTemperature(),
-                systemPrompt,
-                messages
+                systemBlocks,
+                messages,
+                stream ? Boolean.TRUE : null
         );
+    }
 
-        String requestBody;
+    private String buildApiRequestBody(String userPrompt, boolean stream) {
         try {
-            requestBody = objectMapper.writeValueAsString(apiRequest);
+            return objectMapper.writeValueAsString(buildApiRequest(userPrompt, stream));
         } catch (JsonProcessingException e) {
             throw new RuntimeException("Erreur serialisation requete Claude", e);
         }
-
-        String responseBody = restClient.post()
-                .uri(aiProperties.getApiUrl())
-                .header("x-api-key", aiProperties.getApiKey())
-                .header("anthropic-version", "2023-06-01")
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(requestBody)
-                .retrieve()
-                .body(String.class);
-
-        log.debug("Reponse Claude recue ({} chars)", responseBody != null ? responseBody.length() : 0);
-
-        return parseClaudeResponse(responseBody, request);
     }
 
     private String buildSystemPrompt() {
@@ -126,16 +470,49 @@ public class ClaudeAiPlanService {
                 - Retraits obligatoires: frontal (5m), lateral (3m), arriere (3m)
 
                 Tu dois repondre UNIQUEMENT avec un bloc JSON valide, sans texte avant ou apres.
+
+                Format de reponse JSON strict:
+                {
+                  "terrain": {"width": 15.0, "height": 25.0},
+                  "rooms": [
+                    {"name": "Salon", "type": "salon", "x": 3.0, "y": 5.0, "width": 5.0, "height": 4.0}
+                  ],
+                  "doors": [
+                    {"x": 5.0, "y": 5.0, "width": 1.0, "orientation": "horizontal"}
+                  ],
+                  "windows": [
+                    {"x": 4.5, "y": 9.0, "width": 1.2, "orientation": "horizontal"}
+                  ],
+                  "wallThickness": 0.20,
+                  "metrics": {
+                    "totalArea": 85.5,
+                    "cos": 0.30,
+                    "cuf": 0.30,
+                    "regulationsCompliant": true,
+                    "complianceMessage": null
+                  }
+                }
+
+                Contraintes generales:
+                - "terrain" reprend les dimensions du terrain demande
+                - Pas de chevauchement entre pieces
+                - Porte principale (width: 1.0) sur le mur frontal (y min) de l'entree ou du salon
+                - Portes interieures (width: 0.90) entre pieces adjacentes
+                - Fenetres (width: 1.20) sur murs exterieurs (sauf sdb, wc, couloir)
+                - Coordonnees arrondies a 10cm (0.1m)
                 """;
     }
 
-    private String buildUserPrompt(PlanGenerateRequest request,
-                                   double buildableX, double buildableY,
-                                   double buildableWidth, double buildableHeight) {
+    String buildUserPrompt(PlanGenerateRequest request) {
         var terrain = request.getTerrain();
         var requirements = request.getRequirements();
         var regulations = request.getRegulations() != null ? request.getRegulations() : new RegulationsDto();
 
+        double buildableWidth = terrain.getWidth() - 2 * regulations.getRetraitLateral();
+        double buildableHeight = terrain.getHeight() - regulations.getRetraitFrontal() - regulations.getRetraitArriere();
+        double buildableX = regulations.getRetraitLateral();
+        double buildableY = regulations.getRetraitFrontal();
+
         StringBuilder rooms = new StringBuilder();
         for (var room : requirements.getRooms()) {
             int count = room.getCount() != null ? room.getCount() : 1;
@@ -161,35 +538,8 @@ public class ClaudeAiPlanService {
                 STYLE: %s
                 ETAGES: %d
 
-                IMPORTANT - Format de reponse JSON strict:
-                {
-                  "terrain": {"width": %.1f, "height": %.1f},
-                  "rooms": [
-                    {"name": "Salon", "type": "salon", "x": 3.0, "y": 5.0, "width": 5.0, "height": 4.0}
-                  ],
-                  "doors": [
-                    {"x": 5.0, "y": 5.0, "width": 1.0, "orientation": "horizontal"}
-                  ],
-                  "windows": [
-                    {"x": 4.5, "y": 9.0, "width": 1.2, "orientation": "horizontal"}
-                  ],
-                  "wallThickness": 0.20,
-                  "metrics": {
-                    "totalArea": 85.5,
-                    "cos": 0.30,
-                    "cuf": 0.30,
-                    "regulationsCompliant": true,
-                    "complianceMessage": null
-                  }
-                }
-
                 Contraintes:
                 - Toutes les pieces dans la zone constructible [x: %.2f-%.2f, y: %.2f-%.2f]
-                - Pas de chevauchement entre pieces
-                - Porte principale (width: 1.0) sur le mur frontal (y min) de l'entree ou du salon
-                - Portes interieures (width: 0.90) entre pieces adjacentes
-                - Fenetres (width: 1.20) sur murs exterieurs (sauf sdb, wc, couloir)
-                - Coordonnees arrondies a 10cm (0.1m)
                 """,
                 terrain.getWidth(), terrain.getHeight(),
                 terrain.getWidth() * terrain.getHeight(),
@@ -199,30 +549,28 @@ public class ClaudeAiPlanService {
                 rooms,
                 requirements.getStyle() != null ? requirements.getStyle() : "moderne",
                 requirements.getFloors() != null ? requirements.getFloors() : 1,
-                terrain.getWidth(), terrain.getHeight(),
                 buildableX, buildableX + buildableWidth,
                 buildableY, buildableY + buildableHeight
         );
     }
 
-    private PlanResponse parseClaudeResponse(String responseBody, PlanGenerateRequest request) {
-        try {
-            ClaudeApiResponse apiResponse = objectMapper.readValue(responseBody, ClaudeApiResponse.class);
-
-            if (apiResponse.content() == null || apiResponse.content().isEmpty()) {
-                throw new RuntimeException("Reponse Claude vide");
-            }
-
-            String textContent = apiResponse.content().stream()
-                    .filter(c -> "text".equals(c.type()))
-                    .map(ClaudeContentBlock::text)
-                    .findFirst()
-                    .orElseThrow(() -> new RuntimeException("Pas de contenu texte dans la reponse Claude"));
-
-            String json = extractJson(textContent);
-            PlanResponse plan = objectMapper.readValue(json, PlanResponse.class);
+    private PlanResponse parseClaudeResponse(byte[] responseBody, PlanGenerateRequest request) {
+        try (JsonParser parser = objectMapper.createParser(responseBody)) {
+            return parseClaudeResponse(parser, request);
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur parsing reponse Claude: " + e.getMessage(), e);
+        }
+    }
 
-            validatePlan(plan, request);
+    /**
+     * Plan valide d'une reponse de l'API Messages, lu depuis {@code parser} positionne sur l'objet message
+     * (ou juste avant). Apres l'appel, le parseur est sur la fin de cet objet.
+     */
+    PlanResponse parseClaudeResponse(JsonParser parser, PlanGenerateRequest request) {
+        try {
+            var result = responseParser.parse(parser);
+            recordUsage(result.usage());
+            PlanResponse plan = validatePlan(result.plan(), request);
 
             log.info("Plan AI genere: {} pieces, surface = {}m2",
                     plan.getRooms().size(),
@@ -235,41 +583,16 @@ public class ClaudeAiPlanService {
         }
     }
 
-    private String extractJson(String text) {
-        // Essayer d'extraire d'un bloc markdown ```json ... ```
-        Matcher matcher = JSON_BLOCK_PATTERN.matcher(text);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-
-        // Sinon, chercher le premier { et le dernier }
-        int start = text.indexOf('{');
-        int end = text.lastIndexOf('}');
-        if (start >= 0 && end > start) {
-            return text.substring(start, end + 1);
-        }
-
-        throw new RuntimeException("Pas de JSON trouve dans la reponse Claude");
-    }
-
-    private void validatePlan(PlanResponse plan, PlanGenerateRequest request) {
+    /**
+     * Plan IA rendu valide pour la requete ({@link PlanRepairService}): chevauchements, zone constructible
+     * et grille de 10 cm corriges sans nouvel appel au modele, metriques recalculees.
+     */
+    private PlanResponse validatePlan(PlanResponse plan, PlanGenerateRequest request) {
         if (plan.getRooms() == null || plan.getRooms().isEmpty()) {
             throw new RuntimeException("Le plan AI ne contient aucune piece");
         }
-
-        var terrain = request.getTerrain();
-        for (var room : plan.getRooms()) {
-            if (room.getX() + room.getWidth() > terrain.getWidth() ||
-                    room.getY() + room.getHeight() > terrain.getHeight() ||
-                    room.getX() < 0 || room.getY() < 0) {
-                log.warn("Piece '{}' hors terrain, le plan sera quand meme retourne", room.getName());
-            }
-        }
-
-        // Remplir le terrain si absent
-        if (plan.getTerrain() == null) {
-            plan.setTerrain(request.getTerrain());
-        }
+        var regulations = request.getRegulations() != null ? request.getRegulations() : new RegulationsDto();
+        return planRepairService.repair(plan, request.getTerrain(), regulations);
     }
 
     // ==================== Inner records pour API Claude ====================
@@ -278,21 +601,38 @@ public class ClaudeAiPlanService {
             String model,
             @JsonProperty("max_tokens") int maxTokens,
             double temperature,
-            String system,
-            List<ClaudeMessage> messages
+            List<ClaudeSystemBlock> system,
+            List<ClaudeMessage> messages,
+            @JsonInclude(JsonInclude.Include.NON_NULL) Boolean stream
     ) {}
 
+    /** Bloc du prompt systeme; {@code cacheControl} marque la fin du prefixe mis en cache par l'API. */
+    record ClaudeSystemBlock(
+            String type,
+            String text,
+            @JsonInclude(JsonInclude.Include.NON_NULL) @JsonProperty("cache_control") ClaudeCacheControl cacheControl
+    ) {}
+
+    record ClaudeCacheControl(String type) {}
+
     record ClaudeMessage(String role, String content) {}
 
     @JsonIgnoreProperties(ignoreUnknown = true)
-    record ClaudeApiResponse(
-            String id,
-            String type,
-            String model,
-            List<ClaudeContentBlock> content,
-            @JsonProperty("stop_reason") String stopReason
+    record ClaudeUsage(
+            @JsonProperty("input_tokens") Integer inputTokens,
+            @JsonProperty("output_tokens") Integer outputTokens,
+            @JsonProperty("cache_creation_input_tokens") Integer cacheCreationInputTokens,
+            @JsonProperty("cache_read_input_tokens") Integer cacheReadInputTokens
     ) {}
 
+    /** Evenement du flux SSE de l'API Messages (deltas de texte, erreurs et comptes de tokens sont exploites). */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record ClaudeStreamEvent(String type, ClaudeStreamDelta delta, JsonNode error,
+                             ClaudeStreamMessage message, ClaudeUsage usage) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record ClaudeStreamMessage(ClaudeUsage usage) {}
+
     @JsonIgnoreProperties(ignoreUnknown = true)
-    record ClaudeContentBlock(String type, String text) {}
+    record ClaudeStreamDelta(String type, String text) {}
 }
@@ -0,0 +1,172 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import tn.archigen.archigen.dto.PlanResponse;
+
+import java.io.IOException;
+
+/**
+ * Lecture en une passe d'une reponse (non streamee) de l'API Messages.
+ * L'enveloppe est parcourue token par token; le plan est lu directement dans le tampon de caracteres du texte
+ * du premier bloc {@code text}, sans copie intermediaire, expression reguliere ni second parsing de l'enveloppe.
+ * Le plan commence a l'accolade qui ouvre un bloc ``` (suivi eventuellement de {@code json} et d'espaces), ou a
+ * defaut a la premiere accolade du texte: un ``` qui n'est pas suivi d'une accolade (fin de bloc apres du JSON
+ * brut) n'est pas une ouverture.
+ * Ce qui suit l'objet racine (fin de bloc ```, texte) est ignore.
+ */
+class ClaudeResponseParser {
+
+    /** Resultat: plan, consommation de tokens (peut etre null) et raison d'arret du modele. */
+    record Result(PlanResponse plan, ClaudeAiPlanService.ClaudeUsage usage, String stopReason) {}
+
+    private static final char[] FENCE = {'`', '`', '`'};
+    private static final char[] JSON_TAG = {'j', 's', 'o', 'n'};
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader planReader;
+    private final ObjectReader usageReader;
+
+    ClaudeResponseParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.planReader = objectMapper.readerFor(PlanResponse.class);
+        this.usageReader = objectMapper.readerFor(ClaudeAiPlanService.ClaudeUsage.class);
+    }
+
+    /**
+     * @throws IOException si la reponse n'est pas une enveloppe valide ou ne contient pas de plan JSON
+     */
+    Result parse(byte[] body) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            return parse(parser);
+        }
+    }
+
+    Result parse(JsonParser parser) throws IOException {
+        if (parser.currentToken() == null) {
+            parser.nextToken();
+        }
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Reponse Claude invalide");
+        }
+        PlanResponse plan = null;
+        boolean hasContent = false;
+        boolean hasText = false;
+        ClaudeAiPlanService.ClaudeUsage usage = null;
+        String stopReason = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "content" -> {
+                    if (value != JsonToken.START_ARRAY) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        hasContent = true;
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String blockField = parser.currentName();
+                            JsonToken blockValue = parser.nextToken();
+                            // Seuls les blocs de type text ont un champ "text"
+                            if ("text".equals(blockField) && blockValue == JsonToken.VALUE_STRING && !hasText) {
+                                hasText = true;
+                                plan = readPlan(parser);
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                }
+                case "usage" -> usage = value == JsonToken.START_OBJECT ? usageReader.readValue(parser) : null;
+                case "stop_reason" -> stopReason = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (!hasContent) {
+            throw new IOException("Reponse Claude vide");
+        }
+        if (!hasText) {
+            throw new IOException("Pas de contenu texte dans la reponse Claude");
+        }
+        if (plan == null) {
+            throw new IOException("Pas de JSON trouve dans la reponse Claude");
+        }
+        return new Result(plan, usage, stopReason);
+    }
+
+    /** Plan JSON contenu dans la valeur texte courante, ou null s'il n'y a pas d'accolade. */
+    private PlanResponse readPlan(JsonParser parser) throws IOException {
+        char[] text = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int end = offset + parser.getTextLength();
+
+        int start = fencedStart(text, offset, end);
+        if (start < 0) {
+            start = indexOf(text, offset, end, '{');
+        }
+        if (start < 0) {
+            return null;
+        }
+        try (JsonParser planParser = objectMapper.getFactory().createParser(text, start, end - start)) {
+            return planReader.readValue(planParser);
+        }
+    }
+
+    /** Accolade ouvrant le premier bloc ``` qui commence par un objet, ou -1. */
+    private static int fencedStart(char[] text, int from, int to) {
+        int fence = indexOf(text, from, to, FENCE);
+        while (fence >= 0) {
+            int i = fence + FENCE.length;
+            if (startsWith(text, i, to, JSON_TAG)) {
+                i += JSON_TAG.length;
+            }
+            while (i < to && Character.isWhitespace(text[i])) {
+                i++;
+            }
+            if (i < to && text[i] == '{') {
+                return i;
+            }
+            fence = indexOf(text, fence + FENCE.length, to, FENCE);
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(char[] chars, int from, int to, char[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int k = 0; k < prefix.length; k++) {
+            if (chars[from + k] != prefix[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(char[] chars, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(char[] chars, int from, int to, char[] pattern) {
+        outer:
+        for (int i = from; i <= to - pattern.length; i++) {
+            for (int k = 0; k < pattern.length; k++) {
+                if (chars[i + k] != pattern[k]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
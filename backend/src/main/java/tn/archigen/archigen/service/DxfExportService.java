@@ -3,14 +3,33 @@ package tn.archigen.archigen.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import tn.archigen.archigen.dto.*;
-
-import java.nio.charset.StandardCharsets;
+import tn.archigen.archigen.service.dxf.DxfFormat;
+import tn.archigen.archigen.service.dxf.DxfFragmentCache;
+import tn.archigen.archigen.service.dxf.DxfWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static tn.archigen.archigen.service.dxf.DxfWriter.ascii;
 
 /**
  * Service d'export DXF en Java pur.
- * Genere un fichier DXF R12 (format texte) sans dependance externe.
+ * Genere un fichier DXF R12 (format texte ou binaire, memes calques et entites) sans dependance externe.
  * Compatible AutoCAD, LibreCAD, DraftSight, etc.
+ * Le DXF est ecrit au fil de l'eau dans le flux de sortie par un {@link DxfWriter}: aucune copie
+ * du document en memoire, quelle que soit la taille du plan.
+ * La geometrie repetee est definie une fois dans la section BLOCKS (une porte par largeur, une fenetre par
+ * largeur, murs et cotations d'une piece par empreinte) et placee par des INSERT (position, rotation):
+ * la taille du fichier suit le nombre de formes distinctes plutot que le nombre de pieces et d'ouvertures.
+ * Les plans multi-etages sont dessines niveau par niveau, cote a cote.
+ * Les entites de chaque piece et ouverture sont gardees encodees dans un {@link DxfFragmentCache}: un plan
+ * re-exporte apres une edition ne re-encode que ce qui a change.
  */
 @Slf4j
 @Service
@@ -24,290 +43,445 @@ public class DxfExportService {
     private static final int COLOR_GREY = 8;      // Mobilier
     private static final int COLOR_ORANGE = 30;   // Terrain
 
-    public byte[] exportToDxf(PlanResponse plan) {
-        log.info("Generation DXF: {} pieces, terrain {}x{}m",
+    // Calques et entites, pre-encodes
+    private static final byte[] TERRAIN = ascii("TERRAIN");
+    private static final byte[] MURS_PORTEURS = ascii("MURS_PORTEURS");
+    private static final byte[] MURS_CLOISONS = ascii("MURS_CLOISONS");
+    private static final byte[] OUVERTURES = ascii("OUVERTURES");
+    private static final byte[] COTATIONS = ascii("COTATIONS");
+    private static final byte[] TEXTE = ascii("TEXTE");
+    private static final byte[] MOBILIER = ascii("MOBILIER");
+    private static final byte[] LINE = ascii("LINE");
+    private static final byte[] TEXT = ascii("TEXT");
+    private static final byte[] ARC = ascii("ARC");
+    private static final byte[] INSERT = ascii("INSERT");
+
+    /**
+     * Version du dessin, dans l'empreinte des exports stockes ({@link #artifactKind}): a incrementer a chaque
+     * changement des octets produits pour un meme plan, sinon les anciens fichiers seraient encore servis.
+     */
+    public static final int DRAWING_VERSION = 1;
+
+    /** Ecart entre les niveaux dessines cote a cote (m). */
+    private static final double LEVEL_SPACING = 5.0;
+    /** Demi-epaisseur du double trait des fenetres (m). */
+    private static final double WINDOW_OFFSET = 0.05;
+
+    /** Cle du fragment d'une piece: tout ce qui en fixe les octets. */
+    private record RoomFragment(DxfFormat format, double x, double y, double w, double h, double wallThickness, String name) {}
+
+    /** Cle du fragment d'une porte ou d'une fenetre. */
+    private record OpeningFragment(DxfFormat format, boolean door, double x, double y, double width, boolean vertical) {}
+
+    /** Niveau dessine, decale de {@code offsetX} en x. */
+    private record Level(String name, double offsetX, List<RoomDto> rooms, List<DoorDto> doors, List<WindowDto> windows) {
+        Level {
+            doors = doors != null ? doors : List.of();
+            windows = windows != null ? windows : List.of();
+        }
+    }
+
+    private final DxfFragmentCache fragmentCache;
+
+    public DxfExportService(DxfFragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * Ecrit le DXF du plan dans {@code out} (non ferme).
+     *
+     * @throws IOException si l'ecriture echoue (client deconnecte...)
+     */
+    public void exportToDxf(PlanResponse plan, OutputStream out, DxfFormat format) throws IOException {
+        log.info("Generation DXF {}: {} pieces, terrain {}x{}m",
+                format.name().toLowerCase(Locale.ROOT),
                 plan.getRooms().size(),
                 plan.getTerrain().getWidth(),
                 plan.getTerrain().getHeight());
 
-        var sb = new StringBuilder(8192);
-
-        writeHeader(sb);
-        writeTables(sb);
-        writeEntities(sb, plan);
-        writeFooter(sb);
+        List<Level> levels = levels(plan);
+        double wallThickness = plan.getWallThickness() != null ? plan.getWallThickness() : 0.20;
+        var dxf = DxfWriter.create(out, format);
+        try {
+            writeHeader(dxf);
+            writeTables(dxf);
+            writeBlocks(dxf, levels, wallThickness);
+            writeEntities(dxf, plan, levels, wallThickness);
+            writeFooter(dxf);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        dxf.flush();
+        log.info("DXF genere: {} octets", dxf.size());
+    }
 
-        byte[] dxfBytes = sb.toString().getBytes(StandardCharsets.UTF_8);
-        log.info("DXF genere: {} octets", dxfBytes.length);
-        return dxfBytes;
+    /** Type d'export pour {@link ExportArtifactStore#key}: format et version du dessin. */
+    public static String artifactKind(DxfFormat format) {
+        return "dxf/" + format.name().toLowerCase(Locale.ROOT) + "/v" + DRAWING_VERSION;
     }
 
     // ==================== HEADER ====================
 
-    private void writeHeader(StringBuilder sb) {
-        section(sb, "HEADER");
+    private void writeHeader(DxfWriter dxf) {
+        section(dxf, "HEADER");
         // Version DXF
-        writeGroupCode(sb, 9, "$ACADVER");
-        writeGroupCode(sb, 1, "AC1009"); // R12
+        dxf.group(9, "$ACADVER");
+        dxf.group(1, "AC1009"); // R12
         // Unites: metres
-        writeGroupCode(sb, 9, "$INSUNITS");
-        writeGroupCode(sb, 70, "6"); // 6 = metres
+        dxf.group(9, "$INSUNITS");
+        dxf.group(70, 6); // 6 = metres
         // Limites du dessin
-        writeGroupCode(sb, 9, "$LIMMIN");
-        writeGroupCode(sb, 10, "0.0");
-        writeGroupCode(sb, 20, "0.0");
-        writeGroupCode(sb, 9, "$LIMMAX");
-        writeGroupCode(sb, 10, "50.0");
-        writeGroupCode(sb, 20, "50.0");
-        endSection(sb);
+        dxf.group(9, "$LIMMIN");
+        dxf.group(10, 0.0);
+        dxf.group(20, 0.0);
+        dxf.group(9, "$LIMMAX");
+        dxf.group(10, 50.0);
+        dxf.group(20, 50.0);
+        endSection(dxf);
     }
 
     // ==================== TABLES (LAYERS) ====================
 
-    private void writeTables(StringBuilder sb) {
-        section(sb, "TABLES");
+    private void writeTables(DxfWriter dxf) {
+        section(dxf, "TABLES");
 
         // Table des layers
-        writeGroupCode(sb, 0, "TABLE");
-        writeGroupCode(sb, 2, "LAYER");
-        writeGroupCode(sb, 70, "7"); // Nombre de layers
+        dxf.group(0, "TABLE");
+        dxf.group(2, "LAYER");
+        dxf.group(70, 7); // Nombre de layers
 
-        writeLayer(sb, "TERRAIN", COLOR_ORANGE, "DASHDOT");
-        writeLayer(sb, "MURS_PORTEURS", COLOR_RED, "CONTINUOUS");
-        writeLayer(sb, "MURS_CLOISONS", COLOR_GREEN, "CONTINUOUS");
-        writeLayer(sb, "OUVERTURES", COLOR_BLUE, "CONTINUOUS");
-        writeLayer(sb, "COTATIONS", COLOR_WHITE, "CONTINUOUS");
-        writeLayer(sb, "TEXTE", COLOR_WHITE, "CONTINUOUS");
-        writeLayer(sb, "MOBILIER", COLOR_GREY, "CONTINUOUS");
+        writeLayer(dxf, TERRAIN, COLOR_ORANGE, "DASHDOT");
+        writeLayer(dxf, MURS_PORTEURS, COLOR_RED, "CONTINUOUS");
+        writeLayer(dxf, MURS_CLOISONS, COLOR_GREEN, "CONTINUOUS");
+        writeLayer(dxf, OUVERTURES, COLOR_BLUE, "CONTINUOUS");
+        writeLayer(dxf, COTATIONS, COLOR_WHITE, "CONTINUOUS");
+        writeLayer(dxf, TEXTE, COLOR_WHITE, "CONTINUOUS");
+        writeLayer(dxf, MOBILIER, COLOR_GREY, "CONTINUOUS");
 
-        writeGroupCode(sb, 0, "ENDTAB");
+        dxf.group(0, "ENDTAB");
 
-        endSection(sb);
+        endSection(dxf);
     }
 
-    private void writeLayer(StringBuilder sb, String name, int color, String linetype) {
-        writeGroupCode(sb, 0, "LAYER");
-        writeGroupCode(sb, 2, name);
-        writeGroupCode(sb, 70, "0");
-        writeGroupCode(sb, 62, String.valueOf(color));
-        writeGroupCode(sb, 6, linetype);
+    private void writeLayer(DxfWriter dxf, byte[] name, int color, String linetype) {
+        dxf.group(0, "LAYER");
+        dxf.group(2, name);
+        dxf.group(70, 0);
+        dxf.group(62, color);
+        dxf.group(6, linetype);
     }
 
-    // ==================== ENTITIES ====================
-
-    private void writeEntities(StringBuilder sb, PlanResponse plan) {
-        section(sb, "ENTITIES");
-
-        // 1. Dessiner le terrain
-        drawTerrain(sb, plan.getTerrain());
-
-        // 2. Dessiner les pieces (murs)
-        double wt = plan.getWallThickness() != null ? plan.getWallThickness() : 0.20;
-        for (var room : plan.getRooms()) {
-            drawRoom(sb, room, wt);
-        }
-
-        // 3. Dessiner les portes
-        if (plan.getDoors() != null) {
-            for (var door : plan.getDoors()) {
-                drawDoor(sb, door);
+    // ==================== BLOCKS ====================
+
+    /**
+     * Niveaux a dessiner: le RDC (rooms, doors, windows du plan) a l'origine, puis les etages de
+     * {@link PlanResponse#getFloors()} a sa droite, decales de la largeur du terrain plus {@link #LEVEL_SPACING}.
+     */
+    private List<Level> levels(PlanResponse plan) {
+        var levels = new ArrayList<Level>();
+        levels.add(new Level("RDC", 0, plan.getRooms(), plan.getDoors(), plan.getWindows()));
+        if (plan.getFloors() != null) {
+            double step = plan.getTerrain().getWidth() + LEVEL_SPACING;
+            for (var floor : plan.getFloors()) {
+                if (floor.getLevel() != null && floor.getLevel() > 0 && floor.getRooms() != null) {
+                    String name = floor.getName() != null ? floor.getName() : "R+" + floor.getLevel();
+                    levels.add(new Level(name, levels.size() * step, floor.getRooms(), floor.getDoors(), floor.getWindows()));
+                }
             }
         }
+        return levels;
+    }
 
-        // 4. Dessiner les fenetres
-        if (plan.getWindows() != null) {
-            for (var window : plan.getWindows()) {
-                drawWindow(sb, window);
+    /** Definitions des blocs, une par largeur de porte, largeur de fenetre et empreinte de piece (largeur x profondeur). */
+    private void writeBlocks(DxfWriter dxf, List<Level> levels, double wallThickness) {
+        // Premiere passe: dimensions distinctes, en mm (ordre de premiere apparition)
+        Set<Long> doors = new LinkedHashSet<>();
+        Set<Long> windows = new LinkedHashSet<>();
+        Set<List<Long>> rooms = new LinkedHashSet<>();
+        for (var level : levels) {
+            for (var room : level.rooms()) {
+                rooms.add(List.of(mm(room.getWidth()), mm(room.getHeight())));
+            }
+            for (var door : level.doors()) {
+                doors.add(mm(doorWidth(door)));
+            }
+            for (var window : level.windows()) {
+                windows.add(mm(windowWidth(window)));
             }
         }
 
-        // 5. Cotations des pieces
-        for (var room : plan.getRooms()) {
-            drawRoomDimensions(sb, room);
+        section(dxf, "BLOCKS");
+        for (List<Long> room : rooms) {
+            beginBlock(dxf, roomBlock(room.get(0), room.get(1)));
+            drawRoomFootprint(dxf, room.get(0) / 1000.0, room.get(1) / 1000.0, wallThickness);
+            endBlock(dxf);
+        }
+        for (long width : doors) {
+            beginBlock(dxf, doorBlock(width));
+            // Porte horizontale: ligne + arc d'ouverture
+            drawLine(dxf, OUVERTURES, 0, 0, width / 1000.0, 0);
+            drawArc(dxf, OUVERTURES, 0, 0, width / 1000.0, 0, 90);
+            endBlock(dxf);
         }
+        for (long width : windows) {
+            beginBlock(dxf, windowBlock(width));
+            // Fenetre horizontale: double trait
+            drawLine(dxf, OUVERTURES, 0, -WINDOW_OFFSET, width / 1000.0, -WINDOW_OFFSET);
+            drawLine(dxf, OUVERTURES, 0, WINDOW_OFFSET, width / 1000.0, WINDOW_OFFSET);
+            endBlock(dxf);
+        }
+        endSection(dxf);
+    }
 
-        // 6. Cartouche (titre)
-        drawCartouche(sb, plan);
+    /** Murs (exterieurs porteurs et interieurs) et cotations d'une piece, origine au coin bas gauche. */
+    private void drawRoomFootprint(DxfWriter dxf, double w, double h, double wallThickness) {
+        drawRectangle(dxf, MURS_PORTEURS, 0, 0, w, h);
+        drawRectangle(dxf, MURS_CLOISONS, wallThickness, wallThickness, w - wallThickness, h - wallThickness);
+        // Cotation largeur (en bas de la piece)
+        beginText(dxf, COTATIONS, w / 2, -0.3, 0.10).append(w, 2);
+        endText(dxf, w / 2, -0.3);
+        // Cotation hauteur (a gauche de la piece)
+        beginText(dxf, COTATIONS, -0.5, h / 2, 0.10).append(h, 2);
+        endText(dxf, -0.5, h / 2);
+    }
 
-        endSection(sb);
+    private static String roomBlock(long w, long h) {
+        return "PIECE_" + w + "X" + h;
     }
 
-    private void drawTerrain(StringBuilder sb, TerrainDto terrain) {
-        double w = terrain.getWidth();
-        double h = terrain.getHeight();
-        // Rectangle du terrain avec marge
-        drawPolyline(sb, "TERRAIN", new double[][]{
-                {-1, -1}, {w + 1, -1}, {w + 1, h + 1}, {-1, h + 1}, {-1, -1}
-        });
-        // Label terrain
-        drawText(sb, "TEXTE", w / 2, -2, 0.3,
-                String.format("TERRAIN: %.1fm x %.1fm = %.1fm2", w, h, w * h));
+    private static String doorBlock(long width) {
+        return "PORTE_" + width;
     }
 
-    private void drawRoom(StringBuilder sb, RoomDto room, double wallThickness) {
-        double x = room.getX();
-        double y = room.getY();
-        double w = room.getWidth();
-        double h = room.getHeight();
+    private static String windowBlock(long width) {
+        return "FENETRE_" + width;
+    }
 
-        // Murs exterieurs (porteurs)
-        drawPolyline(sb, "MURS_PORTEURS", new double[][]{
-                {x, y}, {x + w, y}, {x + w, y + h}, {x, y + h}, {x, y}
-        });
+    /** Dimension arrondie au millimetre: cle des blocs (les ecarts plus fins ne se voient pas au 1/100). */
+    private static long mm(double meters) {
+        return Math.round(meters * 1000);
+    }
 
-        // Murs interieurs (epaisseur)
-        double ix = x + wallThickness;
-        double iy = y + wallThickness;
-        double iw = w - 2 * wallThickness;
-        double ih = h - 2 * wallThickness;
-        drawPolyline(sb, "MURS_CLOISONS", new double[][]{
-                {ix, iy}, {ix + iw, iy}, {ix + iw, iy + ih}, {ix, iy + ih}, {ix, iy}
-        });
+    private static double doorWidth(DoorDto door) {
+        return door.getWidth() != null ? door.getWidth() : 0.90;
+    }
 
-        // Label piece (nom + surface)
-        double innerArea = iw * ih;
-        String label = String.format("%s (%.1fm2)", room.getName(), innerArea);
-        drawText(sb, "TEXTE", x + w / 2, y + h / 2, 0.15, label);
+    private static double windowWidth(WindowDto window) {
+        return window.getWidth() != null ? window.getWidth() : 1.20;
     }
 
-    private void drawDoor(StringBuilder sb, DoorDto door) {
-        double x = door.getX();
-        double y = door.getY();
-        double w = door.getWidth() != null ? door.getWidth() : 0.90;
+    // ==================== ENTITIES ====================
 
-        if ("vertical".equals(door.getOrientation())) {
-            // Porte verticale: ligne + arc d'ouverture
-            drawLine(sb, "OUVERTURES", x, y, x, y + w);
-            // Arc d'ouverture (simplifie en quart de cercle via ligne)
-            drawArc(sb, "OUVERTURES", x, y, w, 0, 90);
-        } else {
-            // Porte horizontale
-            drawLine(sb, "OUVERTURES", x, y, x + w, y);
-            drawArc(sb, "OUVERTURES", x, y, w, 0, 90);
+    private void writeEntities(DxfWriter dxf, PlanResponse plan, List<Level> levels, double wallThickness) {
+        section(dxf, "ENTITIES");
+
+        // 1. Dessiner le terrain
+        drawTerrain(dxf, plan.getTerrain());
+
+        // 2. Pieces, portes et fenetres de chaque niveau (references aux blocs)
+        for (var level : levels) {
+            if (levels.size() > 1) {
+                drawText(dxf, TEXTE, level.offsetX() + plan.getTerrain().getWidth() / 2,
+                        plan.getTerrain().getHeight() + 2, 0.3, level.name());
+            }
+            drawLevel(dxf, level, wallThickness);
         }
+
+        // 3. Cartouche (titre)
+        drawCartouche(dxf, plan);
+
+        endSection(dxf);
     }
 
-    private void drawWindow(StringBuilder sb, WindowDto window) {
-        double x = window.getX();
-        double y = window.getY();
-        double w = window.getWidth() != null ? window.getWidth() : 1.20;
-        double offset = 0.05;
+    private void drawTerrain(DxfWriter dxf, TerrainDto terrain) {
+        double w = terrain.getWidth();
+        double h = terrain.getHeight();
+        // Rectangle du terrain avec marge
+        drawRectangle(dxf, TERRAIN, -1, -1, w + 1, h + 1);
+        // Label terrain
+        beginText(dxf, TEXTE, w / 2, -2, 0.3)
+                .append("TERRAIN: ").append(w, 1).append("m x ").append(h, 1).append("m = ").append(w * h, 1).append("m2");
+        endText(dxf, w / 2, -2);
+    }
 
-        if ("vertical".equals(window.getOrientation())) {
-            // Fenetre verticale: double trait
-            drawLine(sb, "OUVERTURES", x - offset, y, x - offset, y + w);
-            drawLine(sb, "OUVERTURES", x + offset, y, x + offset, y + w);
-        } else {
-            // Fenetre horizontale: double trait
-            drawLine(sb, "OUVERTURES", x, y - offset, x + w, y - offset);
-            drawLine(sb, "OUVERTURES", x, y + offset, x + w, y + offset);
+    private void drawLevel(DxfWriter dxf, Level level, double wallThickness) {
+        double dx = level.offsetX();
+        for (var room : level.rooms()) {
+            drawRoom(dxf, room, dx + room.getX(), wallThickness);
+        }
+        for (var door : level.doors()) {
+            drawOpening(dxf, true, dx + door.getX(), door.getY(), doorWidth(door), "vertical".equals(door.getOrientation()));
+        }
+        for (var window : level.windows()) {
+            drawOpening(dxf, false, dx + window.getX(), window.getY(), windowWidth(window), "vertical".equals(window.getOrientation()));
         }
     }
 
-    private void drawRoomDimensions(StringBuilder sb, RoomDto room) {
-        double x = room.getX();
+    /** Murs et cotations (reference au bloc de l'empreinte) et label d'une piece; {@code x} dans le dessin. */
+    private void drawRoom(DxfWriter dxf, RoomDto room, double x, double wallThickness) {
         double y = room.getY();
         double w = room.getWidth();
         double h = room.getHeight();
+        var key = new RoomFragment(dxf.format(), x, y, w, h, wallThickness, room.getName());
+        if (fragmentCache.replay(dxf, key)) {
+            return;
+        }
 
-        // Cotation largeur (en bas de la piece)
-        drawText(sb, "COTATIONS", x + w / 2, y - 0.3, 0.10,
-                String.format("%.2f", w));
-        // Cotation hauteur (a gauche de la piece)
-        drawText(sb, "COTATIONS", x - 0.5, y + h / 2, 0.10,
-                String.format("%.2f", h));
+        insert(dxf, MURS_PORTEURS, roomBlock(mm(w), mm(h)), x, y, 0, false);
+        // Label piece (nom + surface)
+        double innerArea = (w - 2 * wallThickness) * (h - 2 * wallThickness);
+        beginText(dxf, TEXTE, x + w / 2, y + h / 2, 0.15)
+                .append(String.valueOf(room.getName())).append(" (").append(innerArea, 1).append("m2)");
+        endText(dxf, x + w / 2, y + h / 2);
+        fragmentCache.record(dxf, key);
+    }
+
+    /** Reference au bloc d'une porte ou d'une fenetre; {@code x} dans le dessin. */
+    private void drawOpening(DxfWriter dxf, boolean door, double x, double y, double width, boolean vertical) {
+        var key = new OpeningFragment(dxf.format(), door, x, y, width, vertical);
+        if (fragmentCache.replay(dxf, key)) {
+            return;
+        }
+
+        if (door) {
+            // Porte verticale: symetrique de la porte horizontale par rapport a la diagonale
+            // (rotation de 90 degres et miroir), l'arc d'ouverture reste dans le meme quart
+            insert(dxf, OUVERTURES, doorBlock(mm(width)), x, y, vertical ? 90 : 0, vertical);
+        } else {
+            insert(dxf, OUVERTURES, windowBlock(mm(width)), x, y, vertical ? 90 : 0, false);
+        }
+        fragmentCache.record(dxf, key);
     }
 
-    private void drawCartouche(StringBuilder sb, PlanResponse plan) {
+    private void drawCartouche(DxfWriter dxf, PlanResponse plan) {
         var terrain = plan.getTerrain();
         double cartX = 0;
         double cartY = -5;
 
-        drawPolyline(sb, "TEXTE", new double[][]{
-                {cartX, cartY}, {cartX + 15, cartY}, {cartX + 15, cartY + 3}, {cartX, cartY + 3}, {cartX, cartY}
-        });
-        drawText(sb, "TEXTE", cartX + 0.5, cartY + 2.2, 0.25, "ArchiGenTN - Plan Architectural");
-        drawText(sb, "TEXTE", cartX + 0.5, cartY + 1.4, 0.15,
-                String.format("Terrain: %.1fm x %.1fm", terrain.getWidth(), terrain.getHeight()));
-
-        if (plan.getMetrics() != null) {
-            drawText(sb, "TEXTE", cartX + 0.5, cartY + 0.7, 0.15,
-                    String.format("Surface: %.1fm2 | COS: %.2f | CUF: %.2f",
-                            plan.getMetrics().getTotalArea(),
-                            plan.getMetrics().getCos(),
-                            plan.getMetrics().getCuf()));
+        drawRectangle(dxf, TEXTE, cartX, cartY, cartX + 15, cartY + 3);
+        drawText(dxf, TEXTE, cartX + 0.5, cartY + 2.2, 0.25, "ArchiGenTN - Plan Architectural");
+        beginText(dxf, TEXTE, cartX + 0.5, cartY + 1.4, 0.15)
+                .append("Terrain: ").append(terrain.getWidth(), 1).append("m x ").append(terrain.getHeight(), 1).append("m");
+        endText(dxf, cartX + 0.5, cartY + 1.4);
+
+        var metrics = plan.getMetrics();
+        if (metrics != null && metrics.getTotalArea() != null && metrics.getCos() != null && metrics.getCuf() != null) {
+            beginText(dxf, TEXTE, cartX + 0.5, cartY + 0.7, 0.15)
+                    .append("Surface: ").append(metrics.getTotalArea(), 1).append("m2")
+                    .append(" | COS: ").append(metrics.getCos(), 2)
+                    .append(" | CUF: ").append(metrics.getCuf(), 2);
+            endText(dxf, cartX + 0.5, cartY + 0.7);
         }
 
-        drawText(sb, "TEXTE", cartX + 10, cartY + 0.3, 0.10, "Echelle: 1/100");
+        drawText(dxf, TEXTE, cartX + 10, cartY + 0.3, 0.10, "Echelle: 1/100");
     }
 
     // ==================== DXF PRIMITIVES ====================
 
-    private void drawLine(StringBuilder sb, String layer, double x1, double y1, double x2, double y2) {
-        writeGroupCode(sb, 0, "LINE");
-        writeGroupCode(sb, 8, layer);
-        writeGroupCode(sb, 10, fmt(x1));
-        writeGroupCode(sb, 20, fmt(y1));
-        writeGroupCode(sb, 30, "0.0");
-        writeGroupCode(sb, 11, fmt(x2));
-        writeGroupCode(sb, 21, fmt(y2));
-        writeGroupCode(sb, 31, "0.0");
-    }
-
-    private void drawPolyline(StringBuilder sb, String layer, double[][] points) {
-        // Utiliser des LINE individuelles pour compatibilite R12 maximale
-        for (int i = 0; i < points.length - 1; i++) {
-            drawLine(sb, layer, points[i][0], points[i][1], points[i + 1][0], points[i + 1][1]);
-        }
+    private void drawLine(DxfWriter dxf, byte[] layer, double x1, double y1, double x2, double y2) {
+        dxf.group(0, LINE);
+        dxf.group(8, layer);
+        dxf.group(10, x1);
+        dxf.group(20, y1);
+        dxf.group(30, 0.0);
+        dxf.group(11, x2);
+        dxf.group(21, y2);
+        dxf.group(31, 0.0);
     }
 
-    private void drawText(StringBuilder sb, String layer, double x, double y, double height, String text) {
-        writeGroupCode(sb, 0, "TEXT");
-        writeGroupCode(sb, 8, layer);
-        writeGroupCode(sb, 10, fmt(x));
-        writeGroupCode(sb, 20, fmt(y));
-        writeGroupCode(sb, 30, "0.0");
-        writeGroupCode(sb, 40, fmt(height));
-        writeGroupCode(sb, 1, text);
+    /** Contour d'un rectangle en 4 LINE (compatibilite R12 maximale), dans le sens trigonometrique. */
+    private void drawRectangle(DxfWriter dxf, byte[] layer, double x1, double y1, double x2, double y2) {
+        drawLine(dxf, layer, x1, y1, x2, y1);
+        drawLine(dxf, layer, x2, y1, x2, y2);
+        drawLine(dxf, layer, x2, y2, x1, y2);
+        drawLine(dxf, layer, x1, y2, x1, y1);
+    }
+
+    private void drawText(DxfWriter dxf, byte[] layer, double x, double y, double height, String text) {
+        beginText(dxf, layer, x, y, height).append(text);
+        endText(dxf, x, y);
+    }
+
+    /** Debut d'un TEXT: le texte (code 1) est a completer par l'appelant, puis {@link #endText}. */
+    private DxfWriter beginText(DxfWriter dxf, byte[] layer, double x, double y, double height) {
+        dxf.group(0, TEXT);
+        dxf.group(8, layer);
+        dxf.group(10, x);
+        dxf.group(20, y);
+        dxf.group(30, 0.0);
+        dxf.group(40, height);
+        return dxf.begin(1);
+    }
+
+    private void endText(DxfWriter dxf, double x, double y) {
+        dxf.end();
         // Centre horizontal
-        writeGroupCode(sb, 72, "1");
-        writeGroupCode(sb, 11, fmt(x));
-        writeGroupCode(sb, 21, fmt(y));
-        writeGroupCode(sb, 31, "0.0");
+        dxf.group(72, 1);
+        dxf.group(11, x);
+        dxf.group(21, y);
+        dxf.group(31, 0.0);
     }
 
-    private void drawArc(StringBuilder sb, String layer, double cx, double cy, double radius,
-                          double startAngle, double endAngle) {
-        writeGroupCode(sb, 0, "ARC");
-        writeGroupCode(sb, 8, layer);
-        writeGroupCode(sb, 10, fmt(cx));
-        writeGroupCode(sb, 20, fmt(cy));
-        writeGroupCode(sb, 30, "0.0");
-        writeGroupCode(sb, 40, fmt(radius));
-        writeGroupCode(sb, 50, fmt(startAngle));
-        writeGroupCode(sb, 51, fmt(endAngle));
+    private void drawArc(DxfWriter dxf, byte[] layer, double cx, double cy, double radius,
+                         double startAngle, double endAngle) {
+        dxf.group(0, ARC);
+        dxf.group(8, layer);
+        dxf.group(10, cx);
+        dxf.group(20, cy);
+        dxf.group(30, 0.0);
+        dxf.group(40, radius);
+        dxf.group(50, startAngle);
+        dxf.group(51, endAngle);
+    }
+
+    /**
+     * Reference a un bloc.
+     *
+     * @param mirrored symetrie par rapport a l'axe x du bloc (appliquee avant la rotation)
+     */
+    private void insert(DxfWriter dxf, byte[] layer, String block, double x, double y, double rotation, boolean mirrored) {
+        dxf.group(0, INSERT);
+        dxf.group(8, layer);
+        dxf.group(2, block);
+        dxf.group(10, x);
+        dxf.group(20, y);
+        dxf.group(30, 0.0);
+        if (mirrored) {
+            dxf.group(42, -1.0);
+        }
+        if (rotation != 0) {
+            dxf.group(50, rotation);
+        }
     }
 
     // ==================== DXF HELPERS ====================
 
-    private void section(StringBuilder sb, String name) {
-        writeGroupCode(sb, 0, "SECTION");
-        writeGroupCode(sb, 2, name);
+    private void beginBlock(DxfWriter dxf, String name) {
+        dxf.group(0, "BLOCK");
+        dxf.group(8, "0");
+        dxf.group(2, name);
+        dxf.group(70, 0);
+        dxf.group(10, 0.0);
+        dxf.group(20, 0.0);
+        dxf.group(30, 0.0);
+        dxf.group(3, name);
     }
 
-    private void endSection(StringBuilder sb) {
-        writeGroupCode(sb, 0, "ENDSEC");
+    private void endBlock(DxfWriter dxf) {
+        dxf.group(0, "ENDBLK");
+        dxf.group(8, "0");
     }
 
-    private void writeFooter(StringBuilder sb) {
-        writeGroupCode(sb, 0, "EOF");
+    private void section(DxfWriter dxf, String name) {
+        dxf.group(0, "SECTION");
+        dxf.group(2, name);
     }
 
-    private void writeGroupCode(StringBuilder sb, int code, String value) {
-        sb.append(String.format("%3d\n%s\n", code, value));
+    private void endSection(DxfWriter dxf) {
+        dxf.group(0, "ENDSEC");
     }
 
-    private String fmt(double value) {
-        return String.format("%.4f", value);
+    private void writeFooter(DxfWriter dxf) {
+        dxf.group(0, "EOF");
     }
 }
@@ -0,0 +1,253 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import tn.archigen.archigen.config.OutputProperties;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Stockage sur disque des fichiers exportes (DXF, autres formats a venir), adresse par contenu:
+ * {@code <output.directory>/artifacts/<empreinte>.<extension>}, l'empreinte etant le SHA-256 du type d'export
+ * et de la source en JSON canonique (proprietes et cles triees). Un meme plan exporte dans le meme format
+ * donne donc toujours le meme fichier, ecrit une seule fois puis servi tel quel; l'empreinte sert d'ETag fort.
+ *
+ * Taille bornee ({@link OutputProperties#getArtifactMaxSize()}): au-dela, les fichiers les moins recemment
+ * servis (date de modification, mise a jour a chaque acces) sont supprimes jusqu'a 90% de la limite.
+ * Un fichier servi depuis moins de {@link #EVICTION_GRACE} n'est jamais supprime: un {@link Artifact} retourne
+ * par {@link #find} ou {@link #getOrCreate} reste lisible le temps que la reponse ouvre le fichier (une fois
+ * ouvert, sa suppression n'interrompt pas l'envoi). La taille peut donc depasser la limite pendant ce delai.
+ * Ecriture dans un fichier temporaire puis renommage atomique: un fichier visible est toujours complet.
+ * Deux exports simultanes du meme plan ecrivent chacun le fichier (contenu identique, le dernier renommage
+ * l'emporte); seul le renommage qui cree le fichier compte dans la taille.
+ * Metriques Actuator: export.artifacts.gets (tag result: hit ou miss), export.artifacts.evictions,
+ * export.artifacts.size (octets).
+ */
+@Slf4j
+@Component
+public class ExportArtifactStore {
+
+    /** Fichier servi: {@code name} est l'empreinte suivie de l'extension ({@code dxf}, {@code bin.dxf}...). */
+    public record Artifact(String name, Path path, long size) {
+
+        /** ETag fort: le nom est l'empreinte du contenu. */
+        public String etag() {
+            return "\"" + name + "\"";
+        }
+    }
+
+    /** Ecriture du contenu d'un export (le flux est ferme par le stockage). */
+    @FunctionalInterface
+    public interface ArtifactWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    private static final Pattern NAME = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]+)+");
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final double LOW_WATERMARK = 0.9;
+    /** Anciennete minimale du dernier acces avant suppression (fichier en cours d'envoi). */
+    static final Duration EVICTION_GRACE = Duration.ofMinutes(1);
+
+    private final ObjectMapper canonicalMapper;
+    private final Path root;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ExportArtifactStore(OutputProperties outputProperties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        var mapper = objectMapper.copy();
+        mapper.setConfig(mapper.getSerializationConfig()
+                .with(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+                .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS));
+        this.canonicalMapper = mapper;
+        this.root = Path.of(outputProperties.getDirectory(), "artifacts");
+        this.maxSize = Math.max(0, outputProperties.getArtifactMaxSize().toBytes());
+        this.hits = Counter.builder("export.artifacts.gets").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("export.artifacts.gets").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("export.artifacts.evictions").register(meterRegistry);
+        Gauge.builder("export.artifacts.size", size, AtomicLong::get).baseUnit("bytes").register(meterRegistry);
+        size.set(scan());
+    }
+
+    /**
+     * Empreinte (SHA-256, hexadecimal) d'un export: {@code kind} distingue les formats et leurs versions,
+     * {@code source} est serialise en JSON canonique directement dans le condensat.
+     */
+    public String key(String kind, Object source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(kind.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            canonicalMapper.writeValue(new DigestOutputStream(OutputStream.nullOutputStream(), digest), source);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Source d'export non serialisable: " + e.getMessage(), e);
+        }
+    }
+
+    /** Fichier deja exporte sous ce nom ({@code <empreinte>.<extension>}), ou null. */
+    public Artifact find(String name) {
+        if (!NAME.matcher(name).matches()) {
+            return null;
+        }
+        Artifact artifact = existing(root.resolve(name));
+        (artifact != null ? hits : misses).increment();
+        return artifact;
+    }
+
+    /** Fichier de cette empreinte, ecrit par {@code writer} s'il n'existe pas encore. */
+    public Artifact getOrCreate(String key, String extension, ArtifactWriter writer) throws IOException {
+        String name = key + "." + extension;
+        Path file = root.resolve(name);
+        Artifact artifact = existing(file);
+        if (artifact != null) {
+            hits.increment();
+            return artifact;
+        }
+        misses.increment();
+
+        Files.createDirectories(root);
+        Path tmp = Files.createTempFile(root, key, TMP_SUFFIX);
+        long length;
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                writer.write(out);
+            }
+            length = Files.size(tmp);
+            // Sous le verrou de l'eviction: le fichier ne peut pas etre supprime entre le test et le renommage
+            boolean created;
+            synchronized (this) {
+                created = Files.notExists(file);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (created && size.addAndGet(length) > maxSize) {
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return new Artifact(name, file, length);
+    }
+
+    /**
+     * Fichier existant, marque comme servi maintenant; null s'il n'existe pas.
+     * Sous le verrou de l'eviction: un fichier retourne a ete vu recent par toute eviction qui suit.
+     */
+    private Artifact existing(Path file) {
+        try {
+            long length;
+            synchronized (this) {
+                Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+                length = Files.size(file);
+            }
+            return new Artifact(file.getFileName().toString(), file, length);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Exports: lecture de {} impossible: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Supprime les fichiers les moins recemment servis jusqu'a 90% de la taille max, sauf ceux servis depuis
+     * moins de {@link #EVICTION_GRACE}.
+     */
+    private synchronized void evict() {
+        record Entry(Path path, long size, FileTime accessed) {}
+        var entries = new ArrayList<Entry>();
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(TMP_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    var attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    entries.add(new Entry(file, attributes.size(), attributes.lastModifiedTime()));
+                    total += attributes.size();
+                } catch (NoSuchFileException e) {
+                    // Supprime entre-temps
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Exports: parcours de {} impossible: {}", root, e.getMessage());
+            return;
+        }
+
+        entries.sort(Comparator.comparing(Entry::accessed));
+        long target = (long) (maxSize * LOW_WATERMARK);
+        FileTime servedRecently = FileTime.from(Instant.now().minus(EVICTION_GRACE));
+        int removed = 0;
+        for (Entry entry : entries) {
+            if (total <= target || entry.accessed().compareTo(servedRecently) > 0) {
+                // Tries par acces: les suivants sont aussi recents
+                break;
+            }
+            try {
+                Files.deleteIfExists(entry.path());
+                total -= entry.size();
+                removed++;
+            } catch (IOException e) {
+                log.warn("Exports: suppression de {} impossible: {}", entry.path(), e.getMessage());
+            }
+        }
+        size.set(total);
+        evictions.increment(removed);
+        log.info("Exports: {} fichiers supprimes, {} octets gardes", removed, total);
+    }
+
+    /** Taille totale au demarrage; les fichiers temporaires d'un arret brutal sont supprimes. */
+    private long scan() {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long total = 0;
+        List<Path> stale = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().endsWith(TMP_SUFFIX)) {
+                    stale.add(file);
+                } else {
+                    total += Files.size(file);
+                }
+            }
+            for (Path file : stale) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Exports: parcours de {} impossible: {}", root, e.getMessage());
+        }
+        return total;
+    }
+}
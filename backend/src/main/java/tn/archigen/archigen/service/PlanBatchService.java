@@ -0,0 +1,155 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import tn.archigen.archigen.config.GenerationProperties;
+import tn.archigen.archigen.dto.BatchPlanResultDto;
+import tn.archigen.archigen.dto.PlanGenerateRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Generation de plans par lots.
+ * Les requetes sont lues une a une depuis le flux d'entree (NDJSON ou tableau JSON), generees sur des
+ * threads virtuels et chaque resultat est ecrit en NDJSON des qu'il est pret (ordre d'achevement,
+ * le champ {@code index} donne la position dans le lot).
+ * Un semaphore borne le nombre de plans en cours: la lecture s'arrete tant qu'aucune place ne se libere,
+ * la memoire utilisee ne depend donc pas de la taille du lot.
+ */
+@Slf4j
+@Service
+public class PlanBatchService {
+
+    private static final byte NEWLINE = '\n';
+
+    private final PlanGenerationService planGenerationService;
+    private final GenerationProperties generationProperties;
+    private final Validator validator;
+    private final ObjectReader treeReader;
+    private final ObjectReader requestReader;
+    private final ObjectWriter resultWriter;
+
+    public PlanBatchService(PlanGenerationService planGenerationService,
+                            GenerationProperties generationProperties,
+                            Validator validator,
+                            ObjectMapper objectMapper) {
+        this.planGenerationService = planGenerationService;
+        this.generationProperties = generationProperties;
+        this.validator = validator;
+        this.treeReader = objectMapper.readerFor(JsonNode.class);
+        this.requestReader = objectMapper.readerFor(PlanGenerateRequest.class);
+        this.resultWriter = objectMapper.writerFor(BatchPlanResultDto.class);
+    }
+
+    /**
+     * Lit les requetes de {@code in} et ecrit un {@link BatchPlanResultDto} par ligne dans {@code out}.
+     * Une requete invalide ou en echec produit une ligne d'erreur sans interrompre le lot, y compris une requete
+     * dont le JSON ne correspond pas au format attendu (type de champ): chaque requete est lue en arbre puis
+     * convertie. Seul un flux mal forme (erreur de syntaxe) termine le lot, apres une ligne d'erreur.
+     * Retourne quand tous les resultats ont ete ecrits.
+     *
+     * @throws IOException si le client se deconnecte
+     */
+    public void generateBatch(InputStream in, OutputStream out) throws IOException {
+        int parallelism = Math.max(1, generationProperties.getBatchParallelism());
+        var permits = new Semaphore(parallelism);
+        var writeFailure = new AtomicReference<IOException>();
+        var completed = new AtomicInteger();
+        int submitted = 0;
+        long startTime = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             MappingIterator<JsonNode> nodes = treeReader.readValues(in)) {
+            while (writeFailure.get() == null) {
+                JsonNode node;
+                try {
+                    if (!nodes.hasNextValue()) {
+                        break;
+                    }
+                    node = nodes.nextValue();
+                } catch (JsonProcessingException e) {
+                    // Flux illisible au-dela de ce point: on le signale et on termine le lot
+                    log.warn("Lot: JSON invalide a la requete {}: {}", submitted, e.getOriginalMessage());
+                    write(out, BatchPlanResultDto.builder().index(submitted)
+                            .error("JSON invalide: " + e.getOriginalMessage()).build());
+                    break;
+                }
+                int index = submitted++;
+                PlanGenerateRequest request;
+                try {
+                    request = requestReader.treeToValue(node, PlanGenerateRequest.class);
+                } catch (JsonProcessingException e) {
+                    // Requete bien formee mais hors format: erreur sur cette ligne, le lot continue
+                    write(out, BatchPlanResultDto.builder().index(index)
+                            .error("Requete invalide: " + e.getOriginalMessage()).build());
+                    continue;
+                }
+                permits.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        if (writeFailure.get() == null) {
+                            write(out, generateOne(index, request));
+                            completed.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        writeFailure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+            // La fermeture de l'executeur attend la fin des generations en cours
+        }
+
+        if (writeFailure.get() != null) {
+            log.warn("Lot interrompu (client deconnecte?): {}/{} plans envoyes", completed.get(), submitted);
+            throw writeFailure.get();
+        }
+        log.info("Lot termine: {} plans en {}ms (parallelisme {})",
+                submitted, (System.nanoTime() - startTime) / 1_000_000, parallelism);
+    }
+
+    private BatchPlanResultDto generateOne(int index, PlanGenerateRequest request) {
+        Set<ConstraintViolation<PlanGenerateRequest>> violations = validator.validate(request);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            return BatchPlanResultDto.builder().index(index).error(message).build();
+        }
+        try {
+            return BatchPlanResultDto.builder().index(index).plan(planGenerationService.generatePlan(request)).build();
+        } catch (RuntimeException e) {
+            log.warn("Lot: echec de la requete {}: {}", index, e.getMessage());
+            return BatchPlanResultDto.builder().index(index).error("Erreur de generation: " + e.getMessage()).build();
+        }
+    }
+
+    /** Serialisation hors verrou; seule l'ecriture de la ligne (et le flush) est exclusive. */
+    private void write(OutputStream out, BatchPlanResultDto result) throws IOException {
+        byte[] line = resultWriter.writeValueAsBytes(result);
+        synchronized (out) {
+            out.write(line);
+            out.write(NEWLINE);
+            out.flush();
+        }
+    }
+}
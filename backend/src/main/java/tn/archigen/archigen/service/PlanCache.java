@@ -0,0 +1,64 @@
+package tn.archigen.archigen.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import tn.archigen.archigen.config.GenerationProperties;
+import tn.archigen.archigen.dto.PlanResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Cache des plans generes, indexe par l'empreinte canonique de la requete (SHA-256, voir
+ * {@link PlanGenerationService#canonicalRequest}).
+ * Taille bornee avec eviction W-TinyLFU (Caffeine) et duree de vie apres ecriture.
+ * Les compteurs (cache.gets hit/miss, cache.evictions, cache.size, tag cache=plans) sont exposes
+ * par Actuator sur /actuator/metrics.
+ *
+ * Les plans en cache sont partages entre les appelants: ils ne doivent pas etre modifies.
+ */
+@Component
+public class PlanCache {
+
+    private final Cache<String, PlanResponse> cache;
+
+    public PlanCache(GenerationProperties generationProperties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, generationProperties.getCacheMaxSize()))
+                .expireAfterWrite(generationProperties.getCacheTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "plans");
+    }
+
+    /**
+     * Retourne le plan en cache pour cette requete canonique, ou le genere et le met en cache.
+     * La generation se fait hors verrou du cache: deux requetes identiques simultanees peuvent
+     * toutes deux generer le plan (resultat identique), sans bloquer les autres cles.
+     */
+    public PlanResponse get(String canonicalRequest, Supplier<PlanResponse> generator) {
+        String key = fingerprint(canonicalRequest);
+        PlanResponse plan = cache.getIfPresent(key);
+        if (plan == null) {
+            plan = generator.get();
+            cache.put(key, plan);
+        }
+        return plan;
+    }
+
+    /** Empreinte SHA-256 (hexadecimal) d'une representation canonique. */
+    public static String fingerprint(String canonical) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
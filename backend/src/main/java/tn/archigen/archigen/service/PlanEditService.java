@@ -0,0 +1,376 @@
+package tn.archigen.archigen.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import tn.archigen.archigen.dto.*;
+import tn.archigen.archigen.service.layout.AdjacencyGraph;
+import tn.archigen.archigen.service.layout.Openings;
+import tn.archigen.archigen.service.layout.RoomLayout;
+import tn.archigen.archigen.service.layout.SpatialGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Edition incrementale d'un plan: deplacement et/ou redimensionnement d'une piece.
+ * Seul le voisinage de la piece est recalcule. Les voisins avant et apres edition sont trouves par
+ * {@link SpatialGrid}; un graphe d'adjacence est construit sur le sous-plan forme des pieces touchees
+ * et de leurs propres voisins, et sert aux portes, fenetres, facades et poutres des pieces touchees.
+ * La longueur de facade est mise a jour par difference depuis les metriques du plan envoye.
+ *
+ * Le plan etant envoye en entier a chaque edition (pas d'etat cote serveur), quelques passes restent lineaires
+ * en sa taille: construction de la grille, filtrage des portes et fenetres posees sur les murs des pieces
+ * touchees, somme des surfaces. Ce sont des parcours simples de tableaux; le graphe d'adjacence, les ouvertures
+ * et l'analyse structurelle, qui dominent le cout d'une generation, ne portent que sur le voisinage.
+ * Sans metriques dans le plan envoye, les facades de tous les niveaux sont recalculees.
+ *
+ * Ouvertures (memes regles que {@link PlanGenerationService}):
+ * <ul>
+ *   <li>les portes des murs de la piece editee sont retirees; elle est reliee par le mur partage de moindre
+ *   cout, et la porte principale la suit si elle etait sur son mur frontal;</li>
+ *   <li>un voisin qui n'a plus aucune porte est relie a son tour; le reste de l'arbre des portes est conserve;</li>
+ *   <li>les fenetres des pieces touchees sont recalculees.</li>
+ * </ul>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PlanEditService {
+
+    private static final double EPS = 1e-6;
+    private static final double MIN_OVERLAP = 0.05;
+    private static final double TOLERANCE = AdjacencyGraph.DEFAULT_TOLERANCE;
+
+    private final StructuralAnalysisService structuralAnalysisService;
+
+    /**
+     * @throws IllegalArgumentException si le niveau ou la piece n'existent pas dans le plan envoye
+     */
+    public PlanEditResponse edit(PlanEditRequest request) {
+        var plan = request.getPlan();
+        int level = request.getLevel() != null ? request.getLevel() : 0;
+        int floors = plan.getFloors() != null ? plan.getFloors().size() : 1;
+        if (level >= floors) {
+            throw new IllegalArgumentException("Niveau inexistant: " + level);
+        }
+        List<RoomDto> rooms = roomsOf(plan, level);
+        List<DoorDto> doors = plan.getFloors() != null ? plan.getFloors().get(level).getDoors() : plan.getDoors();
+        List<WindowDto> windows = plan.getFloors() != null ? plan.getFloors().get(level).getWindows() : plan.getWindows();
+        doors = doors != null ? doors : List.of();
+        windows = windows != null ? windows : List.of();
+
+        int index = request.getRoomIndex();
+        if (index >= rooms.size()) {
+            throw new IllegalArgumentException("Piece inexistante: " + index);
+        }
+        var before = rooms.get(index);
+        var after = RoomDto.builder()
+                .name(before.getName())
+                .type(before.getType())
+                .x(request.getX() != null ? request.getX() : before.getX())
+                .y(request.getY() != null ? request.getY() : before.getY())
+                .width(request.getWidth() != null ? request.getWidth() : before.getWidth())
+                .height(request.getHeight() != null ? request.getHeight() : before.getHeight())
+                .build();
+
+        // Voisinage: pieces touchees (piece editee + voisins avant/apres), puis leurs propres voisins
+        int n = rooms.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] w = new double[n];
+        double[] h = new double[n];
+        for (int i = 0; i < n; i++) {
+            var room = rooms.get(i);
+            x[i] = room.getX();
+            y[i] = room.getY();
+            w[i] = room.getWidth();
+            h[i] = room.getHeight();
+        }
+        var grid = new SpatialGrid(x, y, w, h, n, TOLERANCE / 2);
+
+        var affected = new IndexList(n);
+        affected.add(index);
+        var overlapping = new IndexList(n);
+        grid.forEachNear(x[index], y[index], w[index], h[index], j -> {
+            if (j != index && touches(x[index], y[index], w[index], h[index], x[j], y[j], w[j], h[j])) {
+                affected.add(j);
+            }
+        });
+        grid.forEachNear(after.getX(), after.getY(), after.getWidth(), after.getHeight(), j -> {
+            if (j == index) {
+                return;
+            }
+            if (overlaps(after.getX(), after.getY(), after.getWidth(), after.getHeight(), x[j], y[j], w[j], h[j])) {
+                overlapping.add(j);
+            }
+            if (touches(after.getX(), after.getY(), after.getWidth(), after.getHeight(), x[j], y[j], w[j], h[j])) {
+                affected.add(j);
+            }
+        });
+        affected.sortFrom(1);
+        overlapping.sortFrom(0);
+
+        var context = new IndexList(n);
+        for (int k = 0; k < affected.size(); k++) {
+            context.add(affected.get(k));
+        }
+        for (int k = 1; k < affected.size(); k++) {
+            int a = affected.get(k);
+            grid.forEachNear(x[a], y[a], w[a], h[a], j -> {
+                if (touches(x[a], y[a], w[a], h[a], x[j], y[j], w[j], h[j])) {
+                    context.add(j);
+                }
+            });
+        }
+
+        // Sous-plan avant et apres edition: les pieces touchees sont les premieres (index locaux 0..affected-1)
+        List<RoomDto> oldRooms = new ArrayList<>(context.size());
+        List<RoomDto> newRooms = new ArrayList<>(context.size());
+        for (int k = 0; k < context.size(); k++) {
+            var room = rooms.get(context.get(k));
+            oldRooms.add(room);
+            newRooms.add(k == 0 ? after : room);
+        }
+        var oldLayout = RoomLayout.of(oldRooms);
+        var newLayout = RoomLayout.of(newRooms);
+        var oldGraph = AdjacencyGraph.of(oldLayout);
+        var newGraph = AdjacencyGraph.of(newLayout);
+
+        double exteriorDelta = 0;
+        for (int k = 0; k < affected.size(); k++) {
+            for (int side = AdjacencyGraph.SIDE_BOTTOM; side <= AdjacencyGraph.SIDE_LEFT; side++) {
+                exteriorDelta += newGraph.exteriorLength(k, side) - oldGraph.exteriorLength(k, side);
+            }
+        }
+
+        // Portes: retirer celles des murs de la piece editee, noter les voisins qui y perdent une porte
+        List<Integer> removedDoors = new ArrayList<>();
+        boolean[] kept = new boolean[doors.size()];
+        boolean[] lostDoor = new boolean[affected.size()];
+        boolean entranceMoved = false;
+        for (int d = 0; d < doors.size(); d++) {
+            var door = doors.get(d);
+            kept[d] = !onWalls(door.getX(), door.getY(), door.getWidth(), isVertical(door.getOrientation()), before, TOLERANCE);
+            if (kept[d]) {
+                continue;
+            }
+            removedDoors.add(d);
+            if (isMainDoor(door) && onFrontWall(door, before)) {
+                entranceMoved = true;
+            }
+            for (int k = 1; k < affected.size(); k++) {
+                lostDoor[k] |= onWalls(door.getX(), door.getY(), door.getWidth(), isVertical(door.getOrientation()),
+                        rooms.get(affected.get(k)), TOLERANCE);
+            }
+        }
+
+        var addedDoors = new Openings(2);
+        if (entranceMoved) {
+            PlanGenerationService.addMainDoor(newLayout, newGraph, 0, addedDoors);
+        }
+        connect(newLayout, newGraph, 0, addedDoors);
+        for (int k = 1; k < affected.size(); k++) {
+            if (lostDoor[k] && !hasDoor(rooms.get(affected.get(k)), doors, kept, addedDoors)) {
+                connect(newLayout, newGraph, k, addedDoors);
+            }
+        }
+
+        // Fenetres des pieces touchees
+        int entrance = entranceMoved ? 0 : -1;
+        for (int k = 1; k < affected.size() && entrance < 0; k++) {
+            var room = rooms.get(affected.get(k));
+            for (int d = 0; d < doors.size(); d++) {
+                var door = doors.get(d);
+                if (kept[d] && isMainDoor(door) && onFrontWall(door, room)) {
+                    entrance = k;
+                    break;
+                }
+            }
+        }
+        List<Integer> removedWindows = new ArrayList<>();
+        for (int i = 0; i < windows.size(); i++) {
+            var window = windows.get(i);
+            boolean vertical = isVertical(window.getOrientation());
+            for (int k = 0; k < affected.size(); k++) {
+                if (onWalls(window.getX(), window.getY(), window.getWidth(), vertical, oldRooms.get(k), EPS)) {
+                    removedWindows.add(i);
+                    break;
+                }
+            }
+        }
+        var addedWindows = new Openings(2 * affected.size());
+        double[] interval = new double[2];
+        for (int k = 0; k < affected.size(); k++) {
+            PlanGenerationService.addWindows(newLayout, newGraph, k, k == entrance, interval, addedWindows);
+        }
+
+        // Metriques: surfaces par somme, facades par difference (ou recalcul si le plan n'a pas de metriques)
+        double groundArea = 0;
+        double floorArea = 0;
+        for (int f = 0; f < floors; f++) {
+            List<RoomDto> floorRooms = roomsOf(plan, f);
+            for (int i = 0; i < floorRooms.size(); i++) {
+                var room = f == level && i == index ? after : floorRooms.get(i);
+                double area = room.getWidth() * room.getHeight();
+                floorArea += area;
+                if (f == 0) {
+                    groundArea += area;
+                }
+            }
+        }
+        double exteriorWallLength;
+        if (plan.getMetrics() != null && plan.getMetrics().getExteriorWallLength() != null) {
+            exteriorWallLength = plan.getMetrics().getExteriorWallLength() + exteriorDelta;
+        } else {
+            exteriorWallLength = exteriorDelta;
+            for (int f = 0; f < floors; f++) {
+                exteriorWallLength += AdjacencyGraph.of(RoomLayout.of(roomsOf(plan, f))).totalExteriorLength();
+            }
+        }
+        var regulations = request.getRegulations() != null ? request.getRegulations() : new RegulationsDto();
+        PlanMetricsDto metrics = PlanGenerationService.calculateMetrics(groundArea, floorArea, exteriorWallLength, floors,
+                plan.getTerrain(), regulations);
+
+        int[] affectedLocal = new int[affected.size()];
+        for (int k = 0; k < affectedLocal.length; k++) {
+            affectedLocal[k] = k;
+        }
+        var elements = structuralAnalysisService.analyzeRooms(newLayout, newGraph, affectedLocal, request.getBuildingType());
+
+        log.debug("Edition piece {} (niveau {}): {} pieces touchees, sous-plan de {} pieces, {} porte(s) et {} fenetre(s) recalculees",
+                index, level, affected.size(), context.size(), addedDoors.size(), addedWindows.size());
+
+        return PlanEditResponse.builder()
+                .level(level)
+                .roomIndex(index)
+                .room(after)
+                .affectedRooms(affected.toList())
+                .overlappingRooms(overlapping.toList())
+                .removedDoors(removedDoors)
+                .addedDoors(addedDoors.toDoorDtos())
+                .removedWindows(removedWindows)
+                .addedWindows(addedWindows.toWindowDtos())
+                .metrics(metrics)
+                .structuralElements(elements)
+                .build();
+    }
+
+    private static List<RoomDto> roomsOf(PlanResponse plan, int level) {
+        return plan.getFloors() != null ? plan.getFloors().get(level).getRooms() : plan.getRooms();
+    }
+
+    /** Relie une piece par le mur partage de moindre cout (regle de l'arbre des portes de la generation). */
+    private static void connect(RoomLayout layout, AdjacencyGraph graph, int room, Openings doors) {
+        int best = -1;
+        double bestCost = Double.MAX_VALUE;
+        for (int k = 0; k < graph.degree(room); k++) {
+            int e = graph.edgeOf(room, k);
+            if (!PlanGenerationService.acceptsDoor(graph, e)) {
+                continue;
+            }
+            double cost = PlanGenerationService.doorCost(layout, graph, e, graph.other(e, room));
+            if (cost < bestCost) {
+                best = e;
+                bestCost = cost;
+            }
+        }
+        if (best >= 0) {
+            PlanGenerationService.addInteriorDoor(graph, best, doors);
+        }
+    }
+
+    private static boolean hasDoor(RoomDto room, List<DoorDto> doors, boolean[] kept, Openings added) {
+        for (int d = 0; d < doors.size(); d++) {
+            var door = doors.get(d);
+            if (kept[d] && onWalls(door.getX(), door.getY(), door.getWidth(), isVertical(door.getOrientation()), room, TOLERANCE)) {
+                return true;
+            }
+        }
+        for (int d = 0; d < added.size(); d++) {
+            if (onWalls(added.x(d), added.y(d), added.width(d), added.vertical(d), room, TOLERANCE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isVertical(String orientation) {
+        return "vertical".equals(orientation);
+    }
+
+    private static boolean isMainDoor(DoorDto door) {
+        return !isVertical(door.getOrientation()) && Math.abs(door.getWidth() - PlanGenerationService.DOOR_WIDTH_MAIN) < EPS;
+    }
+
+    /** Ouverture posee sur un mur de la piece (a {@code tolerance} pres perpendiculairement au mur). */
+    private static boolean onWalls(double ox, double oy, double width, boolean vertical, RoomDto room, double tolerance) {
+        if (vertical) {
+            return (Math.abs(ox - room.getX()) <= tolerance || Math.abs(ox - room.getX() - room.getWidth()) <= tolerance)
+                    && oy >= room.getY() - EPS && oy + width <= room.getY() + room.getHeight() + EPS;
+        }
+        return (Math.abs(oy - room.getY()) <= tolerance || Math.abs(oy - room.getY() - room.getHeight()) <= tolerance)
+                && ox >= room.getX() - EPS && ox + width <= room.getX() + room.getWidth() + EPS;
+    }
+
+    /** Porte posee exactement sur le mur frontal (bas) de la piece. */
+    private static boolean onFrontWall(DoorDto door, RoomDto room) {
+        return !isVertical(door.getOrientation()) && Math.abs(door.getY() - room.getY()) < EPS
+                && door.getX() >= room.getX() - EPS && door.getX() + door.getWidth() <= room.getX() + room.getWidth() + EPS;
+    }
+
+    /**
+     * Rectangles qui partagent un mur (ecart au plus {@link #TOLERANCE}) ou se chevauchent.
+     * Seuils elargis de {@link #EPS}: le test doit retenir au moins les aretes de {@link AdjacencyGraph}.
+     */
+    private static boolean touches(double ax, double ay, double aw, double ah, double bx, double by, double bw, double bh) {
+        double overlapX = Math.min(ax + aw, bx + bw) - Math.max(ax, bx);
+        double overlapY = Math.min(ay + ah, by + bh) - Math.max(ay, by);
+        return (overlapX > MIN_OVERLAP - EPS && overlapY >= -TOLERANCE - EPS)
+                || (overlapY > MIN_OVERLAP - EPS && overlapX >= -TOLERANCE - EPS);
+    }
+
+    private static boolean overlaps(double ax, double ay, double aw, double ah, double bx, double by, double bw, double bh) {
+        return ax < bx + bw - EPS && bx < ax + aw - EPS && ay < by + bh - EPS && by < ay + ah - EPS;
+    }
+
+    /** Liste d'index sans doublon (marquage par piece), en tableau primitif. */
+    private static final class IndexList {
+        private final boolean[] present;
+        private final int[] items;
+        private int size;
+
+        IndexList(int capacity) {
+            present = new boolean[capacity];
+            items = new int[capacity];
+        }
+
+        void add(int i) {
+            if (!present[i]) {
+                present[i] = true;
+                items[size++] = i;
+            }
+        }
+
+        int get(int k) {
+            return items[k];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void sortFrom(int from) {
+            Arrays.sort(items, from, size);
+        }
+
+        List<Integer> toList() {
+            List<Integer> list = new ArrayList<>(size);
+            for (int k = 0; k < size; k++) {
+                list.add(items[k]);
+            }
+            return list;
+        }
+    }
+}
@@ -1,258 +1,831 @@
 package tn.archigen.archigen.service;
 
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import tn.archigen.archigen.config.GenerationProperties;
 import tn.archigen.archigen.dto.*;
+import tn.archigen.archigen.service.layout.AdjacencyGraph;
+import tn.archigen.archigen.service.layout.BuildableZone;
+import tn.archigen.archigen.service.layout.LayoutAnnealer;
+import tn.archigen.archigen.service.layout.LayoutCandidate;
+import tn.archigen.archigen.service.layout.LayoutResult;
+import tn.archigen.archigen.service.layout.LayoutStrategy;
+import tn.archigen.archigen.service.layout.Openings;
+import tn.archigen.archigen.service.layout.RoomLayout;
+import tn.archigen.archigen.service.layout.RoomProgram;
+import tn.archigen.archigen.service.layout.RoomTypes;
+import tn.archigen.archigen.service.layout.WallAlignment;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
 
 /**
  * Service de generation de plans architecturaux.
- * Algorithme de placement de pieces en rangees (row-packing).
+ * Le placement est delegue a une {@link LayoutStrategy} choisie par requete
+ * (rangees par defaut, MaxRects ou guillotine). En mode "recherche", plusieurs candidats (ordre, ratios, orientation) sont
+ * evalues en parallele et le meilleur est retenu dans le budget de temps. En mode "recuit",
+ * le placement est ameliore par recuit simule jusqu'a l'echeance ({@link LayoutAnnealer}).
+ * Le mode variantes ({@link #generateVariants}) retourne plusieurs plans distincts classes par score.
+ * Au-dela d'un niveau, les niveaux sont places en parallele autour d'un noyau escalier commun
+ * ({@link #computeMultiFloorPlan}).
+ * Tout le pipeline travaille sur des tableaux primitifs ({@link RoomProgram}, {@link RoomLayout},
+ * {@link Openings}); les DTO de reponse ne sont construits qu'a la fin.
  * TODO: Remplacer par un appel IA (Claude/OpenAI) pour un placement intelligent.
  */
 @Slf4j
 @Service
 public class PlanGenerationService {
 
-    private static final double WALL_THICKNESS = 0.20; // 20cm standard tunisien
-    private static final double DOOR_WIDTH_INTERIOR = 0.90;
-    private static final double DOOR_WIDTH_MAIN = 1.00;
-    private static final double WINDOW_WIDTH = 1.20;
-
-    // Surfaces minimales par type de piece (normes tunisiennes habitation)
-    private static final java.util.Map<String, Double> DEFAULT_MIN_AREAS = java.util.Map.of(
-            "salon", 20.0,
-            "chambre", 12.0,
-            "cuisine", 9.0,
-            "sdb", 5.0,
-            "wc", 2.5,
-            "entree", 4.0,
-            "couloir", 3.0,
-            "bureau", 10.0,
-            "garage", 15.0
-    );
+    // Regles d'ouvertures partagees avec l'edition incrementale (PlanEditService)
+    static final double WALL_THICKNESS = 0.20; // 20cm standard tunisien
+    static final double DOOR_WIDTH_INTERIOR = 0.90;
+    static final double DOOR_WIDTH_MAIN = 1.00;
+    static final double WINDOW_WIDTH = 1.20;
+    static final double OPENING_MARGIN = 0.10; // Distance min entre une ouverture et un angle de mur
+
+    // Ponderations du score de placement (en m2 equivalents)
+    private static final double DROPPED_ROOM_PENALTY = 25.0;
+    private static final double WASTED_AREA_WEIGHT = 0.25;
+
+    // Graine par defaut du recuit: meme suite de mouvements tiree pour une meme requete. Le nombre de mouvements
+    // essayes depend du temps machine disponible avant l'echeance: le plan peut varier d'un appel a l'autre
+    private static final long ANNEALING_SEED = 42L;
+
+    // Variantes: candidats tires par variante demandee, et cellule de l'empreinte anti-doublons (m)
+    private static final int VARIANT_OVERSAMPLING = 4;
+    private static final double VARIANT_FINGERPRINT_CELL = 0.5;
+    public static final int MAX_VARIANTS = 20;
+
+    // Multi-etages: hauteur d'etage (plancher a plancher) et noyau escalier + palier commun a tous les niveaux
+    private static final double FLOOR_HEIGHT = 3.0;
+    private static final double STAIR_WIDTH = 2.6;
+    private static final double STAIR_DEPTH = 4.5;
+    private static final double MIN_LANDING_DEPTH = 1.2;
+
+    // Emprise commune des niveaux: surface du niveau le plus charge x marge, agrandie tant que des pieces ne tiennent pas
+    private static final double FOOTPRINT_SLACK = 1.3;
+    private static final double FOOTPRINT_GROWTH = 1.2;
+    // Ecart maximal (m) entre un mur d'etage et le mur du RDC sur lequel il est recale
+    private static final double WALL_ALIGN_TOLERANCE = 0.8;
+
+    private final GenerationProperties generationProperties;
+    private final PlanCache planCache;
+    private final ForkJoinPool searchPool;
+
+    public PlanGenerationService(GenerationProperties generationProperties, PlanCache planCache) {
+        this.generationProperties = generationProperties;
+        this.planCache = planCache;
+        this.searchPool = new ForkJoinPool(Math.max(1, generationProperties.getSearchParallelism()));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        searchPool.shutdownNow();
+    }
 
+    /** Donnees d'une requete communes a tous les placements: programme, zone constructible et surface cible. */
+    private record GenerationContext(
+            TerrainDto terrain,
+            RegulationsDto regulations,
+            RoomProgram program,
+            BuildableZone zone,
+            double targetArea
+    ) {}
+
+    /**
+     * Genere le plan d'une requete, ou le reprend du cache si une requete equivalente
+     * (meme representation canonique) a deja ete traitee. Le plan retourne ne doit pas etre modifie.
+     */
     public PlanResponse generatePlan(PlanGenerateRequest request) {
+        return planCache.get(canonicalRequest(request), () -> computePlan(request));
+    }
+
+    private PlanResponse computePlan(PlanGenerateRequest request) {
+        int floors = floorCount(request);
+        if (floors > 1) {
+            return computeMultiFloorPlan(request, floors);
+        }
+
+        var context = prepare(request);
+        LayoutResult result = layoutRooms(context.program(), context.zone(), context.targetArea(), request);
+        RoomLayout layout = annealIfRequested(result.layout(), 0, context.zone(), request);
+
+        warnDroppedRooms(result);
+        log.info("Placement termine: {} pieces, surface totale = {}m2", layout.size(), Math.round(layout.totalArea() * 10) / 10.0);
+
+        return buildPlan(context, layout);
+    }
+
+    /** Place un programme dans une zone avec la strategie demandee (un seul candidat ou recherche parallele). */
+    private LayoutResult layoutRooms(RoomProgram program, BuildableZone zone, double targetArea, PlanGenerateRequest request) {
+        var strategy = LayoutStrategy.forName(request.getStrategy());
+        return "recherche".equals(request.getMode())
+                ? searchLayout(program, strategy, zone, targetArea, resolveTimeBudget(request))
+                : placeRooms(program, LayoutCandidate.defaultFor(strategy), zone, targetArea);
+    }
+
+    /** Mode recuit: amelioration locale du placement jusqu'a l'echeance, les {@code fixedRooms} premieres pieces restant en place. */
+    private RoomLayout annealIfRequested(RoomLayout layout, int fixedRooms, BuildableZone zone, PlanGenerateRequest request) {
+        if (!"recuit".equals(request.getMode())) {
+            return layout;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(resolveTimeBudget(request));
+        long seed = request.getSeed() != null ? request.getSeed() : ANNEALING_SEED;
+        return LayoutAnnealer.anneal(layout, fixedRooms, zone, WALL_THICKNESS, deadline, seed);
+    }
+
+    private void warnDroppedRooms(LayoutResult result) {
+        if (result.droppedRooms().length > 0) {
+            var program = result.layout().program();
+            log.warn("Plus de place pour {} piece(s): {}", result.droppedRooms().length,
+                    Arrays.stream(result.droppedRooms()).mapToObj(program::name).toList());
+        }
+    }
+
+    // ==================== MULTI-ETAGES ====================
+
+    /**
+     * Plan multi-etages. Les pieces sont reparties entre les niveaux ({@link #splitByFloor}), puis tous les
+     * niveaux sont places en parallele dans la meme emprise, a cote d'un noyau escalier + palier
+     * identique a chaque niveau: les facades se superposent et la circulation verticale est alignee.
+     * Les murs interieurs des etages sont ensuite recales sur ceux du RDC ({@link WallAlignment}) quand l'ecart
+     * est d'au plus {@link #WALL_ALIGN_TOLERANCE} et que le recalage ne fait perdre ni surface minimale ni
+     * epaisseur de mur: les etages placent leurs pieces librement, la trame du RDC n'est pas imposee au
+     * placement, et un mur d'etage sans mur du RDC assez proche reste porte par le plancher.
+     * L'emprise part de la surface du niveau le plus charge et s'agrandit jusqu'a la zone constructible
+     * tant que des pieces ne tiennent pas.
+     * Les pieces, portes et fenetres de premier niveau du plan sont celles du RDC; tous les niveaux sont dans floors.
+     */
+    private PlanResponse computeMultiFloorPlan(PlanGenerateRequest request, int floors) {
+        var context = prepare(request);
+        var zone = context.zone();
+        var terrain = context.terrain();
+        List<RoomProgram> programs = splitByFloor(request.getRequirements().getRooms(), floors);
+
+        // Surface cible par niveau: surface demandee repartie entre les niveaux, plafonnee par le COS
+        double maxBuildArea = terrain.getWidth() * terrain.getHeight() * context.regulations().getCos();
+        Double totalArea = request.getRequirements().getTotalArea();
+        double floorTarget = Math.min(totalArea != null ? totalArea / floors : maxBuildArea * 0.8, maxBuildArea);
+
+        // Emprise commune: largeur de la zone, profondeur selon le niveau le plus charge
+        double roomsX = zone.x() + STAIR_WIDTH + WALL_THICKNESS;
+        double roomsWidth = Math.max(0, zone.width() - STAIR_WIDTH - WALL_THICKNESS);
+        double largestFloor = 0;
+        for (var program : programs) {
+            double floorArea = 0;
+            for (int i = 0; i < program.size(); i++) {
+                floorArea += program.minArea(i);
+            }
+            largestFloor = Math.max(largestFloor, floorArea);
+        }
+        double depth = roomsWidth > 0 ? Math.ceil(largestFloor * FOOTPRINT_SLACK / roomsWidth * 10) / 10.0 : zone.height();
+        depth = Math.min(zone.height(), Math.max(Math.min(STAIR_DEPTH, zone.height()), depth));
+
+        // Placement des niveaux en parallele, emprise agrandie tant qu'un niveau perd des pieces
+        List<LayoutResult> results;
+        while (true) {
+            var roomsZone = new BuildableZone(roomsX, zone.y(), roomsWidth, depth);
+            results = searchPool.submit(() -> programs.parallelStream()
+                    .map(program -> layoutRooms(program, roomsZone, floorTarget, request))
+                    .toList()).join();
+            boolean dropped = results.stream().anyMatch(result -> result.droppedRooms().length > 0);
+            if (!dropped || depth >= zone.height()) {
+                break;
+            }
+            depth = Math.min(zone.height(), Math.ceil(depth * FOOTPRINT_GROWTH * 10) / 10.0);
+        }
+
+        results.forEach(this::warnDroppedRooms);
+
+        // Noyau de circulation, recuit (noyau fixe) puis portes et fenetres des niveaux en parallele
+        // (porte principale au RDC seulement)
+        var footprint = new BuildableZone(zone.x(), zone.y(), zone.width(), depth);
+        var placed = results;
+        List<RoomLayout> layouts = searchPool.submit(() -> placed.parallelStream()
+                .map(result -> withCirculationCore(result.layout(), footprint))
+                .map(core -> annealIfRequested(core.layout(), core.fixedRooms(), footprint, request))
+                .toList()).join();
+        for (int level = 1; level < floors; level++) {
+            int moved = WallAlignment.align(layouts.get(level), layouts.get(0), footprint, WALL_ALIGN_TOLERANCE, WALL_THICKNESS);
+            log.debug("Niveau R+{}: {} murs recales sur le RDC", level, moved);
+        }
+        List<Integer> levels = IntStream.range(0, floors).boxed().toList();
+        List<FloorOpenings> openings = searchPool.submit(() -> levels.parallelStream()
+                .map(level -> floorOpenings(layouts.get(level), level == 0))
+                .toList()).join();
+
+        List<FloorDto> floorDtos = new ArrayList<>(floors);
+        double floorArea = 0;
+        double exteriorWallLength = 0;
+        for (int level = 0; level < floors; level++) {
+            var layout = layouts.get(level);
+            var floorOpenings = openings.get(level);
+            floorArea += layout.totalArea();
+            exteriorWallLength += floorOpenings.graph().totalExteriorLength();
+            floorDtos.add(FloorDto.builder()
+                    .level(level)
+                    .name(level == 0 ? "RDC" : "R+" + level)
+                    .rooms(layout.toRoomDtos())
+                    .doors(floorOpenings.doors().toDoorDtos())
+                    .windows(floorOpenings.windows().toWindowDtos())
+                    .area(Math.round(layout.totalArea() * 100) / 100.0)
+                    .build());
+        }
+
+        PlanMetricsDto metrics = calculateMetrics(layouts.get(0).totalArea(), floorArea, exteriorWallLength, floors,
+                terrain, context.regulations());
+        log.info("Placement termine: {} niveaux, emprise {}x{}m, surface de plancher = {}m2", floors,
+                Math.round(zone.width() * 10) / 10.0, depth, Math.round(floorArea * 10) / 10.0);
+
+        var ground = floorDtos.get(0);
+        return PlanResponse.builder()
+                .terrain(terrain)
+                .rooms(ground.getRooms())
+                .doors(ground.getDoors())
+                .windows(ground.getWindows())
+                .wallThickness(WALL_THICKNESS)
+                .metrics(metrics)
+                .floors(floorDtos)
+                .build();
+    }
+
+    /**
+     * Repartit les pieces entre les niveaux, un programme par niveau: niveau impose par l'exigence
+     * (ramene au dernier niveau), sinon pieces de jour au RDC et autres pieces, de la plus grande
+     * a la plus petite, sur le niveau le moins charge.
+     */
+    private List<RoomProgram> splitByFloor(List<RoomRequirementDto> rooms, int floors) {
+        record Assigned(String name, int copy, String type, double minArea) {}
+
+        List<List<Assigned>> byFloor = new ArrayList<>(floors);
+        for (int level = 0; level < floors; level++) {
+            byFloor.add(new ArrayList<>());
+        }
+        double[] load = new double[floors];
+        List<Assigned> free = new ArrayList<>();
+
+        for (var room : rooms) {
+            int count = room.getCount() != null ? room.getCount() : 1;
+            String name = room.getName() != null ? room.getName() : capitalize(room.getType());
+            int code = RoomTypes.code(room.getType());
+            double minArea = room.getMinArea() != null ? room.getMinArea() : RoomTypes.defaultMinArea(code);
+            for (int i = 0; i < count; i++) {
+                var assigned = new Assigned(name, count > 1 ? i + 1 : 0, room.getType(), minArea);
+                if (room.getFloor() != null || RoomTypes.isDayRoom(code)) {
+                    int level = room.getFloor() != null ? Math.min(room.getFloor(), floors - 1) : 0;
+                    byFloor.get(level).add(assigned);
+                    load[level] += minArea;
+                } else {
+                    free.add(assigned);
+                }
+            }
+        }
+
+        free.sort(Comparator.comparingDouble(Assigned::minArea).reversed());
+        for (var assigned : free) {
+            int lightest = 0;
+            for (int level = 1; level < floors; level++) {
+                if (load[level] < load[lightest]) {
+                    lightest = level;
+                }
+            }
+            byFloor.get(lightest).add(assigned);
+            load[lightest] += assigned.minArea();
+        }
+
+        List<RoomProgram> programs = new ArrayList<>(floors);
+        for (var assignedRooms : byFloor) {
+            var program = new RoomProgram(assignedRooms.size());
+            for (var assigned : assignedRooms) {
+                program.add(assigned.name(), assigned.copy(), assigned.type(), assigned.minArea());
+            }
+            programs.add(program);
+        }
+        return programs;
+    }
+
+    /** Niveau avec son noyau de circulation, place en tete du layout ({@code fixedRooms} pieces). */
+    private record CoredLayout(RoomLayout layout, int fixedRooms) {}
+
+    /**
+     * Ajoute aux pieces placees d'un niveau le noyau de circulation verticale, a la meme position a
+     * tous les niveaux: escalier a l'avant de la bande gauche de l'emprise, palier derriere
+     * (l'escalier occupe toute la bande si elle est trop courte pour un palier).
+     */
+    private CoredLayout withCirculationCore(RoomLayout rooms, BuildableZone footprint) {
+        var source = rooms.program();
+        double x = footprint.x();
+        double y = footprint.y();
+        double depth = footprint.height();
+        double landingDepth = depth - STAIR_DEPTH - WALL_THICKNESS;
+        boolean landing = landingDepth >= MIN_LANDING_DEPTH;
+        double stairDepth = landing ? STAIR_DEPTH : depth;
+
+        var program = new RoomProgram(source.size() + 2);
+        int stair = program.add("Escalier", 0, "escalier", STAIR_WIDTH * stairDepth);
+        int landingRoom = landing ? program.add("Palier", 0, "couloir", STAIR_WIDTH * landingDepth) : -1;
+        int offset = program.size();
+        for (int i = 0; i < source.size(); i++) {
+            program.add(source.name(i), 0, source.type(i), source.minArea(i));
+        }
+
+        var layout = new RoomLayout(program, rooms.size() + 2);
+        layout.add(stair, x, y, STAIR_WIDTH, stairDepth);
+        if (landing) {
+            layout.add(landingRoom, x, y + STAIR_DEPTH + WALL_THICKNESS, STAIR_WIDTH, landingDepth);
+        }
+        for (int i = 0; i < rooms.size(); i++) {
+            layout.add(offset + rooms.programIndex(i), rooms.x(i), rooms.y(i), rooms.width(i), rooms.height(i));
+        }
+        return new CoredLayout(layout, offset);
+    }
+
+    private int floorCount(PlanGenerateRequest request) {
+        Integer floors = request.getRequirements().getFloors();
+        return floors != null ? Math.max(1, floors) : 1;
+    }
+
+    // ==================== VARIANTES ====================
+
+    /**
+     * Genere jusqu'a {@code count} plans distincts pour une meme requete.
+     * Le candidat de reference et des candidats tires au hasard (graine de la requete) sont places
+     * en parallele; les quasi-doublons sont elimines par empreinte geometrique et les variantes
+     * sont classees par score de placement. Moins de {@code count} variantes sont retournees
+     * si le programme n'admet pas assez de placements distincts.
+     * {@code count} est ramene dans [1, {@value #MAX_VARIANTS}].
+     */
+    public List<PlanVariantDto> generateVariants(PlanGenerateRequest request, int count) {
+        count = Math.clamp(count, 1, MAX_VARIANTS);
+        var context = prepare(request);
+        long seed = request.getSeed() != null ? request.getSeed() : ThreadLocalRandom.current().nextLong();
+        var random = new SplittableRandom(seed);
+
+        List<LayoutCandidate> candidates = new ArrayList<>();
+        candidates.add(LayoutCandidate.defaultFor(LayoutStrategy.forName(request.getStrategy())));
+        for (int i = 1; i < count * VARIANT_OVERSAMPLING; i++) {
+            candidates.add(LayoutCandidate.random(random));
+        }
+
+        // Placement des candidats en parallele, puis tri stable par score decroissant
+        List<LayoutResult> results = new ArrayList<>(searchPool.submit(() -> candidates.parallelStream()
+                .map(candidate -> placeRooms(context.program(), candidate, context.zone(), context.targetArea()))
+                .toList()).join());
+        results.sort(Comparator.comparingDouble(LayoutResult::score).reversed());
+
+        List<LayoutResult> selected = new ArrayList<>(count);
+        Set<Long> fingerprints = new HashSet<>();
+        for (var result : results) {
+            if (selected.size() == count) {
+                break;
+            }
+            if (fingerprints.add(result.layout().fingerprint(VARIANT_FINGERPRINT_CELL))) {
+                selected.add(result);
+            }
+        }
+
+        // Portes, fenetres et metriques des variantes retenues, en parallele
+        List<PlanResponse> plans = searchPool.submit(() -> selected.parallelStream()
+                .map(result -> buildPlan(context, result.layout()))
+                .toList()).join();
+
+        List<PlanVariantDto> variants = new ArrayList<>(selected.size());
+        for (int i = 0; i < selected.size(); i++) {
+            var result = selected.get(i);
+            variants.add(PlanVariantDto.builder()
+                    .rank(i + 1)
+                    .score(Math.round(result.score() * 10) / 10.0)
+                    .droppedRooms(result.droppedRooms().length)
+                    .candidate(result.candidate().toString())
+                    .plan(plans.get(i))
+                    .build());
+        }
+
+        log.info("Variantes: {}/{} retenues parmi {} candidats (graine {})",
+                variants.size(), count, candidates.size(), seed);
+        return variants;
+    }
+
+    // ==================== PREPARATION ET ASSEMBLAGE ====================
+
+    private GenerationContext prepare(PlanGenerateRequest request) {
         var terrain = request.getTerrain();
         var requirements = request.getRequirements();
         var regulations = request.getRegulations() != null ? request.getRegulations() : new RegulationsDto();
 
-        // Calculer la zone constructible (terrain - retraits)
-        double buildableX = regulations.getRetraitLateral();
-        double buildableY = regulations.getRetraitFrontal();
-        double buildableWidth = terrain.getWidth() - 2 * regulations.getRetraitLateral();
-        double buildableHeight = terrain.getHeight() - regulations.getRetraitFrontal() - regulations.getRetraitArriere();
-
         // Verifier COS: surface batie max
         double maxBuildArea = terrain.getWidth() * terrain.getHeight() * regulations.getCos();
         double targetArea = requirements.getTotalArea() != null ? requirements.getTotalArea() : maxBuildArea * 0.8;
         double actualBuildArea = Math.min(targetArea, maxBuildArea);
 
         // Expander les pieces (gerer count > 1)
-        List<RoomRequirementDto> expandedRooms = expandRoomRequirements(requirements.getRooms());
+        RoomProgram program = expandRoomRequirements(requirements.getRooms());
+
+        // Zone constructible (terrain - retraits)
+        var zone = BuildableZone.of(terrain, regulations);
+        return new GenerationContext(terrain, regulations, program, zone, actualBuildArea);
+    }
+
+    /** Graphe d'adjacence d'un niveau et ses ouvertures. */
+    private record FloorOpenings(AdjacencyGraph graph, Openings doors, Openings windows) {}
 
-        // Placer les pieces avec algorithme row-packing
-        List<RoomDto> placedRooms = placeRooms(expandedRooms, buildableX, buildableY, buildableWidth, buildableHeight, actualBuildArea);
+    /**
+     * Portes et fenetres d'un niveau. Au RDC, l'arbre des portes part de la porte principale;
+     * aux etages, il part de l'escalier (piece 0) et il n'y a pas de porte principale.
+     */
+    private FloorOpenings floorOpenings(RoomLayout layout, boolean ground) {
+        // Graphe d'adjacence (murs partages), construit une fois et partage par portes, fenetres et metriques
+        var graph = AdjacencyGraph.of(layout);
+        int entrance = ground ? chooseEntrance(layout, graph) : 0;
+
+        Openings doors = generateDoors(layout, graph, entrance, ground);
+        Openings windows = generateWindows(layout, graph, ground ? entrance : -1);
+        return new FloorOpenings(graph, doors, windows);
+    }
 
+    /** Portes, fenetres et metriques d'un placement, puis conversion en DTO. */
+    private PlanResponse buildPlan(GenerationContext context, RoomLayout layout) {
+        return assemblePlan(context.terrain(), context.regulations(), layout);
+    }
+
+    /**
+     * Plan d'un niveau a partir d'un placement deja fait (genere ici, ou plan IA repare par {@link PlanRepairService}):
+     * portes, fenetres et metriques.
+     */
+    PlanResponse assemblePlan(TerrainDto terrain, RegulationsDto regulations, RoomLayout layout) {
         // Generer les portes et fenetres
-        List<DoorDto> doors = generateDoors(placedRooms, buildableX, buildableY);
-        List<WindowDto> windows = generateWindows(placedRooms, buildableX, buildableY, buildableWidth, buildableHeight);
+        var openings = floorOpenings(layout, true);
 
         // Calculer les metriques
-        PlanMetricsDto metrics = calculateMetrics(placedRooms, terrain, regulations);
+        double totalArea = layout.totalArea();
+        PlanMetricsDto metrics = calculateMetrics(totalArea, totalArea, openings.graph().totalExteriorLength(), 1,
+                terrain, regulations);
 
+        // Conversion en DTO uniquement a la sortie
         return PlanResponse.builder()
                 .terrain(terrain)
-                .rooms(placedRooms)
-                .doors(doors)
-                .windows(windows)
+                .rooms(layout.toRoomDtos())
+                .doors(openings.doors().toDoorDtos())
+                .windows(openings.windows().toWindowDtos())
                 .wallThickness(WALL_THICKNESS)
                 .metrics(metrics)
                 .build();
     }
 
-    private List<RoomRequirementDto> expandRoomRequirements(List<RoomRequirementDto> rooms) {
-        List<RoomRequirementDto> expanded = new ArrayList<>();
+    /**
+     * Representation canonique d'une requete (cle du cache): valeurs par defaut appliquees (reglementations,
+     * noms et surfaces des pieces, nombre, mode, strategie, budget), champs dans un ordre fixe.
+     * Budget et graine n'en font partie que pour les modes qui les utilisent.
+     */
+    String canonicalRequest(PlanGenerateRequest request) {
+        var terrain = request.getTerrain();
+        var requirements = request.getRequirements();
+        var regulations = request.getRegulations() != null ? request.getRegulations() : new RegulationsDto();
+        String mode = request.getMode() != null ? request.getMode() : "standard";
+
+        var sb = new StringBuilder(256);
+        sb.append("terrain=").append(terrain.getWidth()).append('x').append(terrain.getHeight());
+        sb.append("|reglements=").append(regulations.getCos())
+                .append(',').append(regulations.getCuf())
+                .append(',').append(regulations.getRetraitFrontal())
+                .append(',').append(regulations.getRetraitLateral())
+                .append(',').append(regulations.getRetraitArriere())
+                .append(',').append(regulations.getHauteurMax());
+        sb.append("|programme=").append(requirements.getTotalArea())
+                .append(',').append(requirements.getFloors() != null ? requirements.getFloors() : 1)
+                .append(',');
+        appendText(sb, requirements.getStyle());
+        for (var room : requirements.getRooms()) {
+            sb.append("|piece=");
+            appendText(sb, room.getType());
+            sb.append(',');
+            appendText(sb, room.getName() != null ? room.getName() : capitalize(room.getType()));
+            sb.append(',').append(room.getMinArea() != null ? room.getMinArea() : RoomTypes.defaultMinArea(RoomTypes.code(room.getType())))
+                    .append(',').append(room.getCount() != null ? room.getCount() : 1)
+                    .append(',').append(room.getFloor());
+        }
+        sb.append("|mode=").append(mode)
+                .append("|strategie=").append(request.getStrategy() != null ? request.getStrategy() : "rangees");
+        if (!"standard".equals(mode)) {
+            sb.append("|budget=").append(resolveTimeBudget(request));
+        }
+        if ("recuit".equals(mode)) {
+            sb.append("|graine=").append(request.getSeed() != null ? request.getSeed() : ANNEALING_SEED);
+        }
+        return sb.toString();
+    }
+
+    /** Texte libre prefixe par sa longueur: un separateur dans un nom ne peut pas creer de collision. */
+    private static void appendText(StringBuilder sb, String text) {
+        if (text == null) {
+            sb.append('-');
+        } else {
+            sb.append(text.length()).append(':').append(text);
+        }
+    }
+
+    private RoomProgram expandRoomRequirements(List<RoomRequirementDto> rooms) {
+        int total = 0;
+        for (var room : rooms) {
+            total += room.getCount() != null ? room.getCount() : 1;
+        }
+
+        var program = new RoomProgram(total);
         for (var room : rooms) {
             int count = room.getCount() != null ? room.getCount() : 1;
+            String name = room.getName() != null ? room.getName() : capitalize(room.getType());
+            double minArea = room.getMinArea() != null ? room.getMinArea() : RoomTypes.defaultMinArea(RoomTypes.code(room.getType()));
             for (int i = 0; i < count; i++) {
-                String name = room.getName() != null ? room.getName() : capitalize(room.getType());
-                if (count > 1) {
-                    name = name + " " + (i + 1);
+                program.add(name, count > 1 ? i + 1 : 0, room.getType(), minArea);
+            }
+        }
+        return program;
+    }
+
+    private long resolveTimeBudget(PlanGenerateRequest request) {
+        return request.getTimeBudgetMs() != null ? request.getTimeBudgetMs() : generationProperties.getSearchTimeBudgetMs();
+    }
+
+    /**
+     * Recherche multi-candidats: chaque candidat est place en parallele sur le pool
+     * ForkJoin, les candidats non termines a l'echeance sont abandonnes.
+     * Le candidat de reference est toujours evalue, la recherche ne peut donc pas degrader le resultat.
+     */
+    private LayoutResult searchLayout(RoomProgram program, LayoutStrategy strategy, BuildableZone zone,
+                                      double targetArea, long timeBudgetMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMs);
+        LayoutResult best = placeRooms(program, LayoutCandidate.defaultFor(strategy), zone, targetArea);
+
+        List<ForkJoinTask<LayoutResult>> tasks = new ArrayList<>();
+        for (var candidate : LayoutCandidate.searchSpace(strategy)) {
+            tasks.add(searchPool.submit(() -> placeRooms(program, candidate, zone, targetArea)));
+        }
+
+        int evaluated = 1;
+        for (var task : tasks) {
+            long remaining = deadline - System.nanoTime();
+            try {
+                LayoutResult result = task.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+                evaluated++;
+                if (result.score() > best.score()) {
+                    best = result;
                 }
-                expanded.add(RoomRequirementDto.builder()
-                        .type(room.getType())
-                        .name(name)
-                        .minArea(room.getMinArea() != null ? room.getMinArea() : DEFAULT_MIN_AREAS.getOrDefault(room.getType(), 12.0))
-                        .count(1)
-                        .build());
+            } catch (TimeoutException e) {
+                task.cancel(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                tasks.forEach(t -> t.cancel(false));
+                break;
+            } catch (ExecutionException e) {
+                log.debug("Candidat de placement en echec: {}", e.getCause().getMessage());
             }
         }
-        return expanded;
+
+        log.debug("Recherche de placement: {}/{} candidats evalues, retenu {} (score {})",
+                evaluated, tasks.size() + 1, best.candidate(), Math.round(best.score() * 10) / 10.0);
+        return best;
     }
 
     /**
-     * Algorithme de placement row-packing.
-     * Place les pieces de gauche a droite, puis passe a la rangee suivante.
+     * Place les pieces selon un candidat: ordre, dimensions (ratio du candidat, arrondi 10cm),
+     * puis placement par la strategie. En orientation colonnes, le placement est fait
+     * dans la zone transposee; la re-transposition se fait en echangeant les tableaux.
      */
-    private List<RoomDto> placeRooms(
-            List<RoomRequirementDto> rooms,
-            double startX, double startY,
-            double maxWidth, double maxHeight,
+    private LayoutResult placeRooms(
+            RoomProgram program,
+            LayoutCandidate candidate,
+            BuildableZone zone,
             double targetArea
     ) {
-        List<RoomDto> placed = new ArrayList<>();
+        int[] order = candidate.order().permutation(program);
+        int n = order.length;
+        double[] widths = new double[n];
+        double[] heights = new double[n];
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+
+        for (int i = 0; i < n; i++) {
+            double area = program.minArea(order[i]);
+
+            // Calculer dimensions rectangulaires selon le ratio du candidat
+            double ratio = candidate.ratioFor(area);
+            double roomHeight = Math.sqrt(area / ratio);
+            double roomWidth = area / roomHeight;
 
-        // Trier par surface decroissante (les grandes pieces d'abord)
-        List<RoomRequirementDto> sorted = new ArrayList<>(rooms);
-        sorted.sort((a, b) -> Double.compare(
-                b.getMinArea() != null ? b.getMinArea() : 12.0,
-                a.getMinArea() != null ? a.getMinArea() : 12.0
-        ));
+            // Arrondir a 10cm pres
+            widths[i] = Math.round(roomWidth * 10) / 10.0;
+            heights[i] = Math.round(roomHeight * 10) / 10.0;
+        }
 
-        double currentX = startX;
-        double currentY = startY;
-        double rowHeight = 0;
-        double totalPlacedArea = 0;
+        BuildableZone packZone = candidate.columns() ? zone.transpose() : zone;
+        candidate.strategy().pack(widths, heights, n, packZone, WALL_THICKNESS, xs, ys);
 
-        for (var room : sorted) {
-            double area = room.getMinArea() != null ? room.getMinArea() : DEFAULT_MIN_AREAS.getOrDefault(room.getType(), 12.0);
+        double[] px = candidate.columns() ? ys : xs;
+        double[] py = candidate.columns() ? xs : ys;
+        double[] pw = candidate.columns() ? heights : widths;
+        double[] ph = candidate.columns() ? widths : heights;
 
-            // Calculer dimensions rectangulaires (ratio ~1.3 pour les grandes pieces, ~1.5 pour les petites)
-            double ratio = area > 15 ? 1.3 : 1.5;
-            double roomHeight = Math.sqrt(area / ratio);
-            double roomWidth = area / roomHeight;
+        var layout = new RoomLayout(program, n);
+        int[] dropped = new int[n];
+        int droppedCount = 0;
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
 
-            // Arrondir a 10cm pres
-            roomWidth = Math.round(roomWidth * 10) / 10.0;
-            roomHeight = Math.round(roomHeight * 10) / 10.0;
-
-            // Verifier si la piece tient dans la rangee courante
-            if (currentX + roomWidth > startX + maxWidth) {
-                // Passer a la rangee suivante
-                currentX = startX;
-                currentY += rowHeight + WALL_THICKNESS;
-                rowHeight = 0;
+        for (int i = 0; i < n; i++) {
+            if (Double.isNaN(px[i])) {
+                dropped[droppedCount++] = order[i];
+                continue;
             }
+            layout.add(order[i], px[i], py[i], pw[i], ph[i]);
+            minX = Math.min(minX, px[i]);
+            minY = Math.min(minY, py[i]);
+            maxX = Math.max(maxX, px[i] + pw[i]);
+            maxY = Math.max(maxY, py[i] + ph[i]);
+        }
 
-            // Verifier si on depasse la hauteur max
-            if (currentY + roomHeight > startY + maxHeight) {
-                log.warn("Plus de place pour la piece: {} ({}m2)", room.getName(), area);
-                break;
-            }
+        // Surface perdue: emprise des pieces placees non occupee par une piece
+        double totalPlacedArea = layout.totalArea();
+        double wastedArea = layout.size() == 0 ? 0 : Math.max(0, (maxX - minX) * (maxY - minY) - totalPlacedArea);
+        double score = Math.min(totalPlacedArea, targetArea)
+                - DROPPED_ROOM_PENALTY * droppedCount
+                - WASTED_AREA_WEIGHT * wastedArea;
 
-            placed.add(RoomDto.builder()
-                    .name(room.getName())
-                    .type(room.getType())
-                    .x(currentX)
-                    .y(currentY)
-                    .width(roomWidth)
-                    .height(roomHeight)
-                    .build());
+        return new LayoutResult(candidate, layout, Arrays.copyOf(dropped, droppedCount), totalPlacedArea, wastedArea, score);
+    }
 
-            totalPlacedArea += roomWidth * roomHeight;
-            rowHeight = Math.max(rowHeight, roomHeight);
-            currentX += roomWidth + WALL_THICKNESS;
+    /**
+     * Piece recevant la porte principale: une piece de la facade sur rue (y min du batiment)
+     * dont le mur frontal est exterieur, en privilegiant l'entree, puis le salon.
+     */
+    private int chooseEntrance(RoomLayout layout, AdjacencyGraph graph) {
+        int best = 0;
+        int bestRank = Integer.MAX_VALUE;
+        double frontY = Double.MAX_VALUE;
+        for (int i = 0; i < layout.size(); i++) {
+            frontY = Math.min(frontY, layout.y(i));
         }
-
-        log.info("Placement termine: {} pieces, surface totale = {}m2", placed.size(), Math.round(totalPlacedArea * 10) / 10.0);
-        return placed;
+        double[] interval = new double[2];
+        for (int i = 0; i < layout.size(); i++) {
+            if (layout.y(i) > frontY + AdjacencyGraph.DEFAULT_TOLERANCE
+                    || graph.longestExteriorInterval(i, AdjacencyGraph.SIDE_BOTTOM, interval) < DOOR_WIDTH_MAIN + 2 * OPENING_MARGIN) {
+                continue;
+            }
+            int rank = switch (layout.typeCode(i)) {
+                case RoomTypes.ENTREE -> 0;
+                case RoomTypes.SALON -> 1;
+                default -> 2;
+            };
+            if (rank < bestRank || (rank == bestRank && layout.y(i) < layout.y(best))) {
+                best = i;
+                bestRank = rank;
+            }
+        }
+        return best;
     }
 
-    private List<DoorDto> generateDoors(List<RoomDto> rooms, double buildableX, double buildableY) {
-        List<DoorDto> doors = new ArrayList<>();
+    /**
+     * Porte principale sur le mur frontal de l'entree, puis portes interieures selon un arbre
+     * couvrant du graphe d'adjacence (Prim): les murs partages les plus longs sont preferes
+     * et les pieces humides ne servent de passage qu'en dernier recours.
+     * Les pieces de rangees differentes sont donc aussi reliees.
+     *
+     * @param mainDoor false aux etages: l'arbre part de {@code entrance} sans porte principale
+     */
+    private Openings generateDoors(RoomLayout layout, AdjacencyGraph graph, int entrance, boolean mainDoor) {
+        var doors = new Openings(layout.size());
+        if (layout.size() == 0) {
+            return doors;
+        }
 
-        for (int i = 0; i < rooms.size(); i++) {
-            var room = rooms.get(i);
-
-            // Porte d'entree pour la premiere piece (porte principale)
-            if (i == 0) {
-                doors.add(DoorDto.builder()
-                        .x(room.getX() + room.getWidth() / 2 - DOOR_WIDTH_MAIN / 2)
-                        .y(room.getY())
-                        .width(DOOR_WIDTH_MAIN)
-                        .orientation("horizontal")
-                        .build());
-            }
+        if (mainDoor) {
+            addMainDoor(layout, graph, entrance, doors);
+        }
 
-            // Porte interieure sur le mur droit (vers piece suivante si adjacente)
-            if (i < rooms.size() - 1) {
-                var nextRoom = rooms.get(i + 1);
-                // Si les pieces sont adjacentes horizontalement
-                if (Math.abs(room.getY() - nextRoom.getY()) < 0.5) {
-                    double doorY = Math.max(room.getY(), nextRoom.getY()) + 0.5;
-                    doors.add(DoorDto.builder()
-                            .x(room.getX() + room.getWidth())
-                            .y(doorY)
-                            .width(DOOR_WIDTH_INTERIOR)
-                            .orientation("vertical")
-                            .build());
-                }
+        // Portes interieures: arbre couvrant depuis l'entree
+        boolean[] connected = new boolean[layout.size()];
+        var queue = new PriorityQueue<DoorCandidate>();
+        connected[entrance] = true;
+        pushDoorCandidates(queue, layout, graph, entrance, connected);
+
+        while (!queue.isEmpty()) {
+            var candidate = queue.poll();
+            int next = graph.other(candidate.edge(), candidate.from());
+            if (connected[next]) {
+                continue;
             }
+            connected[next] = true;
+            addInteriorDoor(graph, candidate.edge(), doors);
+            pushDoorCandidates(queue, layout, graph, next, connected);
         }
 
         return doors;
     }
 
-    private List<WindowDto> generateWindows(
-            List<RoomDto> rooms,
-            double buildableX, double buildableY,
-            double buildableWidth, double buildableHeight
-    ) {
-        List<WindowDto> windows = new ArrayList<>();
-
-        for (var room : rooms) {
-            // Pas de fenetres pour SDB, WC, couloir
-            if ("sdb".equals(room.getType()) || "wc".equals(room.getType()) || "couloir".equals(room.getType())) {
+    private void pushDoorCandidates(PriorityQueue<DoorCandidate> queue, RoomLayout layout,
+                                    AdjacencyGraph graph, int room, boolean[] connected) {
+        for (int k = 0; k < graph.degree(room); k++) {
+            int e = graph.edgeOf(room, k);
+            if (connected[graph.other(e, room)] || !acceptsDoor(graph, e)) {
                 continue;
             }
+            queue.add(new DoorCandidate(e, room, doorCost(layout, graph, e, room)));
+        }
+    }
 
-            // Fenetre sur le mur du haut (si c'est un mur exterieur)
-            if (room.getY() + room.getHeight() >= buildableY + buildableHeight - 0.5) {
-                windows.add(WindowDto.builder()
-                        .x(room.getX() + room.getWidth() / 2 - WINDOW_WIDTH / 2)
-                        .y(room.getY() + room.getHeight())
-                        .width(WINDOW_WIDTH)
-                        .orientation("horizontal")
-                        .build());
-            }
+    /** Porte d'entree (porte principale) centree sur le plus long troncon exterieur du mur frontal. */
+    static void addMainDoor(RoomLayout layout, AdjacencyGraph graph, int entrance, Openings doors) {
+        double[] interval = new double[2];
+        double doorX = graph.longestExteriorInterval(entrance, AdjacencyGraph.SIDE_BOTTOM, interval) >= DOOR_WIDTH_MAIN
+                ? (interval[0] + interval[1]) / 2 - DOOR_WIDTH_MAIN / 2
+                : layout.x(entrance) + layout.width(entrance) / 2 - DOOR_WIDTH_MAIN / 2;
+        doors.add(doorX, layout.y(entrance), DOOR_WIDTH_MAIN, false);
+    }
 
-            // Fenetre sur le mur gauche (si mur exterieur)
-            if (Math.abs(room.getX() - buildableX) < 0.5) {
-                windows.add(WindowDto.builder()
-                        .x(room.getX())
-                        .y(room.getY() + room.getHeight() / 2 - WINDOW_WIDTH / 2)
-                        .width(WINDOW_WIDTH)
-                        .orientation("vertical")
-                        .build());
-            }
+    /** Porte interieure centree sur un mur partage. */
+    static void addInteriorDoor(AdjacencyGraph graph, int e, Openings doors) {
+        double position = (graph.start(e) + graph.end(e)) / 2 - DOOR_WIDTH_INTERIOR / 2;
+        if (graph.isVertical(e)) {
+            doors.add(graph.coord(e), position, DOOR_WIDTH_INTERIOR, true);
+        } else {
+            doors.add(position, graph.coord(e), DOOR_WIDTH_INTERIOR, false);
+        }
+    }
 
-            // Fenetre sur le mur droit (si mur exterieur)
-            if (Math.abs(room.getX() + room.getWidth() - (buildableX + buildableWidth)) < 0.5) {
-                windows.add(WindowDto.builder()
-                        .x(room.getX() + room.getWidth())
-                        .y(room.getY() + room.getHeight() / 2 - WINDOW_WIDTH / 2)
-                        .width(WINDOW_WIDTH)
-                        .orientation("vertical")
-                        .build());
-            }
+    /** Mur partage assez long pour une porte interieure et ses marges. */
+    static boolean acceptsDoor(AdjacencyGraph graph, int e) {
+        return graph.overlap(e) >= DOOR_WIDTH_INTERIOR + 2 * OPENING_MARGIN;
+    }
+
+    /** Cout d'une porte sur le mur {@code e} depuis {@code from}: murs longs preferes, passage par une piece humide en dernier recours. */
+    static double doorCost(RoomLayout layout, AdjacencyGraph graph, int e, int from) {
+        return (RoomTypes.isWet(layout.typeCode(from)) ? 1000.0 : 0.0) - graph.overlap(e);
+    }
+
+    /**
+     * Une fenetre centree sur le plus long troncon exterieur de chaque mur de la piece
+     * (sauf SDB, WC, couloir, et sauf le mur de la porte principale; {@code entrance} = -1 sans porte principale).
+     */
+    private Openings generateWindows(RoomLayout layout, AdjacencyGraph graph, int entrance) {
+        var windows = new Openings(2 * layout.size());
+        double[] interval = new double[2];
+
+        for (int i = 0; i < layout.size(); i++) {
+            addWindows(layout, graph, i, i == entrance, interval, windows);
         }
 
         return windows;
     }
 
-    private PlanMetricsDto calculateMetrics(List<RoomDto> rooms, TerrainDto terrain, RegulationsDto regulations) {
-        double totalArea = rooms.stream()
-                .mapToDouble(r -> r.getWidth() * r.getHeight())
-                .sum();
+    /** Fenetres d'une piece; {@code interval} est un tampon de 2 cases. */
+    static void addWindows(RoomLayout layout, AdjacencyGraph graph, int i, boolean entrance, double[] interval,
+                           Openings windows) {
+        if (!RoomTypes.hasWindows(layout.typeCode(i))) {
+            return;
+        }
+
+        for (int side = AdjacencyGraph.SIDE_BOTTOM; side <= AdjacencyGraph.SIDE_LEFT; side++) {
+            if (side == AdjacencyGraph.SIDE_BOTTOM && entrance) {
+                continue;
+            }
+            if (graph.longestExteriorInterval(i, side, interval) < WINDOW_WIDTH + 2 * OPENING_MARGIN) {
+                continue;
+            }
+            double position = (interval[0] + interval[1]) / 2 - WINDOW_WIDTH / 2;
+            switch (side) {
+                case AdjacencyGraph.SIDE_BOTTOM -> windows.add(position, layout.y(i), WINDOW_WIDTH, false);
+                case AdjacencyGraph.SIDE_TOP -> windows.add(position, layout.y(i) + layout.height(i), WINDOW_WIDTH, false);
+                case AdjacencyGraph.SIDE_LEFT -> windows.add(layout.x(i), position, WINDOW_WIDTH, true);
+                default -> windows.add(layout.x(i) + layout.width(i), position, WINDOW_WIDTH, true);
+            }
+        }
+    }
 
+    /**
+     * @param groundArea surface batie au sol (RDC), pour le COS
+     * @param floorArea  surface de plancher de tous les niveaux, pour le CUF
+     */
+    static PlanMetricsDto calculateMetrics(double groundArea, double floorArea, double exteriorWallLength, int floors,
+                                           TerrainDto terrain, RegulationsDto regulations) {
         double terrainArea = terrain.getWidth() * terrain.getHeight();
-        double cos = totalArea / terrainArea;
-        double cuf = totalArea / terrainArea; // Pour RDC seul, CUF = COS
+        double cos = groundArea / terrainArea;
+        double cuf = floorArea / terrainArea;
+        double height = floors * FLOOR_HEIGHT;
 
-        boolean compliant = cos <= regulations.getCos() && cuf <= regulations.getCuf();
+        boolean compliant = cos <= regulations.getCos() && cuf <= regulations.getCuf() && height <= regulations.getHauteurMax();
         String message = null;
         if (!compliant) {
             var messages = new ArrayList<String>();
@@ -262,18 +835,33 @@ public class PlanGenerationService {
             if (cuf > regulations.getCuf()) {
                 messages.add(String.format("CUF %.2f depasse le max autorise %.2f", cuf, regulations.getCuf()));
             }
+            if (height > regulations.getHauteurMax()) {
+                messages.add(String.format("Hauteur %.1fm (%d niveaux) depasse le max autorise %.1fm",
+                        height, floors, regulations.getHauteurMax()));
+            }
             message = String.join(". ", messages);
         }
 
         return PlanMetricsDto.builder()
-                .totalArea(Math.round(totalArea * 100) / 100.0)
+                .totalArea(Math.round(floorArea * 100) / 100.0)
                 .cos(Math.round(cos * 100) / 100.0)
                 .cuf(Math.round(cuf * 100) / 100.0)
+                .floorCount(floors)
+                .buildingHeight(height)
+                .exteriorWallLength(Math.round(exteriorWallLength * 100) / 100.0)
                 .regulationsCompliant(compliant)
                 .complianceMessage(message)
                 .build();
     }
 
+    /** Porte candidate entre une piece deja reliee ({@code from}) et un voisin, cout croissant. */
+    private record DoorCandidate(int edge, int from, double cost) implements Comparable<DoorCandidate> {
+        @Override
+        public int compareTo(DoorCandidate other) {
+            return Double.compare(cost, other.cost);
+        }
+    }
+
     private String capitalize(String s) {
         if (s == null || s.isEmpty()) return s;
         return s.substring(0, 1).toUpperCase() + s.substring(1);
@@ -0,0 +1,166 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import tn.archigen.archigen.dto.DoorDto;
+import tn.archigen.archigen.dto.PlanResponse;
+import tn.archigen.archigen.dto.RoomDto;
+import tn.archigen.archigen.dto.WindowDto;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parseur incremental d'un plan JSON recu par morceaux (texte genere par le modele, token par token).
+ * Le texte avant la premiere accolade (prose, debut de bloc ```json) et apres la fin de l'objet racine
+ * est ignore. Chaque element des tableaux {@code rooms}, {@code doors} et {@code windows} est transmis
+ * au {@link Listener} des que son objet JSON est ferme; le plan complet est rendu par {@link #finish()}.
+ *
+ * Base sur le parseur non bloquant de Jackson: chaque caractere n'est lu qu'une fois, les tokens sont
+ * copies dans un {@link TokenBuffer} (plan complet) et, pour l'element en cours, dans un second tampon.
+ * Non thread-safe: un parseur par reponse.
+ */
+public class PlanJsonStreamParser {
+
+    /** Recoit les elements du plan au fur et a mesure. */
+    public interface Listener {
+        void onRoom(RoomDto room);
+
+        void onDoor(DoorDto door);
+
+        void onWindow(WindowDto window);
+    }
+
+    private final ObjectReader planReader;
+    private final ObjectReader roomReader;
+    private final ObjectReader doorReader;
+    private final ObjectReader windowReader;
+    private final ObjectMapper objectMapper;
+    private final Listener listener;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final TokenBuffer plan;
+
+    private boolean started;
+    private boolean done;
+    private int depth;
+    private String rootField;
+    /** Lecteur du tableau racine en cours (rooms, doors, windows), null sinon. */
+    private ObjectReader elementReader;
+    private TokenBuffer element;
+
+    public PlanJsonStreamParser(ObjectMapper objectMapper, Listener listener) throws IOException {
+        this.objectMapper = objectMapper;
+        this.listener = listener;
+        this.planReader = objectMapper.readerFor(PlanResponse.class);
+        this.roomReader = objectMapper.readerFor(RoomDto.class);
+        this.doorReader = objectMapper.readerFor(DoorDto.class);
+        this.windowReader = objectMapper.readerFor(WindowDto.class);
+        this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.plan = new TokenBuffer(objectMapper, false);
+    }
+
+    /** Ajoute un morceau de texte et emet les elements qu'il complete. */
+    public void feed(String text) throws IOException {
+        if (done || text.isEmpty()) {
+            return;
+        }
+        if (!started) {
+            int start = text.indexOf('{');
+            if (start < 0) {
+                return;
+            }
+            started = true;
+            text = text.substring(start);
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        feeder.feedInput(bytes, 0, bytes.length);
+        drain();
+    }
+
+    /** True une fois l'objet racine ferme. */
+    public boolean isComplete() {
+        return done;
+    }
+
+    /**
+     * Plan complet (objet racine entier).
+     *
+     * @throws IOException si le texte recu ne contient pas d'objet JSON complet
+     */
+    public PlanResponse finish() throws IOException {
+        if (!done) {
+            throw new IOException(started ? "Plan JSON incomplet" : "Pas de JSON trouve dans la reponse");
+        }
+        return planReader.readValue(plan.asParser(objectMapper));
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while (!done && (token = parser.nextToken()) != JsonToken.NOT_AVAILABLE) {
+            if (token == null) {
+                return;
+            }
+            plan.copyCurrentEvent(parser);
+            if (element != null) {
+                element.copyCurrentEvent(parser);
+            }
+            switch (token) {
+                case START_OBJECT, START_ARRAY -> {
+                    depth++;
+                    if (token == JsonToken.START_ARRAY && depth == 2) {
+                        elementReader = arrayReader(rootField);
+                    } else if (token == JsonToken.START_OBJECT && depth == 3 && elementReader != null) {
+                        element = new TokenBuffer(objectMapper, false);
+                        element.copyCurrentEvent(parser);
+                    }
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    depth--;
+                    if (depth == 0) {
+                        done = true;
+                    } else if (depth == 1) {
+                        elementReader = null;
+                    } else if (depth == 2 && element != null) {
+                        emit(elementReader.readValue(element.asParser(objectMapper)));
+                        element = null;
+                    }
+                }
+                case FIELD_NAME -> {
+                    if (depth == 1) {
+                        rootField = parser.currentName();
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private ObjectReader arrayReader(String field) {
+        if (field == null) {
+            return null;
+        }
+        return switch (field) {
+            case "rooms" -> roomReader;
+            case "doors" -> doorReader;
+            case "windows" -> windowReader;
+            default -> null;
+        };
+    }
+
+    private void emit(Object value) {
+        if (value instanceof RoomDto room) {
+            listener.onRoom(room);
+        } else if (value instanceof DoorDto door) {
+            listener.onDoor(door);
+        } else if (value instanceof WindowDto window) {
+            listener.onWindow(window);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package tn.archigen.archigen.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import tn.archigen.archigen.dto.PlanMetricsDto;
+import tn.archigen.archigen.dto.PlanResponse;
+import tn.archigen.archigen.dto.RegulationsDto;
+import tn.archigen.archigen.dto.RoomDto;
+import tn.archigen.archigen.dto.TerrainDto;
+import tn.archigen.archigen.service.layout.AdjacencyGraph;
+import tn.archigen.archigen.service.layout.BuildableZone;
+import tn.archigen.archigen.service.layout.LayoutRepair;
+import tn.archigen.archigen.service.layout.RoomLayout;
+
+import java.util.List;
+
+/**
+ * Validation geometrique d'un plan (d'un niveau) produit hors de l'algorithme, typiquement par l'IA.
+ * Le placement est verifie et au besoin repare par {@link LayoutRepair} (grille de 10 cm, chevauchements,
+ * zone constructible des {@link RegulationsDto}); les portes et fenetres d'un plan repare sont reconstruites
+ * avec les regles de {@link PlanGenerationService}. Les metriques sont toujours recalculees.
+ * Metrique Actuator: plan.repair (tag result: valid ou repaired).
+ */
+@Slf4j
+@Service
+public class PlanRepairService {
+
+    private final PlanGenerationService planGenerationService;
+    private final Counter valid;
+    private final Counter repaired;
+
+    public PlanRepairService(PlanGenerationService planGenerationService, MeterRegistry meterRegistry) {
+        this.planGenerationService = planGenerationService;
+        this.valid = Counter.builder("plan.repair").tag("result", "valid").register(meterRegistry);
+        this.repaired = Counter.builder("plan.repair").tag("result", "repaired").register(meterRegistry);
+    }
+
+    /**
+     * Plan valide pour ce terrain et ces reglementations: le plan d'origine (terrain et metriques mis a jour)
+     * s'il est deja valide et complet, sinon un nouveau plan repare. Le plan d'origine n'est pas modifie.
+     *
+     * @throws IllegalArgumentException si le plan n'a aucune piece utilisable ou si la zone constructible est vide
+     */
+    public PlanResponse repair(PlanResponse plan, TerrainDto terrain, RegulationsDto regulations) {
+        // Pieces sans dimensions: ignorees (et comptees comme supprimees par la reparation)
+        List<RoomDto> rooms = plan.getRooms().stream()
+                .filter(room -> room.getX() != null && room.getY() != null
+                        && room.getWidth() != null && room.getHeight() != null)
+                .toList();
+        var layout = RoomLayout.of(rooms);
+        var result = LayoutRepair.repair(layout, BuildableZone.of(terrain, regulations));
+        int dropped = result.dropped() + plan.getRooms().size() - rooms.size();
+        if (result.layout().size() == 0) {
+            throw new IllegalArgumentException("Aucune piece utilisable dans le plan");
+        }
+
+        if (!result.repaired() && dropped == 0 && plan.getDoors() != null && plan.getWindows() != null) {
+            valid.increment();
+            double area = layout.totalArea();
+            PlanMetricsDto metrics = PlanGenerationService.calculateMetrics(area, area,
+                    AdjacencyGraph.of(layout).totalExteriorLength(), 1, terrain, regulations);
+            return plan.toBuilder()
+                    .terrain(terrain)
+                    .wallThickness(plan.getWallThickness() != null ? plan.getWallThickness() : PlanGenerationService.WALL_THICKNESS)
+                    .metrics(metrics)
+                    .build();
+        }
+
+        repaired.increment();
+        log.info("Plan repare: {} chevauchements, {} pieces hors zone constructible{}, {} pieces supprimees",
+                result.overlaps(), result.outsideZone(), result.offGrid() ? ", accroche a la grille" : "", dropped);
+        return planGenerationService.assemblePlan(terrain, regulations, result.layout());
+    }
+}
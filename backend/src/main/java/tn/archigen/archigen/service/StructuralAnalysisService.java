@@ -3,6 +3,8 @@ package tn.archigen.archigen.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import tn.archigen.archigen.dto.*;
+import tn.archigen.archigen.service.layout.AdjacencyGraph;
+import tn.archigen.archigen.service.layout.RoomLayout;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,25 +37,15 @@ public class StructuralAnalysisService {
     public StructuralAnalysisResponse analyze(PlanResponse plan, String buildingType) {
         if (buildingType == null) buildingType = "habitation";
 
-        double chargeExploitation = switch (buildingType) {
-            case "bureaux" -> Q_BUREAUX;
-            case "commerce" -> Q_COMMERCE;
-            default -> Q_HABITATION;
-        };
-
-        double chargeTotale = G_PLANCHER + chargeExploitation + G_CLOISONS;
-
-        List<StructuralElementResultDto> elements = new ArrayList<>();
-
-        for (var room : plan.getRooms()) {
-            // La portee critique est la plus grande dimension de la piece
-            double portee = Math.max(room.getWidth(), room.getHeight());
-            double largeurTributaire = Math.min(room.getWidth(), room.getHeight()) / 2.0;
-            double chargeLineaire = chargeTotale * largeurTributaire;
+        double chargeTotale = chargeTotale(buildingType);
 
-            var result = analyzeBeam(room.getName(), portee, chargeLineaire);
-            elements.add(result);
+        var layout = RoomLayout.of(plan.getRooms());
+        var graph = AdjacencyGraph.of(layout);
+        int[] rooms = new int[layout.size()];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = i;
         }
+        List<StructuralElementResultDto> elements = analyzeRooms(layout, graph, rooms, buildingType);
 
         boolean globalValid = elements.stream().allMatch(StructuralElementResultDto::getValid);
 
@@ -76,6 +68,68 @@ public class StructuralAnalysisService {
                 .build();
     }
 
+    /**
+     * Poutres des pieces demandees uniquement. Le graphe doit contenir les voisins de ces pieces
+     * (largeur tributaire): un sous-plan autour des pieces suffit, c'est ce qu'utilise l'edition incrementale.
+     */
+    public List<StructuralElementResultDto> analyzeRooms(RoomLayout layout, AdjacencyGraph graph, int[] rooms,
+                                                         String buildingType) {
+        double chargeTotale = chargeTotale(buildingType);
+        List<StructuralElementResultDto> elements = new ArrayList<>(rooms.length);
+        for (int i : rooms) {
+            // La portee critique est la plus grande dimension de la piece
+            double portee = Math.max(layout.width(i), layout.height(i));
+            double largeurTributaire = tributaryWidth(layout, graph, i);
+            double chargeLineaire = chargeTotale * largeurTributaire;
+
+            elements.add(analyzeBeam(layout.name(i), portee, chargeLineaire));
+        }
+        return elements;
+    }
+
+    private double chargeTotale(String buildingType) {
+        double chargeExploitation = switch (buildingType != null ? buildingType : "habitation") {
+            case "bureaux" -> Q_BUREAUX;
+            case "commerce" -> Q_COMMERCE;
+            default -> Q_HABITATION;
+        };
+        return G_PLANCHER + chargeExploitation + G_CLOISONS;
+    }
+
+    /**
+     * Largeur tributaire de la poutre la plus chargee de la piece.
+     * La dalle porte dans le sens de la petite dimension et s'appuie sur les poutres des grands cotes:
+     * chaque poutre recoit la demi-portee de la piece, plus la demi-portee des voisins orientes de meme
+     * qui partagent ce mur (au prorata du recouvrement), d'apres le graphe d'adjacence.
+     */
+    private double tributaryWidth(RoomLayout layout, AdjacencyGraph graph, int i) {
+        boolean longSideHorizontal = layout.width(i) >= layout.height(i);
+        double portee = Math.max(layout.width(i), layout.height(i));
+        double ownHalf = Math.min(layout.width(i), layout.height(i)) / 2.0;
+
+        double[] neighbourLoad = new double[4];
+        for (int k = 0; k < graph.degree(i); k++) {
+            int e = graph.edgeOf(i, k);
+            // Seuls les murs des grands cotes portent la dalle
+            if (graph.isVertical(e) == longSideHorizontal) {
+                continue;
+            }
+            int neighbour = graph.other(e, i);
+            // Le voisin ne charge ce mur que si sa dalle porte aussi perpendiculairement a lui
+            if ((layout.width(neighbour) >= layout.height(neighbour)) == graph.isVertical(e)) {
+                continue;
+            }
+            double neighbourHalf = Math.min(layout.width(neighbour), layout.height(neighbour)) / 2.0;
+            neighbourLoad[graph.sideOf(e, i)] += neighbourHalf * Math.min(1.0, graph.overlap(e) / portee);
+        }
+
+        double maxNeighbour = 0;
+        for (double load : neighbourLoad) {
+            maxNeighbour = Math.max(maxNeighbour, load);
+        }
+        return ownHalf + maxNeighbour;
+    }
+
     /**
      * Pre-dimensionnement d'une poutre BA (methode simplifiee).
      * Hypothese: poutre simplement appuyee, section rectangulaire.
@@ -0,0 +1,58 @@
+package tn.archigen.archigen.service.dxf;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * DXF texte: chaque paire est ecrite sur deux lignes, le code de groupe aligne a droite sur 3 caracteres
+ * ({@code "%3d\n"}, prefixes pre-encodes) puis la valeur. Reels avec {@link #DECIMALS} decimales.
+ */
+public final class AsciiDxfWriter extends DxfWriter {
+
+    /** Decimales des coordonnees, longueurs et angles. */
+    public static final int DECIMALS = 4;
+
+    private static final int MAX_GROUP_CODE = 1071;
+    private static final byte[][] PREFIXES = new byte[MAX_GROUP_CODE + 1][];
+
+    static {
+        for (int code = 0; code <= MAX_GROUP_CODE; code++) {
+            PREFIXES[code] = String.format("%3d\n", code).getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    public AsciiDxfWriter(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public DxfFormat format() {
+        return DxfFormat.ASCII;
+    }
+
+    @Override
+    public DxfWriter group(int code, int value) {
+        return begin(code).append(value).end();
+    }
+
+    @Override
+    public DxfWriter group(int code, double value) {
+        return begin(code).append(value, DECIMALS).end();
+    }
+
+    @Override
+    public DxfWriter begin(int code) {
+        byte[] prefix = code >= 0 && code <= MAX_GROUP_CODE ? PREFIXES[code] : String.format("%3d\n", code).getBytes(StandardCharsets.US_ASCII);
+        ensure(prefix.length);
+        System.arraycopy(prefix, 0, buffer, position, prefix.length);
+        position += prefix.length;
+        return this;
+    }
+
+    @Override
+    public DxfWriter end() {
+        ensure(1);
+        buffer[position++] = '\n';
+        return this;
+    }
+}
@@ -0,0 +1,67 @@
+package tn.archigen.archigen.service.dxf;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Format d'un export DXF. Le binaire est choisi par le parametre {@code format=binary} de la requete, ou par
+ * negociation de contenu ({@code Accept: application/dxf; format=binary}); le parametre l'emporte.
+ */
+public enum DxfFormat {
+    ASCII(new MediaType("application", "dxf")),
+    BINARY(new MediaType("application", "dxf", Map.of("format", "binary")));
+
+    private final MediaType mediaType;
+
+    DxfFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /** Type de contenu de la reponse. */
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    /** Extension des fichiers stockes: {@code bin.dxf} distingue le binaire, qui garde l'extension .dxf. */
+    public String extension() {
+        return this == BINARY ? "bin.dxf" : "dxf";
+    }
+
+    /** Format d'un fichier stocke d'apres son nom ({@link #extension()}), null si ce n'est pas un DXF. */
+    public static DxfFormat ofFileName(String name) {
+        if (name.endsWith("." + BINARY.extension())) {
+            return BINARY;
+        }
+        return name.endsWith("." + ASCII.extension()) ? ASCII : null;
+    }
+
+    /**
+     * @param format parametre de requete ({@code ascii} ou {@code binary}), peut etre null
+     * @param accept en-tete Accept, peut etre null
+     * @throws IllegalArgumentException si le parametre n'est pas un format connu
+     */
+    public static DxfFormat resolve(String format, String accept) {
+        if (format != null && !format.isBlank()) {
+            try {
+                return valueOf(format.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Format DXF inconnu: " + format + " (ascii ou binary)");
+            }
+        }
+        if (accept != null) {
+            try {
+                for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                    if ("dxf".equals(type.getSubtype()) && "binary".equalsIgnoreCase(type.getParameter("format"))) {
+                        return BINARY;
+                    }
+                }
+            } catch (InvalidMediaTypeException e) {
+                // En-tete Accept illisible: format par defaut
+            }
+        }
+        return ASCII;
+    }
+}
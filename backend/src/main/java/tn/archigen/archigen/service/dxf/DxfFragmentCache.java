@@ -0,0 +1,68 @@
+package tn.archigen.archigen.service.dxf;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import tn.archigen.archigen.config.ExportProperties;
+
+/**
+ * Cache des fragments DXF deja encodes (entites d'une piece ou d'une ouverture), indexes par leur geometrie
+ * et le format de sortie. Dans la boucle d'edition, un plan re-exporte apres une petite modification
+ * ne re-encode que les pieces et ouvertures modifiees; les autres fragments sont recopies tels quels.
+ * Taille bornee en octets (W-TinyLFU, Caffeine). Compteurs Actuator: cache.gets, cache.evictions, cache.size
+ * (tag cache=dxf-fragments).
+ *
+ * Les cles doivent etre des valeurs (records) qui decrivent exactement le fragment: deux cles egales
+ * produisent les memes octets.
+ */
+@Component
+public class DxfFragmentCache {
+
+    /** Cout fixe d'une entree (cle, tableau, noeud du cache), en octets. */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final Cache<Object, byte[]> cache;
+    private final boolean enabled;
+
+    public DxfFragmentCache(ExportProperties exportProperties, MeterRegistry meterRegistry) {
+        long maxBytes = Math.max(0, exportProperties.getFragmentCacheSize().toBytes());
+        this.enabled = maxBytes > 0;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Object key, byte[] fragment) -> fragment.length + ENTRY_OVERHEAD)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "dxf-fragments");
+    }
+
+    /**
+     * Recopie dans {@code dxf} le fragment de cette cle s'il est en cache. Sinon, marque le debut du fragment
+     * que l'appelant va encoder puis garder par {@link #record}.
+     *
+     * @return true si le fragment a ete recopie
+     */
+    public boolean replay(DxfWriter dxf, Object key) {
+        if (!enabled) {
+            return false;
+        }
+        byte[] fragment = cache.getIfPresent(key);
+        if (fragment != null) {
+            dxf.write(fragment);
+            return true;
+        }
+        dxf.beginFragment();
+        return false;
+    }
+
+    /** Garde le fragment encode depuis {@link #replay} (ignore s'il etait trop long pour etre recupere). */
+    public void record(DxfWriter dxf, Object key) {
+        if (enabled) {
+            byte[] fragment = dxf.endFragment();
+            if (fragment != null) {
+                cache.put(key, fragment);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package tn.archigen.archigen.service.dxf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ecriture d'un DXF directement en octets dans un {@link OutputStream} (reponse HTTP, fichier), au format
+ * texte ({@link AsciiDxfWriter}) ou binaire ({@link BinaryDxfWriter}).
+ * Le document n'est jamais construit en memoire: les paires (code de groupe, valeur) sont encodees dans
+ * un tampon de taille fixe, vide vers le flux quand il est plein. La memoire par export est donc constante,
+ * quelle que soit la taille du plan.
+ *
+ * Les chaines sont encodees en UTF-8 sans {@link String#format}; une chaine peut etre composee de plusieurs
+ * morceaux entre {@link #begin} et {@link #end} (libelles "nom (12.5m2)"), les nombres y etant ecrits
+ * en virgule fixe (memes chiffres que {@code %.Nf}, mais toujours avec un point decimal quelle que soit
+ * la locale et sans zero negatif). Le type d'une valeur (chaine, reel, entier 16 ou 32 bits) doit
+ * correspondre a son code de groupe: c'est lui qui fixe l'encodage binaire.
+ *
+ * Les erreurs d'ecriture sur le flux (client deconnecte...) remontent en {@link UncheckedIOException}.
+ * Non thread-safe: une instance par export.
+ */
+public abstract class DxfWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+    /** Place contigue reservee pour un fragment: au-dela, il n'est pas recupere ({@link #endFragment}). */
+    static final int FRAGMENT_RESERVE = 1024;
+    private static final long[] POW10 = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+    /** Au-dela, la valeur mise a l'echelle ne tient plus exactement dans un long: repli sur Double.toString. */
+    private static final double MAX_FIXED = 1e12;
+    /**
+     * Ecart au demi (en ulp du produit) en dessous duquel l'arrondi rapide n'est pas sur: l'ecriture decimale
+     * la plus courte et le produit mis a l'echelle different de moins d'un ulp ou deux.
+     */
+    private static final double NEAR_HALF_ULPS = 8;
+
+    private final OutputStream out;
+    protected final byte[] buffer = new byte[BUFFER_SIZE];
+    protected int position;
+    private long written;
+    private int drains;
+    private int fragmentStart = -1;
+    private int fragmentDrains;
+
+    protected DxfWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public static DxfWriter create(OutputStream out, DxfFormat format) {
+        return format == DxfFormat.BINARY ? new BinaryDxfWriter(out) : new AsciiDxfWriter(out);
+    }
+
+    /** Constante pre-encodee (noms d'entites et de calques), a passer a {@link #group(int, byte[])}. */
+    public static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public abstract DxfFormat format();
+
+    /** Chaine pre-encodee ({@link #ascii}). */
+    public DxfWriter group(int code, byte[] value) {
+        begin(code);
+        ensure(value.length);
+        System.arraycopy(value, 0, buffer, position, value.length);
+        position += value.length;
+        return end();
+    }
+
+    public DxfWriter group(int code, String value) {
+        return begin(code).append(value).end();
+    }
+
+    /** Entier (codes 60 a 99, 170 a 175, 1060 a 1071). */
+    public abstract DxfWriter group(int code, int value);
+
+    /** Reel: coordonnee, longueur ou angle (codes 10 a 59, 140 a 147, 210 a 239, 1010 a 1059). */
+    public abstract DxfWriter group(int code, double value);
+
+    /** Debut d'une chaine composee: ecrit le code de groupe. */
+    public abstract DxfWriter begin(int code);
+
+    /** Fin d'une chaine composee. */
+    public abstract DxfWriter end();
+
+    /**
+     * Texte en UTF-8 (les retours a la ligne, interdits dans une valeur DXF texte, et les caracteres nuls,
+     * terminateurs en binaire, sont remplaces par des espaces).
+     */
+    public DxfWriter append(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            ensure(4);
+            if (c < 0x80) {
+                buffer[position++] = (byte) (c == '\n' || c == '\r' || c == 0 ? ' ' : c);
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, text.charAt(++i));
+                buffer[position++] = (byte) (0xF0 | (cp >> 18));
+                buffer[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    public DxfWriter append(long value) {
+        ensure(20);
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                return append(Long.toString(value));
+            }
+            buffer[position++] = '-';
+            value = -value;
+        }
+        writeDigits(value, 1);
+        return this;
+    }
+
+    /** Reel en virgule fixe avec {@code decimals} decimales (0 a 6), sans zero negatif. */
+    public DxfWriter append(double value, int decimals) {
+        if (!(Math.abs(value) < MAX_FIXED)) {
+            return append(Double.toString(value));
+        }
+        long scale = POW10[decimals];
+        double abs = Math.abs(value);
+        double product = abs * scale;
+        long scaled = Math.round(product);
+        if (Math.abs(product - Math.floor(product) - 0.5) <= NEAR_HALF_ULPS * Math.ulp(product)) {
+            // Proche d'un demi: le produit arrondi peut tomber de l'autre cote du demi que l'ecriture decimale
+            // la plus courte du reel (9.65205 * 10^4 = 96520.499...). On tranche sur celle-ci, comme String.format.
+            // Couvre aussi les produits sans partie fractionnaire exacte (ulp >= 1)
+            scaled = new BigDecimal(Double.toString(abs)).movePointRight(decimals)
+                    .setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+        ensure(40);
+        if (value < 0 && scaled != 0) {
+            buffer[position++] = '-';
+        }
+        writeDigits(scaled / scale, 1);
+        if (decimals > 0) {
+            buffer[position++] = '.';
+            writeDigits(scaled % scale, decimals);
+        }
+        return this;
+    }
+
+    /**
+     * Debut d'un fragment reutilisable (entites d'une piece, d'une ouverture): les octets ecrits jusqu'a
+     * {@link #endFragment} sont gardes contigus dans le tampon.
+     */
+    public void beginFragment() {
+        ensure(FRAGMENT_RESERVE);
+        fragmentStart = position;
+        fragmentDrains = drains;
+    }
+
+    /**
+     * Copie des octets ecrits depuis {@link #beginFragment}, a rejouer par {@link #write(byte[])} dans un autre
+     * export du meme format; null si le fragment a depasse la place reservee ({@link #FRAGMENT_RESERVE} octets,
+     * meme s'il tenait dans le reste du tampon: les fragments gardes restent de taille bornee).
+     */
+    public byte[] endFragment() {
+        byte[] fragment = fragmentStart >= 0 && drains == fragmentDrains && position - fragmentStart <= FRAGMENT_RESERVE
+                ? Arrays.copyOfRange(buffer, fragmentStart, position) : null;
+        fragmentStart = -1;
+        return fragment;
+    }
+
+    /** Octets deja encodes ({@link #endFragment}), recopies tels quels. */
+    public DxfWriter write(byte[] fragment) {
+        if (fragment.length > buffer.length) {
+            try {
+                drain();
+                out.write(fragment);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            written += fragment.length;
+        } else {
+            ensure(fragment.length);
+            System.arraycopy(fragment, 0, buffer, position, fragment.length);
+            position += fragment.length;
+        }
+        return this;
+    }
+
+    /** Octets ecrits depuis la creation (tampon compris). */
+    public long size() {
+        return written + position;
+    }
+
+    /** Vide le tampon vers le flux (sans fermer le flux). */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /** Chiffres de {@code value} (positif), completes a gauche par des zeros jusqu'a {@code minDigits}. */
+    private void writeDigits(long value, int minDigits) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        for (int i = position + digits - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += digits;
+    }
+
+    /** Garantit {@code length} octets libres dans le tampon (au plus sa taille). */
+    protected void ensure(int length) {
+        if (position + length > buffer.length) {
+            try {
+                drain();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            written += position;
+            position = 0;
+            drains++;
+        }
+    }
+}
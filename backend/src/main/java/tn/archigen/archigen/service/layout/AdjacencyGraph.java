@@ -0,0 +1,273 @@
+package tn.archigen.archigen.service.layout;
+
+import java.util.Arrays;
+
+/**
+ * Graphe d'adjacence des pieces d'un plan, construit une fois par plan a partir d'une {@link SpatialGrid}.
+ * Chaque arete est un segment de mur partage entre deux pieces (separees d'au plus {@code tolerance},
+ * typiquement l'epaisseur d'un mur), avec sa longueur de recouvrement.
+ * Les portions de cote non partagees sont considerees comme murs exterieurs.
+ *
+ * Convention: pour une arete, la piece A est a gauche (mur vertical) ou en dessous (mur horizontal) de B.
+ */
+public final class AdjacencyGraph {
+
+    /** Ecart max entre deux pieces pour les considerer adjacentes (m). */
+    public static final double DEFAULT_TOLERANCE = 0.5;
+
+    /** Recouvrement minimal pour qu'un mur soit partage (m). */
+    private static final double MIN_OVERLAP = 0.05;
+
+    public static final int SIDE_BOTTOM = 0;
+    public static final int SIDE_RIGHT = 1;
+    public static final int SIDE_TOP = 2;
+    public static final int SIDE_LEFT = 3;
+
+    private final double[] x;
+    private final double[] y;
+    private final double[] w;
+    private final double[] h;
+    private final int roomCount;
+
+    private int edgeCount;
+    private int[] edgeA;
+    private int[] edgeB;
+    private boolean[] edgeVertical;
+    private double[] edgeCoord;
+    private double[] edgeStart;
+    private double[] edgeEnd;
+
+    private final int[] adjStart;
+    private final int[] adjEdges;
+
+    private AdjacencyGraph(double[] x, double[] y, double[] w, double[] h, int n, double tolerance) {
+        this.x = x;
+        this.y = y;
+        this.w = w;
+        this.h = h;
+        this.roomCount = n;
+
+        int capacity = Math.max(4, 3 * n);
+        edgeA = new int[capacity];
+        edgeB = new int[capacity];
+        edgeVertical = new boolean[capacity];
+        edgeCoord = new double[capacity];
+        edgeStart = new double[capacity];
+        edgeEnd = new double[capacity];
+
+        new SpatialGrid(x, y, w, h, n, tolerance / 2).forEachPair((a, b) -> connect(a, b, tolerance));
+
+        // Listes d'adjacence au format CSR
+        adjStart = new int[n + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            adjStart[edgeA[e] + 1]++;
+            adjStart[edgeB[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            adjStart[i + 1] += adjStart[i];
+        }
+        adjEdges = new int[2 * edgeCount];
+        int[] fill = new int[n];
+        for (int e = 0; e < edgeCount; e++) {
+            adjEdges[adjStart[edgeA[e]] + fill[edgeA[e]]++] = e;
+            adjEdges[adjStart[edgeB[e]] + fill[edgeB[e]]++] = e;
+        }
+    }
+
+    public static AdjacencyGraph build(double[] x, double[] y, double[] w, double[] h, int n, double tolerance) {
+        return new AdjacencyGraph(x, y, w, h, n, tolerance);
+    }
+
+    public static AdjacencyGraph of(RoomLayout layout) {
+        return build(layout.x, layout.y, layout.w, layout.h, layout.size(), DEFAULT_TOLERANCE);
+    }
+
+    private void connect(int i, int j, double tolerance) {
+        // Mur vertical: i a gauche de j, ou j a gauche de i
+        double overlapY = Math.min(y[i] + h[i], y[j] + h[j]) - Math.max(y[i], y[j]);
+        if (overlapY > MIN_OVERLAP) {
+            double gapRight = x[j] - (x[i] + w[i]);
+            double gapLeft = x[i] - (x[j] + w[j]);
+            if (gapRight >= -MIN_OVERLAP && gapRight <= tolerance) {
+                addEdge(i, j, true, x[i] + w[i], Math.max(y[i], y[j]), overlapY);
+                return;
+            }
+            if (gapLeft >= -MIN_OVERLAP && gapLeft <= tolerance) {
+                addEdge(j, i, true, x[j] + w[j], Math.max(y[i], y[j]), overlapY);
+                return;
+            }
+        }
+        // Mur horizontal: i en dessous de j, ou j en dessous de i
+        double overlapX = Math.min(x[i] + w[i], x[j] + w[j]) - Math.max(x[i], x[j]);
+        if (overlapX > MIN_OVERLAP) {
+            double gapAbove = y[j] - (y[i] + h[i]);
+            double gapBelow = y[i] - (y[j] + h[j]);
+            if (gapAbove >= -MIN_OVERLAP && gapAbove <= tolerance) {
+                addEdge(i, j, false, y[i] + h[i], Math.max(x[i], x[j]), overlapX);
+            } else if (gapBelow >= -MIN_OVERLAP && gapBelow <= tolerance) {
+                addEdge(j, i, false, y[j] + h[j], Math.max(x[i], x[j]), overlapX);
+            }
+        }
+    }
+
+    private void addEdge(int a, int b, boolean vertical, double coord, double start, double length) {
+        if (edgeCount == edgeA.length) {
+            int capacity = edgeCount * 2;
+            edgeA = Arrays.copyOf(edgeA, capacity);
+            edgeB = Arrays.copyOf(edgeB, capacity);
+            edgeVertical = Arrays.copyOf(edgeVertical, capacity);
+            edgeCoord = Arrays.copyOf(edgeCoord, capacity);
+            edgeStart = Arrays.copyOf(edgeStart, capacity);
+            edgeEnd = Arrays.copyOf(edgeEnd, capacity);
+        }
+        edgeA[edgeCount] = a;
+        edgeB[edgeCount] = b;
+        edgeVertical[edgeCount] = vertical;
+        edgeCoord[edgeCount] = coord;
+        edgeStart[edgeCount] = start;
+        edgeEnd[edgeCount] = start + length;
+        edgeCount++;
+    }
+
+    // ==================== ACCES ====================
+
+    public int roomCount() {
+        return roomCount;
+    }
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    public int edgeA(int e) {
+        return edgeA[e];
+    }
+
+    public int edgeB(int e) {
+        return edgeB[e];
+    }
+
+    /** true si le mur partage est vertical (pieces cote a cote en x). */
+    public boolean isVertical(int e) {
+        return edgeVertical[e];
+    }
+
+    /** Abscisse (mur vertical) ou ordonnee (mur horizontal) du mur, cote piece A. */
+    public double coord(int e) {
+        return edgeCoord[e];
+    }
+
+    public double start(int e) {
+        return edgeStart[e];
+    }
+
+    public double end(int e) {
+        return edgeEnd[e];
+    }
+
+    public double overlap(int e) {
+        return edgeEnd[e] - edgeStart[e];
+    }
+
+    public int other(int e, int room) {
+        return edgeA[e] == room ? edgeB[e] : edgeA[e];
+    }
+
+    public int degree(int room) {
+        return adjStart[room + 1] - adjStart[room];
+    }
+
+    /** k-ieme arete incidente a la piece. */
+    public int edgeOf(int room, int k) {
+        return adjEdges[adjStart[room] + k];
+    }
+
+    /** Cote de la piece sur lequel se trouve l'arete. */
+    public int sideOf(int e, int room) {
+        boolean isA = edgeA[e] == room;
+        if (edgeVertical[e]) {
+            return isA ? SIDE_RIGHT : SIDE_LEFT;
+        }
+        return isA ? SIDE_TOP : SIDE_BOTTOM;
+    }
+
+    // ==================== MURS ====================
+
+    public double sideLength(int room, int side) {
+        return side == SIDE_BOTTOM || side == SIDE_TOP ? w[room] : h[room];
+    }
+
+    /** Longueur de mur partagee avec des voisins sur un cote de la piece. */
+    public double sharedLength(int room, int side) {
+        double shared = 0;
+        for (int k = 0; k < degree(room); k++) {
+            int e = edgeOf(room, k);
+            if (sideOf(e, room) == side) {
+                shared += overlap(e);
+            }
+        }
+        return Math.min(shared, sideLength(room, side));
+    }
+
+    public double exteriorLength(int room, int side) {
+        return Math.max(0, sideLength(room, side) - sharedLength(room, side));
+    }
+
+    /** Longueur totale des murs exterieurs (non partages) du plan. */
+    public double totalExteriorLength() {
+        double total = 0;
+        for (int i = 0; i < roomCount; i++) {
+            for (int side = SIDE_BOTTOM; side <= SIDE_LEFT; side++) {
+                total += exteriorLength(i, side);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Plus long intervalle exterieur (non partage) d'un cote de la piece, en coordonnee le long du mur
+     * (x pour les cotes bas/haut, y pour gauche/droite). Ecrit [debut, fin] dans {@code out};
+     * retourne sa longueur (0 si le cote est entierement partage).
+     */
+    public double longestExteriorInterval(int room, int side, double[] out) {
+        boolean horizontalSide = side == SIDE_BOTTOM || side == SIDE_TOP;
+        double sideStart = horizontalSide ? x[room] : y[room];
+        double sideEnd = sideStart + sideLength(room, side);
+
+        // Intervalles partages sur ce cote, tries par debut (peu nombreux: tri par insertion)
+        int count = 0;
+        double[] starts = new double[degree(room)];
+        double[] ends = new double[degree(room)];
+        for (int k = 0; k < degree(room); k++) {
+            int e = edgeOf(room, k);
+            if (sideOf(e, room) != side) {
+                continue;
+            }
+            double s = edgeStart[e];
+            double t = edgeEnd[e];
+            int pos = count++;
+            while (pos > 0 && starts[pos - 1] > s) {
+                starts[pos] = starts[pos - 1];
+                ends[pos] = ends[pos - 1];
+                pos--;
+            }
+            starts[pos] = s;
+            ends[pos] = t;
+        }
+
+        double bestLength = 0;
+        double cursor = sideStart;
+        for (int k = 0; k <= count; k++) {
+            double gapEnd = k < count ? Math.min(starts[k], sideEnd) : sideEnd;
+            if (gapEnd - cursor > bestLength) {
+                bestLength = gapEnd - cursor;
+                out[0] = cursor;
+                out[1] = gapEnd;
+            }
+            if (k < count) {
+                cursor = Math.max(cursor, ends[k]);
+            }
+        }
+        return bestLength;
+    }
+}
@@ -0,0 +1,28 @@
+package tn.archigen.archigen.service.layout;
+
+import tn.archigen.archigen.dto.RegulationsDto;
+import tn.archigen.archigen.dto.TerrainDto;
+
+/**
+ * Zone constructible du terrain (apres retraits), en metres.
+ */
+public record BuildableZone(double x, double y, double width, double height) {
+
+    /** Terrain moins les retraits frontal (y min), lateraux et arriere. */
+    public static BuildableZone of(TerrainDto terrain, RegulationsDto regulations) {
+        return new BuildableZone(
+                regulations.getRetraitLateral(),
+                regulations.getRetraitFrontal(),
+                terrain.getWidth() - 2 * regulations.getRetraitLateral(),
+                terrain.getHeight() - regulations.getRetraitFrontal() - regulations.getRetraitArriere());
+    }
+
+    public double area() {
+        return width * height;
+    }
+
+    /** Zone transposee (x <-> y), utilisee pour le placement en colonnes. */
+    public BuildableZone transpose() {
+        return new BuildableZone(y, x, height, width);
+    }
+}
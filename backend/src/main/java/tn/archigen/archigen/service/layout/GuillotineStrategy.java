@@ -0,0 +1,111 @@
+package tn.archigen.archigen.service.layout;
+
+import java.util.Arrays;
+
+/**
+ * Bin packing guillotine: heuristique Best Area Fit, decoupe selon l'axe le plus court
+ * (Shorter Axis Split). Les rectangles libres sont disjoints et stockes dans des tableaux
+ * primitifs; chaque placement remplace un rectangle libre par au plus deux.
+ * Le decoupage guillotine donne des murs alignes, faciles a realiser en maconnerie.
+ */
+final class GuillotineStrategy implements LayoutStrategy {
+
+    private static final double EPS = 1e-9;
+
+    @Override
+    public String name() {
+        return "guillotine";
+    }
+
+    @Override
+    public void pack(double[] widths, double[] heights, int n, BuildableZone zone, double gap, double[] xs, double[] ys) {
+        int capacity = Math.max(4, n + 2);
+        double[] fx = new double[capacity];
+        double[] fy = new double[capacity];
+        double[] fw = new double[capacity];
+        double[] fh = new double[capacity];
+        int size = 1;
+        fx[0] = zone.x();
+        fy[0] = zone.y();
+        fw[0] = zone.width() + gap;
+        fh[0] = zone.height() + gap;
+
+        for (int i = 0; i < n; i++) {
+            double w = widths[i] + gap;
+            double h = heights[i] + gap;
+
+            int best = -1;
+            boolean bestRotated = false;
+            double bestAreaLeft = Double.MAX_VALUE;
+            for (int f = 0; f < size; f++) {
+                double areaLeft = fw[f] * fh[f] - w * h;
+                if (areaLeft >= bestAreaLeft) {
+                    continue;
+                }
+                if (w <= fw[f] + EPS && h <= fh[f] + EPS) {
+                    best = f;
+                    bestRotated = false;
+                    bestAreaLeft = areaLeft;
+                } else if (h <= fw[f] + EPS && w <= fh[f] + EPS) {
+                    best = f;
+                    bestRotated = true;
+                    bestAreaLeft = areaLeft;
+                }
+            }
+
+            if (best < 0) {
+                xs[i] = Double.NaN;
+                ys[i] = Double.NaN;
+                continue;
+            }
+
+            if (bestRotated) {
+                double tmp = widths[i];
+                widths[i] = heights[i];
+                heights[i] = tmp;
+                w = widths[i] + gap;
+                h = heights[i] + gap;
+            }
+
+            double rx = fx[best];
+            double ry = fy[best];
+            double rw = fw[best];
+            double rh = fh[best];
+            xs[i] = rx;
+            ys[i] = ry;
+
+            // Retirer le rectangle utilise (remplace par le dernier)
+            size--;
+            fx[best] = fx[size];
+            fy[best] = fy[size];
+            fw[best] = fw[size];
+            fh[best] = fh[size];
+
+            // Shorter Axis Split: on coupe le long de l'axe le plus court du rectangle libre
+            double rightW = rw - w;
+            double topH = rh - h;
+            boolean splitHorizontal = rw <= rh;
+            if (size + 2 > fx.length) {
+                int grown = fx.length * 2;
+                fx = Arrays.copyOf(fx, grown);
+                fy = Arrays.copyOf(fy, grown);
+                fw = Arrays.copyOf(fw, grown);
+                fh = Arrays.copyOf(fh, grown);
+            }
+            if (rightW > EPS) {
+                fx[size] = rx + w;
+                fy[size] = ry;
+                fw[size] = rightW;
+                fh[size] = splitHorizontal ? h : rh;
+                size++;
+            }
+            if (topH > EPS) {
+                fx[size] = rx;
+                fy[size] = ry + h;
+                fw[size] = splitHorizontal ? rw : w;
+                fh[size] = topH;
+                size++;
+            }
+        }
+    }
+}
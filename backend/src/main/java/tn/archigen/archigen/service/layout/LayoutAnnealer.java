@@ -0,0 +1,698 @@
+package tn.archigen.archigen.service.layout;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Optimiseur local "anytime" par recuit simule.
+ * Part d'un placement valide et l'ameliore par mouvements elementaires (deplacement, echange,
+ * rotation, redimensionnement a surface constante) jusqu'a l'echeance; retourne le meilleur
+ * placement rencontre. Plus le budget de temps est grand, meilleur est le resultat.
+ *
+ * Le cout est evalue de facon incrementale: seules les pieces deplacees et leurs voisins
+ * (avant et apres le mouvement) sont re-evalues, les autres termes sont des sommes mises a jour en O(1).
+ * Les voisins sont trouves dans une grille uniforme sur la zone, tenue a jour a chaque mouvement
+ * ({@link RoomGrid}): la verification des murs et de l'eclairage ne parcourt que les pieces des cellules
+ * touchees, et le regroupement des pieces humides ne parcourt que celles-ci. Un pas coute donc O(1) en
+ * moyenne, sauf quand une piece qui touchait la boite englobante bouge (boite recalculee en O(n)).
+ * <ul>
+ *   <li>compacite: dispersion des centres des pieces autour de leur barycentre</li>
+ *   <li>surface perdue: emprise (boite englobante) non occupee par une piece</li>
+ *   <li>eclairage: salon, chambres et bureau doivent garder un mur exterieur assez long pour une fenetre</li>
+ *   <li>pieces humides: distance entre cuisine, sdb et wc (regroupement de la plomberie)</li>
+ * </ul>
+ */
+public final class LayoutAnnealer {
+
+    private static final double STEP = 0.10; // Grille de 10cm
+    private static final double EPS = 1e-6;
+    private static final double MAX_ASPECT = 2.5;
+    private static final double MIN_AREA_RATIO = 0.98;
+    private static final double EXTERIOR_MIN_LENGTH = 1.40; // Fenetre 1.20m + marges
+
+    // Ponderations du cout (en m2 equivalents)
+    private static final double W_COMPACTNESS = 0.05;
+    private static final double W_WASTE = 0.25;
+    private static final double W_DAYLIGHT = 30.0;
+    private static final double W_WET = 0.5;
+
+    private static final double T_START = 10.0;
+    private static final double T_END = 0.01;
+
+    private static final int MOVE = 0;
+    private static final int SWAP = 1;
+    private static final int ROTATE = 2;
+    private static final int RESIZE = 3;
+
+    private final RoomLayout start;
+    private final BuildableZone zone;
+    private final double gap;
+    private final int n;
+    private final int fixed;
+    private final double[] x;
+    private final double[] y;
+    private final double[] w;
+    private final double[] h;
+    private final double[] minArea;
+    private final boolean[] needsDaylight;
+    private final boolean[] wet;
+    private final int[] wetRooms;
+    private final RoomGrid grid;
+
+    // Etat incremental du cout
+    private double sumCx;
+    private double sumCy;
+    private double sumSq;
+    private double sumArea;
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+    private final boolean[] lit;
+    private int unlitCount;
+    private double wetCost;
+
+    // Tampons reutilises (pieces affectees par un mouvement)
+    private final int[] affected;
+    private final boolean[] affectedLit;
+    private int affectedCount;
+    private final long[] relitAt;
+    private long relitStamp;
+    private final double[] intervalStarts;
+    private final double[] intervalEnds;
+    private final int[] nearRooms;
+    private final int[] sideRooms;
+
+    private LayoutAnnealer(RoomLayout start, int fixedRooms, BuildableZone zone, double gap) {
+        this.start = start;
+        this.zone = zone;
+        this.gap = gap;
+        this.n = start.size();
+        this.fixed = fixedRooms;
+        this.x = new double[n];
+        this.y = new double[n];
+        this.w = new double[n];
+        this.h = new double[n];
+        this.minArea = new double[n];
+        this.needsDaylight = new boolean[n];
+        this.wet = new boolean[n];
+        this.lit = new boolean[n];
+        this.affected = new int[n];
+        this.affectedLit = new boolean[n];
+        this.relitAt = new long[n];
+        this.intervalStarts = new double[n];
+        this.intervalEnds = new double[n];
+        this.nearRooms = new int[n];
+        this.sideRooms = new int[n];
+
+        var program = start.program();
+        int wetCount = 0;
+        for (int i = 0; i < n; i++) {
+            x[i] = start.x[i];
+            y[i] = start.y[i];
+            w[i] = start.w[i];
+            h[i] = start.h[i];
+            int code = start.typeCode(i);
+            minArea[i] = Math.min(program.minArea(start.room[i]), start.area[i]);
+            needsDaylight[i] = code == RoomTypes.SALON || code == RoomTypes.CHAMBRE || code == RoomTypes.BUREAU;
+            wet[i] = RoomTypes.isWet(code);
+            if (wet[i]) {
+                wetCount++;
+            }
+        }
+        this.wetRooms = new int[wetCount];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (wet[i]) {
+                wetRooms[k++] = i;
+            }
+        }
+        this.grid = new RoomGrid(Math.max(gap, AdjacencyGraph.DEFAULT_TOLERANCE));
+    }
+
+    /**
+     * Optimise le placement jusqu'a l'echeance.
+     *
+     * @param gap           espace minimal entre deux pieces (epaisseur de mur)
+     * @param deadlineNanos echeance au sens de {@link System#nanoTime()}
+     * @param seed          graine du generateur (meme suite de mouvements tiree; le nombre de mouvements
+     *                      essayes avant l'echeance, donc le resultat, depend de la vitesse de la machine)
+     */
+    public static RoomLayout anneal(RoomLayout start, BuildableZone zone, double gap, long deadlineNanos, long seed) {
+        return anneal(start, 0, zone, gap, deadlineNanos, seed);
+    }
+
+    /**
+     * Variante ou les {@code fixedRooms} premieres pieces (noyau de circulation d'un plan multi-etages)
+     * ne bougent pas: elles restent des obstacles et comptent dans le cout.
+     */
+    public static RoomLayout anneal(RoomLayout start, int fixedRooms, BuildableZone zone, double gap,
+                                    long deadlineNanos, long seed) {
+        if (start.size() < 2 || start.size() <= fixedRooms) {
+            return start;
+        }
+        return new LayoutAnnealer(start, fixedRooms, zone, gap).run(deadlineNanos, seed);
+    }
+
+    private RoomLayout run(long deadlineNanos, long seed) {
+        var random = new SplittableRandom(seed);
+        initCost();
+
+        double cost = cost();
+        double bestCost = cost;
+        double[] bestX = x.clone();
+        double[] bestY = y.clone();
+        double[] bestW = w.clone();
+        double[] bestH = h.clone();
+
+        long startNanos = System.nanoTime();
+        double duration = Math.max(1, deadlineNanos - startNanos);
+        double temperature = T_START;
+        long iterations = 0;
+
+        while (true) {
+            if ((iterations & 127) == 0) {
+                long now = System.nanoTime();
+                if (now >= deadlineNanos) {
+                    break;
+                }
+                temperature = T_START * Math.pow(T_END / T_START, (now - startNanos) / duration);
+            }
+            iterations++;
+
+            int movable = n - fixed;
+            int a = fixed + random.nextInt(movable);
+            int b = -1;
+            int kind = random.nextInt(4);
+            double ax = x[a], ay = y[a], aw = w[a], ah = h[a];
+            double bx = 0, by = 0;
+
+            switch (kind) {
+                case MOVE -> {
+                    if (random.nextBoolean()) {
+                        x[a] = snap(x[a] + STEP * (random.nextInt(21) - 10));
+                    } else {
+                        y[a] = snap(y[a] + STEP * (random.nextInt(21) - 10));
+                    }
+                }
+                case SWAP -> {
+                    if (movable < 2) {
+                        continue;
+                    }
+                    b = fixed + random.nextInt(movable - 1);
+                    if (b >= a) {
+                        b++;
+                    }
+                    bx = x[b];
+                    by = y[b];
+                    x[a] = bx;
+                    y[a] = by;
+                    x[b] = ax;
+                    y[b] = ay;
+                }
+                case ROTATE -> {
+                    w[a] = ah;
+                    h[a] = aw;
+                }
+                default -> {
+                    double newWidth = snap(w[a] + STEP * (random.nextInt(2) == 0 ? -1 : 1) * (1 + random.nextInt(5)));
+                    if (newWidth <= STEP) {
+                        continue;
+                    }
+                    w[a] = newWidth;
+                    h[a] = Math.ceil(minArea[a] / newWidth / STEP - EPS) * STEP;
+                }
+            }
+
+            if (!isValid(a, b)) {
+                restore(a, ax, ay, aw, ah, b, bx, by);
+                continue;
+            }
+
+            // Evaluation incrementale (grille a jour pour l'eclairage des voisins)
+            grid.move(a);
+            if (b >= 0) {
+                grid.move(b);
+            }
+            double before = cost;
+            double oldMinX = minX, oldMinY = minY, oldMaxX = maxX, oldMaxY = maxY;
+            boolean boundsTouched = onBounds(ax, ay, aw, ah) || (b >= 0 && onBounds(bx, by, w[b], h[b]));
+            removeContribution(ax, ay, aw, ah);
+            addContribution(a);
+            if (b >= 0) {
+                removeContribution(bx, by, w[b], h[b]);
+                addContribution(b);
+            }
+            wetCost += wetPartial(a, b) - wetPartialAt(a, ax, ay, aw, ah, b, bx, by);
+            updateBounds(a, b, boundsTouched);
+            updateDaylight(a, ax, ay, aw, ah, b, bx, by);
+
+            double candidate = cost();
+            double delta = candidate - before;
+            if (delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature)) {
+                cost = candidate;
+                if (cost < bestCost - EPS) {
+                    bestCost = cost;
+                    System.arraycopy(x, 0, bestX, 0, n);
+                    System.arraycopy(y, 0, bestY, 0, n);
+                    System.arraycopy(w, 0, bestW, 0, n);
+                    System.arraycopy(h, 0, bestH, 0, n);
+                }
+            } else {
+                // Annuler: geometrie puis etat du cout
+                wetCost -= wetPartial(a, b) - wetPartialAt(a, ax, ay, aw, ah, b, bx, by);
+                removeContribution(x[a], y[a], w[a], h[a]);
+                if (b >= 0) {
+                    removeContribution(x[b], y[b], w[b], h[b]);
+                }
+                restore(a, ax, ay, aw, ah, b, bx, by);
+                grid.move(a);
+                addContribution(a);
+                if (b >= 0) {
+                    grid.move(b);
+                    addContribution(b);
+                }
+                minX = oldMinX;
+                minY = oldMinY;
+                maxX = oldMaxX;
+                maxY = oldMaxY;
+                for (int k = 0; k < affectedCount; k++) {
+                    int room = affected[k];
+                    if (lit[room] != affectedLit[k]) {
+                        unlitCount += lit[room] ? 1 : -1;
+                        lit[room] = affectedLit[k];
+                    }
+                }
+            }
+        }
+
+        var result = new RoomLayout(start.program(), n);
+        for (int i = 0; i < n; i++) {
+            result.add(start.room[i], bestX[i], bestY[i], bestW[i], bestH[i]);
+        }
+        return result;
+    }
+
+    private void restore(int a, double ax, double ay, double aw, double ah, int b, double bx, double by) {
+        x[a] = ax;
+        y[a] = ay;
+        w[a] = aw;
+        h[a] = ah;
+        if (b >= 0) {
+            x[b] = bx;
+            y[b] = by;
+        }
+    }
+
+    private static double snap(double value) {
+        return Math.round(value / STEP) * STEP;
+    }
+
+    // ==================== CONTRAINTES ====================
+
+    /**
+     * Pieces dans la zone, proportions raisonnables, et separees d'au moins un mur des autres pieces.
+     * La grille contient encore a et b a leur place d'avant le mouvement: ils sont compares entre eux a part.
+     */
+    private boolean isValid(int a, int b) {
+        if (!fits(a) || (b >= 0 && !fits(b))) {
+            return false;
+        }
+        if (b >= 0 && conflicts(a, b)) {
+            return false;
+        }
+        return !conflictsNear(a, b) && (b < 0 || !conflictsNear(b, a));
+    }
+
+    /** Vrai si la piece i est trop proche d'une piece de la grille autre que i et {@code other}. */
+    private boolean conflictsNear(int i, int other) {
+        int count = grid.collect(x[i], y[i], w[i], h[i], nearRooms);
+        for (int k = 0; k < count; k++) {
+            int j = nearRooms[k];
+            if (j != i && j != other && conflicts(i, j)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean fits(int i) {
+        double aspect = Math.max(w[i], h[i]) / Math.min(w[i], h[i]);
+        return x[i] >= zone.x() - EPS && y[i] >= zone.y() - EPS
+                && x[i] + w[i] <= zone.x() + zone.width() + EPS
+                && y[i] + h[i] <= zone.y() + zone.height() + EPS
+                && aspect <= MAX_ASPECT
+                && w[i] * h[i] >= minArea[i] * MIN_AREA_RATIO;
+    }
+
+    private boolean conflicts(int i, int j) {
+        return x[i] < x[j] + w[j] + gap - EPS && x[j] < x[i] + w[i] + gap - EPS
+                && y[i] < y[j] + h[j] + gap - EPS && y[j] < y[i] + h[i] + gap - EPS;
+    }
+
+    // ==================== COUT ====================
+
+    private double cost() {
+        double variance = sumSq / n - (sumCx * sumCx + sumCy * sumCy) / ((double) n * n);
+        double waste = Math.max(0, (maxX - minX) * (maxY - minY) - sumArea);
+        return W_COMPACTNESS * variance + W_WASTE * waste + W_DAYLIGHT * unlitCount + W_WET * wetCost;
+    }
+
+    private void initCost() {
+        for (int i = 0; i < n; i++) {
+            grid.insert(i);
+            addContribution(i);
+        }
+        recomputeBounds();
+        for (int i = 0; i < n; i++) {
+            lit[i] = !needsDaylight[i] || hasExteriorStretch(i);
+            if (!lit[i]) {
+                unlitCount++;
+            }
+        }
+        for (int p = 0; p < wetRooms.length; p++) {
+            int i = wetRooms[p];
+            for (int q = p + 1; q < wetRooms.length; q++) {
+                wetCost += distance(x[i], y[i], w[i], h[i], wetRooms[q]);
+            }
+        }
+    }
+
+    private void addContribution(int i) {
+        double cx = x[i] + w[i] / 2;
+        double cy = y[i] + h[i] / 2;
+        sumCx += cx;
+        sumCy += cy;
+        sumSq += cx * cx + cy * cy;
+        sumArea += w[i] * h[i];
+    }
+
+    private void removeContribution(double rx, double ry, double rw, double rh) {
+        double cx = rx + rw / 2;
+        double cy = ry + rh / 2;
+        sumCx -= cx;
+        sumCy -= cy;
+        sumSq -= cx * cx + cy * cy;
+        sumArea -= rw * rh;
+    }
+
+    private boolean onBounds(double rx, double ry, double rw, double rh) {
+        return rx <= minX + EPS || ry <= minY + EPS || rx + rw >= maxX - EPS || ry + rh >= maxY - EPS;
+    }
+
+    /** Une piece qui touchait la boite englobante impose un recalcul; sinon l'extension suffit. */
+    private void updateBounds(int a, int b, boolean boundsTouched) {
+        if (boundsTouched) {
+            recomputeBounds();
+            return;
+        }
+        extendBounds(a);
+        if (b >= 0) {
+            extendBounds(b);
+        }
+    }
+
+    private void extendBounds(int i) {
+        minX = Math.min(minX, x[i]);
+        minY = Math.min(minY, y[i]);
+        maxX = Math.max(maxX, x[i] + w[i]);
+        maxY = Math.max(maxY, y[i] + h[i]);
+    }
+
+    private void recomputeBounds() {
+        minX = Double.MAX_VALUE;
+        minY = Double.MAX_VALUE;
+        maxX = -Double.MAX_VALUE;
+        maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            extendBounds(i);
+        }
+    }
+
+    // ==================== PIECES HUMIDES ====================
+
+    /** Distance (Manhattan entre centres) d'un rectangle a la piece j. */
+    private double distance(double rx, double ry, double rw, double rh, int j) {
+        return Math.abs(rx + rw / 2 - x[j] - w[j] / 2) + Math.abs(ry + rh / 2 - y[j] - h[j] / 2);
+    }
+
+    /** Somme des distances des pieces deplacees (a, b) aux autres pieces humides, etat courant. */
+    private double wetPartial(int a, int b) {
+        return wetPartialAt(a, x[a], y[a], w[a], h[a], b, b >= 0 ? x[b] : 0, b >= 0 ? y[b] : 0);
+    }
+
+    /** Idem avec a et b aux positions donnees (b garde ses dimensions, seul un echange le deplace). */
+    private double wetPartialAt(int a, double ax, double ay, double aw, double ah, int b, double bx, double by) {
+        double total = 0;
+        for (int j : wetRooms) {
+            if (j == a || j == b) {
+                continue;
+            }
+            if (wet[a]) {
+                total += distance(ax, ay, aw, ah, j);
+            }
+            if (b >= 0 && wet[b]) {
+                total += distance(bx, by, w[b], h[b], j);
+            }
+        }
+        if (b >= 0 && wet[a] && wet[b]) {
+            total += Math.abs(ax + aw / 2 - bx - w[b] / 2) + Math.abs(ay + ah / 2 - by - h[b] / 2);
+        }
+        return total;
+    }
+
+    // ==================== ECLAIRAGE ====================
+
+    /**
+     * Re-evalue l'eclairage des pieces deplacees et de leurs voisins avant/apres le mouvement.
+     * L'etat precedent est memorise dans {@code affected}/{@code affectedLit} pour l'annulation.
+     * Les pieces deplacees sont deja a leur nouvelle place dans la grille: les voisins d'avant le mouvement
+     * sont cherches autour des anciennes positions.
+     */
+    private void updateDaylight(int a, double ax, double ay, double aw, double ah, int b, double bx, double by) {
+        affectedCount = 0;
+        relitStamp++;
+        relight(a);
+        relightNear(ax, ay, aw, ah);
+        relightNear(x[a], y[a], w[a], h[a]);
+        if (b >= 0) {
+            relight(b);
+            relightNear(bx, by, w[b], h[b]);
+            relightNear(x[b], y[b], w[b], h[b]);
+        }
+    }
+
+    private void relightNear(double rx, double ry, double rw, double rh) {
+        int count = grid.collect(rx, ry, rw, rh, nearRooms);
+        for (int k = 0; k < count; k++) {
+            int j = nearRooms[k];
+            if (near(j, rx, ry, rw, rh)) {
+                relight(j);
+            }
+        }
+    }
+
+    /** Re-evalue l'eclairage d'une piece, une seule fois par mouvement. */
+    private void relight(int j) {
+        if (!needsDaylight[j] || relitAt[j] == relitStamp) {
+            return;
+        }
+        relitAt[j] = relitStamp;
+        affected[affectedCount] = j;
+        affectedLit[affectedCount] = lit[j];
+        affectedCount++;
+        boolean nowLit = hasExteriorStretch(j);
+        if (nowLit != lit[j]) {
+            unlitCount += nowLit ? -1 : 1;
+            lit[j] = nowLit;
+        }
+    }
+
+    private boolean near(int j, double rx, double ry, double rw, double rh) {
+        double tol = AdjacencyGraph.DEFAULT_TOLERANCE;
+        return x[j] <= rx + rw + tol && rx <= x[j] + w[j] + tol && y[j] <= ry + rh + tol && ry <= y[j] + h[j] + tol;
+    }
+
+    /** Vrai si un des murs de la piece a un troncon exterieur (sans voisin) assez long pour une fenetre. */
+    private boolean hasExteriorStretch(int i) {
+        double tol = AdjacencyGraph.DEFAULT_TOLERANCE;
+        int candidates = grid.collect(x[i], y[i], w[i], h[i], sideRooms);
+        for (int side = AdjacencyGraph.SIDE_BOTTOM; side <= AdjacencyGraph.SIDE_LEFT; side++) {
+            boolean horizontalSide = side == AdjacencyGraph.SIDE_BOTTOM || side == AdjacencyGraph.SIDE_TOP;
+            double sideStart = horizontalSide ? x[i] : y[i];
+            double sideEnd = sideStart + (horizontalSide ? w[i] : h[i]);
+
+            int count = 0;
+            for (int k = 0; k < candidates; k++) {
+                int j = sideRooms[k];
+                if (j == i) {
+                    continue;
+                }
+                double gapAcross = switch (side) {
+                    case AdjacencyGraph.SIDE_BOTTOM -> y[i] - (y[j] + h[j]);
+                    case AdjacencyGraph.SIDE_TOP -> y[j] - (y[i] + h[i]);
+                    case AdjacencyGraph.SIDE_LEFT -> x[i] - (x[j] + w[j]);
+                    default -> x[j] - (x[i] + w[i]);
+                };
+                if (gapAcross < -EPS || gapAcross > tol) {
+                    continue;
+                }
+                double s = Math.max(sideStart, horizontalSide ? x[j] : y[j]);
+                double t = Math.min(sideEnd, horizontalSide ? x[j] + w[j] : y[j] + h[j]);
+                if (t <= s) {
+                    continue;
+                }
+                // Insertion triee par debut
+                int pos = count++;
+                while (pos > 0 && intervalStarts[pos - 1] > s) {
+                    intervalStarts[pos] = intervalStarts[pos - 1];
+                    intervalEnds[pos] = intervalEnds[pos - 1];
+                    pos--;
+                }
+                intervalStarts[pos] = s;
+                intervalEnds[pos] = t;
+            }
+
+            double cursor = sideStart;
+            for (int k = 0; k <= count; k++) {
+                double gapEnd = k < count ? intervalStarts[k] : sideEnd;
+                if (gapEnd - cursor >= EXTERIOR_MIN_LENGTH) {
+                    return true;
+                }
+                if (k < count) {
+                    cursor = Math.max(cursor, intervalEnds[k]);
+                }
+            }
+        }
+        return false;
+    }
+
+    // ==================== GRILLE DES PIECES ====================
+
+    /**
+     * Grille uniforme sur la zone, mise a jour a chaque mouvement (contrairement a {@link SpatialGrid}, construite
+     * une fois). Chaque piece, gonflee de {@code margin}, est enregistree dans les cellules qu'elle couvre;
+     * une recherche retourne les pieces des cellules couvertes par le rectangle demande gonfle de la marge,
+     * a filtrer par l'appelant. La taille de cellule suit la dimension moyenne des pieces de depart.
+     */
+    private final class RoomGrid {
+
+        private final double margin;
+        private final double originX;
+        private final double originY;
+        private final double cellSize;
+        private final int cols;
+        private final int rows;
+        private final int[][] cells;
+        private final int[] cellCounts;
+        private final int[] minCol;
+        private final int[] maxCol;
+        private final int[] minRow;
+        private final int[] maxRow;
+        private final int[] visitStamp;
+        private int stamp;
+
+        RoomGrid(double margin) {
+            this.margin = margin;
+            double sumSize = 0;
+            for (int i = 0; i < n; i++) {
+                sumSize += Math.max(start.w[i], start.h[i]);
+            }
+            double size = Math.max(1.0, n > 0 ? sumSize / n + 2 * margin : 1.0);
+            double spanX = zone.width() + 2 * margin;
+            double spanY = zone.height() + 2 * margin;
+            int maxCells = Math.max(16, 4 * n);
+            while (cellCount(spanX, size) * (long) cellCount(spanY, size) > maxCells) {
+                size *= 2;
+            }
+            this.originX = zone.x() - margin;
+            this.originY = zone.y() - margin;
+            this.cellSize = size;
+            this.cols = cellCount(spanX, size);
+            this.rows = cellCount(spanY, size);
+            this.cells = new int[cols * rows][];
+            this.cellCounts = new int[cols * rows];
+            this.minCol = new int[n];
+            this.maxCol = new int[n];
+            this.minRow = new int[n];
+            this.maxRow = new int[n];
+            this.visitStamp = new int[n];
+        }
+
+        void insert(int i) {
+            minCol[i] = col(x[i] - margin);
+            maxCol[i] = col(x[i] + w[i] + margin);
+            minRow[i] = row(y[i] - margin);
+            maxRow[i] = row(y[i] + h[i] + margin);
+            for (int r = minRow[i]; r <= maxRow[i]; r++) {
+                for (int c = minCol[i]; c <= maxCol[i]; c++) {
+                    int cell = r * cols + c;
+                    int[] items = cells[cell];
+                    if (items == null) {
+                        items = cells[cell] = new int[4];
+                    } else if (cellCounts[cell] == items.length) {
+                        items = cells[cell] = Arrays.copyOf(items, items.length * 2);
+                    }
+                    items[cellCounts[cell]++] = i;
+                }
+            }
+        }
+
+        /** Reenregistre la piece i a sa position courante (rien a faire si elle couvre les memes cellules). */
+        void move(int i) {
+            if (col(x[i] - margin) == minCol[i] && col(x[i] + w[i] + margin) == maxCol[i]
+                    && row(y[i] - margin) == minRow[i] && row(y[i] + h[i] + margin) == maxRow[i]) {
+                return;
+            }
+            for (int r = minRow[i]; r <= maxRow[i]; r++) {
+                for (int c = minCol[i]; c <= maxCol[i]; c++) {
+                    int cell = r * cols + c;
+                    int[] items = cells[cell];
+                    for (int p = 0; p < cellCounts[cell]; p++) {
+                        if (items[p] == i) {
+                            items[p] = items[--cellCounts[cell]];
+                            break;
+                        }
+                    }
+                }
+            }
+            insert(i);
+        }
+
+        /** Pieces (sans doublon) des cellules couvertes par le rectangle gonfle de la marge, dans {@code out}. */
+        int collect(double qx, double qy, double qw, double qh, int[] out) {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(visitStamp, 0);
+                stamp = 1;
+            }
+            int count = 0;
+            int c0 = col(qx - margin), c1 = col(qx + qw + margin);
+            int r0 = row(qy - margin), r1 = row(qy + qh + margin);
+            for (int r = r0; r <= r1; r++) {
+                for (int c = c0; c <= c1; c++) {
+                    int cell = r * cols + c;
+                    int[] items = cells[cell];
+                    for (int p = 0; p < cellCounts[cell]; p++) {
+                        int item = items[p];
+                        if (visitStamp[item] != stamp) {
+                            visitStamp[item] = stamp;
+                            out[count++] = item;
+                        }
+                    }
+                }
+            }
+            return count;
+        }
+
+        private static int cellCount(double span, double size) {
+            return Math.max(1, (int) Math.ceil(span / size) + 1);
+        }
+
+        private int col(double value) {
+            return Math.clamp((int) Math.floor((value - originX) / cellSize), 0, cols - 1);
+        }
+
+        private int row(double value) {
+            return Math.clamp((int) Math.floor((value - originY) / cellSize), 0, rows - 1);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package tn.archigen.archigen.service.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Parametres d'une tentative de placement: strategie de placement, ordre des pieces,
+ * ratios d'aspect et orientation (lignes horizontales ou colonnes verticales).
+ *
+ * @param largeRatio ratio largeur/profondeur des pieces de plus de 15m2
+ * @param smallRatio ratio largeur/profondeur des autres pieces
+ * @param columns    true pour empiler les pieces en colonnes au lieu de rangees
+ */
+public record LayoutCandidate(
+        LayoutStrategy strategy,
+        RoomOrder order,
+        double largeRatio,
+        double smallRatio,
+        boolean columns
+) {
+
+    /** Candidat historique: rangees horizontales, surface decroissante, ratios 1.3 / 1.5. */
+    public static final LayoutCandidate DEFAULT = defaultFor(LayoutStrategy.ROW_PACKING);
+
+    /** Candidat de reference pour une strategie (ordre et ratios historiques). */
+    public static LayoutCandidate defaultFor(LayoutStrategy strategy) {
+        return new LayoutCandidate(strategy, RoomOrder.AREA_DESC, 1.3, 1.5, false);
+    }
+
+    private static final double[] LARGE_RATIOS = {1.0, 1.15, 1.3, 1.5};
+    private static final double[] SMALL_RATIOS = {1.0, 1.25, 1.5, 1.8};
+
+    private static final LayoutStrategy[] STRATEGIES = {
+            LayoutStrategy.ROW_PACKING, LayoutStrategy.MAX_RECTS, LayoutStrategy.GUILLOTINE
+    };
+    private static final RoomOrder[] ORDERS = RoomOrder.values();
+
+    @Override
+    public String toString() {
+        return String.format("%s/%s/%.2f/%.2f/%s", strategy.name(), order, largeRatio, smallRatio, columns ? "colonnes" : "rangees");
+    }
+
+    public double ratioFor(double area) {
+        return area > 15 ? largeRatio : smallRatio;
+    }
+
+    /**
+     * Espace de recherche complet pour une strategie (ordre x ratios x orientation),
+     * dans un ordre stable pour que le meilleur candidat soit deterministe a score egal.
+     * Le candidat de reference de la strategie n'en fait pas partie.
+     */
+    public static List<LayoutCandidate> searchSpace(LayoutStrategy strategy) {
+        var reference = defaultFor(strategy);
+        List<LayoutCandidate> candidates = new ArrayList<>();
+        for (boolean columns : new boolean[]{false, true}) {
+            for (RoomOrder order : RoomOrder.values()) {
+                for (double large : LARGE_RATIOS) {
+                    for (double small : SMALL_RATIOS) {
+                        var candidate = new LayoutCandidate(strategy, order, large, small, columns);
+                        if (!candidate.equals(reference)) {
+                            candidates.add(candidate);
+                        }
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Candidat tire au hasard (mode variantes): strategie, ordre, orientation, et ratios
+     * par pas de 0.05 (grandes pieces 1.0 a 1.5, autres 1.0 a 1.8).
+     */
+    public static LayoutCandidate random(SplittableRandom random) {
+        return new LayoutCandidate(
+                STRATEGIES[random.nextInt(STRATEGIES.length)],
+                ORDERS[random.nextInt(ORDERS.length)],
+                1.0 + 0.05 * random.nextInt(11),
+                1.0 + 0.05 * random.nextInt(17),
+                random.nextBoolean());
+    }
+}
@@ -0,0 +1,271 @@
+package tn.archigen.archigen.service.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verification et reparation deterministe d'un placement de pieces venu de l'exterieur (plan genere par l'IA).
+ * Verification: chevauchements ({@link OverlapSweep}), pieces hors de la zone constructible, coordonnees
+ * hors de la grille de 10 cm. Un placement sans defaut est retourne tel quel.
+ *
+ * Reparation, en unites de grille (entiers, donc sans derive d'arrondi):
+ * <ol>
+ *   <li>positions et dimensions accrochees a la grille;</li>
+ *   <li>pieces ramenees dans la zone constructible par translation, et reduites a la zone si elles sont plus grandes;</li>
+ *   <li>chevauchements: pour chaque paire, la piece la moins prioritaire (plus petite surface, puis indice le plus
+ *   grand) est deplacee du plus petit vecteur de separation qui la garde dans la zone; les deplacements peuvent
+ *   creer d'autres chevauchements, traites a la passe suivante;</li>
+ *   <li>apres {@link #MAX_PASSES} passes, la partie chevauchante est retranchee de la piece la moins prioritaire
+ *   (une reduction ne peut pas creer de chevauchement); une piece reduite sous {@link #MIN_SIDE} est supprimee.</li>
+ * </ol>
+ */
+public final class LayoutRepair {
+
+    /** Pas de la grille (m). */
+    public static final double GRID = 0.1;
+    private static final double CELLS_PER_METER = 10.0;
+
+    /** Cote minimal d'une piece reduite par la reparation (m). */
+    public static final double MIN_SIDE = 0.8;
+
+    /** Passes de deplacements avant de retrancher les chevauchements restants. */
+    private static final int MAX_PASSES = 8;
+
+    /** Tolerance de la verification (m): ecarts d'arrondi des coordonnees envoyees. */
+    private static final double EPS = 1e-6;
+
+    /** Tolerance en unites de grille: une intersection d'au moins une cellule est un chevauchement. */
+    private static final double GRID_EPS = 0.5;
+
+    /**
+     * @param layout      placement repare (l'instance d'origine si {@code repaired} est faux)
+     * @param overlaps    paires de pieces qui se chevauchaient
+     * @param outsideZone pieces qui depassaient de la zone constructible
+     * @param offGrid     true si des coordonnees n'etaient pas sur la grille
+     * @param dropped     pieces supprimees (dimensions invalides ou trop reduites)
+     */
+    public record Result(RoomLayout layout, boolean repaired, int overlaps, int outsideZone, boolean offGrid,
+                         int dropped) {}
+
+    private LayoutRepair() {
+    }
+
+    public static Result repair(RoomLayout input, BuildableZone zone) {
+        int n = input.size();
+        int overlaps = OverlapSweep.forEachOverlap(input.x, input.y, input.w, input.h, n, EPS, (a, b) -> { });
+        int outside = 0;
+        boolean offGrid = false;
+        boolean invalid = false;
+        for (int i = 0; i < n; i++) {
+            if (!(input.w[i] > 0) || !(input.h[i] > 0)) {
+                invalid = true;
+                continue;
+            }
+            if (input.x[i] < zone.x() - EPS || input.y[i] < zone.y() - EPS
+                    || input.x[i] + input.w[i] > zone.x() + zone.width() + EPS
+                    || input.y[i] + input.h[i] > zone.y() + zone.height() + EPS) {
+                outside++;
+            }
+            offGrid |= !onGrid(input.x[i]) || !onGrid(input.y[i]) || !onGrid(input.w[i]) || !onGrid(input.h[i]);
+        }
+        if (overlaps == 0 && outside == 0 && !offGrid && !invalid) {
+            return new Result(input, false, 0, 0, false, 0);
+        }
+
+        // Zone en cellules, arrondie vers l'interieur
+        double zx0 = Math.ceil(zone.x() * CELLS_PER_METER - EPS);
+        double zy0 = Math.ceil(zone.y() * CELLS_PER_METER - EPS);
+        double zx1 = Math.floor((zone.x() + zone.width()) * CELLS_PER_METER + EPS);
+        double zy1 = Math.floor((zone.y() + zone.height()) * CELLS_PER_METER + EPS);
+        if (zx1 - zx0 < 1 || zy1 - zy0 < 1) {
+            throw new IllegalArgumentException("Zone constructible vide: le plan ne peut pas etre repare");
+        }
+
+        // 1-2. Accrochage a la grille et retour dans la zone (pieces de dimensions invalides ignorees)
+        var rooms = new Cells(n);
+        int dropped = 0;
+        for (int i = 0; i < n; i++) {
+            if (!(input.w[i] > 0) || !(input.h[i] > 0) || !Double.isFinite(input.x[i] + input.y[i] + input.w[i] + input.h[i])) {
+                dropped++;
+                continue;
+            }
+            double w = Math.min(Math.max(1, Math.round(input.w[i] * CELLS_PER_METER)), zx1 - zx0);
+            double h = Math.min(Math.max(1, Math.round(input.h[i] * CELLS_PER_METER)), zy1 - zy0);
+            double x = Math.min(Math.max(Math.round(input.x[i] * CELLS_PER_METER), zx0), zx1 - w);
+            double y = Math.min(Math.max(Math.round(input.y[i] * CELLS_PER_METER), zy0), zy1 - h);
+            rooms.add(i, x, y, w, h);
+        }
+
+        // 3. Deplacements
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            List<int[]> pairs = rooms.overlappingPairs();
+            if (pairs.isEmpty()) {
+                break;
+            }
+            for (int[] pair : pairs) {
+                if (rooms.overlap(pair[0], pair[1])) {
+                    rooms.separate(rooms.lowerPriority(pair[0], pair[1]), rooms.higherPriority(pair[0], pair[1]),
+                            zx0, zy0, zx1, zy1);
+                }
+            }
+        }
+
+        // 4. Chevauchements restants retranches (chaque coupe reduit strictement une piece: terminaison assuree)
+        double minSide = Math.round(MIN_SIDE * CELLS_PER_METER);
+        List<int[]> pairs = rooms.overlappingPairs();
+        while (!pairs.isEmpty()) {
+            for (int[] pair : pairs) {
+                if (rooms.removed[pair[0]] || rooms.removed[pair[1]] || !rooms.overlap(pair[0], pair[1])) {
+                    continue;
+                }
+                int mover = rooms.lowerPriority(pair[0], pair[1]);
+                if (!rooms.cut(mover, rooms.higherPriority(pair[0], pair[1]), minSide)) {
+                    rooms.removed[mover] = true;
+                    dropped++;
+                }
+            }
+            pairs = rooms.overlappingPairs();
+        }
+
+        var output = new RoomLayout(input.program(), rooms.size);
+        for (int k = 0; k < rooms.size; k++) {
+            if (!rooms.removed[k]) {
+                output.add(input.room[rooms.source[k]], rooms.x[k] / CELLS_PER_METER, rooms.y[k] / CELLS_PER_METER,
+                        rooms.w[k] / CELLS_PER_METER, rooms.h[k] / CELLS_PER_METER);
+            }
+        }
+        return new Result(output, true, overlaps, outside, offGrid, dropped);
+    }
+
+    private static boolean onGrid(double value) {
+        double cells = value * CELLS_PER_METER;
+        return Math.abs(cells - Math.rint(cells)) < EPS * CELLS_PER_METER;
+    }
+
+    /** Pieces en cours de reparation, en cellules de grille. */
+    private static final class Cells {
+        final int[] source;
+        final double[] x;
+        final double[] y;
+        final double[] w;
+        final double[] h;
+        final boolean[] removed;
+        int size;
+
+        Cells(int capacity) {
+            source = new int[capacity];
+            x = new double[capacity];
+            y = new double[capacity];
+            w = new double[capacity];
+            h = new double[capacity];
+            removed = new boolean[capacity];
+        }
+
+        void add(int sourceIndex, double px, double py, double pw, double ph) {
+            source[size] = sourceIndex;
+            x[size] = px;
+            y[size] = py;
+            w[size] = pw;
+            h[size] = ph;
+            size++;
+        }
+
+        /** Paires en chevauchement parmi les pieces non supprimees, triees (ordre de traitement deterministe). */
+        List<int[]> overlappingPairs() {
+            List<int[]> pairs = new ArrayList<>();
+            OverlapSweep.forEachOverlap(x, y, w, h, size, GRID_EPS, (a, b) -> {
+                if (!removed[a] && !removed[b]) {
+                    pairs.add(new int[]{a, b});
+                }
+            });
+            pairs.sort((p, q) -> p[0] != q[0] ? Integer.compare(p[0], q[0]) : Integer.compare(p[1], q[1]));
+            return pairs;
+        }
+
+        boolean overlap(int a, int b) {
+            return Math.min(x[a] + w[a], x[b] + w[b]) - Math.max(x[a], x[b]) > GRID_EPS
+                    && Math.min(y[a] + h[a], y[b] + h[b]) - Math.max(y[a], y[b]) > GRID_EPS;
+        }
+
+        /** La piece a garder en place: plus grande surface, puis indice d'origine le plus petit. */
+        int higherPriority(int a, int b) {
+            double areaA = w[a] * h[a];
+            double areaB = w[b] * h[b];
+            if (areaA != areaB) {
+                return areaA > areaB ? a : b;
+            }
+            return source[a] < source[b] ? a : b;
+        }
+
+        int lowerPriority(int a, int b) {
+            return higherPriority(a, b) == a ? b : a;
+        }
+
+        /**
+         * Deplace {@code m} hors de {@code f} du plus petit vecteur (droite, gauche, haut, bas a egalite)
+         * qui le garde dans la zone; ne fait rien si aucun ne convient.
+         */
+        void separate(int m, int f, double zx0, double zy0, double zx1, double zy1) {
+            double[] dx = {x[f] + w[f] - x[m], x[f] - (x[m] + w[m]), 0, 0};
+            double[] dy = {0, 0, y[f] + h[f] - y[m], y[f] - (y[m] + h[m])};
+            int best = -1;
+            for (int k = 0; k < 4; k++) {
+                double nx = x[m] + dx[k];
+                double ny = y[m] + dy[k];
+                if (nx < zx0 || ny < zy0 || nx + w[m] > zx1 || ny + h[m] > zy1) {
+                    continue;
+                }
+                if (best < 0 || Math.abs(dx[k] + dy[k]) < Math.abs(dx[best] + dy[best])) {
+                    best = k;
+                }
+            }
+            if (best >= 0) {
+                x[m] += dx[best];
+                y[m] += dy[best];
+            }
+        }
+
+        /**
+         * Retranche de {@code m} sa partie commune avec {@code f}, du cote ou la perte est la plus faible.
+         *
+         * @return false si aucune coupe ne laisse une piece d'au moins {@code minSide} de cote
+         */
+        boolean cut(int m, int f, double minSide) {
+            // Cotes de m qui peuvent reculer jusqu'au bord de f: gauche, droite, bas, haut
+            double[] newSide = {
+                    x[m] + w[m] - (x[f] + w[f]),
+                    x[f] - x[m],
+                    y[m] + h[m] - (y[f] + h[f]),
+                    y[f] - y[m]
+            };
+            int best = -1;
+            double bestLoss = Double.MAX_VALUE;
+            for (int k = 0; k < 4; k++) {
+                if (newSide[k] < minSide) {
+                    continue;
+                }
+                double loss = k < 2 ? (w[m] - newSide[k]) * h[m] : (h[m] - newSide[k]) * w[m];
+                if (loss < bestLoss) {
+                    best = k;
+                    bestLoss = loss;
+                }
+            }
+            switch (best) {
+                case 0 -> {
+                    x[m] = x[f] + w[f];
+                    w[m] = newSide[0];
+                }
+                case 1 -> w[m] = newSide[1];
+                case 2 -> {
+                    y[m] = y[f] + h[f];
+                    h[m] = newSide[2];
+                }
+                case 3 -> h[m] = newSide[3];
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package tn.archigen.archigen.service.layout;
+
+/**
+ * Resultat d'une tentative de placement.
+ *
+ * @param layout       pieces placees
+ * @param droppedRooms indices (dans le programme) des pieces qui n'ont pas trouve de place
+ * @param placedArea   surface totale placee (m2)
+ * @param wastedArea   surface perdue dans l'emprise des pieces placees (m2)
+ * @param score        score du placement (plus grand = meilleur)
+ */
+public record LayoutResult(
+        LayoutCandidate candidate,
+        RoomLayout layout,
+        int[] droppedRooms,
+        double placedArea,
+        double wastedArea,
+        double score
+) {}
@@ -0,0 +1,37 @@
+package tn.archigen.archigen.service.layout;
+
+/**
+ * Strategie de placement de rectangles (pieces) dans la zone constructible.
+ * Les implementations travaillent sur des tableaux primitifs et sont sans etat:
+ * une meme instance peut etre utilisee en parallele par la recherche multi-candidats.
+ */
+public interface LayoutStrategy {
+
+    LayoutStrategy ROW_PACKING = new RowPackingStrategy();
+    LayoutStrategy MAX_RECTS = new MaxRectsStrategy();
+    LayoutStrategy GUILLOTINE = new GuillotineStrategy();
+
+    /** Nom expose dans l'API (champ strategy de PlanGenerateRequest). */
+    String name();
+
+    /**
+     * Place les {@code n} premieres pieces dans l'ordre donne.
+     * Les positions sont ecrites dans {@code xs}/{@code ys} (NaN si la piece n'a pas de place).
+     * Une strategie peut pivoter une piece en echangeant {@code widths[i]} et {@code heights[i]}.
+     *
+     * @param gap espace a laisser entre deux pieces (epaisseur de mur)
+     */
+    void pack(double[] widths, double[] heights, int n, BuildableZone zone, double gap, double[] xs, double[] ys);
+
+    static LayoutStrategy forName(String name) {
+        if (name == null) {
+            return ROW_PACKING;
+        }
+        return switch (name) {
+            case "maxrects" -> MAX_RECTS;
+            case "guillotine" -> GUILLOTINE;
+            case "rangees" -> ROW_PACKING;
+            default -> throw new IllegalArgumentException("Strategie de placement inconnue: " + name);
+        };
+    }
+}
@@ -0,0 +1,175 @@
+package tn.archigen.archigen.service.layout;
+
+import java.util.Arrays;
+
+/**
+ * Bin packing MaxRects (Jylanki), heuristique Best Short Side Fit avec rotation.
+ * La liste des rectangles libres (maximaux, eventuellement chevauchants) est stockee
+ * dans des tableaux primitifs; les rectangles contenus dans un autre sont elimines
+ * apres chaque placement pour garder la liste courte.
+ *
+ * Chaque piece est gonflee de {@code gap} a droite et en haut, et la zone de {@code gap}
+ * egalement, pour reserver l'epaisseur des murs entre pieces.
+ */
+final class MaxRectsStrategy implements LayoutStrategy {
+
+    private static final double EPS = 1e-9;
+
+    @Override
+    public String name() {
+        return "maxrects";
+    }
+
+    @Override
+    public void pack(double[] widths, double[] heights, int n, BuildableZone zone, double gap, double[] xs, double[] ys) {
+        var free = new FreeRects(Math.max(8, 4 * n));
+        free.add(zone.x(), zone.y(), zone.width() + gap, zone.height() + gap);
+
+        for (int i = 0; i < n; i++) {
+            double w = widths[i] + gap;
+            double h = heights[i] + gap;
+
+            int bestIndex = -1;
+            boolean bestRotated = false;
+            double bestShort = Double.MAX_VALUE;
+            double bestLong = Double.MAX_VALUE;
+            double bestY = Double.MAX_VALUE;
+
+            for (int f = 0; f < free.size; f++) {
+                double fw = free.w[f];
+                double fh = free.h[f];
+                for (int r = 0; r < 2; r++) {
+                    double pw = r == 0 ? w : h;
+                    double ph = r == 0 ? h : w;
+                    if (pw > fw + EPS || ph > fh + EPS) {
+                        continue;
+                    }
+                    double shortSide = Math.min(fw - pw, fh - ph);
+                    double longSide = Math.max(fw - pw, fh - ph);
+                    // Departage vers l'avant du terrain (y minimal) pour garder un plan compact
+                    if (shortSide < bestShort - EPS
+                            || (shortSide < bestShort + EPS && longSide < bestLong - EPS)
+                            || (shortSide < bestShort + EPS && longSide < bestLong + EPS && free.y[f] < bestY)) {
+                        bestIndex = f;
+                        bestRotated = r == 1;
+                        bestShort = shortSide;
+                        bestLong = longSide;
+                        bestY = free.y[f];
+                    }
+                }
+            }
+
+            if (bestIndex < 0) {
+                xs[i] = Double.NaN;
+                ys[i] = Double.NaN;
+                continue;
+            }
+
+            if (bestRotated) {
+                double tmp = widths[i];
+                widths[i] = heights[i];
+                heights[i] = tmp;
+                w = widths[i] + gap;
+                h = heights[i] + gap;
+            }
+            xs[i] = free.x[bestIndex];
+            ys[i] = free.y[bestIndex];
+            splitFreeRects(free, xs[i], ys[i], w, h);
+            free.prune();
+        }
+    }
+
+    /** Decoupe chaque rectangle libre intersecte par le rectangle place en (au plus) 4 rectangles maximaux. */
+    private void splitFreeRects(FreeRects free, double px, double py, double pw, double ph) {
+        int count = free.size;
+        for (int f = 0; f < count; f++) {
+            double fx = free.x[f];
+            double fy = free.y[f];
+            double fw = free.w[f];
+            double fh = free.h[f];
+            if (px >= fx + fw - EPS || px + pw <= fx + EPS || py >= fy + fh - EPS || py + ph <= fy + EPS) {
+                continue;
+            }
+            if (px > fx + EPS) {
+                free.add(fx, fy, px - fx, fh);
+            }
+            if (px + pw < fx + fw - EPS) {
+                free.add(px + pw, fy, fx + fw - (px + pw), fh);
+            }
+            if (py > fy + EPS) {
+                free.add(fx, fy, fw, py - fy);
+            }
+            if (py + ph < fy + fh - EPS) {
+                free.add(fx, py + ph, fw, fy + fh - (py + ph));
+            }
+            free.markRemoved(f);
+        }
+    }
+
+    /** Liste de rectangles libres en tableaux paralleles (x, y, w, h). */
+    private static final class FreeRects {
+        double[] x;
+        double[] y;
+        double[] w;
+        double[] h;
+        int size;
+
+        FreeRects(int capacity) {
+            x = new double[capacity];
+            y = new double[capacity];
+            w = new double[capacity];
+            h = new double[capacity];
+        }
+
+        void add(double fx, double fy, double fw, double fh) {
+            if (size == x.length) {
+                int capacity = size * 2;
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                w = Arrays.copyOf(w, capacity);
+                h = Arrays.copyOf(h, capacity);
+            }
+            x[size] = fx;
+            y[size] = fy;
+            w[size] = fw;
+            h[size] = fh;
+            size++;
+        }
+
+        void markRemoved(int f) {
+            w[f] = -1;
+        }
+
+        /** Supprime les rectangles marques et ceux contenus dans un autre rectangle libre. */
+        void prune() {
+            for (int a = 0; a < size; a++) {
+                if (w[a] < 0) {
+                    continue;
+                }
+                for (int b = 0; b < size; b++) {
+                    if (a != b && w[b] >= 0 && contains(b, a)) {
+                        w[a] = -1;
+                        break;
+                    }
+                }
+            }
+            int kept = 0;
+            for (int f = 0; f < size; f++) {
+                if (w[f] >= 0) {
+                    x[kept] = x[f];
+                    y[kept] = y[f];
+                    w[kept] = w[f];
+                    h[kept] = h[f];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        private boolean contains(int outer, int inner) {
+            return x[inner] >= x[outer] - EPS && y[inner] >= y[outer] - EPS
+                    && x[inner] + w[inner] <= x[outer] + w[outer] + EPS
+                    && y[inner] + h[inner] <= y[outer] + h[outer] + EPS;
+        }
+    }
+}
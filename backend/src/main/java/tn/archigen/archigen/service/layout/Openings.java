@@ -0,0 +1,89 @@
+package tn.archigen.archigen.service.layout;
+
+import tn.archigen.archigen.dto.DoorDto;
+import tn.archigen.archigen.dto.WindowDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ouvertures (portes ou fenetres) en tableaux paralleles; converties en DTO a la sortie.
+ */
+public final class Openings {
+
+    private double[] x;
+    private double[] y;
+    private double[] width;
+    private boolean[] vertical;
+    private int size;
+
+    public Openings(int capacity) {
+        int initial = Math.max(4, capacity);
+        x = new double[initial];
+        y = new double[initial];
+        width = new double[initial];
+        vertical = new boolean[initial];
+    }
+
+    public void add(double px, double py, double pw, boolean isVertical) {
+        if (size == x.length) {
+            int capacity = size * 2;
+            x = Arrays.copyOf(x, capacity);
+            y = Arrays.copyOf(y, capacity);
+            width = Arrays.copyOf(width, capacity);
+            vertical = Arrays.copyOf(vertical, capacity);
+        }
+        x[size] = px;
+        y[size] = py;
+        width[size] = pw;
+        vertical[size] = isVertical;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double x(int i) {
+        return x[i];
+    }
+
+    public double y(int i) {
+        return y[i];
+    }
+
+    public double width(int i) {
+        return width[i];
+    }
+
+    public boolean vertical(int i) {
+        return vertical[i];
+    }
+
+    public List<DoorDto> toDoorDtos() {
+        List<DoorDto> doors = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            doors.add(DoorDto.builder()
+                    .x(x[i])
+                    .y(y[i])
+                    .width(width[i])
+                    .orientation(vertical[i] ? "vertical" : "horizontal")
+                    .build());
+        }
+        return doors;
+    }
+
+    public List<WindowDto> toWindowDtos() {
+        List<WindowDto> windows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            windows.add(WindowDto.builder()
+                    .x(x[i])
+                    .y(y[i])
+                    .width(width[i])
+                    .orientation(vertical[i] ? "vertical" : "horizontal")
+                    .build());
+        }
+        return windows;
+    }
+}
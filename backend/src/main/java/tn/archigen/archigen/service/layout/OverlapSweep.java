@@ -0,0 +1,72 @@
+package tn.archigen.archigen.service.layout;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * Detection des chevauchements entre rectangles stockes en tableaux paralleles, par balayage en x.
+ * Les rectangles sont visites par abscisse de debut croissante; la ligne de balayage garde les rectangles
+ * actifs (qui coupent l'abscisse courante) dans un arbre ordonne par ordonnee de debut, et les retire
+ * par abscisse de fin croissante. Un nouveau rectangle n'est compare qu'aux actifs dont l'ordonnee de debut
+ * est dans ]y - hauteur max, y + h[: O(n log n + k) pour k chevauchements quand les hauteurs sont
+ * comparables, ce qui est le cas des pieces d'un plan.
+ *
+ * Deux rectangles qui se touchent (mur commun) ou dont l'intersection est inferieure a {@code eps}
+ * sur un axe ne se chevauchent pas.
+ */
+public final class OverlapSweep {
+
+    private OverlapSweep() {
+    }
+
+    /**
+     * Visite chaque paire de rectangles qui se chevauchent, exactement une fois (a &lt; b).
+     *
+     * @return nombre de paires visitees
+     */
+    public static int forEachOverlap(double[] x, double[] y, double[] w, double[] h, int n, double eps,
+                                     SpatialGrid.PairConsumer consumer) {
+        if (n < 2) {
+            return 0;
+        }
+        Integer[] byStart = new Integer[n];
+        Integer[] byEnd = new Integer[n];
+        double maxHeight = 0;
+        for (int i = 0; i < n; i++) {
+            byStart[i] = i;
+            byEnd[i] = i;
+            maxHeight = Math.max(maxHeight, h[i]);
+        }
+        Arrays.sort(byStart, (a, b) -> Double.compare(x[a], x[b]));
+        Arrays.sort(byEnd, (a, b) -> Double.compare(x[a] + w[a], x[b] + w[b]));
+
+        // Cle de tri des actifs; la case n sert de sonde pour les recherches par ordonnee
+        double[] key = Arrays.copyOf(y, n + 1);
+        var active = new TreeSet<Integer>((a, b) -> key[a] != key[b] ? Double.compare(key[a], key[b]) : Integer.compare(a, b));
+
+        int count = 0;
+        int removed = 0;
+        for (int k = 0; k < n; k++) {
+            int i = byStart[k];
+            while (removed < n && x[byEnd[removed]] + w[byEnd[removed]] <= x[i] + eps) {
+                active.remove(byEnd[removed++]);
+            }
+            // Actifs commencant sous le haut de i, du plus haut au plus bas, tant qu'ils peuvent encore l'atteindre
+            key[n] = y[i] + h[i] - eps;
+            Iterator<Integer> candidates = active.headSet(n, false).descendingIterator();
+            while (candidates.hasNext()) {
+                int j = candidates.next();
+                if (y[j] + maxHeight <= y[i] + eps) {
+                    break;
+                }
+                if (y[j] + h[j] > y[i] + eps && y[j] < y[i] + h[i] - eps && x[j] + w[j] > x[i] + eps) {
+                    consumer.accept(Math.min(i, j), Math.max(i, j));
+                    count++;
+                }
+            }
+            active.add(i);
+        }
+        return count;
+    }
+}
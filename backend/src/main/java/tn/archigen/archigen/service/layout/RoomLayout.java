@@ -0,0 +1,144 @@
+package tn.archigen.archigen.service.layout;
+
+import tn.archigen.archigen.dto.RoomDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pieces placees, en tableaux paralleles (x, y, largeur, profondeur, surface).
+ * Chaque piece reference son entree dans le {@link RoomProgram} (nom, type).
+ * C'est la representation de travail de tout le pipeline (placement, graphe d'adjacence,
+ * portes, fenetres, metriques); les {@link RoomDto} ne sont construits qu'a la sortie.
+ */
+public final class RoomLayout {
+
+    private final RoomProgram program;
+    final int[] room;
+    final double[] x;
+    final double[] y;
+    final double[] w;
+    final double[] h;
+    final double[] area;
+    private int size;
+
+    public RoomLayout(RoomProgram program, int capacity) {
+        this.program = program;
+        this.room = new int[capacity];
+        this.x = new double[capacity];
+        this.y = new double[capacity];
+        this.w = new double[capacity];
+        this.h = new double[capacity];
+        this.area = new double[capacity];
+    }
+
+    /** Representation de travail d'un plan existant (JSON PlanResponse). */
+    public static RoomLayout of(List<RoomDto> rooms) {
+        var program = RoomProgram.of(rooms);
+        var layout = new RoomLayout(program, rooms.size());
+        for (int i = 0; i < rooms.size(); i++) {
+            var room = rooms.get(i);
+            layout.add(i, room.getX(), room.getY(), room.getWidth(), room.getHeight());
+        }
+        return layout;
+    }
+
+    public void add(int programIndex, double px, double py, double pw, double ph) {
+        int i = size++;
+        room[i] = programIndex;
+        x[i] = px;
+        y[i] = py;
+        w[i] = pw;
+        h[i] = ph;
+        area[i] = pw * ph;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public RoomProgram program() {
+        return program;
+    }
+
+    /** Indice de la piece dans le {@link RoomProgram}. */
+    public int programIndex(int i) {
+        return room[i];
+    }
+
+    public double x(int i) {
+        return x[i];
+    }
+
+    public double y(int i) {
+        return y[i];
+    }
+
+    public double width(int i) {
+        return w[i];
+    }
+
+    public double height(int i) {
+        return h[i];
+    }
+
+    public double area(int i) {
+        return area[i];
+    }
+
+    public int typeCode(int i) {
+        return program.typeCode(room[i]);
+    }
+
+    public String name(int i) {
+        return program.name(room[i]);
+    }
+
+    public double totalArea() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += area[i];
+        }
+        return total;
+    }
+
+    /**
+     * Empreinte geometrique du placement: piece, position et dimensions arrondies a {@code cell} pres,
+     * combinees de facon independante de l'ordre des pieces. Deux placements quasi identiques
+     * (ecarts inferieurs a la cellule) ont en general la meme empreinte.
+     */
+    public long fingerprint(double cell) {
+        long hash = size;
+        for (int i = 0; i < size; i++) {
+            long roomHash = room[i];
+            roomHash = roomHash * 31 + Math.round(x[i] / cell);
+            roomHash = roomHash * 31 + Math.round(y[i] / cell);
+            roomHash = roomHash * 31 + Math.round(w[i] / cell);
+            roomHash = roomHash * 31 + Math.round(h[i] / cell);
+            hash += mix(roomHash);
+        }
+        return hash;
+    }
+
+    /** Finaliseur SplitMix64: disperse les bits avant la somme (commutative). */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public List<RoomDto> toRoomDtos() {
+        List<RoomDto> rooms = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rooms.add(RoomDto.builder()
+                    .name(name(i))
+                    .type(program.type(room[i]))
+                    .x(x[i])
+                    .y(y[i])
+                    .width(w[i])
+                    .height(h[i])
+                    .build());
+        }
+        return rooms;
+    }
+}
@@ -0,0 +1,72 @@
+package tn.archigen.archigen.service.layout;
+
+/**
+ * Ordre dans lequel les pieces sont presentees a l'algorithme de placement.
+ * L'ordre est produit sous forme de permutation d'indices du {@link RoomProgram}
+ * (tri stable sur tableaux primitifs, sans boxing).
+ */
+public enum RoomOrder {
+
+    /** Surface decroissante (les grandes pieces d'abord) - comportement historique. */
+    AREA_DESC,
+    /** Surface croissante. */
+    AREA_ASC,
+    /** Pieces seches puis pieces humides regroupees (cuisine, sdb, wc). */
+    WET_GROUPED,
+    /** Alternance grande / petite piece. */
+    ALTERNATING,
+    /** Ordre de la requete. */
+    INPUT;
+
+    @FunctionalInterface
+    private interface IndexComparator {
+        int compare(int a, int b);
+    }
+
+    public int[] permutation(RoomProgram program) {
+        int n = program.size();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+
+        IndexComparator byAreaDesc = (a, b) -> Double.compare(program.minArea(b), program.minArea(a));
+        switch (this) {
+            case AREA_DESC -> sort(order, byAreaDesc);
+            case AREA_ASC -> sort(order, (a, b) -> byAreaDesc.compare(b, a));
+            case WET_GROUPED -> sort(order, (a, b) -> {
+                int wet = Boolean.compare(RoomTypes.isWet(program.typeCode(a)), RoomTypes.isWet(program.typeCode(b)));
+                return wet != 0 ? wet : byAreaDesc.compare(a, b);
+            });
+            case ALTERNATING -> {
+                sort(order, byAreaDesc);
+                int[] alternated = new int[n];
+                int k = 0;
+                for (int lo = 0, hi = n - 1; lo <= hi; lo++, hi--) {
+                    alternated[k++] = order[lo];
+                    if (lo != hi) {
+                        alternated[k++] = order[hi];
+                    }
+                }
+                return alternated;
+            }
+            case INPUT -> {
+                // Ordre conserve
+            }
+        }
+        return order;
+    }
+
+    /** Tri par insertion stable: les programmes comptent quelques dizaines de pieces. */
+    private static void sort(int[] order, IndexComparator comparator) {
+        for (int i = 1; i < order.length; i++) {
+            int current = order[i];
+            int j = i - 1;
+            while (j >= 0 && comparator.compare(order[j], current) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = current;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package tn.archigen.archigen.service.layout;
+
+import tn.archigen.archigen.dto.RoomDto;
+
+import java.util.List;
+
+/**
+ * Programme de pieces expanse (une entree par piece a placer), en tableaux paralleles.
+ * Les copies d'une meme exigence (count > 1) partagent le nom de base; le nom numerote
+ * ("Chambre 2") n'est construit qu'a la sortie vers l'API.
+ */
+public final class RoomProgram {
+
+    private final String[] baseNames;
+    private final int[] copyIndex;
+    private final String[] types;
+    private final int[] typeCodes;
+    private final double[] minAreas;
+    private int size;
+
+    public RoomProgram(int capacity) {
+        baseNames = new String[capacity];
+        copyIndex = new int[capacity];
+        types = new String[capacity];
+        typeCodes = new int[capacity];
+        minAreas = new double[capacity];
+    }
+
+    /** Programme d'un plan existant: chaque piece est sa propre exigence, surface = largeur x profondeur. */
+    public static RoomProgram of(List<RoomDto> rooms) {
+        var program = new RoomProgram(rooms.size());
+        for (var room : rooms) {
+            program.add(room.getName(), 0, room.getType(), room.getWidth() * room.getHeight());
+        }
+        return program;
+    }
+
+    /**
+     * @param copy numero de copie (1..count) si l'exigence est multiple, 0 sinon
+     */
+    public int add(String baseName, int copy, String type, double minArea) {
+        int i = size++;
+        baseNames[i] = baseName;
+        copyIndex[i] = copy;
+        types[i] = type;
+        typeCodes[i] = RoomTypes.code(type);
+        minAreas[i] = minArea;
+        return i;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int i) {
+        return copyIndex[i] == 0 ? baseNames[i] : baseNames[i] + " " + copyIndex[i];
+    }
+
+    public String type(int i) {
+        return types[i];
+    }
+
+    public int typeCode(int i) {
+        return typeCodes[i];
+    }
+
+    public double minArea(int i) {
+        return minAreas[i];
+    }
+}
@@ -0,0 +1,78 @@
+package tn.archigen.archigen.service.layout;
+
+/**
+ * Codes entiers des types de piece, utilises dans les boucles de placement
+ * a la place des chaines de caracteres (comparaisons et tables indexees sans hachage).
+ */
+public final class RoomTypes {
+
+    public static final int SALON = 0;
+    public static final int CHAMBRE = 1;
+    public static final int CUISINE = 2;
+    public static final int SDB = 3;
+    public static final int WC = 4;
+    public static final int ENTREE = 5;
+    public static final int COULOIR = 6;
+    public static final int BUREAU = 7;
+    public static final int GARAGE = 8;
+    /** Type non reconnu (le libelle d'origine est conserve dans le programme). */
+    public static final int AUTRE = 9;
+    /** Cage d'escalier (noyau de circulation verticale des plans multi-etages). */
+    public static final int ESCALIER = 10;
+
+    // Surfaces minimales par type de piece (normes tunisiennes habitation), indexees par code
+    private static final double[] DEFAULT_MIN_AREAS = {
+            20.0, // salon
+            12.0, // chambre
+            9.0,  // cuisine
+            5.0,  // sdb
+            2.5,  // wc
+            4.0,  // entree
+            3.0,  // couloir
+            10.0, // bureau
+            15.0, // garage
+            12.0, // autre
+            11.7  // escalier (2.60 x 4.50)
+    };
+
+    private RoomTypes() {
+    }
+
+    public static int code(String type) {
+        if (type == null) {
+            return AUTRE;
+        }
+        return switch (type) {
+            case "salon" -> SALON;
+            case "chambre" -> CHAMBRE;
+            case "cuisine" -> CUISINE;
+            case "sdb" -> SDB;
+            case "wc" -> WC;
+            case "entree" -> ENTREE;
+            case "couloir" -> COULOIR;
+            case "bureau" -> BUREAU;
+            case "garage" -> GARAGE;
+            case "escalier" -> ESCALIER;
+            default -> AUTRE;
+        };
+    }
+
+    public static double defaultMinArea(int code) {
+        return DEFAULT_MIN_AREAS[code];
+    }
+
+    /** Pieces humides (cuisine, sdb, wc), a regrouper pour la plomberie. */
+    public static boolean isWet(int code) {
+        return code == CUISINE || code == SDB || code == WC;
+    }
+
+    /** Pieces de jour (salon, cuisine, entree, garage), placees au RDC dans un plan multi-etages. */
+    public static boolean isDayRoom(int code) {
+        return code == SALON || code == CUISINE || code == ENTREE || code == GARAGE;
+    }
+
+    /** Pas de fenetres pour SDB, WC, couloir. */
+    public static boolean hasWindows(int code) {
+        return code != SDB && code != WC && code != COULOIR;
+    }
+}
@@ -0,0 +1,44 @@
+package tn.archigen.archigen.service.layout;
+
+/**
+ * Placement en rangees (row-packing) - strategie historique.
+ * Place les pieces de gauche a droite, puis passe a la rangee suivante.
+ * Des qu'une rangee depasse la profondeur de la zone, les pieces restantes ne sont pas placees.
+ */
+final class RowPackingStrategy implements LayoutStrategy {
+
+    @Override
+    public String name() {
+        return "rangees";
+    }
+
+    @Override
+    public void pack(double[] widths, double[] heights, int n, BuildableZone zone, double gap, double[] xs, double[] ys) {
+        double currentX = zone.x();
+        double currentY = zone.y();
+        double rowHeight = 0;
+
+        for (int i = 0; i < n; i++) {
+            // Verifier si la piece tient dans la rangee courante
+            if (currentX + widths[i] > zone.x() + zone.width()) {
+                currentX = zone.x();
+                currentY += rowHeight + gap;
+                rowHeight = 0;
+            }
+
+            // Verifier si on depasse la hauteur max
+            if (currentY + heights[i] > zone.y() + zone.height()) {
+                for (int j = i; j < n; j++) {
+                    xs[j] = Double.NaN;
+                    ys[j] = Double.NaN;
+                }
+                return;
+            }
+
+            xs[i] = currentX;
+            ys[i] = currentY;
+            rowHeight = Math.max(rowHeight, heights[i]);
+            currentX += widths[i] + gap;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package tn.archigen.archigen.service.layout;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Index spatial en grille uniforme pour des rectangles stockes en tableaux paralleles.
+ * Chaque rectangle (gonfle d'une marge) est enregistre dans les cellules qu'il couvre;
+ * les cellules sont stockees au format CSR (offsets + items) pour eviter toute allocation par cellule.
+ *
+ * La taille de cellule suit la dimension moyenne des rectangles: chaque rectangle couvre
+ * un nombre constant de cellules et la recherche de paires est quasi lineaire.
+ */
+public final class SpatialGrid {
+
+    @FunctionalInterface
+    public interface PairConsumer {
+        void accept(int a, int b);
+    }
+
+    private final double originX;
+    private final double originY;
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final double margin;
+
+    private final int[] minCol;
+    private final int[] maxCol;
+    private final int[] minRow;
+    private final int[] maxRow;
+    private final int[] cellStart;
+    private final int[] cellItems;
+    private final int[] visitStamp;
+    private int stamp;
+
+    public SpatialGrid(double[] x, double[] y, double[] w, double[] h, int n, double margin) {
+        this.margin = margin;
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        double sumSize = 0;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, x[i] - margin);
+            minY = Math.min(minY, y[i] - margin);
+            maxX = Math.max(maxX, x[i] + w[i] + margin);
+            maxY = Math.max(maxY, y[i] + h[i] + margin);
+            sumSize += Math.max(w[i], h[i]);
+        }
+        if (n == 0) {
+            minX = minY = 0;
+            maxX = maxY = 1;
+        }
+
+        double size = Math.max(1.0, n > 0 ? sumSize / n + 2 * margin : 1.0);
+        // Borner le nombre de cellules a O(n) meme pour des pieces tres dispersees
+        int maxCells = Math.max(16, 4 * n);
+        while (cellCount(maxX - minX, size) * (long) cellCount(maxY - minY, size) > maxCells) {
+            size *= 2;
+        }
+
+        this.originX = minX;
+        this.originY = minY;
+        this.cellSize = size;
+        this.cols = cellCount(maxX - minX, size);
+        this.rows = cellCount(maxY - minY, size);
+
+        this.minCol = new int[n];
+        this.maxCol = new int[n];
+        this.minRow = new int[n];
+        this.maxRow = new int[n];
+        this.cellStart = new int[cols * rows + 1];
+        this.visitStamp = new int[n];
+
+        // Passe 1: nombre d'items par cellule
+        for (int i = 0; i < n; i++) {
+            minCol[i] = col(x[i] - margin);
+            maxCol[i] = col(x[i] + w[i] + margin);
+            minRow[i] = row(y[i] - margin);
+            maxRow[i] = row(y[i] + h[i] + margin);
+            for (int r = minRow[i]; r <= maxRow[i]; r++) {
+                for (int c = minCol[i]; c <= maxCol[i]; c++) {
+                    cellStart[r * cols + c + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < cols * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        // Passe 2: remplissage
+        this.cellItems = new int[cellStart[cols * rows]];
+        int[] fill = new int[cols * rows];
+        for (int i = 0; i < n; i++) {
+            for (int r = minRow[i]; r <= maxRow[i]; r++) {
+                for (int c = minCol[i]; c <= maxCol[i]; c++) {
+                    int cell = r * cols + c;
+                    cellItems[cellStart[cell] + fill[cell]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Visite chaque paire de rectangles partageant au moins une cellule, exactement une fois.
+     * Une paire n'est emise que dans la premiere cellule de l'intersection de leurs empreintes.
+     */
+    public void forEachPair(PairConsumer consumer) {
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int cell = r * cols + c;
+                for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                    int a = cellItems[p];
+                    for (int q = p + 1; q < cellStart[cell + 1]; q++) {
+                        int b = cellItems[q];
+                        if (c == Math.max(minCol[a], minCol[b]) && r == Math.max(minRow[a], minRow[b])) {
+                            consumer.accept(Math.min(a, b), Math.max(a, b));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Visite (sans doublon) les rectangles dont les cellules recouvrent la zone demandee
+     * (gonflee de la marge de la grille). Les candidats doivent etre filtres par l'appelant.
+     * Non thread-safe: une grille ne doit etre interrogee que par un thread a la fois.
+     */
+    public void forEachNear(double qx, double qy, double qw, double qh, IntConsumer consumer) {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visitStamp, 0);
+            stamp = 1;
+        }
+        int c0 = col(qx - margin), c1 = col(qx + qw + margin);
+        int r0 = row(qy - margin), r1 = row(qy + qh + margin);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                    int item = cellItems[p];
+                    if (visitStamp[item] != stamp) {
+                        visitStamp[item] = stamp;
+                        consumer.accept(item);
+                    }
+                }
+            }
+        }
+    }
+
+    private static int cellCount(double span, double size) {
+        return Math.max(1, (int) Math.ceil(span / size) + 1);
+    }
+
+    private int col(double value) {
+        return Math.clamp((int) Math.floor((value - originX) / cellSize), 0, cols - 1);
+    }
+
+    private int row(double value) {
+        return Math.clamp((int) Math.floor((value - originY) / cellSize), 0, rows - 1);
+    }
+}
@@ -0,0 +1,162 @@
+package tn.archigen.archigen.service.layout;
+
+import java.util.Arrays;
+
+/**
+ * Alignement des murs d'un niveau sur ceux d'un niveau de reference (le RDC), pour que les murs des etages
+ * reposent sur ceux du dessous (trame porteuse commune).
+ * Les lignes de murs de la reference sont les bords des pieces, par axe et par cote: un bord gauche
+ * (resp. droit, haut, bas) n'est accroche qu'a un bord gauche (resp. droit, haut, bas) de la reference,
+ * ce qui garde l'epaisseur des murs entre deux pieces voisines.
+ *
+ * Chaque ligne du niveau a moins de {@code tolerance} d'une ligne de la reference y est deplacee, avec tous
+ * les bords de pieces qui la suivent. Un deplacement est refuse s'il rapproche deux pieces a moins de
+ * {@code gap} (chevauchement des murs), s'il reduit une piece sous {@link LayoutRepair#MIN_SIDE} ou sous
+ * sa surface minimale (quand elle l'avait), ou s'il fait sortir une piece de la zone.
+ * Un deplacement refuse peut devenir possible apres celui d'une ligne voisine: les lignes sont reprises
+ * pendant quelques passes. Les lignes qui restent hors trame sont celles que le placement ne permet pas
+ * d'aligner sans perdre de surface ou de place.
+ */
+public final class WallAlignment {
+
+    /** Passes sur les lignes du niveau (un mur entre deux pieces est aligne en deux deplacements au plus). */
+    private static final int MAX_PASSES = 3;
+
+    /** Ecart en dessous duquel deux lignes sont confondues (m). */
+    private static final double EPS = 1e-6;
+
+    private WallAlignment() {
+    }
+
+    /**
+     * Aligne en place les murs de {@code layout} sur ceux de {@code reference}.
+     *
+     * @return nombre de lignes de murs deplacees
+     */
+    public static int align(RoomLayout layout, RoomLayout reference, BuildableZone zone, double tolerance, double gap) {
+        int moved = 0;
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            int movedInPass = 0;
+            movedInPass += alignSide(layout, reference, zone, tolerance, gap, true, false);
+            movedInPass += alignSide(layout, reference, zone, tolerance, gap, true, true);
+            movedInPass += alignSide(layout, reference, zone, tolerance, gap, false, false);
+            movedInPass += alignSide(layout, reference, zone, tolerance, gap, false, true);
+            moved += movedInPass;
+            if (movedInPass == 0) {
+                break;
+            }
+        }
+        return moved;
+    }
+
+    /** Lignes d'un cote (bords gauches/droits si {@code vertical}, sinon hauts/bas) accrochees a la reference. */
+    private static int alignSide(RoomLayout layout, RoomLayout reference, BuildableZone zone, double tolerance,
+                                 double gap, boolean vertical, boolean end) {
+        double[] targets = lines(reference, vertical, end);
+        if (targets.length == 0) {
+            return 0;
+        }
+        double[] current = lines(layout, vertical, end);
+        int moved = 0;
+        for (double line : current) {
+            double target = nearest(targets, line);
+            double delta = target - line;
+            if (Math.abs(delta) <= EPS || Math.abs(delta) > tolerance) {
+                continue;
+            }
+            if (tryMove(layout, zone, gap, vertical, end, line, delta)) {
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    /** Deplace de {@code delta} les bords sur {@code line}, ou laisse le placement intact si le resultat est refuse. */
+    private static boolean tryMove(RoomLayout layout, BuildableZone zone, double gap, boolean vertical, boolean end,
+                                   double line, double delta) {
+        int n = layout.size();
+        double[] pos = vertical ? layout.x : layout.y;
+        double[] len = vertical ? layout.w : layout.h;
+        int before = spacingConflicts(layout, gap);
+        double[] savedPos = Arrays.copyOf(pos, n);
+        double[] savedLen = Arrays.copyOf(len, n);
+        double[] savedArea = Arrays.copyOf(layout.area, n);
+
+        boolean valid = true;
+        for (int i = 0; i < n && valid; i++) {
+            double edge = end ? pos[i] + len[i] : pos[i];
+            if (Math.abs(edge - line) > EPS) {
+                continue;
+            }
+            if (end) {
+                len[i] += delta;
+            } else {
+                pos[i] += delta;
+                len[i] -= delta;
+            }
+            double area = layout.w[i] * layout.h[i];
+            double minArea = Math.min(savedArea[i], layout.program().minArea(layout.room[i]));
+            valid = len[i] >= LayoutRepair.MIN_SIDE && area >= minArea - EPS && inside(layout, zone, i);
+            layout.area[i] = area;
+        }
+        if (valid && spacingConflicts(layout, gap) <= before) {
+            return true;
+        }
+        System.arraycopy(savedPos, 0, pos, 0, n);
+        System.arraycopy(savedLen, 0, len, 0, n);
+        System.arraycopy(savedArea, 0, layout.area, 0, n);
+        return false;
+    }
+
+    /** Paires de pieces a moins de {@code gap} l'une de l'autre sur les deux axes (murs qui se chevauchent). */
+    private static int spacingConflicts(RoomLayout layout, double gap) {
+        int n = layout.size();
+        double[] w = new double[n];
+        double[] h = new double[n];
+        for (int i = 0; i < n; i++) {
+            w[i] = layout.w[i] + gap;
+            h[i] = layout.h[i] + gap;
+        }
+        return OverlapSweep.forEachOverlap(layout.x, layout.y, w, h, n, EPS, (a, b) -> { });
+    }
+
+    private static boolean inside(RoomLayout layout, BuildableZone zone, int i) {
+        return layout.x[i] >= zone.x() - EPS && layout.y[i] >= zone.y() - EPS
+                && layout.x[i] + layout.w[i] <= zone.x() + zone.width() + EPS
+                && layout.y[i] + layout.h[i] <= zone.y() + zone.height() + EPS;
+    }
+
+    /** Lignes distinctes, triees, des bords d'un cote des pieces. */
+    private static double[] lines(RoomLayout layout, boolean vertical, boolean end) {
+        int n = layout.size();
+        double[] lines = new double[n];
+        for (int i = 0; i < n; i++) {
+            double pos = vertical ? layout.x[i] : layout.y[i];
+            lines[i] = end ? pos + (vertical ? layout.w[i] : layout.h[i]) : pos;
+        }
+        Arrays.sort(lines);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || lines[i] - lines[distinct - 1] > EPS) {
+                lines[distinct++] = lines[i];
+            }
+        }
+        return Arrays.copyOf(lines, distinct);
+    }
+
+    private static double nearest(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index >= 0) {
+            return sorted[index];
+        }
+        int insertion = -index - 1;
+        double best = Double.NaN;
+        if (insertion < sorted.length) {
+            best = sorted[insertion];
+        }
+        if (insertion > 0 && (Double.isNaN(best) || value - sorted[insertion - 1] < best - value)) {
+            best = sorted[insertion - 1];
+        }
+        return best;
+    }
+}
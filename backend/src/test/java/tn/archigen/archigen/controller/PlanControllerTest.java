@@ -0,0 +1,133 @@
+package tn.archigen.archigen.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import tn.archigen.archigen.config.ExportProperties;
+import tn.archigen.archigen.config.GenerationProperties;
+import tn.archigen.archigen.config.OutputProperties;
+import tn.archigen.archigen.dto.PlanEditRequest;
+import tn.archigen.archigen.dto.PlanResponse;
+import tn.archigen.archigen.service.DxfExportService;
+import tn.archigen.archigen.service.ExportArtifactStore;
+import tn.archigen.archigen.service.PlanBatchService;
+import tn.archigen.archigen.service.PlanCache;
+import tn.archigen.archigen.service.PlanEditService;
+import tn.archigen.archigen.service.PlanGenerationService;
+import tn.archigen.archigen.service.StructuralAnalysisService;
+import tn.archigen.archigen.service.dxf.DxfFragmentCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Codes de retour de {@link PlanController} pour les parametres invalides, sur un MockMvc autonome
+ * (services construits a la main, sans contexte Spring).
+ */
+class PlanControllerTest {
+
+    @TempDir
+    Path outputDirectory;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+    private MockMvc mockMvc;
+    private PlanResponse plan;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        var generationProperties = new GenerationProperties();
+        var planGenerationService = new PlanGenerationService(generationProperties, new PlanCache(generationProperties, meterRegistry));
+        var outputProperties = new OutputProperties();
+        outputProperties.setDirectory(outputDirectory.toString());
+        var structuralAnalysisService = new StructuralAnalysisService();
+        var controller = new PlanController(planGenerationService,
+                new PlanBatchService(planGenerationService, generationProperties, validatorFactory.getValidator(), objectMapper),
+                new PlanEditService(structuralAnalysisService),
+                new DxfExportService(new DxfFragmentCache(new ExportProperties(), meterRegistry)),
+                new ExportArtifactStore(outputProperties, objectMapper, meterRegistry),
+                structuralAnalysisService);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("examples/export-dxf-villa.json")) {
+            plan = objectMapper.readValue(in, PlanResponse.class);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        validatorFactory.close();
+    }
+
+    private String edit(Integer level, int roomIndex) throws IOException {
+        return objectMapper.writeValueAsString(PlanEditRequest.builder()
+                .plan(plan)
+                .level(level)
+                .roomIndex(roomIndex)
+                .x(9.0)
+                .build());
+    }
+
+    @Test
+    void editReturnsTheDelta() throws Exception {
+        mockMvc.perform(patch("/api/plans/edit").contentType(MediaType.APPLICATION_JSON).content(edit(null, 1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roomIndex").value(1))
+                .andExpect(jsonPath("$.room.x").value(9.0));
+    }
+
+    @Test
+    void editOfUnknownRoomIsABadRequest() throws Exception {
+        mockMvc.perform(patch("/api/plans/edit").contentType(MediaType.APPLICATION_JSON)
+                        .content(edit(null, plan.getRooms().size())))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void editOfUnknownLevelIsABadRequest() throws Exception {
+        mockMvc.perform(patch("/api/plans/edit").contentType(MediaType.APPLICATION_JSON).content(edit(1, 0)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportInAKnownFormatIsServed() throws Exception {
+        mockMvc.perform(post("/api/plans/export/dxf").param("format", "binary")
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(plan)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/dxf"));
+    }
+
+    @Test
+    void exportInAnUnknownFormatIsABadRequest() throws Exception {
+        mockMvc.perform(post("/api/plans/export/dxf").param("format", "dwg")
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(plan)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void generateDxfInAnUnknownFormatIsABadRequest() throws Exception {
+        byte[] request;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("examples/generate-villa-s2.json")) {
+            request = in.readAllBytes();
+        }
+        mockMvc.perform(post("/api/plans/generate-dxf").param("format", "dwg")
+                        .contentType(MediaType.APPLICATION_JSON).content(request))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,370 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import tn.archigen.archigen.config.AiProperties;
+import tn.archigen.archigen.config.GenerationProperties;
+import tn.archigen.archigen.dto.AiBatchJobDto;
+import tn.archigen.archigen.dto.BatchPlanResultDto;
+import tn.archigen.archigen.dto.PlanGenerateRequest;
+import tn.archigen.archigen.dto.PlanResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Jobs IA par lots ({@link AiBatchJobService}) contre un serveur local qui joue l'API Message Batches:
+ * cache, deduplication, verifications a delai croissant, lecture des resultats et fichier NDJSON du job.
+ */
+class AiBatchJobServiceTest {
+
+    private static final String MESSAGES = "/v1/messages";
+    private static final String BATCHES = "/v1/messages/batches";
+    private static final String RESULTS = "/results/msgbatch_1";
+
+    /** Plan renvoye par le modele pour les requetes reussies (texte du message, avec du texte autour). */
+    private static final String PLAN_TEXT = """
+            Voici le plan :
+            ```json
+            {"terrain": {"width": 20.0, "height": 30.0},
+             "rooms": [
+               {"name": "Salon", "type": "salon", "x": 4.0, "y": 5.0, "width": 6.0, "height": 5.0},
+               {"name": "Cuisine", "type": "cuisine", "x": 10.0, "y": 5.0, "width": 4.0, "height": 4.0}],
+             "doors": [{"x": 6.0, "y": 5.0, "width": 1.0, "orientation": "horizontal"}],
+             "windows": [{"x": 5.0, "y": 10.0, "width": 1.2, "orientation": "horizontal"}],
+             "wallThickness": 0.2}
+            ```
+            """;
+
+    @TempDir
+    Path batchDirectory;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+    private AiStubServer stub;
+    private AiProperties aiProperties;
+    private AiHttpClient aiHttpClient;
+    private PlanGenerationService planGenerationService;
+    private ClaudeAiPlanService claudeAiPlanService;
+    private AiPlanCache aiPlanCache;
+    private AiBatchJobService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = new AiStubServer();
+        aiProperties = new AiProperties();
+        aiProperties.setApiKey("test");
+        aiProperties.setApiUrl(stub.url(MESSAGES));
+        aiProperties.setCacheDirectory("");
+        aiProperties.setBatchDirectory(batchDirectory.toString());
+        aiProperties.setBatchPollInterval(Duration.ofMillis(25));
+        aiProperties.setBatchPollMaxInterval(Duration.ofMillis(100));
+        var generationProperties = new GenerationProperties();
+        planGenerationService = new PlanGenerationService(generationProperties, new PlanCache(generationProperties, meterRegistry));
+        aiHttpClient = new AiHttpClient(aiProperties, meterRegistry);
+        aiPlanCache = new AiPlanCache(aiProperties, objectMapper, meterRegistry);
+        claudeAiPlanService = new ClaudeAiPlanService(aiProperties, planGenerationService, objectMapper, aiHttpClient,
+                aiPlanCache, new PlanRepairService(planGenerationService, meterRegistry), meterRegistry);
+        service = new AiBatchJobService(aiProperties, claudeAiPlanService, aiHttpClient, aiPlanCache,
+                validatorFactory.getValidator(), objectMapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        aiHttpClient.shutdown();
+        planGenerationService.shutdown();
+        stub.close();
+        validatorFactory.close();
+    }
+
+    private PlanGenerateRequest request(String style) throws IOException {
+        var request = objectMapper.readValue(AiStubServer.resource("examples/generate-villa-s3.json"), PlanGenerateRequest.class);
+        request.getRequirements().setStyle(style);
+        return request;
+    }
+
+    private String key(PlanGenerateRequest request) {
+        return claudeAiPlanService.cacheKey(claudeAiPlanService.buildUserPrompt(request));
+    }
+
+    private InputStream ndjson(Object... requests) throws IOException {
+        var lines = new StringBuilder();
+        for (Object request : requests) {
+            lines.append(request instanceof String json ? json : objectMapper.writeValueAsString(request)).append('\n');
+        }
+        return new ByteArrayInputStream(lines.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private AiBatchJobDto awaitEnd(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        AiBatchJobDto job = service.findJob(jobId);
+        while (job.getEndedAt() == null) {
+            assertTrue(System.nanoTime() < deadline, "job non termine: " + job);
+            Thread.sleep(10);
+            job = service.findJob(jobId);
+        }
+        return job;
+    }
+
+    /** Lignes du fichier de resultats du job, par index de requete. */
+    private Map<Integer, BatchPlanResultDto> results(String jobId) throws IOException {
+        Path file = service.findResults(jobId);
+        assertNotNull(file);
+        var results = new HashMap<Integer, BatchPlanResultDto>();
+        for (String line : Files.readAllLines(file)) {
+            var result = objectMapper.readValue(line, BatchPlanResultDto.class);
+            assertNull(results.put(result.getIndex(), result), "index en double: " + result.getIndex());
+        }
+        return results;
+    }
+
+    /** Ligne de resultat reussie, {@code result} avant {@code custom_id} comme l'API peut le faire. */
+    private String succeeded(String customId) throws IOException {
+        var message = objectMapper.createObjectNode();
+        message.put("id", "msg_stub").put("type", "message").put("role", "assistant").put("stop_reason", "end_turn");
+        message.putArray("content").addObject().put("type", "text").put("text", PLAN_TEXT);
+        message.putObject("usage").put("input_tokens", 100).put("output_tokens", 200);
+        var line = objectMapper.createObjectNode();
+        line.putObject("result").put("type", "succeeded").set("message", message);
+        line.put("custom_id", customId);
+        return objectMapper.writeValueAsString(line);
+    }
+
+    private static String errored(String customId, String message) {
+        return "{\"custom_id\":\"" + customId + "\",\"result\":{\"type\":\"errored\",\"error\":"
+                + "{\"type\":\"error\",\"error\":{\"type\":\"invalid_request_error\",\"message\":\"" + message + "\"}}}}";
+    }
+
+    private static String batch(String status, String resultsUrl) {
+        return "{\"id\":\"msgbatch_1\",\"type\":\"message_batch\",\"processing_status\":\"" + status + "\","
+                + "\"request_counts\":{\"processing\":3,\"succeeded\":0,\"errored\":0,\"canceled\":0,\"expired\":0},"
+                + "\"results_url\":" + (resultsUrl != null ? "\"" + resultsUrl + "\"" : "null") + "}";
+    }
+
+    @Test
+    void batchJobServesCacheDedupesPollsWithBackoffAndWritesEveryRequest() throws Exception {
+        PlanGenerateRequest cachedRequest = request("moderne");
+        PlanGenerateRequest b = request("traditionnel");
+        PlanGenerateRequest c = request("colonial");
+        PlanGenerateRequest d = request("mediterraneen");
+        String keyB = key(b);
+        String keyC = key(c);
+        String keyD = key(d);
+        PlanResponse cachedPlan = planGenerationService.generatePlan(cachedRequest);
+        aiPlanCache.put(key(cachedRequest), cachedPlan);
+
+        List<Long> polls = new CopyOnWriteArrayList<>();
+        var pollCount = new AtomicInteger();
+        stub.on(BATCHES, exchange -> {
+            if (exchange.getRequestURI().getPath().equals(BATCHES)) {
+                AiStubServer.json(exchange, 200, batch("in_progress", null));
+                return;
+            }
+            polls.add(System.nanoTime());
+            switch (pollCount.incrementAndGet()) {
+                case 2 -> AiStubServer.json(exchange, 503, "{\"type\":\"error\"}");
+                case 5 -> AiStubServer.json(exchange, 200, batch("ended", stub.url(RESULTS)));
+                default -> AiStubServer.json(exchange, 200, batch("in_progress", null));
+            }
+        });
+        String resultLines = succeeded(keyB) + "\n\n" + errored(keyC, "bad prompt") + "\n" + succeeded("inconnu") + "\n";
+        stub.on(RESULTS, exchange -> AiStubServer.json(exchange, 200, resultLines));
+
+        AiBatchJobDto submitted = service.submit(ndjson(
+                cachedRequest, b, c, b, "{\"requirements\": {\"rooms\": []}}", d));
+        assertEquals(6, submitted.getTotal());
+        assertEquals(1, submitted.getCached());
+        assertThrows(IllegalStateException.class, () -> service.findResults(submitted.getId()));
+
+        AiBatchJobDto job = awaitEnd(submitted.getId());
+        assertEquals("ended", job.getStatus());
+        assertEquals("msgbatch_1", job.getBatchId());
+        assertEquals(6, job.getTotal());
+        assertEquals(1, job.getCached());
+        assertEquals(3, job.getSucceeded());
+        assertEquals(3, job.getFailed());
+        assertEquals(0, job.getProcessing());
+        assertNull(job.getError());
+
+        // Un seul lot, sans la requete en cache, la requete invalide ni le doublon
+        List<AiStubServer.Request> created = stub.requests(BATCHES);
+        assertEquals(1, created.size());
+        assertEquals("POST", created.get(0).method());
+        Set<String> customIds = new HashSet<>();
+        for (JsonNode item : objectMapper.readTree(created.get(0).body()).path("requests")) {
+            customIds.add(item.path("custom_id").asText());
+            assertFalse(item.path("params").has("stream"));
+        }
+        assertEquals(Set.of(keyB, keyC, keyD), customIds);
+
+        // Delai double a chaque verification (y compris apres un echec), plafonne a batchPollMaxInterval
+        assertEquals(5, polls.size());
+        long[] gaps = new long[polls.size() - 1];
+        for (int i = 1; i < polls.size(); i++) {
+            gaps[i - 1] = Duration.ofNanos(polls.get(i) - polls.get(i - 1)).toMillis();
+        }
+        assertTrue(gaps[0] >= 50, "1er delai: " + gaps[0]);
+        assertTrue(gaps[1] >= 100, "2e delai: " + gaps[1]);
+        assertTrue(gaps[2] >= 100 && gaps[3] >= 100, "delais: " + gaps[2] + ", " + gaps[3]);
+        assertTrue(gaps[3] < 400, "delai non plafonne: " + gaps[3]);
+
+        Map<Integer, BatchPlanResultDto> results = results(job.getId());
+        assertEquals(Set.of(0, 1, 2, 3, 4, 5), results.keySet());
+        assertEquals(cachedPlan.getRooms().size(), results.get(0).getPlan().getRooms().size());
+        for (int index : List.of(1, 3)) {
+            BatchPlanResultDto result = results.get(index);
+            assertNull(result.getError());
+            assertEquals(List.of("Salon", "Cuisine"), result.getPlan().getRooms().stream().map(r -> r.getName()).toList());
+        }
+        assertEquals("Lot IA: errored: bad prompt", results.get(2).getError());
+        assertTrue(results.get(4).getError().contains("terrain: "), results.get(4).getError());
+        assertEquals("Pas de resultat pour cette requete dans le lot", results.get(5).getError());
+        assertNull(results.get(5).getPlan());
+
+        // Le plan genere par le lot sert ensuite depuis le cache IA
+        assertNotNull(aiPlanCache.get(keyB));
+        assertNull(aiPlanCache.get(keyC));
+    }
+
+    @Test
+    void batchOfCachedRequestsEndsWithoutCallingTheApi() throws Exception {
+        PlanGenerateRequest request = request("moderne");
+        aiPlanCache.put(key(request), planGenerationService.generatePlan(request));
+
+        AiBatchJobDto job = service.submit(ndjson(request, request));
+
+        assertEquals("ended", job.getStatus());
+        assertNotNull(job.getEndedAt());
+        assertEquals(2, job.getCached());
+        assertEquals(2, job.getSucceeded());
+        assertEquals(Set.of(0, 1), results(job.getId()).keySet());
+        assertTrue(stub.requests(BATCHES).isEmpty());
+    }
+
+    @Test
+    void mistypedRequestFailsAloneAndTheJobReadsTheRest() throws Exception {
+        PlanGenerateRequest first = request("moderne");
+        PlanGenerateRequest last = request("colonial");
+        aiPlanCache.put(key(first), planGenerationService.generatePlan(first));
+        aiPlanCache.put(key(last), planGenerationService.generatePlan(last));
+
+        AiBatchJobDto job = service.submit(ndjson(first, "{\"terrain\": {\"width\": \"abc\", \"height\": 30.0}}", last));
+
+        assertEquals("ended", job.getStatus());
+        assertEquals(3, job.getTotal());
+        assertEquals(2, job.getSucceeded());
+        assertEquals(1, job.getFailed());
+        Map<Integer, BatchPlanResultDto> results = results(job.getId());
+        assertEquals(Set.of(0, 1, 2), results.keySet());
+        assertTrue(results.get(1).getError().startsWith("Requete invalide: "), results.get(1).getError());
+        assertNotNull(results.get(2).getPlan());
+    }
+
+    @Test
+    void failedSubmissionFailsEveryPendingRequest() throws Exception {
+        stub.on(BATCHES, exchange -> AiStubServer.json(exchange, 400, "{\"type\":\"error\"}"));
+
+        AiBatchJobDto job = awaitEnd(service.submit(ndjson(request("moderne"), request("colonial"))).getId());
+
+        assertEquals("failed", job.getStatus());
+        assertEquals(2, job.getFailed());
+        assertTrue(job.getError().startsWith("Soumission du lot impossible"), job.getError());
+        Map<Integer, BatchPlanResultDto> results = results(job.getId());
+        assertEquals(job.getError(), results.get(0).getError());
+        assertEquals(job.getError(), results.get(1).getError());
+    }
+
+    @Test
+    void submissionRejectedByTheLimitIsRetried() throws Exception {
+        aiProperties.setConcurrencyInitialLimit(1);
+        aiProperties.setConcurrencyMinLimit(1);
+        aiProperties.setMaxConcurrentRequests(1);
+        aiHttpClient.shutdown();
+        aiHttpClient = new AiHttpClient(aiProperties, meterRegistry);
+        service = new AiBatchJobService(aiProperties, claudeAiPlanService, aiHttpClient, aiPlanCache,
+                validatorFactory.getValidator(), objectMapper);
+        var release = new CountDownLatch(1);
+        stub.on(MESSAGES, exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            AiStubServer.json(exchange, 400, "{\"type\":\"error\"}");
+        });
+        stub.on(BATCHES, exchange -> {
+            if (exchange.getRequestURI().getPath().equals(BATCHES)) {
+                AiStubServer.json(exchange, 200, batch("in_progress", null));
+            } else {
+                AiStubServer.json(exchange, 200, batch("ended", stub.url(RESULTS)));
+            }
+        });
+        stub.on(RESULTS, exchange -> AiStubServer.json(exchange, 200, ""));
+        // Appel interactif en cours: la limite (1) est atteinte
+        var interactive = aiHttpClient.postMessages("{}");
+
+        AiBatchJobDto submitted = service.submit(ndjson(request("moderne")));
+        Thread.sleep(100);
+        assertEquals("submitting", service.findJob(submitted.getId()).getStatus());
+        assertNull(service.findJob(submitted.getId()).getEndedAt());
+        release.countDown();
+        assertThrows(ExecutionException.class, () -> interactive.get(10, TimeUnit.SECONDS));
+
+        AiBatchJobDto job = awaitEnd(submitted.getId());
+        assertEquals("ended", job.getStatus());
+        assertEquals("msgbatch_1", job.getBatchId());
+        assertEquals(1, stub.requests(BATCHES).size());
+        assertTrue(meterRegistry.get("ai.client.rejected").tag("reason", "limit").counter().count() >= 1);
+    }
+
+    @Test
+    void tooManyRequestsIsRejectedWithoutResultsFile() throws IOException {
+        aiProperties.setBatchMaxRequests(2);
+        InputStream requests = ndjson(request("moderne"), request("colonial"), request("traditionnel"));
+
+        assertThrows(IllegalArgumentException.class, () -> service.submit(requests));
+        try (var files = Files.list(batchDirectory)) {
+            assertEquals(0, files.count());
+        }
+        assertTrue(stub.requests(BATCHES).isEmpty());
+    }
+
+    @Test
+    void missingApiKeyIsRejected() throws IOException {
+        aiProperties.setApiKey("");
+        InputStream requests = ndjson(request("moderne"));
+
+        assertThrows(IllegalStateException.class, () -> service.submit(requests));
+    }
+}
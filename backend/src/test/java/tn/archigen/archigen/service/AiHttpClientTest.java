@@ -0,0 +1,168 @@
+package tn.archigen.archigen.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tn.archigen.archigen.config.AiProperties;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Appels a l'API Message Batches de {@link AiHttpClient}: ils passent par le disjoncteur comme les appels a l'API
+ * Messages; la soumission et le suivi prennent une place dans la limite d'appels simultanes, le telechargement
+ * des resultats une place de telechargement, avec un delai total.
+ */
+class AiHttpClientTest {
+
+    private static final String MESSAGES = "/v1/messages";
+    private static final String BATCHES = "/v1/messages/batches";
+    private static final String BATCH = "{\"id\":\"msgbatch_stub\",\"processing_status\":\"in_progress\"}";
+    private static final String RESULTS = "/results/msgbatch_stub";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AiProperties aiProperties = new AiProperties();
+    private AiStubServer stub;
+    private AiHttpClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = new AiStubServer();
+        aiProperties.setApiKey("test");
+        aiProperties.setApiUrl(stub.url(MESSAGES));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (client != null) {
+            client.shutdown();
+        }
+        stub.close();
+    }
+
+    private static int status(Throwable error) {
+        return assertInstanceOf(AiHttpClient.AiClientException.class, error).getStatus();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("ai.client.in.flight").gauge().value();
+    }
+
+    /** Resultats: une premiere ligne, puis plus rien jusqu'a {@link #release}. */
+    private void stallResults() {
+        stub.on(RESULTS, exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write("{\"custom_id\":\"a\"}\n".getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseBody().flush();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    @Test
+    void batchFailuresOpenTheCircuit() {
+        aiProperties.setCircuitWindowSize(2);
+        aiProperties.setCircuitMinimumCalls(2);
+        client = new AiHttpClient(aiProperties, meterRegistry);
+        stub.on(BATCHES, exchange -> AiStubServer.json(exchange, 503, "{\"type\":\"error\"}"));
+
+        for (int i = 0; i < 2; i++) {
+            var error = assertThrows(ExecutionException.class, () -> client.getBatch("msgbatch_stub").get(10, TimeUnit.SECONDS));
+            assertEquals(503, status(error.getCause()));
+        }
+        var rejected = assertThrows(ExecutionException.class, () -> client.createBatch("{\"requests\":[]}").get());
+        var results = assertThrows(ExecutionException.class,
+                () -> client.streamBatchResults(stub.url(BATCHES + "/results"), line -> { }).get());
+
+        assertEquals(0, status(rejected.getCause()));
+        assertEquals(0, status(results.getCause()));
+        assertEquals(2, stub.requests(BATCHES + "/msgbatch_stub").size());
+        assertEquals(0, stub.requests(BATCHES).size());
+        assertEquals(2.0, meterRegistry.get("ai.client.rejected").tag("reason", "circuit").counter().count());
+    }
+
+    @Test
+    void batchCallsTakeAPlaceInTheLimit() throws Exception {
+        aiProperties.setConcurrencyInitialLimit(1);
+        aiProperties.setConcurrencyMinLimit(1);
+        aiProperties.setMaxConcurrentRequests(1);
+        client = new AiHttpClient(aiProperties, meterRegistry);
+        stub.on(BATCHES, exchange -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            AiStubServer.json(exchange, 200, BATCH);
+        });
+
+        var poll = client.getBatch("msgbatch_stub");
+        assertEquals(1.0, inFlight());
+        var message = assertThrows(ExecutionException.class, () -> client.postMessages("{}").get());
+        assertEquals(0, status(message.getCause()));
+
+        release.countDown();
+        poll.get(10, TimeUnit.SECONDS);
+        assertEquals(0.0, inFlight());
+        assertEquals(1.0, meterRegistry.get("ai.client.rejected").tag("reason", "limit").counter().count());
+    }
+
+    @Test
+    void resultsDownloadDoesNotTakeAnInteractivePlace() throws Exception {
+        aiProperties.setConcurrencyInitialLimit(1);
+        aiProperties.setConcurrencyMinLimit(1);
+        aiProperties.setMaxConcurrentRequests(1);
+        client = new AiHttpClient(aiProperties, meterRegistry);
+        stallResults();
+        stub.on(MESSAGES, exchange -> AiStubServer.json(exchange, 400, "{\"type\":\"error\"}"));
+        List<String> lines = new CopyOnWriteArrayList<>();
+
+        var download = client.streamBatchResults(stub.url(RESULTS), lines::add);
+        var message = assertThrows(ExecutionException.class, () -> client.postMessages("{}").get(10, TimeUnit.SECONDS));
+
+        // Appel envoye (refuse par l'API, pas par la limite)
+        assertEquals(400, status(message.getCause()));
+        assertEquals(0.0, inFlight());
+        release.countDown();
+        download.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("{\"custom_id\":\"a\"}"), lines);
+    }
+
+    @Test
+    void stalledResultsDownloadIsAbandonedAndFreesItsPlace() throws Exception {
+        aiProperties.setBatchResultsTimeout(Duration.ofMillis(300));
+        aiProperties.setBatchMaxConcurrentDownloads(1);
+        client = new AiHttpClient(aiProperties, meterRegistry);
+        stallResults();
+
+        var download = client.streamBatchResults(stub.url(RESULTS), line -> { });
+        var second = assertThrows(ExecutionException.class,
+                () -> client.streamBatchResults(stub.url(RESULTS), line -> { }).get());
+        assertEquals(0, status(second.getCause()));
+        assertEquals(1.0, meterRegistry.get("ai.client.rejected").tag("reason", "downloads").counter().count());
+
+        var error = assertThrows(ExecutionException.class, () -> download.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.getCause());
+
+        // Place rendue: un nouveau telechargement est accepte
+        release.countDown();
+        client.streamBatchResults(stub.url(RESULTS), line -> { }).get(10, TimeUnit.SECONDS);
+    }
+}
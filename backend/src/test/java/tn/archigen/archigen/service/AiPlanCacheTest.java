@@ -0,0 +1,89 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import tn.archigen.archigen.config.AiProperties;
+import tn.archigen.archigen.dto.PlanResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/** Duree de vie des plans relus du disque ({@link AiPlanCache#get}): celle qui reste au fichier, pas une nouvelle. */
+class AiPlanCacheTest {
+
+    private static final String VERSION = "v1";
+    private static final String KEY = "cle";
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AiProperties aiProperties = new AiProperties();
+    @TempDir
+    Path directory;
+    private PlanResponse plan;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        aiProperties.setCacheDirectory(directory.toString());
+        aiProperties.setCacheTtl(Duration.ofSeconds(10));
+        plan = objectMapper.readValue(AiStubServer.resource("examples/export-dxf-villa.json"), PlanResponse.class);
+    }
+
+    /** Cache vide sur le meme repertoire (redemarrage). */
+    private AiPlanCache restarted() {
+        var cache = new AiPlanCache(aiProperties, objectMapper, meterRegistry);
+        cache.retainVersion(VERSION);
+        return cache;
+    }
+
+    /** Plan ecrit sur disque {@code age} avant maintenant. */
+    private Path written(Duration age) throws IOException {
+        restarted().put(KEY, plan);
+        Path file = directory.resolve(VERSION).resolve(KEY + ".json");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(age)));
+        return file;
+    }
+
+    private double diskGets(String result) {
+        return meterRegistry.get("ai.cache.disk.gets").tag("result", result).counter().count();
+    }
+
+    @Test
+    void planReadFromDiskExpiresWithItsFile() throws IOException, InterruptedException {
+        Path file = written(Duration.ofMillis(9_600));
+        var cache = restarted();
+
+        assertNotNull(cache.get(KEY));
+        assertEquals(1.0, diskGets("hit"));
+
+        // Au-dela de la duree de vie du fichier: plus en memoire, et supprime du disque
+        Thread.sleep(800);
+        assertNull(cache.get(KEY));
+        assertEquals(1.0, diskGets("miss"));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void planReadFromDiskStaysInMemoryForTheRestOfItsLifetime() throws IOException {
+        Path file = written(Duration.ofSeconds(1));
+        var cache = restarted();
+
+        assertNotNull(cache.get(KEY));
+        Files.delete(file);
+
+        assertEquals(plan.getRooms().size(), cache.get(KEY).getRooms().size());
+        assertEquals(1.0, diskGets("hit"));
+    }
+}
@@ -0,0 +1,100 @@
+package tn.archigen.archigen.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serveur HTTP local qui joue le role de l'API Anthropic dans les tests: chaque chemin rejoue une reponse
+ * enregistree (src/test/resources/ai) ou construite par le test. Les requetes recues sont gardees.
+ */
+final class AiStubServer implements AutoCloseable {
+
+    /** Requete recue par le serveur. */
+    record Request(String method, String path, String body) {}
+
+    @FunctionalInterface
+    interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    /** Taille des morceaux envoyes sur la socket: les evenements SSE sont coupes n'importe ou. */
+    private static final int CHUNK_SIZE = 64;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Request> requests = new CopyOnWriteArrayList<>();
+
+    AiStubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /** Reponses d'un chemin (et de ses sous-chemins sans handler plus precis). */
+    void on(String path, Handler handler) {
+        server.createContext(path, exchange -> {
+            try (exchange) {
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                requests.add(new Request(exchange.getRequestMethod(), exchange.getRequestURI().getPath(), body));
+                handler.handle(exchange);
+            }
+        });
+    }
+
+    String url(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    /** Requetes recues sur ce chemin exact. */
+    List<Request> requests(String path) {
+        return requests.stream().filter(request -> request.path().equals(path)).toList();
+    }
+
+    /** Rejoue un flux SSE enregistre, par petits morceaux envoyes un a un. */
+    static void replay(HttpExchange exchange, String resource) throws IOException {
+        exchange.getResponseHeaders().add("content-type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        byte[] body = resource(resource);
+        OutputStream out = exchange.getResponseBody();
+        for (int i = 0; i < body.length; i += CHUNK_SIZE) {
+            out.write(body, i, Math.min(CHUNK_SIZE, body.length - i));
+            out.flush();
+        }
+    }
+
+    static void json(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("content-type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    static byte[] resource(String name) {
+        try (InputStream in = AiStubServer.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Ressource de test absente: " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
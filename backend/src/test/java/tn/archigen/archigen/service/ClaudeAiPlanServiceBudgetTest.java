@@ -0,0 +1,130 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import tn.archigen.archigen.config.AiProperties;
+import tn.archigen.archigen.config.GenerationProperties;
+import tn.archigen.archigen.dto.PlanGenerateRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Course entre l'IA et l'algorithme ({@link ClaudeAiPlanService#generatePlan} avec un budget de latence) quand
+ * l'algorithme refuse la requete: l'IA est attendue jusqu'a la fin du budget.
+ */
+class ClaudeAiPlanServiceBudgetTest {
+
+    private static final String MESSAGES = "/v1/messages";
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AiStubServer stub;
+    private AiHttpClient aiHttpClient;
+    private PlanGenerationService planGenerationService;
+    private ClaudeAiPlanService service;
+    private PlanGenerateRequest request;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = new AiStubServer();
+        var aiProperties = new AiProperties();
+        aiProperties.setApiKey("test");
+        aiProperties.setApiUrl(stub.url(MESSAGES));
+        aiProperties.setCacheDirectory("");
+        var generationProperties = new GenerationProperties();
+        planGenerationService = new PlanGenerationService(generationProperties, new PlanCache(generationProperties, meterRegistry));
+        aiHttpClient = new AiHttpClient(aiProperties, meterRegistry);
+        service = new ClaudeAiPlanService(aiProperties, planGenerationService, objectMapper, aiHttpClient,
+                new AiPlanCache(aiProperties, objectMapper, meterRegistry),
+                new PlanRepairService(planGenerationService, meterRegistry), meterRegistry);
+        request = objectMapper.readValue(AiStubServer.resource("examples/generate-villa-s3.json"), PlanGenerateRequest.class);
+        // Refusee par l'algorithme
+        request.setStrategy("inconnue");
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        aiHttpClient.shutdown();
+        planGenerationService.shutdown();
+        stub.close();
+    }
+
+    private double budget(String result) {
+        return meterRegistry.get("ai.latency.budget").tag("result", result).counter().count();
+    }
+
+    @Test
+    void aiPlanIsReturnedWhenTheAlgorithmFails() {
+        stub.on(MESSAGES, exchange -> {
+            sleep(200);
+            AiStubServer.json(exchange, 200, new String(AiStubServer.resource("ai/message-plan.json"), StandardCharsets.UTF_8));
+        });
+        request.setAiLatencyBudgetMs(5_000L);
+
+        var plan = service.generatePlan(request);
+
+        assertEquals(2, plan.getRooms().size());
+        assertEquals("Salon", plan.getRooms().get(0).getName());
+        assertNull(plan.getAiPlanId());
+        assertEquals(1.0, budget("ai"));
+    }
+
+    @Test
+    void algorithmFailureIsThrownWhenTheAiMissesTheBudget() {
+        stub.on(MESSAGES, exchange -> {
+            await(release);
+            AiStubServer.json(exchange, 200, new String(AiStubServer.resource("ai/message-plan.json"), StandardCharsets.UTF_8));
+        });
+        request.setAiLatencyBudgetMs(200L);
+
+        long start = System.nanoTime();
+        var error = assertThrows(IllegalArgumentException.class, () -> service.generatePlan(request));
+
+        assertTrue(error.getMessage().contains("inconnue"), error.getMessage());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200), "IA attendue jusqu'au budget");
+        assertEquals(1.0, budget("fallback"));
+    }
+
+    @Test
+    void algorithmFailureIsThrownWhenTheAiFails() {
+        stub.on(MESSAGES, exchange -> AiStubServer.json(exchange, 400,
+                "{\"type\":\"error\",\"error\":{\"type\":\"invalid_request_error\",\"message\":\"bad prompt\"}}"));
+        request.setAiLatencyBudgetMs(5_000L);
+
+        var error = assertThrows(IllegalArgumentException.class, () -> service.generatePlan(request));
+
+        assertTrue(error.getMessage().contains("inconnue"), error.getMessage());
+        assertEquals(1, error.getSuppressed().length);
+        assertEquals(1.0, budget("fallback"));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import tn.archigen.archigen.config.AiProperties;
+import tn.archigen.archigen.config.GenerationProperties;
+import tn.archigen.archigen.dto.PlanGenerateRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Generation IA streamee ({@link ClaudeAiPlanService#streamPlan}) contre un serveur local qui rejoue des flux
+ * SSE enregistres de l'API Messages.
+ */
+class ClaudeAiPlanServiceStreamTest {
+
+    private static final String MESSAGES = "/v1/messages";
+
+    /** Evenement SSE envoye au client. */
+    private record Event(String name, JsonNode data) {}
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AiStubServer stub;
+    private AiHttpClient aiHttpClient;
+    private PlanGenerationService planGenerationService;
+    private ClaudeAiPlanService service;
+    private PlanGenerateRequest request;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        stub = new AiStubServer();
+        var aiProperties = new AiProperties();
+        aiProperties.setApiKey("test");
+        aiProperties.setApiUrl(stub.url(MESSAGES));
+        aiProperties.setCacheDirectory("");
+        var generationProperties = new GenerationProperties();
+        planGenerationService = new PlanGenerationService(generationProperties, new PlanCache(generationProperties, meterRegistry));
+        aiHttpClient = new AiHttpClient(aiProperties, meterRegistry);
+        service = new ClaudeAiPlanService(aiProperties, planGenerationService, objectMapper, aiHttpClient,
+                new AiPlanCache(aiProperties, objectMapper, meterRegistry),
+                new PlanRepairService(planGenerationService, meterRegistry), meterRegistry);
+        request = objectMapper.readValue(AiStubServer.resource("examples/generate-villa-s3.json"), PlanGenerateRequest.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        aiHttpClient.shutdown();
+        planGenerationService.shutdown();
+        stub.close();
+    }
+
+    private List<Event> stream() throws IOException {
+        var out = new ByteArrayOutputStream();
+        service.streamPlan(request, out);
+        var events = new ArrayList<Event>();
+        for (String block : out.toString(StandardCharsets.UTF_8).split("\n\n")) {
+            String[] lines = block.split("\n", 2);
+            assertTrue(lines[0].startsWith("event: ") && lines[1].startsWith("data: "), block);
+            events.add(new Event(lines[0].substring(7), objectMapper.readTree(lines[1].substring(6))));
+        }
+        return events;
+    }
+
+    private static List<String> names(List<Event> events) {
+        return events.stream().map(Event::name).toList();
+    }
+
+    private double tokens(String type) {
+        return meterRegistry.get("ai.tokens").tag("type", type).counter().count();
+    }
+
+    @Test
+    void elementsAreSentBeforeThePlan() throws IOException {
+        stub.on(MESSAGES, exchange -> AiStubServer.replay(exchange, "ai/stream-plan.sse"));
+
+        var events = stream();
+
+        assertEquals(List.of("room", "room", "door", "window", "plan"), names(events));
+        assertEquals("Salon", events.get(0).data().path("name").asText());
+        assertEquals("Cuisine \"ouverte\" {bar}", events.get(1).data().path("name").asText());
+        assertEquals(6.0, events.get(2).data().path("x").asDouble());
+        assertEquals(5.0, events.get(3).data().path("x").asDouble());
+        JsonNode plan = events.get(4).data();
+        assertEquals(2, plan.path("rooms").size());
+        assertEquals(1, plan.path("doors").size());
+        assertEquals(1, plan.path("windows").size());
+
+        var calls = stub.requests(MESSAGES);
+        assertEquals(1, calls.size());
+        assertTrue(objectMapper.readTree(calls.get(0).body()).path("stream").asBoolean());
+        assertEquals(120.0, tokens("input"));
+        assertEquals(1500.0, tokens("cache_read"));
+        assertEquals(310.0, tokens("output"));
+    }
+
+    @Test
+    void cachedPlanIsSentWithTheSameEvents() throws IOException {
+        stub.on(MESSAGES, exchange -> AiStubServer.replay(exchange, "ai/stream-plan.sse"));
+
+        var first = stream();
+        var second = stream();
+
+        assertEquals(names(first), names(second));
+        assertEquals(first.get(4).data(), second.get(4).data());
+        assertEquals(1, stub.requests(MESSAGES).size());
+    }
+
+    @Test
+    void errorEventMidStreamFallsBackToTheAlgorithm() throws IOException {
+        stub.on(MESSAGES, exchange -> AiStubServer.replay(exchange, "ai/stream-error.sse"));
+
+        var events = stream();
+
+        // Piece deja complete avant l'erreur, puis abandon et plan algorithmique complet
+        assertEquals("room", events.get(0).name());
+        assertEquals("Salon", events.get(0).data().path("name").asText());
+        assertEquals("fallback", events.get(1).name());
+        assertTrue(events.get(1).data().path("reason").asText().contains("Overloaded"), events.get(1).data().toString());
+
+        var fallback = events.subList(2, events.size());
+        JsonNode plan = fallback.get(fallback.size() - 1).data();
+        assertEquals("plan", fallback.get(fallback.size() - 1).name());
+        var expected = new ArrayList<String>();
+        plan.path("rooms").forEach(room -> expected.add("room"));
+        plan.path("doors").forEach(door -> expected.add("door"));
+        plan.path("windows").forEach(window -> expected.add("window"));
+        expected.add("plan");
+        assertEquals(expected, names(fallback));
+        assertTrue(plan.path("rooms").size() > 2);
+
+        // Echec non mis en cache: nouvel appel a la requete suivante
+        stream();
+        assertEquals(2, stub.requests(MESSAGES).size());
+    }
+
+    @Test
+    void responseWithoutJsonFallsBack() throws IOException {
+        stub.on(MESSAGES, exchange -> {
+            exchange.getResponseHeaders().add("content-type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write(("event: content_block_delta\n"
+                    + "data: {\"type\":\"content_block_delta\",\"index\":0,\"delta\":{\"type\":\"text_delta\",\"text\":\"Je ne peux pas.\"}}\n\n"
+                    + "event: message_stop\ndata: {\"type\":\"message_stop\"}\n\n").getBytes(StandardCharsets.UTF_8));
+        });
+
+        var events = stream();
+
+        assertEquals("fallback", events.get(0).name());
+        assertEquals("Pas de JSON trouve dans la reponse", events.get(0).data().path("reason").asText());
+        assertEquals("plan", events.get(events.size() - 1).name());
+    }
+
+    @Test
+    void errorStatusFallsBackBeforeAnyElement() throws IOException {
+        stub.on(MESSAGES, exchange -> AiStubServer.json(exchange, 529,
+                "{\"type\":\"error\",\"error\":{\"type\":\"overloaded_error\",\"message\":\"Overloaded\"}}"));
+
+        var events = stream();
+
+        assertEquals("fallback", events.get(0).name());
+        assertTrue(events.get(0).data().path("reason").asText().contains("529"));
+        assertEquals("plan", events.get(events.size() - 1).name());
+    }
+}
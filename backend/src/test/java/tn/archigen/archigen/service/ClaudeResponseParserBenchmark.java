@@ -0,0 +1,121 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tn.archigen.archigen.dto.DoorDto;
+import tn.archigen.archigen.dto.PlanMetricsDto;
+import tn.archigen.archigen.dto.PlanResponse;
+import tn.archigen.archigen.dto.RoomDto;
+import tn.archigen.archigen.dto.TerrainDto;
+import tn.archigen.archigen.dto.WindowDto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Lecture d'une reponse Claude (plan de 12 pieces dans un bloc ```json): parseur en une passe
+ * ({@link ClaudeResponseParser}) contre l'ancien chemin (enveloppe en records, regex, substring, second parsing).
+ * Lancer avec {@code ./mvnw -Pbenchmark test-compile exec:exec -Dbenchmark=ClaudeResponseParserBenchmark}
+ * (ajouter {@code -prof gc} dans les arguments JMH pour les allocations).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClaudeResponseParserBenchmark {
+
+    private static final Pattern JSON_BLOCK_PATTERN = Pattern.compile("```(?:json)?\\s*\\n?(\\{.*?})\\s*```", Pattern.DOTALL);
+
+    private ObjectMapper objectMapper;
+    private ClaudeResponseParser parser;
+    private byte[] body;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        parser = new ClaudeResponseParser(objectMapper);
+
+        String plan = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(samplePlan());
+        String text = "Voici le plan demande:\n\n```json\n" + plan + "\n```\n";
+        body = objectMapper.writeValueAsBytes(Map.of(
+                "id", "msg_01",
+                "type", "message",
+                "role", "assistant",
+                "model", "claude-sonnet-4-5-20250929",
+                "content", List.of(Map.of("type", "text", "text", text)),
+                "stop_reason", "end_turn",
+                "usage", Map.of("input_tokens", 612, "output_tokens", 1840, "cache_read_input_tokens", 1200)));
+    }
+
+    @Benchmark
+    public PlanResponse singlePass() throws Exception {
+        return parser.parse(body).plan();
+    }
+
+    @Benchmark
+    public PlanResponse legacy() throws Exception {
+        // Chemin d'origine: le corps arrive en String, l'enveloppe est mappee en records
+        String responseBody = new String(body, StandardCharsets.UTF_8);
+        LegacyResponse response = objectMapper.readValue(responseBody, LegacyResponse.class);
+        String text = response.content().stream()
+                .filter(c -> "text".equals(c.type()))
+                .map(LegacyBlock::text)
+                .findFirst()
+                .orElseThrow();
+        String json;
+        Matcher matcher = JSON_BLOCK_PATTERN.matcher(text);
+        if (matcher.find()) {
+            json = matcher.group(1);
+        } else {
+            json = text.substring(text.indexOf('{'), text.lastIndexOf('}') + 1);
+        }
+        return objectMapper.readValue(json, PlanResponse.class);
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record LegacyResponse(String id, String type, String model, List<LegacyBlock> content) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record LegacyBlock(String type, String text) {}
+
+    private static PlanResponse samplePlan() {
+        String[] types = {"salon", "cuisine", "chambre", "chambre", "chambre", "sdb", "sdb", "wc", "bureau", "entree", "couloir", "garage"};
+        var rooms = new ArrayList<RoomDto>();
+        var doors = new ArrayList<DoorDto>();
+        var windows = new ArrayList<WindowDto>();
+        for (int i = 0; i < types.length; i++) {
+            double x = 3.0 + (i % 4) * 3.6;
+            double y = 5.0 + (i / 4) * 3.4;
+            rooms.add(RoomDto.builder().name(types[i] + " " + (i + 1)).type(types[i])
+                    .x(x).y(y).width(3.4).height(3.2).build());
+            doors.add(DoorDto.builder().x(x + 1.2).y(y).width(0.9).orientation("horizontal").build());
+            windows.add(WindowDto.builder().x(x + 1.0).y(y + 3.2).width(1.2).orientation("horizontal").build());
+        }
+        return PlanResponse.builder()
+                .terrain(new TerrainDto(20.0, 30.0))
+                .rooms(rooms)
+                .doors(doors)
+                .windows(windows)
+                .metrics(PlanMetricsDto.builder().totalArea(130.6).cos(0.22).cuf(0.22)
+                        .regulationsCompliant(true).build())
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ClaudeResponseParserTest {
+
+    private static final String PLAN = """
+            {"terrain": {"width": 20.0, "height": 30.0},
+             "rooms": [{"name": "Salon {sud}", "type": "salon", "x": 4.0, "y": 5.0, "width": 6.0, "height": 5.0}],
+             "doors": [], "windows": [], "wallThickness": 0.2}""";
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ClaudeResponseParser parser = new ClaudeResponseParser(objectMapper);
+
+    /** Enveloppe de l'API Messages avec un bloc {@code thinking} puis un bloc {@code text}. */
+    private byte[] message(String text) throws IOException {
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("id", "msg_stub").put("type", "message");
+        var content = message.putArray("content");
+        content.addObject().put("type", "thinking").put("thinking", "{pas un plan}");
+        if (text != null) {
+            content.addObject().put("type", "text").put("text", text);
+        }
+        message.put("stop_reason", "end_turn");
+        message.putObject("usage").put("input_tokens", 10).put("output_tokens", 20);
+        return objectMapper.writeValueAsBytes(message);
+    }
+
+    private void assertPlan(String text) throws IOException {
+        var result = parser.parse(message(text));
+        assertEquals(List.of("Salon {sud}"), result.plan().getRooms().stream().map(r -> r.getName()).toList(), text);
+        assertEquals(20.0, result.plan().getTerrain().getWidth());
+        assertEquals("end_turn", result.stopReason());
+        assertEquals(20, result.usage().outputTokens());
+    }
+
+    @Test
+    void fencedPlan() throws IOException {
+        assertPlan("Voici le plan {demande} :\n```\n" + PLAN + "\n```\nBonne journee.");
+    }
+
+    @Test
+    void fencedPlanTaggedJson() throws IOException {
+        assertPlan("Voici le plan {demande} :\n```json\n" + PLAN + "\n```");
+    }
+
+    @Test
+    void rawPlan() throws IOException {
+        assertPlan(PLAN);
+        assertPlan("Voici le plan : " + PLAN + " Fin.");
+    }
+
+    @Test
+    void rawPlanFollowedByAClosingFence() throws IOException {
+        assertPlan(PLAN + "\n```");
+        assertPlan("Plan :\n" + PLAN + "\n```\n");
+    }
+
+    @Test
+    void responseWithoutTextBlockIsRejected() throws IOException {
+        var error = assertThrows(IOException.class, () -> parser.parse(message(null)));
+
+        assertEquals("Pas de contenu texte dans la reponse Claude", error.getMessage());
+    }
+
+    @Test
+    void textWithoutBraceIsRejected() throws IOException {
+        var error = assertThrows(IOException.class, () -> parser.parse(message("Je ne peux pas.\n```\n```")));
+
+        assertEquals("Pas de JSON trouve dans la reponse Claude", error.getMessage());
+    }
+}
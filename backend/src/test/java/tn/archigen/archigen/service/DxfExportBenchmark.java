@@ -0,0 +1,210 @@
+package tn.archigen.archigen.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.unit.DataSize;
+import tn.archigen.archigen.config.ExportProperties;
+import tn.archigen.archigen.dto.DoorDto;
+import tn.archigen.archigen.dto.PlanMetricsDto;
+import tn.archigen.archigen.dto.PlanResponse;
+import tn.archigen.archigen.dto.RoomDto;
+import tn.archigen.archigen.dto.TerrainDto;
+import tn.archigen.archigen.dto.WindowDto;
+import tn.archigen.archigen.service.dxf.DxfFormat;
+import tn.archigen.archigen.service.dxf.DxfFragmentCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export DXF d'un plan de 12 et 120 pieces: ecriture en flux ({@link DxfExportService}, tampon fixe vers un flux
+ * qui ignore les octets, comme une reponse HTTP) contre l'ancien chemin (StringBuilder, String.format par code
+ * de groupe, copie finale en byte[]) pour les memes entites, ecriture en flux au format binaire, et re-export
+ * d'un plan dont une seule piece a bouge (fragments des autres pieces en cache).
+ * Lancer avec {@code ./mvnw -Pbenchmark test-compile exec:exec -Dbenchmark=DxfExportBenchmark}
+ * (ajouter {@code -prof gc} dans les arguments JMH: allocations par export constantes en flux).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DxfExportBenchmark {
+
+    @Param({"12", "120"})
+    private int rooms;
+
+    /** Cache de fragments desactive: encodage complet a chaque export. */
+    private final DxfExportService service = new DxfExportService(fragmentCache(0));
+    private final DxfExportService cachedService = new DxfExportService(fragmentCache(32));
+    private PlanResponse plan;
+    private int edits;
+
+    @Setup
+    public void setup() {
+        String[] types = {"salon", "cuisine", "chambre", "chambre", "chambre", "sdb", "sdb", "wc", "bureau", "entree", "couloir", "garage"};
+        var roomList = new ArrayList<RoomDto>();
+        var doors = new ArrayList<DoorDto>();
+        var windows = new ArrayList<WindowDto>();
+        for (int i = 0; i < rooms; i++) {
+            double x = 3.0 + (i % 4) * 3.6;
+            double y = 5.0 + (i / 4) * 3.4;
+            roomList.add(RoomDto.builder().name(types[i % types.length] + " " + (i + 1)).type(types[i % types.length])
+                    .x(x).y(y).width(3.4).height(3.2).build());
+            doors.add(DoorDto.builder().x(x + 1.2).y(y).width(0.9).orientation("horizontal").build());
+            windows.add(WindowDto.builder().x(x).y(y + 1.0).width(1.2).orientation("vertical").build());
+        }
+        plan = PlanResponse.builder()
+                .terrain(new TerrainDto(20.0, 10.0 + (rooms / 4) * 3.4))
+                .rooms(roomList)
+                .doors(doors)
+                .windows(windows)
+                .wallThickness(0.2)
+                .metrics(PlanMetricsDto.builder().totalArea(130.6).cos(0.22).cuf(0.22).build())
+                .build();
+    }
+
+    @Benchmark
+    public long streaming() throws IOException {
+        var out = new CountingStream();
+        service.exportToDxf(plan, out, DxfFormat.ASCII);
+        return out.count;
+    }
+
+    @Benchmark
+    public long streamingBinary() throws IOException {
+        var out = new CountingStream();
+        service.exportToDxf(plan, out, DxfFormat.BINARY);
+        return out.count;
+    }
+
+    /** Re-export apres le deplacement d'une piece: seul son fragment est encode, les autres sont recopies. */
+    @Benchmark
+    public long reexportAfterEdit() throws IOException {
+        var rooms = new ArrayList<>(plan.getRooms());
+        var moved = rooms.get(0);
+        rooms.set(0, RoomDto.builder().name(moved.getName()).type(moved.getType())
+                .x(moved.getX() + (edits++ % 1000) * 0.001).y(moved.getY())
+                .width(moved.getWidth()).height(moved.getHeight()).build());
+        var out = new CountingStream();
+        cachedService.exportToDxf(plan.toBuilder().rooms(rooms).build(), out, DxfFormat.ASCII);
+        return out.count;
+    }
+
+    @Benchmark
+    public int legacy() {
+        var sb = new StringBuilder(8192);
+        group(sb, 0, "SECTION");
+        group(sb, 2, "ENTITIES");
+        double w = plan.getTerrain().getWidth();
+        double h = plan.getTerrain().getHeight();
+        rectangle(sb, "TERRAIN", -1, -1, w + 1, h + 1);
+        text(sb, "TEXTE", w / 2, -2, 0.3, String.format("TERRAIN: %.1fm x %.1fm = %.1fm2", w, h, w * h));
+        double wt = plan.getWallThickness();
+        for (var room : plan.getRooms()) {
+            double x = room.getX();
+            double y = room.getY();
+            rectangle(sb, "MURS_PORTEURS", x, y, x + room.getWidth(), y + room.getHeight());
+            rectangle(sb, "MURS_CLOISONS", x + wt, y + wt, x + room.getWidth() - wt, y + room.getHeight() - wt);
+            text(sb, "TEXTE", x + room.getWidth() / 2, y + room.getHeight() / 2, 0.15, String.format("%s (%.1fm2)",
+                    room.getName(), (room.getWidth() - 2 * wt) * (room.getHeight() - 2 * wt)));
+        }
+        for (var door : plan.getDoors()) {
+            line(sb, "OUVERTURES", door.getX(), door.getY(), door.getX() + door.getWidth(), door.getY());
+            group(sb, 0, "ARC");
+            group(sb, 8, "OUVERTURES");
+            group(sb, 10, fmt(door.getX()));
+            group(sb, 20, fmt(door.getY()));
+            group(sb, 30, "0.0");
+            group(sb, 40, fmt(door.getWidth()));
+            group(sb, 50, fmt(0));
+            group(sb, 51, fmt(90));
+        }
+        for (var window : plan.getWindows()) {
+            line(sb, "OUVERTURES", window.getX() - 0.05, window.getY(), window.getX() - 0.05, window.getY() + window.getWidth());
+            line(sb, "OUVERTURES", window.getX() + 0.05, window.getY(), window.getX() + 0.05, window.getY() + window.getWidth());
+        }
+        for (var room : plan.getRooms()) {
+            text(sb, "COTATIONS", room.getX() + room.getWidth() / 2, room.getY() - 0.3, 0.10, String.format("%.2f", room.getWidth()));
+            text(sb, "COTATIONS", room.getX() - 0.5, room.getY() + room.getHeight() / 2, 0.10, String.format("%.2f", room.getHeight()));
+        }
+        group(sb, 0, "ENDSEC");
+        group(sb, 0, "EOF");
+        return sb.toString().getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void rectangle(StringBuilder sb, String layer, double x1, double y1, double x2, double y2) {
+        line(sb, layer, x1, y1, x2, y1);
+        line(sb, layer, x2, y1, x2, y2);
+        line(sb, layer, x2, y2, x1, y2);
+        line(sb, layer, x1, y2, x1, y1);
+    }
+
+    private static void line(StringBuilder sb, String layer, double x1, double y1, double x2, double y2) {
+        group(sb, 0, "LINE");
+        group(sb, 8, layer);
+        group(sb, 10, fmt(x1));
+        group(sb, 20, fmt(y1));
+        group(sb, 30, "0.0");
+        group(sb, 11, fmt(x2));
+        group(sb, 21, fmt(y2));
+        group(sb, 31, "0.0");
+    }
+
+    private static void text(StringBuilder sb, String layer, double x, double y, double height, String text) {
+        group(sb, 0, "TEXT");
+        group(sb, 8, layer);
+        group(sb, 10, fmt(x));
+        group(sb, 20, fmt(y));
+        group(sb, 30, "0.0");
+        group(sb, 40, fmt(height));
+        group(sb, 1, text);
+        group(sb, 72, "1");
+        group(sb, 11, fmt(x));
+        group(sb, 21, fmt(y));
+        group(sb, 31, "0.0");
+    }
+
+    private static void group(StringBuilder sb, int code, String value) {
+        sb.append(String.format("%3d\n%s\n", code, value));
+    }
+
+    private static String fmt(double value) {
+        return String.format("%.4f", value);
+    }
+
+    private static DxfFragmentCache fragmentCache(long megabytes) {
+        var properties = new ExportProperties();
+        properties.setFragmentCacheSize(DataSize.ofMegabytes(megabytes));
+        return new DxfFragmentCache(properties, new SimpleMeterRegistry());
+    }
+
+    /** Flux qui ne garde que le nombre d'octets recus (reponse HTTP sans cout reseau). */
+    private static final class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+import tn.archigen.archigen.config.ExportProperties;
+import tn.archigen.archigen.dto.DoorDto;
+import tn.archigen.archigen.dto.FloorDto;
+import tn.archigen.archigen.dto.PlanResponse;
+import tn.archigen.archigen.dto.RoomDto;
+import tn.archigen.archigen.dto.WindowDto;
+import tn.archigen.archigen.service.dxf.DxfFormat;
+import tn.archigen.archigen.service.dxf.DxfFragmentCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Export DXF ({@link DxfExportService}): geometrie des blocs une fois les INSERT developpes, et fragments
+ * recopies depuis le {@link DxfFragmentCache} (memes octets qu'un export sans cache).
+ */
+class DxfExportServiceTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private PlanResponse villa;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        villa = objectMapper.readValue(AiStubServer.resource("examples/export-dxf-villa.json"), PlanResponse.class);
+    }
+
+    private static DxfExportService service(DataSize fragmentCacheSize, SimpleMeterRegistry meterRegistry) {
+        var exportProperties = new ExportProperties();
+        exportProperties.setFragmentCacheSize(fragmentCacheSize);
+        return new DxfExportService(new DxfFragmentCache(exportProperties, meterRegistry));
+    }
+
+    private static DxfExportService service(DataSize fragmentCacheSize) {
+        return service(fragmentCacheSize, new SimpleMeterRegistry());
+    }
+
+    private static byte[] export(DxfExportService service, PlanResponse plan, DxfFormat format) throws IOException {
+        var out = new ByteArrayOutputStream();
+        service.exportToDxf(plan, out, format);
+        return out.toByteArray();
+    }
+
+    private static double fragmentHits(SimpleMeterRegistry meterRegistry) {
+        return meterRegistry.get("cache.gets").tag("cache", "dxf-fragments").tag("result", "hit")
+                .functionCounter().count();
+    }
+
+    /** Copie profonde du plan, pieces deplacees d'au plus {@code jitter} metres. */
+    private PlanResponse moved(PlanResponse plan, SplittableRandom random, double jitter) throws IOException {
+        var copy = objectMapper.readValue(objectMapper.writeValueAsBytes(plan), PlanResponse.class);
+        for (RoomDto room : copy.getRooms()) {
+            if (random.nextBoolean()) {
+                room.setX(room.getX() + random.nextDouble(-jitter, jitter));
+                room.setY(room.getY() + random.nextDouble(-jitter, jitter));
+            }
+        }
+        return copy;
+    }
+
+    @Test
+    void warmCacheExportIsByteIdenticalToUncachedExport() throws IOException {
+        var uncached = service(DataSize.ofBytes(0));
+        var meterRegistry = new SimpleMeterRegistry();
+        var cached = service(DataSize.ofMegabytes(4), meterRegistry);
+        // Assez petit pour evincer des fragments pendant un meme export
+        var evicting = service(DataSize.ofKilobytes(2));
+        var random = new SplittableRandom(7);
+
+        var plans = new ArrayList<PlanResponse>();
+        plans.add(villa);
+        for (int i = 0; i < 40; i++) {
+            // Plans voisins (boucle d'edition): une partie des fragments est deja en cache
+            plans.add(moved(villa, random, i % 2 == 0 ? 0.5 : 3.0));
+        }
+        for (DxfFormat format : DxfFormat.values()) {
+            for (PlanResponse plan : plans) {
+                byte[] expected = export(uncached, plan, format);
+                assertArrayEquals(expected, export(cached, plan, format), format + " (premier export)");
+                assertArrayEquals(expected, export(cached, plan, format), format + " (cache chaud)");
+                assertArrayEquals(expected, export(evicting, plan, format), format + " (cache evincant)");
+            }
+        }
+        assertTrue(fragmentHits(meterRegistry) > 0, "fragments recopies");
+    }
+
+    @Test
+    void fragmentLongerThanTheReserveIsNotRecorded() throws IOException {
+        var uncached = service(DataSize.ofBytes(0));
+        var meterRegistry = new SimpleMeterRegistry();
+        var cached = service(DataSize.ofMegabytes(4), meterRegistry);
+        var room = RoomDto.builder().name("Salon ".repeat(300)).type("salon").x(1.0).y(1.0).width(5.0).height(4.0).build();
+        var plan = villa.toBuilder().rooms(List.of(room)).doors(List.of()).windows(List.of()).floors(null).build();
+
+        for (DxfFormat format : DxfFormat.values()) {
+            byte[] expected = export(uncached, plan, format);
+            assertArrayEquals(expected, export(cached, plan, format));
+            assertArrayEquals(expected, export(cached, plan, format));
+        }
+
+        // Fragment de la piece (nom de 1800 caracteres) jamais garde
+        assertEquals(0.0, fragmentHits(meterRegistry));
+    }
+
+    // ==================== Blocs developpes ====================
+
+    /** Ecart admis: cles de blocs au millimetre (0.5 mm) et reels du DXF texte a 4 decimales. */
+    private static final double TOLERANCE = 1e-3;
+
+    /** Entite DXF: type (code 0) et ses paires (premiere valeur de chaque code). */
+    private record Entity(String type, Map<Integer, String> groups) {
+
+        double real(int code, double orElse) {
+            String value = groups.get(code);
+            return value != null ? Double.parseDouble(value) : orElse;
+        }
+    }
+
+    /**
+     * Ligne (x1, y1, x2, y2), arc (cx, cy, rayon, angle de debut, angle de fin en degres) ou texte
+     * (x, y, point d'alignement x, y, hauteur), dans le repere du dessin.
+     */
+    private record Shape(String type, String layer, List<Double> values, String text) {
+
+        static Shape line(String layer, double x1, double y1, double x2, double y2) {
+            return new Shape("LINE", layer, List.of(x1, y1, x2, y2), null);
+        }
+
+        static Shape arc(String layer, double cx, double cy, double radius, double start, double end) {
+            return new Shape("ARC", layer, List.of(cx, cy, radius, start, end), null);
+        }
+
+        static Shape text(String layer, double x, double y, double height, String text) {
+            return new Shape("TEXT", layer, List.of(x, y, x, y, height), text);
+        }
+
+        boolean matches(Shape other) {
+            if (!type.equals(other.type) || !layer.equals(other.layer) || !String.valueOf(text).equals(String.valueOf(other.text))) {
+                return false;
+            }
+            return switch (type) {
+                // Sens de parcours indifferent
+                case "LINE" -> close(values, other.values, 0, 1, 2, 3) || close(values, other.values, 2, 3, 0, 1);
+                case "ARC" -> close(values, other.values, 0, 1, 2) && sameAngle(values.get(3), other.values.get(3))
+                        && sameAngle(values.get(4), other.values.get(4));
+                default -> close(values, other.values, 0, 1, 2, 3, 4);
+            };
+        }
+
+        private static boolean close(List<Double> a, List<Double> b, int... indexes) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (Math.abs(a.get(i) - b.get(indexes[i])) > TOLERANCE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean sameAngle(double a, double b) {
+            double difference = Math.abs((a - b) % 360);
+            return Math.min(difference, 360 - difference) <= TOLERANCE;
+        }
+    }
+
+    private static List<Entity> entities(String dxf) {
+        String[] lines = dxf.split("\n");
+        var entities = new ArrayList<Entity>();
+        Entity current = null;
+        for (int i = 0; i + 1 < lines.length; i += 2) {
+            int code = Integer.parseInt(lines[i].trim());
+            if (code == 0) {
+                current = new Entity(lines[i + 1], new LinkedHashMap<>());
+                entities.add(current);
+            } else if (current != null) {
+                current.groups().putIfAbsent(code, lines[i + 1]);
+            }
+        }
+        return entities;
+    }
+
+    /** Lignes, arcs et textes des blocs references par les INSERT de la section ENTITIES, dans le repere du dessin. */
+    private static List<Shape> expandInserts(String dxf) {
+        var blocks = new HashMap<String, List<Entity>>();
+        List<Entity> block = null;
+        boolean inEntities = false;
+        var shapes = new ArrayList<Shape>();
+        for (Entity entity : entities(dxf)) {
+            switch (entity.type()) {
+                case "SECTION" -> inEntities = "ENTITIES".equals(entity.groups().get(2));
+                case "BLOCK" -> {
+                    block = new ArrayList<>();
+                    blocks.put(entity.groups().get(2), block);
+                }
+                case "ENDBLK" -> block = null;
+                case "INSERT" -> {
+                    if (inEntities) {
+                        List<Entity> definition = blocks.get(entity.groups().get(2));
+                        assertNotNull(definition, "bloc " + entity.groups().get(2));
+                        for (Entity child : definition) {
+                            shapes.add(transform(child, entity));
+                        }
+                    }
+                }
+                default -> {
+                    if (block != null) {
+                        block.add(entity);
+                    }
+                }
+            }
+        }
+        return shapes;
+    }
+
+    /** Entite d'un bloc placee par un INSERT: echelle (41, 42), puis rotation (50), puis translation (10, 20). */
+    private static Shape transform(Entity child, Entity insert) {
+        double sx = insert.real(41, 1);
+        double sy = insert.real(42, 1);
+        double rotation = insert.real(50, 0);
+        double cos = Math.cos(Math.toRadians(rotation));
+        double sin = Math.sin(Math.toRadians(rotation));
+        double ox = insert.real(10, 0);
+        double oy = insert.real(20, 0);
+        String layer = child.groups().get(8);
+        BiFunction<Double, Double, double[]> point = (px, py) -> new double[] {
+                ox + px * sx * cos - py * sy * sin, oy + px * sx * sin + py * sy * cos};
+
+        switch (child.type()) {
+            case "LINE" -> {
+                double[] start = point.apply(child.real(10, 0), child.real(20, 0));
+                double[] end = point.apply(child.real(11, 0), child.real(21, 0));
+                return Shape.line(layer, start[0], start[1], end[0], end[1]);
+            }
+            case "ARC" -> {
+                double[] center = point.apply(child.real(10, 0), child.real(20, 0));
+                double start = angle(child.real(50, 0), sx, sy, rotation);
+                double end = angle(child.real(51, 0), sx, sy, rotation);
+                // Une symetrie inverse le sens de parcours de l'arc
+                return sx * sy < 0
+                        ? Shape.arc(layer, center[0], center[1], child.real(40, 0) * Math.abs(sx), end, start)
+                        : Shape.arc(layer, center[0], center[1], child.real(40, 0) * Math.abs(sx), start, end);
+            }
+            case "TEXT" -> {
+                double[] position = point.apply(child.real(10, 0), child.real(20, 0));
+                double[] alignment = point.apply(child.real(11, 0), child.real(21, 0));
+                return new Shape("TEXT", layer, List.of(position[0], position[1], alignment[0], alignment[1],
+                        child.real(40, 0) * Math.abs(sy)), child.groups().get(1));
+            }
+            default -> throw new AssertionError("entite inattendue dans un bloc: " + child.type());
+        }
+    }
+
+    private static double angle(double degrees, double sx, double sy, double rotation) {
+        double radians = Math.toRadians(degrees);
+        return Math.toDegrees(Math.atan2(Math.sin(radians) * sy, Math.cos(radians) * sx)) + rotation;
+    }
+
+    /** Geometrie attendue de chaque piece, porte et fenetre (dessin direct, sans bloc). */
+    private static List<Shape> expectedShapes(PlanResponse plan) {
+        double t = plan.getWallThickness();
+        var shapes = new ArrayList<Shape>();
+        var levels = new ArrayList<FloorDto>();
+        levels.add(FloorDto.builder().rooms(plan.getRooms()).doors(plan.getDoors()).windows(plan.getWindows()).build());
+        if (plan.getFloors() != null) {
+            levels.addAll(plan.getFloors());
+        }
+        for (int i = 0; i < levels.size(); i++) {
+            double dx = i * (plan.getTerrain().getWidth() + 5.0);
+            FloorDto level = levels.get(i);
+            for (RoomDto room : level.getRooms()) {
+                double x = dx + room.getX();
+                double y = room.getY();
+                double w = room.getWidth();
+                double h = room.getHeight();
+                rectangle(shapes, "MURS_PORTEURS", x, y, x + w, y + h);
+                rectangle(shapes, "MURS_CLOISONS", x + t, y + t, x + w - t, y + h - t);
+                shapes.add(Shape.text("COTATIONS", x + w / 2, y - 0.3, 0.10, String.format(Locale.ROOT, "%.2f", w)));
+                shapes.add(Shape.text("COTATIONS", x - 0.5, y + h / 2, 0.10, String.format(Locale.ROOT, "%.2f", h)));
+            }
+            for (DoorDto door : level.getDoors()) {
+                double x = dx + door.getX();
+                double y = door.getY();
+                double w = door.getWidth();
+                // Battant le long du mur, arc d'ouverture dans le premier quart
+                if ("vertical".equals(door.getOrientation())) {
+                    shapes.add(Shape.line("OUVERTURES", x, y, x, y + w));
+                } else {
+                    shapes.add(Shape.line("OUVERTURES", x, y, x + w, y));
+                }
+                shapes.add(Shape.arc("OUVERTURES", x, y, w, 0, 90));
+            }
+            for (WindowDto window : level.getWindows()) {
+                double x = dx + window.getX();
+                double y = window.getY();
+                double w = window.getWidth();
+                if ("vertical".equals(window.getOrientation())) {
+                    shapes.add(Shape.line("OUVERTURES", x - 0.05, y, x - 0.05, y + w));
+                    shapes.add(Shape.line("OUVERTURES", x + 0.05, y, x + 0.05, y + w));
+                } else {
+                    shapes.add(Shape.line("OUVERTURES", x, y - 0.05, x + w, y - 0.05));
+                    shapes.add(Shape.line("OUVERTURES", x, y + 0.05, x + w, y + 0.05));
+                }
+            }
+        }
+        return shapes;
+    }
+
+    private static void rectangle(List<Shape> shapes, String layer, double x1, double y1, double x2, double y2) {
+        shapes.add(Shape.line(layer, x1, y1, x2, y1));
+        shapes.add(Shape.line(layer, x2, y1, x2, y2));
+        shapes.add(Shape.line(layer, x2, y2, x1, y2));
+        shapes.add(Shape.line(layer, x1, y2, x1, y1));
+    }
+
+    private void assertBlocksDrawThePlan(PlanResponse plan) throws IOException {
+        String dxf = new String(export(service(DataSize.ofBytes(0)), plan, DxfFormat.ASCII), StandardCharsets.UTF_8);
+        var actual = new ArrayList<>(expandInserts(dxf));
+
+        for (Shape expected : expectedShapes(plan)) {
+            int match = -1;
+            for (int i = 0; i < actual.size() && match < 0; i++) {
+                if (expected.matches(actual.get(i))) {
+                    match = i;
+                }
+            }
+            assertTrue(match >= 0, "attendu " + expected + ", non dessine parmi " + actual);
+            actual.remove(match);
+        }
+        assertEquals(List.of(), actual, "dessine en trop");
+    }
+
+    @Test
+    void doorAndWindowBlocksDrawTheOpeningsInBothOrientations() throws IOException {
+        var doors = List.of(
+                DoorDto.builder().x(2.0).y(3.0).width(0.9).orientation("horizontal").build(),
+                DoorDto.builder().x(5.0).y(1.0).width(0.9).orientation("vertical").build(),
+                DoorDto.builder().x(8.25).y(4.5).width(1.0).orientation("vertical").build(),
+                // Largeur hors millimetre: bloc PORTE_834
+                DoorDto.builder().x(3.1).y(7.7).width(0.8336).orientation("horizontal").build(),
+                DoorDto.builder().x(11.3).y(6.4).width(0.8336).orientation("vertical").build());
+        var windows = List.of(
+                WindowDto.builder().x(1.0).y(9.8).width(1.2).orientation("horizontal").build(),
+                WindowDto.builder().x(9.8).y(2.0).width(1.2).orientation("vertical").build(),
+                WindowDto.builder().x(12.0).y(5.0).width(1.5004).orientation("vertical").build(),
+                WindowDto.builder().x(6.5).y(0.2).width(1.5004).orientation("horizontal").build());
+        var floor = FloorDto.builder().level(1).name("R+1").rooms(List.of())
+                .doors(List.of(DoorDto.builder().x(2.0).y(3.0).width(0.9).orientation("vertical").build()))
+                .windows(List.of(WindowDto.builder().x(1.0).y(9.8).width(1.2).orientation("vertical").build()))
+                .build();
+        var plan = villa.toBuilder().rooms(List.of()).doors(doors).windows(windows).floors(List.of(floor)).build();
+
+        assertBlocksDrawThePlan(plan);
+    }
+
+    @Test
+    void roomBlocksDrawTheWallsAndDimensions() throws IOException {
+        assertBlocksDrawThePlan(villa);
+    }
+}
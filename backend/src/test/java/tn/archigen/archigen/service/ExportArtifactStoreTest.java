@@ -0,0 +1,112 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+import tn.archigen.archigen.config.OutputProperties;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportArtifactStoreTest {
+
+    private static final byte[] CONTENT = new byte[100];
+
+    @TempDir
+    Path outputDirectory;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ExportArtifactStore store(DataSize maxSize) {
+        var outputProperties = new OutputProperties();
+        outputProperties.setDirectory(outputDirectory.toString());
+        outputProperties.setArtifactMaxSize(maxSize);
+        return new ExportArtifactStore(outputProperties, objectMapper, meterRegistry);
+    }
+
+    private double storedSize() {
+        return meterRegistry.get("export.artifacts.size").gauge().value();
+    }
+
+    private static void age(ExportArtifactStore.Artifact artifact) throws Exception {
+        Files.setLastModifiedTime(artifact.path(), FileTime.from(Instant.now()
+                .minus(ExportArtifactStore.EVICTION_GRACE).minusSeconds(60)));
+    }
+
+    @Test
+    void concurrentMissesCountTheFileOnce() throws Exception {
+        var store = store(DataSize.ofMegabytes(1));
+        String key = store.key("test", "plan");
+        var barrier = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Les deux ecritures ont lieu avant le premier renommage
+            Future<?> first = executor.submit(() -> store.getOrCreate(key, "dxf", out -> {
+                await(barrier);
+                out.write(CONTENT);
+            }));
+            Future<?> second = executor.submit(() -> store.getOrCreate(key, "dxf", out -> {
+                await(barrier);
+                out.write(CONTENT);
+            }));
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(CONTENT.length, storedSize());
+    }
+
+    @Test
+    void recentlyServedFilesAreNotEvicted() throws Exception {
+        var store = store(DataSize.ofBytes(250));
+        var old = store.getOrCreate(store.key("test", "old"), "dxf", out -> out.write(CONTENT));
+        var served = store.getOrCreate(store.key("test", "served"), "dxf", out -> out.write(CONTENT));
+        age(old);
+        age(served);
+        // Servi a nouveau: protege jusqu'a l'ouverture par la reponse
+        assertEquals(served.path(), store.find(served.name()).path());
+
+        var created = store.getOrCreate(store.key("test", "new"), "dxf", out -> out.write(CONTENT));
+
+        assertFalse(Files.exists(old.path()), "le moins recemment servi est supprime");
+        assertTrue(Files.exists(served.path()));
+        assertTrue(Files.exists(created.path()));
+        assertEquals(2 * CONTENT.length, storedSize());
+    }
+
+    @Test
+    void limitIsExceededWhileAllFilesAreInUse() throws Exception {
+        var store = store(DataSize.ofBytes(150));
+        var first = store.getOrCreate(store.key("test", "first"), "dxf", out -> out.write(CONTENT));
+        var second = store.getOrCreate(store.key("test", "second"), "dxf", out -> out.write(CONTENT));
+
+        assertTrue(Files.exists(first.path()));
+        assertTrue(Files.exists(second.path()));
+        assertEquals(2 * CONTENT.length, storedSize());
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
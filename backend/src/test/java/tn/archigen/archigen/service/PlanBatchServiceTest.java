@@ -0,0 +1,84 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import tn.archigen.archigen.config.GenerationProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanBatchServiceTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+    private PlanGenerationService planGenerationService;
+    private PlanBatchService service;
+    private String request;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        var generationProperties = new GenerationProperties();
+        planGenerationService = new PlanGenerationService(generationProperties,
+                new PlanCache(generationProperties, new SimpleMeterRegistry()));
+        service = new PlanBatchService(planGenerationService, generationProperties,
+                validatorFactory.getValidator(), objectMapper);
+        // Une requete par ligne (NDJSON)
+        request = objectMapper.readTree(AiStubServer.resource("examples/generate-villa-s2.json")).toString();
+    }
+
+    @AfterEach
+    void tearDown() {
+        planGenerationService.shutdown();
+        validatorFactory.close();
+    }
+
+    /** Lignes de resultat par index. */
+    private Map<Integer, JsonNode> generate(String... lines) throws IOException {
+        var out = new ByteArrayOutputStream();
+        service.generateBatch(new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)), out);
+        var results = new TreeMap<Integer, JsonNode>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode result = objectMapper.readTree(line);
+            results.put(result.path("index").asInt(), result);
+        }
+        return results;
+    }
+
+    @Test
+    void requestOutOfFormatFailsAloneAndTheBatchGoesOn() throws IOException {
+        var outOfFormat = (ObjectNode) objectMapper.readTree(request);
+        outOfFormat.put("terrain", "grand");
+
+        var results = generate(request, outOfFormat.toString(), request);
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).path("plan").path("rooms").size() > 0);
+        assertTrue(results.get(1).path("error").asText().startsWith("Requete invalide: "), results.get(1).toString());
+        assertTrue(results.get(1).path("plan").isMissingNode() || results.get(1).path("plan").isNull());
+        assertTrue(results.get(2).path("plan").path("rooms").size() > 0);
+    }
+
+    @Test
+    void malformedStreamEndsTheBatch() throws IOException {
+        var results = generate(request, "{\"terrain\": {", request);
+
+        assertEquals(2, results.size());
+        assertTrue(results.get(0).path("plan").path("rooms").size() > 0);
+        assertTrue(results.get(1).path("error").asText().startsWith("JSON invalide: "), results.get(1).toString());
+    }
+}
@@ -0,0 +1,97 @@
+package tn.archigen.archigen.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import tn.archigen.archigen.config.GenerationProperties;
+import tn.archigen.archigen.dto.FloorDto;
+import tn.archigen.archigen.dto.PlanGenerateRequest;
+import tn.archigen.archigen.dto.PlanResponse;
+import tn.archigen.archigen.dto.RoomDto;
+import tn.archigen.archigen.service.layout.BuildableZone;
+import tn.archigen.archigen.service.layout.OverlapSweep;
+import tn.archigen.archigen.service.layout.RoomLayout;
+import tn.archigen.archigen.service.layout.WallAlignment;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanGenerationServiceTest {
+
+    private static final double EPS = 1e-6;
+
+    private final GenerationProperties generationProperties = new GenerationProperties();
+    private final PlanGenerationService service = new PlanGenerationService(generationProperties,
+            new PlanCache(generationProperties, new SimpleMeterRegistry()));
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    private static PlanGenerateRequest request(String resource) throws IOException {
+        return Jackson2ObjectMapperBuilder.json().build()
+                .readValue(AiStubServer.resource(resource), PlanGenerateRequest.class);
+    }
+
+    /** Bords d'un cote des pieces: gauche ({@code vertical}, debut), droit, haut ou bas. */
+    private static double[] edges(List<RoomDto> rooms, boolean vertical, boolean end) {
+        return rooms.stream()
+                .mapToDouble(room -> {
+                    double pos = vertical ? room.getX() : room.getY();
+                    return end ? pos + (vertical ? room.getWidth() : room.getHeight()) : pos;
+                })
+                .toArray();
+    }
+
+    private static boolean contains(double[] lines, double value) {
+        for (double line : lines) {
+            if (Math.abs(line - value) <= EPS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void upperFloorWallsSitOnGroundFloorWallsWhenTheyCan() throws IOException {
+        PlanResponse plan = service.generatePlan(request("examples/generate-villa-r2.json"));
+        List<FloorDto> floors = plan.getFloors();
+        assertEquals(3, floors.size());
+        var terrain = new BuildableZone(0, 0, plan.getTerrain().getWidth(), plan.getTerrain().getHeight());
+        var ground = RoomLayout.of(floors.get(0).getRooms());
+
+        int aligned = 0;
+        int total = 0;
+        for (FloorDto floor : floors.subList(1, floors.size())) {
+            var layout = RoomLayout.of(floor.getRooms());
+            assertEquals(0, OverlapSweep.forEachOverlap(
+                    edges(floor.getRooms(), true, false), edges(floor.getRooms(), false, false),
+                    floor.getRooms().stream().mapToDouble(RoomDto::getWidth).toArray(),
+                    floor.getRooms().stream().mapToDouble(RoomDto::getHeight).toArray(),
+                    layout.size(), EPS, (a, b) -> { }), floor.getName());
+
+            // Invariant: aucun mur d'etage ne peut plus etre recale sur le RDC sans reduire une piece
+            // (pieces relues avec leur surface courante comme minimum)
+            assertEquals(0, WallAlignment.align(layout, ground, terrain, 0.8, 0.2), floor.getName());
+
+            for (boolean vertical : new boolean[]{true, false}) {
+                for (boolean end : new boolean[]{false, true}) {
+                    double[] groundLines = edges(floors.get(0).getRooms(), vertical, end);
+                    for (double edge : edges(floor.getRooms(), vertical, end)) {
+                        total++;
+                        if (contains(groundLines, edge)) {
+                            aligned++;
+                        }
+                    }
+                }
+            }
+        }
+        // Escalier et palier communs, facades de l'emprise et murs recales
+        assertTrue(aligned * 2 > total, aligned + "/" + total + " bords d'etage sur un mur du RDC");
+    }
+}
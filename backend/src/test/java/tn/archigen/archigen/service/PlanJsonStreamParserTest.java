@@ -0,0 +1,132 @@
+package tn.archigen.archigen.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import tn.archigen.archigen.dto.DoorDto;
+import tn.archigen.archigen.dto.PlanResponse;
+import tn.archigen.archigen.dto.RoomDto;
+import tn.archigen.archigen.dto.WindowDto;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanJsonStreamParserTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final List<String> events = new ArrayList<>();
+    private final PlanJsonStreamParser.Listener listener = new PlanJsonStreamParser.Listener() {
+        @Override
+        public void onRoom(RoomDto room) {
+            events.add("room " + room.getName());
+        }
+
+        @Override
+        public void onDoor(DoorDto door) {
+            events.add("door " + door.getX());
+        }
+
+        @Override
+        public void onWindow(WindowDto window) {
+            events.add("window " + window.getX());
+        }
+    };
+
+    /** Morceaux de texte du flux enregistre, tels que le modele les a envoyes. */
+    private List<String> recordedChunks() throws IOException {
+        var chunks = new ArrayList<String>();
+        String sse = new String(AiStubServer.resource("ai/stream-plan.sse"), StandardCharsets.UTF_8);
+        for (String line : sse.split("\n")) {
+            if (line.startsWith("data:")) {
+                var delta = objectMapper.readTree(line.substring(5)).path("delta");
+                if ("text_delta".equals(delta.path("type").asText())) {
+                    chunks.add(delta.path("text").asText());
+                }
+            }
+        }
+        return chunks;
+    }
+
+    private PlanResponse parse(List<String> chunks) throws IOException {
+        var parser = new PlanJsonStreamParser(objectMapper, listener);
+        for (String chunk : chunks) {
+            parser.feed(chunk);
+        }
+        assertTrue(parser.isComplete());
+        return parser.finish();
+    }
+
+    @Test
+    void emitsElementsAsSoonAsTheyAreComplete() throws IOException {
+        var chunks = recordedChunks();
+        var parser = new PlanJsonStreamParser(objectMapper, listener);
+        int roomsSeenAt = -1;
+        for (int i = 0; i < chunks.size(); i++) {
+            parser.feed(chunks.get(i));
+            if (roomsSeenAt < 0 && !events.isEmpty()) {
+                roomsSeenAt = i;
+            }
+        }
+        // La premiere piece est emise bien avant la fin du texte
+        assertTrue(roomsSeenAt > 0 && roomsSeenAt < chunks.size() / 2, "premiere piece au morceau " + roomsSeenAt);
+        assertEquals(List.of("room Salon", "room Cuisine \"ouverte\" {bar}", "door 6.0", "window 5.0"), events);
+
+        PlanResponse plan = parser.finish();
+        assertEquals(2, plan.getRooms().size());
+        assertEquals(0.2, plan.getWallThickness());
+        assertEquals(46.0, plan.getMetrics().getTotalArea());
+    }
+
+    @Test
+    void chunkBoundariesDoNotMatter() throws IOException {
+        String text = String.join("", recordedChunks());
+        var expected = parse(List.of(text));
+        var expectedEvents = List.copyOf(events);
+
+        for (int size : new int[]{1, 2, 3, 5, 13, 64}) {
+            events.clear();
+            var chunks = new ArrayList<String>();
+            for (int i = 0; i < text.length(); i += size) {
+                chunks.add(text.substring(i, Math.min(text.length(), i + size)));
+            }
+            assertEquals(expected, parse(chunks), "morceaux de " + size);
+            assertEquals(expectedEvents, events, "morceaux de " + size);
+        }
+    }
+
+    @Test
+    void proseAndFencesAroundTheJsonAreIgnored() throws IOException {
+        var plan = parse(List.of("Bien sur! Voici:\n```json\n",
+                "{\"rooms\": [{\"name\": \"A {1}\", \"type\": \"salon\", \"x\": 1, \"y\": 1, \"width\": 3, \"height\": 3}]}",
+                "\n```\nJ'espere que {ce plan} convient."));
+
+        assertEquals(List.of("room A {1}"), events);
+        assertEquals(1, plan.getRooms().size());
+    }
+
+    @Test
+    void incompleteJsonFails() throws IOException {
+        var parser = new PlanJsonStreamParser(objectMapper, listener);
+        parser.feed("{\"rooms\": [{\"name\": \"A\", \"type\": \"salon\", \"x\": 1, \"y\": 1, \"width\": 3, \"height\": 3}, {\"na");
+
+        assertFalse(parser.isComplete());
+        assertEquals(List.of("room A"), events);
+        assertThrows(IOException.class, parser::finish);
+    }
+
+    @Test
+    void textWithoutJsonFails() throws IOException {
+        var parser = new PlanJsonStreamParser(objectMapper, listener);
+        parser.feed("Je ne peux pas generer ce plan.");
+
+        var error = assertThrows(IOException.class, parser::finish);
+        assertEquals("Pas de JSON trouve dans la reponse", error.getMessage());
+    }
+}
@@ -0,0 +1,110 @@
+package tn.archigen.archigen.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import tn.archigen.archigen.config.GenerationProperties;
+import tn.archigen.archigen.dto.DoorDto;
+import tn.archigen.archigen.dto.PlanResponse;
+import tn.archigen.archigen.dto.RegulationsDto;
+import tn.archigen.archigen.dto.RoomDto;
+import tn.archigen.archigen.dto.TerrainDto;
+import tn.archigen.archigen.dto.WindowDto;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanRepairServiceTest {
+
+    private static final TerrainDto TERRAIN = new TerrainDto(20.0, 30.0);
+    private static final RegulationsDto REGULATIONS = new RegulationsDto();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GenerationProperties properties = new GenerationProperties();
+    private final PlanGenerationService planGenerationService =
+            new PlanGenerationService(properties, new PlanCache(properties, meterRegistry));
+    private final PlanRepairService service = new PlanRepairService(planGenerationService, meterRegistry);
+
+    @AfterEach
+    void shutdown() {
+        planGenerationService.shutdown();
+    }
+
+    private static RoomDto room(String name, String type, double x, double y, double w, double h) {
+        return RoomDto.builder().name(name).type(type).x(x).y(y).width(w).height(h).build();
+    }
+
+    private static PlanResponse plan(List<RoomDto> rooms) {
+        return PlanResponse.builder()
+                .terrain(new TerrainDto(15.0, 25.0))
+                .rooms(rooms)
+                .doors(List.of(DoorDto.builder().x(4.37).y(5.0).width(1.0).orientation("horizontal").build()))
+                .windows(List.of(WindowDto.builder().x(4.53).y(9.0).width(1.2).orientation("horizontal").build()))
+                .build();
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("plan.repair").tag("result", result).counter().count();
+    }
+
+    @Test
+    void validPlanKeepsItsOpenings() {
+        var plan = plan(List.of(
+                room("Salon", "salon", 3.0, 5.0, 5.0, 4.0),
+                room("Cuisine", "cuisine", 8.0, 5.0, 3.5, 4.0)));
+
+        var result = service.repair(plan, TERRAIN, REGULATIONS);
+
+        assertSame(plan.getRooms(), result.getRooms());
+        assertSame(plan.getDoors(), result.getDoors());
+        assertSame(plan.getWindows(), result.getWindows());
+        assertEquals(TERRAIN, result.getTerrain());
+        assertEquals(PlanGenerationService.WALL_THICKNESS, result.getWallThickness());
+        assertEquals(34.0, result.getMetrics().getTotalArea(), 1e-9);
+        assertEquals(1.0, count("valid"));
+    }
+
+    @Test
+    void repairedPlanHasItsOpeningsRebuilt() {
+        var plan = plan(List.of(
+                room("Salon", "salon", 3.0, 5.0, 5.0, 4.0),
+                room("Cuisine", "cuisine", 6.0, 6.0, 3.5, 4.0)));   // chevauche le salon
+
+        var result = service.repair(plan, TERRAIN, REGULATIONS);
+
+        assertEquals(2, result.getRooms().size());
+        assertFalse(result.getDoors().isEmpty());
+        assertFalse(result.getWindows().isEmpty());
+        assertFalse(result.getDoors().contains(plan.getDoors().get(0)), "porte d'origine gardee");
+        assertFalse(result.getWindows().contains(plan.getWindows().get(0)), "fenetre d'origine gardee");
+        var salon = result.getRooms().get(0);
+        var cuisine = result.getRooms().get(1);
+        assertTrue(cuisine.getX() >= salon.getX() + salon.getWidth() - 1e-9
+                || cuisine.getY() >= salon.getY() + salon.getHeight() - 1e-9, "pieces encore en chevauchement");
+        assertNotNull(result.getMetrics());
+        assertEquals(1.0, count("repaired"));
+    }
+
+    @Test
+    void validPlanWithoutOpeningsIsRebuilt() {
+        var plan = plan(List.of(room("Salon", "salon", 3.0, 5.0, 5.0, 4.0))).toBuilder().doors(null).build();
+
+        var result = service.repair(plan, TERRAIN, REGULATIONS);
+
+        assertNotNull(result.getDoors());
+        assertEquals(1.0, count("repaired"));
+    }
+
+    @Test
+    void planWithoutUsableRoomsThrows() {
+        var plan = plan(List.of(RoomDto.builder().name("Salon").type("salon").build()));
+
+        assertThrows(IllegalArgumentException.class, () -> service.repair(plan, TERRAIN, REGULATIONS));
+    }
+}
@@ -0,0 +1,215 @@
+package tn.archigen.archigen.service.dxf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import tn.archigen.archigen.config.ExportProperties;
+import tn.archigen.archigen.dto.PlanResponse;
+import tn.archigen.archigen.service.DxfExportService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** DXF binaire ({@link BinaryDxfWriter}): octets decodes selon la specification, et meme dessin que le DXF texte. */
+class BinaryDxfWriterTest {
+
+    private static final byte[] SENTINEL = "AutoCAD Binary DXF\r\n\u001a\0".getBytes(StandardCharsets.US_ASCII);
+
+    /** Paire decodee: valeur String, Double ou Integer selon le code de groupe. */
+    private record Group(int code, Object value) {}
+
+    private static byte[] binary(Consumer<DxfWriter> body) throws IOException {
+        var out = new ByteArrayOutputStream();
+        var writer = new BinaryDxfWriter(out);
+        body.accept(writer);
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    /** Octets apres la sentinelle. */
+    private static byte[] pairs(Consumer<DxfWriter> body) throws IOException {
+        byte[] bytes = binary(body);
+        assertArrayEquals(SENTINEL, Arrays.copyOf(bytes, SENTINEL.length));
+        return Arrays.copyOfRange(bytes, SENTINEL.length, bytes.length);
+    }
+
+    private static byte[] bytes(int... values) {
+        var bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        var out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] littleEndian(double value) {
+        return ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putDouble(value).array();
+    }
+
+    private static boolean isString(int code) {
+        return code <= 9 || (code >= 100 && code <= 109) || (code >= 300 && code <= 369)
+                || (code >= 390 && code <= 419) || (code >= 999 && code <= 1009);
+    }
+
+    private static boolean isReal(int code) {
+        return (code >= 10 && code <= 59) || (code >= 110 && code <= 149) || (code >= 210 && code <= 239)
+                || (code >= 1010 && code <= 1059);
+    }
+
+    private static boolean isInt32(int code) {
+        return (code >= 90 && code <= 99) || code == 1071;
+    }
+
+    /** Decodage d'un DXF binaire complet, independant de {@link BinaryDxfWriter}. */
+    private static List<Group> decode(byte[] bytes) {
+        assertArrayEquals(SENTINEL, Arrays.copyOf(bytes, SENTINEL.length), "sentinelle");
+        var in = ByteBuffer.wrap(bytes, SENTINEL.length, bytes.length - SENTINEL.length).order(ByteOrder.LITTLE_ENDIAN);
+        var groups = new ArrayList<Group>();
+        while (in.hasRemaining()) {
+            int code = in.get() & 0xFF;
+            if (code == 255) {
+                code = in.getShort() & 0xFFFF;
+            }
+            Object value;
+            if (isString(code)) {
+                int start = in.position();
+                while (in.get() != 0) {
+                    // jusqu'au terminateur
+                }
+                value = new String(bytes, start, in.position() - start - 1, StandardCharsets.UTF_8);
+            } else if (isReal(code)) {
+                value = in.getDouble();
+            } else if (isInt32(code)) {
+                value = in.getInt();
+            } else {
+                value = (int) in.getShort();
+            }
+            groups.add(new Group(code, value));
+        }
+        return groups;
+    }
+
+    /** Lecture d'un DXF texte: valeurs typees comme {@link #decode}. */
+    private static List<Group> parse(String text) {
+        String[] lines = text.split("\n", -1);
+        var groups = new ArrayList<Group>();
+        for (int i = 0; i + 1 < lines.length; i += 2) {
+            int code = Integer.parseInt(lines[i].trim());
+            String value = lines[i + 1];
+            groups.add(new Group(code, isString(code) ? value
+                    : isReal(code) ? (Object) Double.parseDouble(value) : (Object) Integer.parseInt(value)));
+        }
+        return groups;
+    }
+
+    @Test
+    void fileStartsWithTheSentinel() throws IOException {
+        byte[] empty = binary(writer -> {});
+
+        assertEquals(22, empty.length);
+        assertArrayEquals(SENTINEL, empty);
+    }
+
+    @Test
+    void groupCodeTakesOneByteAndIsEscapedAbove254() throws IOException {
+        byte[] actual = pairs(writer -> writer.group(0, "EOF").group(254, "a").group(255, "b").group(1000, "c"));
+
+        assertArrayEquals(concat(
+                bytes(0), ascii("EOF"), bytes(0),
+                bytes(254), ascii("a"), bytes(0),
+                bytes(255, 255, 0), ascii("b"), bytes(0),
+                bytes(255, 0xE8, 0x03), ascii("c"), bytes(0)), actual);
+    }
+
+    @Test
+    void integersTakeTwoOrFourBytesByCode() throws IOException {
+        byte[] actual = pairs(writer -> writer.group(60, 1).group(70, -2).group(79, 0x1234)
+                .group(90, 0x12345678).group(99, -1).group(1071, 70_000));
+
+        assertArrayEquals(bytes(
+                60, 0x01, 0x00,
+                70, 0xFE, 0xFF,
+                79, 0x34, 0x12,
+                90, 0x78, 0x56, 0x34, 0x12,
+                99, 0xFF, 0xFF, 0xFF, 0xFF,
+                255, 0x2F, 0x04, 0x70, 0x11, 0x01, 0x00), actual);
+    }
+
+    @Test
+    void realsAreLittleEndianDoublesAndStringsAreNullTerminated() throws IOException {
+        Consumer<DxfWriter> body = writer -> writer.group(10, 1.5).group(40, -0.1).group(1, "Salle d'eau (4.2m²)")
+                .begin(1).append("Chambre ").append(12.25, 1).end();
+
+        assertArrayEquals(concat(
+                bytes(10), littleEndian(1.5),
+                bytes(40), littleEndian(-0.1),
+                bytes(1), "Salle d'eau (4.2m²)".getBytes(StandardCharsets.UTF_8), bytes(0),
+                bytes(1), ascii("Chambre 12.3"), bytes(0)), pairs(body));
+        assertEquals(List.of(new Group(10, 1.5), new Group(40, -0.1), new Group(1, "Salle d'eau (4.2m²)"),
+                new Group(1, "Chambre 12.3")), decode(binary(body)));
+    }
+
+    @Test
+    void binaryExportHasTheSameLayersAndEntitiesAsTheAsciiExport() throws IOException {
+        PlanResponse plan;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("examples/export-dxf-villa.json")) {
+            ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+            plan = objectMapper.readValue(in, PlanResponse.class);
+        }
+        var service = new DxfExportService(new DxfFragmentCache(new ExportProperties(), new SimpleMeterRegistry()));
+        var ascii = new ByteArrayOutputStream();
+        service.exportToDxf(plan, ascii, DxfFormat.ASCII);
+        var binary = new ByteArrayOutputStream();
+        service.exportToDxf(plan, binary, DxfFormat.BINARY);
+
+        List<Group> expected = parse(ascii.toString(StandardCharsets.UTF_8));
+        List<Group> actual = decode(binary.toByteArray());
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Group text = expected.get(i);
+            Group decoded = actual.get(i);
+            assertEquals(text.code(), decoded.code(), "paire " + i);
+            if (text.value() instanceof Double real) {
+                // Le texte arrondit a 4 decimales, le binaire garde le double
+                assertEquals(real, (Double) decoded.value(), 0.5e-4 + 1e-9, "paire " + i + " (code " + text.code() + ")");
+            } else {
+                assertEquals(text.value(), decoded.value(), "paire " + i + " (code " + text.code() + ")");
+            }
+        }
+        List<String> layers = new ArrayList<>();
+        for (int i = 0; i + 1 < actual.size(); i++) {
+            if (actual.get(i).equals(new Group(0, "LAYER")) && actual.get(i + 1).code() == 2) {
+                layers.add((String) actual.get(i + 1).value());
+            }
+        }
+        assertEquals(List.of("TERRAIN", "MURS_PORTEURS", "MURS_CLOISONS", "OUVERTURES", "COTATIONS", "TEXTE", "MOBILIER"),
+                layers);
+        assertEquals(new Group(0, "EOF"), actual.get(actual.size() - 1));
+        assertTrue(actual.stream().filter(g -> g.equals(new Group(0, "INSERT"))).count() > 0);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
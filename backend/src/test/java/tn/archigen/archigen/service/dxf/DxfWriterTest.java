@@ -0,0 +1,149 @@
+package tn.archigen.archigen.service.dxf;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Encodage de {@link DxfWriter}: nombres (memes chiffres que {@code String.format("%.Nf")}) et fragments
+ * recuperes puis recopies.
+ */
+class DxfWriterTest {
+
+    private static String fixed(double value, int decimals) throws IOException {
+        var out = new ByteArrayOutputStream();
+        var writer = new AsciiDxfWriter(out);
+        writer.begin(1).append(value, decimals).end();
+        writer.flush();
+        String text = out.toString(StandardCharsets.US_ASCII);
+        // Code de groupe "  1\n" puis la valeur et son retour a la ligne
+        return text.substring(4, text.length() - 1);
+    }
+
+    /** {@code %.Nf} sans zero negatif ("-0.0000" s'ecrit "0.0000"). */
+    private static String format(double value, int decimals) {
+        String expected = String.format(Locale.ROOT, "%." + decimals + "f", value);
+        return expected.matches("-0\\.?0*") ? expected.substring(1) : expected;
+    }
+
+    private static void assertFixed(double value, int decimals) throws IOException {
+        assertEquals(format(value, decimals), fixed(value, decimals), value + " avec " + decimals + " decimales");
+    }
+
+    @Test
+    void valuesJustBelowAHalfAfterScalingRoundLikeFormat() throws IOException {
+        assertEquals("9.6521", fixed(9.65205, 4));
+        assertFixed(9.65205, 4);
+        assertFixed(0.125, 2);
+        assertFixed(2.675, 2);
+        assertFixed(1.005, 2);
+        assertFixed(-1.00005, 4);
+    }
+
+    @Test
+    void zeroAndNegativeZero() throws IOException {
+        assertEquals("0.0000", fixed(0.0, 4));
+        assertEquals("0.0000", fixed(-0.0, 4));
+        assertEquals("0.0000", fixed(-0.00004, 4));
+        assertEquals("-0.0001", fixed(-0.00005, 4));
+        assertEquals("3", fixed(2.5, 0));
+    }
+
+    @Test
+    void largeValues() throws IOException {
+        assertFixed(123456789.98765, 4);
+        assertFixed(99999999999.99995, 4);
+        assertFixed(1e11 + 0.1, 6);
+        assertEquals(Double.toString(1e13), fixed(1e13, 4));
+    }
+
+    @Test
+    void randomValuesMatchFormat() throws IOException {
+        var random = new SplittableRandom(42);
+        for (int i = 0; i < 200_000; i++) {
+            int decimals = random.nextInt(7);
+            double value;
+            switch (i % 3) {
+                // Demis decimaux exacts a la decimale suivante (cas limites de l'arrondi)
+                case 0 -> value = (random.nextLong(2_000_000_000L) * 10 + 5) / Math.pow(10, decimals + 1);
+                // Coordonnees de plan
+                case 1 -> value = random.nextDouble(-500.0, 500.0);
+                default -> value = random.nextDouble(-1e9, 1e9);
+            }
+            assertFixed(value, decimals);
+        }
+    }
+
+    /** Octets d'un writer ASCII apres {@code body}. */
+    private static byte[] ascii(Consumer<DxfWriter> body) throws IOException {
+        var out = new ByteArrayOutputStream();
+        var writer = new AsciiDxfWriter(out);
+        body.accept(writer);
+        writer.flush();
+        return out.toByteArray();
+    }
+
+    private static String text(int length) {
+        return "x".repeat(length);
+    }
+
+    @Test
+    void fragmentIsTheBytesWrittenSinceItsBeginning() throws IOException {
+        var out = new ByteArrayOutputStream();
+        var writer = new AsciiDxfWriter(out);
+        writer.group(0, "SECTION");
+        writer.beginFragment();
+        writer.group(8, "MURS").group(10, 1.5);
+        byte[] fragment = writer.endFragment();
+        writer.flush();
+
+        assertNotNull(fragment);
+        assertEquals("  8\nMURS\n 10\n1.5000\n", new String(fragment, StandardCharsets.US_ASCII));
+        assertEquals("  0\nSECTION\n  8\nMURS\n 10\n1.5000\n", out.toString(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void fragmentLongerThanTheReserveIsNotRecovered() throws IOException {
+        ascii(writer -> {
+            // Tient dans le tampon (vide) mais depasse la place reservee
+            writer.beginFragment();
+            writer.group(1, text(DxfWriter.FRAGMENT_RESERVE));
+            assertNull(writer.endFragment());
+
+            // Plus long que le reste du tampon: vide en cours de fragment
+            writer.group(1, text(8000));
+            writer.beginFragment();
+            writer.group(1, text(900));
+            writer.group(1, text(900));
+            assertNull(writer.endFragment());
+
+            writer.beginFragment();
+            writer.group(1, text(DxfWriter.FRAGMENT_RESERVE - 10));
+            assertNotNull(writer.endFragment());
+        });
+    }
+
+    @Test
+    void replayedFragmentIsWrittenInPlaceWhateverItsSize() throws IOException {
+        for (int length : new int[] {10, 5000, 8191, 8192, 8193, 20_000}) {
+            String fragment = text(length);
+            // Octets deja dans le tampon avant le fragment, et apres lui
+            byte[] expected = ascii(writer -> writer.group(0, "A").append(fragment).group(0, "B"));
+
+            byte[] actual = ascii(writer -> writer.group(0, "A").write(fragment.getBytes(StandardCharsets.US_ASCII))
+                    .group(0, "B"));
+
+            assertArrayEquals(expected, actual, "fragment de " + length + " octets");
+        }
+    }
+}
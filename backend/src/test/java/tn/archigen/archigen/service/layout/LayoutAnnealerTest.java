@@ -0,0 +1,78 @@
+package tn.archigen.archigen.service.layout;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LayoutAnnealerTest {
+
+    private static final double EPS = 1e-6;
+    private static final double GAP = 0.2;
+    private static final BuildableZone ZONE = new BuildableZone(0.0, 0.0, 24.0, 18.0);
+    private static final String[] TYPES = {"salon", "chambre", "cuisine", "sdb", "bureau", "wc", "chambre", "couloir"};
+
+    /** Grille de 4 x 4 pieces de 4 x 3 m separees de 1 m (plus qu'un mur), premiere piece fixe. */
+    private static RoomLayout grid() {
+        var program = new RoomProgram(16);
+        var layout = new RoomLayout(program, 16);
+        for (int i = 0; i < 16; i++) {
+            program.add("Piece", i, TYPES[i % TYPES.length], 12.0);
+            layout.add(i, 1.0 + (i % 4) * 5.0, 1.0 + (i / 4) * 4.0, 4.0, 3.0);
+        }
+        return layout;
+    }
+
+    private static long deadline(long millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    void annealedLayoutKeepsRoomsApartInsideTheZone() {
+        RoomLayout start = grid();
+
+        RoomLayout result = LayoutAnnealer.anneal(start, 1, ZONE, GAP, deadline(200), 7L);
+
+        assertEquals(start.size(), result.size());
+        assertEquals(start.x(0), result.x(0), EPS, "piece fixe");
+        assertEquals(start.y(0), result.y(0), EPS, "piece fixe");
+        for (int i = 0; i < result.size(); i++) {
+            assertTrue(result.x(i) >= ZONE.x() - EPS && result.y(i) >= ZONE.y() - EPS
+                    && result.x(i) + result.width(i) <= ZONE.x() + ZONE.width() + EPS
+                    && result.y(i) + result.height(i) <= ZONE.y() + ZONE.height() + EPS, "hors zone: " + i);
+            assertTrue(result.area(i) >= 12.0 * 0.98 - EPS, "surface: " + i);
+            for (int j = i + 1; j < result.size(); j++) {
+                boolean tooClose = result.x(i) < result.x(j) + result.width(j) + GAP - EPS
+                        && result.x(j) < result.x(i) + result.width(i) + GAP - EPS
+                        && result.y(i) < result.y(j) + result.height(j) + GAP - EPS
+                        && result.y(j) < result.y(i) + result.height(i) + GAP - EPS;
+                assertFalse(tooClose, "pieces " + i + " et " + j + " a moins d'un mur");
+            }
+        }
+    }
+
+    @Test
+    void annealingCompactsASpreadLayout() {
+        RoomLayout start = grid();
+        double startSpan = span(start);
+
+        RoomLayout result = LayoutAnnealer.anneal(start, 0, ZONE, GAP, deadline(200), 7L);
+
+        assertTrue(span(result) < startSpan, span(result) + " >= " + startSpan);
+    }
+
+    /** Surface de la boite englobante. */
+    private static double span(RoomLayout layout) {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int i = 0; i < layout.size(); i++) {
+            minX = Math.min(minX, layout.x(i));
+            minY = Math.min(minY, layout.y(i));
+            maxX = Math.max(maxX, layout.x(i) + layout.width(i));
+            maxY = Math.max(maxY, layout.y(i) + layout.height(i));
+        }
+        return (maxX - minX) * (maxY - minY);
+    }
+}
@@ -0,0 +1,60 @@
+package tn.archigen.archigen.service.layout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tn.archigen.archigen.dto.RoomDto;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification et reparation d'un plan IA de 12 pieces: plan deja valide (verification seule) et plan
+ * decale hors grille avec chevauchements entre voisines et pieces hors de la zone constructible.
+ * Lancer avec {@code ./mvnw -Pbenchmark test-compile exec:exec -Dbenchmark=LayoutRepairBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LayoutRepairBenchmark {
+
+    private final BuildableZone zone = new BuildableZone(3.0, 5.0, 14.0, 22.0);
+    private RoomLayout valid;
+    private RoomLayout broken;
+
+    @Setup
+    public void setup() {
+        String[] types = {"salon", "cuisine", "chambre", "chambre", "chambre", "sdb", "sdb", "wc", "bureau", "entree", "couloir", "garage"};
+        var validRooms = new ArrayList<RoomDto>();
+        var brokenRooms = new ArrayList<RoomDto>();
+        for (int i = 0; i < types.length; i++) {
+            validRooms.add(RoomDto.builder().name(types[i] + " " + (i + 1)).type(types[i])
+                    .x(3.0 + (i % 4) * 3.5).y(5.0 + (i / 4) * 3.2).width(3.5).height(3.2).build());
+            // Pieces trop larges (chevauchement de 20 cm avec la voisine), hors grille, premiere colonne hors zone
+            brokenRooms.add(RoomDto.builder().name(types[i] + " " + (i + 1)).type(types[i])
+                    .x(2.4 + (i % 4) * 3.5 + 0.03).y(5.0 + (i / 4) * 3.2).width(3.7).height(3.27).build());
+        }
+        valid = RoomLayout.of(validRooms);
+        broken = RoomLayout.of(brokenRooms);
+    }
+
+    @Benchmark
+    public LayoutRepair.Result checkValid() {
+        return LayoutRepair.repair(valid, zone);
+    }
+
+    @Benchmark
+    public LayoutRepair.Result repairBroken() {
+        return LayoutRepair.repair(broken, zone);
+    }
+}
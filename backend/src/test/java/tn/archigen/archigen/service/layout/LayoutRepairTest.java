@@ -0,0 +1,158 @@
+package tn.archigen.archigen.service.layout;
+
+import org.junit.jupiter.api.Test;
+import tn.archigen.archigen.dto.RoomDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LayoutRepairTest {
+
+    private static final double DELTA = 1e-9;
+    private static final BuildableZone ZONE = new BuildableZone(3.0, 5.0, 14.0, 22.0);
+
+    private static RoomDto room(String name, double x, double y, double w, double h) {
+        return RoomDto.builder().name(name).type("chambre").x(x).y(y).width(w).height(h).build();
+    }
+
+    private static RoomLayout layout(RoomDto... rooms) {
+        return RoomLayout.of(List.of(rooms));
+    }
+
+    private static void assertRoom(RoomLayout layout, int i, double x, double y, double w, double h) {
+        assertEquals(x, layout.x(i), DELTA, "x");
+        assertEquals(y, layout.y(i), DELTA, "y");
+        assertEquals(w, layout.width(i), DELTA, "largeur");
+        assertEquals(h, layout.height(i), DELTA, "profondeur");
+    }
+
+    private static void assertValid(RoomLayout layout, BuildableZone zone) {
+        var check = LayoutRepair.repair(layout, zone);
+        assertFalse(check.repaired(), "placement repare encore invalide");
+    }
+
+    @Test
+    void validLayoutIsReturnedAsIs() {
+        var input = layout(room("Salon", 3.0, 5.0, 5.0, 4.0), room("Cuisine", 8.0, 5.0, 3.5, 4.0));
+
+        var result = LayoutRepair.repair(input, ZONE);
+
+        assertFalse(result.repaired());
+        assertSame(input, result.layout());
+        assertEquals(0, result.overlaps());
+        assertEquals(0, result.outsideZone());
+        assertEquals(0, result.dropped());
+    }
+
+    @Test
+    void offGridCoordinatesAreSnapped() {
+        var input = layout(room("Salon", 3.04, 5.16, 4.96, 3.01), room("Cuisine", 8.0, 5.0, 3.5, 4.0));
+
+        var result = LayoutRepair.repair(input, ZONE);
+
+        assertTrue(result.repaired());
+        assertTrue(result.offGrid());
+        assertEquals(0, result.overlaps());
+        assertRoom(result.layout(), 0, 3.0, 5.2, 5.0, 3.0);
+        assertRoom(result.layout(), 1, 8.0, 5.0, 3.5, 4.0);
+        assertEquals("Salon", result.layout().program().name(result.layout().programIndex(0)));
+    }
+
+    @Test
+    void roomsAreClampedIntoTheZone() {
+        var input = layout(
+                room("Salon", 1.0, 25.0, 5.0, 4.0),    // depasse a gauche et au fond
+                room("Garage", 10.0, 10.0, 20.0, 3.0)  // plus large que la zone
+        );
+
+        var result = LayoutRepair.repair(input, ZONE);
+
+        assertTrue(result.repaired());
+        assertEquals(2, result.outsideZone());
+        assertRoom(result.layout(), 0, 3.0, 23.0, 5.0, 4.0);
+        assertRoom(result.layout(), 1, 3.0, 10.0, 14.0, 3.0);
+        assertValid(result.layout(), ZONE);
+    }
+
+    @Test
+    void overlappingRoomsAreSeparated() {
+        var input = layout(room("Salon", 5.0, 8.0, 5.0, 4.0), room("Chambre", 8.0, 9.0, 3.0, 3.0));
+
+        var result = LayoutRepair.repair(input, ZONE);
+
+        assertTrue(result.repaired());
+        assertEquals(1, result.overlaps());
+        assertEquals(0, result.dropped());
+        // La plus petite piece est deplacee du plus petit vecteur (vers la droite), la plus grande reste en place
+        assertRoom(result.layout(), 0, 5.0, 8.0, 5.0, 4.0);
+        assertRoom(result.layout(), 1, 10.0, 9.0, 3.0, 3.0);
+        assertValid(result.layout(), ZONE);
+    }
+
+    @Test
+    void overlapIsCutWhenNoMoveFitsTheZone() {
+        var zone = new BuildableZone(0.0, 0.0, 6.0, 3.0);
+        var input = layout(room("Salon", 0.0, 0.0, 4.0, 3.0), room("Chambre", 2.0, 0.0, 3.0, 3.0));
+
+        var result = LayoutRepair.repair(input, zone);
+
+        assertTrue(result.repaired());
+        assertEquals(0, result.dropped());
+        assertEquals(2, result.layout().size());
+        assertRoom(result.layout(), 0, 0.0, 0.0, 4.0, 3.0);
+        assertRoom(result.layout(), 1, 4.0, 0.0, 1.0, 3.0);
+        assertValid(result.layout(), zone);
+    }
+
+    @Test
+    void roomCutBelowMinSideIsDropped() {
+        var zone = new BuildableZone(0.0, 0.0, 6.0, 3.0);
+        var input = layout(room("Salon", 0.0, 0.0, 4.0, 3.0), room("Placard", 2.0, 0.0, 2.5, 3.0));
+
+        var result = LayoutRepair.repair(input, zone);
+
+        assertTrue(result.repaired());
+        assertEquals(1, result.dropped());
+        assertEquals(1, result.layout().size());
+        assertRoom(result.layout(), 0, 0.0, 0.0, 4.0, 3.0);
+        assertTrue(0.5 < LayoutRepair.MIN_SIDE, "le reste (0.5 m) doit etre sous le cote minimal");
+    }
+
+    @Test
+    void roomsWithoutValidDimensionsAreDropped() {
+        var input = layout(room("Salon", 3.0, 5.0, 5.0, 4.0), room("Vide", 9.0, 5.0, 0.0, 4.0));
+
+        var result = LayoutRepair.repair(input, ZONE);
+
+        assertTrue(result.repaired());
+        assertEquals(1, result.dropped());
+        assertEquals(1, result.layout().size());
+    }
+
+    @Test
+    void emptyZoneThrows() {
+        var zone = new BuildableZone(0.0, 0.0, 0.05, 5.0);
+        var input = layout(room("Salon", 0.0, 0.0, 3.0, 3.0));
+
+        assertThrows(IllegalArgumentException.class, () -> LayoutRepair.repair(input, zone));
+    }
+
+    @Test
+    void crowdedLayoutEndsWithoutOverlap() {
+        var rooms = new ArrayList<RoomDto>();
+        for (int i = 0; i < 12; i++) {
+            rooms.add(room("Piece " + i, 3.0 + (i % 4) * 2.13, 5.0 + (i / 4) * 2.37, 3.4, 3.2));
+        }
+        var result = LayoutRepair.repair(RoomLayout.of(rooms), ZONE);
+
+        assertTrue(result.repaired());
+        assertEquals(12, result.layout().size() + result.dropped());
+        assertValid(result.layout(), ZONE);
+    }
+}
@@ -0,0 +1,107 @@
+package tn.archigen.archigen.service.layout;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OverlapSweepTest {
+
+    private static final double EPS = 1e-6;
+
+    /** Paires visitees, dans l'ordre de visite. */
+    private static List<String> overlaps(double[][] rects, double eps) {
+        int n = rects.length;
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] w = new double[n];
+        double[] h = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = rects[i][0];
+            y[i] = rects[i][1];
+            w[i] = rects[i][2];
+            h[i] = rects[i][3];
+        }
+        var pairs = new ArrayList<String>();
+        int count = OverlapSweep.forEachOverlap(x, y, w, h, n, eps, (a, b) -> pairs.add(a + "-" + b));
+        assertEquals(pairs.size(), count);
+        return pairs;
+    }
+
+    @Test
+    void roomsSharingAWallDoNotOverlap() {
+        double[][] rects = {
+                {0, 0, 4, 3},
+                {4, 0, 3, 3},   // mur commun vertical
+                {0, 3, 4, 2},   // mur commun horizontal
+                {4, 3, 3, 2}    // coin commun
+        };
+        assertEquals(List.of(), overlaps(rects, EPS));
+    }
+
+    @Test
+    void overlapSmallerThanEpsIsIgnored() {
+        double[][] rects = {
+                {0, 0, 4, 3},
+                {3.7, 0, 3, 3},    // 0.3 en x
+                {0, 2.8, 3.5, 2}   // 0.2 en y
+        };
+        assertEquals(List.of(), overlaps(rects, 0.5));
+        assertEquals(List.of("0-1", "0-2"), overlaps(rects, EPS).stream().sorted().toList());
+    }
+
+    @Test
+    void equalVerticalStartsAreAllCompared() {
+        double[][] rects = {
+                {0, 2, 3, 3},
+                {1, 2, 3, 3},
+                {2, 2, 3, 3},
+                {10, 2, 3, 3}
+        };
+        assertEquals(List.of("0-1", "0-2", "1-2"), overlaps(rects, EPS).stream().sorted().toList());
+    }
+
+    @Test
+    void containedRectangleOverlaps() {
+        double[][] rects = {
+                {0, 0, 10, 10},
+                {2, 2, 1, 1}
+        };
+        assertEquals(List.of("0-1"), overlaps(rects, EPS));
+    }
+
+    @Test
+    void fewerThanTwoRectanglesHaveNoPairs() {
+        assertEquals(List.of(), overlaps(new double[][]{{0, 0, 1, 1}}, EPS));
+        assertEquals(List.of(), overlaps(new double[0][], EPS));
+    }
+
+    @Test
+    void matchesPairwiseComparison() {
+        var random = new SplittableRandom(7);
+        for (int round = 0; round < 200; round++) {
+            int n = 1 + random.nextInt(40);
+            double[][] rects = new double[n][];
+            for (int i = 0; i < n; i++) {
+                // Coordonnees sur une grille de 0.5: beaucoup de murs communs et de debuts egaux
+                rects[i] = new double[]{random.nextInt(40) * 0.5, random.nextInt(40) * 0.5,
+                        1 + random.nextInt(10) * 0.5, 1 + random.nextInt(10) * 0.5};
+            }
+            var expected = new ArrayList<String>();
+            for (int a = 0; a < n; a++) {
+                for (int b = a + 1; b < n; b++) {
+                    double[] p = rects[a];
+                    double[] q = rects[b];
+                    if (Math.min(p[0] + p[2], q[0] + q[2]) - Math.max(p[0], q[0]) > EPS
+                            && Math.min(p[1] + p[3], q[1] + q[3]) - Math.max(p[1], q[1]) > EPS) {
+                        expected.add(a + "-" + b);
+                    }
+                }
+            }
+            assertEquals(expected.stream().sorted().toList(), overlaps(rects, EPS).stream().sorted().toList());
+        }
+    }
+}
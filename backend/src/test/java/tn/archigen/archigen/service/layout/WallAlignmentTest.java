@@ -0,0 +1,105 @@
+package tn.archigen.archigen.service.layout;
+
+import org.junit.jupiter.api.Test;
+import tn.archigen.archigen.dto.RoomDto;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WallAlignmentTest {
+
+    private static final double DELTA = 1e-9;
+    private static final double GAP = 0.2;
+    private static final double TOLERANCE = 0.8;
+    private static final BuildableZone ZONE = new BuildableZone(0.0, 0.0, 10.0, 8.0);
+
+    /** RDC: deux pieces separees par un mur de 20 cm en x = 5.0 .. 5.2. */
+    private static final RoomLayout GROUND = RoomLayout.of(List.of(
+            RoomDto.builder().name("Salon").type("salon").x(0.0).y(0.0).width(5.0).height(4.0).build(),
+            RoomDto.builder().name("Cuisine").type("cuisine").x(5.2).y(0.0).width(4.8).height(4.0).build()));
+
+    /** Etage de deux pieces cote a cote, {@code wall} = abscisse du mur qui les separe. */
+    private static RoomLayout upper(double wall, double firstMinArea) {
+        var program = new RoomProgram(2);
+        program.add("Chambre", 1, "chambre", firstMinArea);
+        program.add("Chambre", 2, "chambre", 12.0);
+        var layout = new RoomLayout(program, 2);
+        layout.add(0, 0.0, 0.0, wall, 4.0);
+        layout.add(1, wall + GAP, 0.0, 10.0 - wall - GAP, 4.0);
+        return layout;
+    }
+
+    private static void assertWall(RoomLayout layout, double wall) {
+        assertEquals(wall, layout.x(0) + layout.width(0), DELTA, "bord droit de la premiere piece");
+        assertEquals(wall + GAP, layout.x(1), DELTA, "bord gauche de la seconde piece");
+        assertEquals(10.0, layout.x(1) + layout.width(1), DELTA, "facade");
+        assertEquals(layout.width(0) * layout.height(0), layout.area(0), DELTA, "surface");
+    }
+
+    @Test
+    void nearbyWallIsMovedOntoTheGroundFloorWall() {
+        var layout = upper(5.5, 12.0);
+
+        int moved = WallAlignment.align(layout, GROUND, ZONE, TOLERANCE, GAP);
+
+        // Les deux faces du mur sont deplacees, l'epaisseur du mur est gardee
+        assertEquals(2, moved);
+        assertWall(layout, 5.0);
+    }
+
+    @Test
+    void wallIsMovedInEitherDirection() {
+        var layout = upper(4.6, 12.0);
+
+        assertEquals(2, WallAlignment.align(layout, GROUND, ZONE, TOLERANCE, GAP));
+        assertWall(layout, 5.0);
+    }
+
+    @Test
+    void distantWallIsKept() {
+        var layout = upper(6.5, 12.0);
+
+        assertEquals(0, WallAlignment.align(layout, GROUND, ZONE, TOLERANCE, GAP));
+        assertWall(layout, 6.5);
+    }
+
+    @Test
+    void wallIsKeptWhenARoomWouldFallBelowItsMinimumArea() {
+        // 5.5 x 4 = 22 m2 demandes: ramener le mur a 5.0 laisserait 20 m2
+        var layout = upper(5.5, 22.0);
+
+        assertEquals(0, WallAlignment.align(layout, GROUND, ZONE, TOLERANCE, GAP));
+        assertWall(layout, 5.5);
+    }
+
+    @Test
+    void alignedLayoutIsUnchanged() {
+        var layout = upper(5.0, 12.0);
+
+        assertEquals(0, WallAlignment.align(layout, GROUND, ZONE, TOLERANCE, GAP));
+        assertWall(layout, 5.0);
+    }
+
+    @Test
+    void roomsAcrossTheTargetLineBlockTheMove() {
+        // Bureau separe des deux chambres par un mur de 20 cm
+        var program = new RoomProgram(3);
+        program.add("Chambre", 1, "chambre", 1.0);
+        program.add("Chambre", 2, "chambre", 1.0);
+        program.add("Bureau", 0, "bureau", 1.0);
+        var layout = new RoomLayout(program, 3);
+        layout.add(0, 0.0, 0.0, 5.5, 4.0);
+        layout.add(1, 5.7, 0.0, 4.3, 4.0);
+        layout.add(2, 4.0, 4.2, 6.0, 3.0);
+        var ground = RoomLayout.of(List.of(
+                RoomDto.builder().name("Salon").type("salon").x(0.0).y(0.0).width(5.0).height(4.0).build(),
+                RoomDto.builder().name("Bureau").type("bureau").x(4.8).y(3.5).width(4.0).height(3.0).build()));
+
+        WallAlignment.align(layout, ground, ZONE, TOLERANCE, GAP);
+
+        // Le haut du bureau ne peut pas remonter a 3.5 sans toucher les chambres (mur de 20 cm)
+        assertEquals(4.2, layout.y(2), DELTA);
+        assertEquals(4.0, layout.height(0), DELTA);
+    }
+}